@@ -1,7 +1,11 @@
 package ck.panda;
 
+import java.time.ZoneId;
+import java.util.Arrays;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.MessageListener;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
@@ -14,23 +18,39 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ck.panda.rabbitmq.util.ActionListener;
 import ck.panda.rabbitmq.util.AlertEventListener;
 import ck.panda.rabbitmq.util.AsynchronousJobListener;
 import ck.panda.rabbitmq.util.EmailListener;
+import ck.panda.rabbitmq.util.EventCatchUp;
+import ck.panda.rabbitmq.util.EventWatermark;
+import ck.panda.rabbitmq.util.PartitionedMessageListener;
+import ck.panda.rabbitmq.util.RabbitQueueMetrics;
 import ck.panda.rabbitmq.util.ResourceStateListener;
 import ck.panda.rabbitmq.util.UsageEventListener;
 import ck.panda.service.AsynchronousJobService;
 import ck.panda.service.ConvertEntityService;
 import ck.panda.service.EmailJobService;
 import ck.panda.service.SyncService;
+import ck.panda.service.UsageLedgerService;
+import ck.panda.util.CloudStackEventService;
 import ck.panda.util.CloudStackServer;
 import ck.panda.util.ConfigUtil;
+import ck.panda.util.LeaderElection;
 
 /**
  * RabbitMQ configuration to publish/consume messages from CS server via RabbitMQ server with specified Exchange name.
  * All CS server events are tracked and update the status of resources in APP DB, update usage of resource in APP DB,
  * sync APP DB while action directly handled at CS server, CS server Alert.
+ *
+ * Every listener container reads its consumer count, prefetch count and acknowledgement batch size from
+ * spring.rabbit.server.[queue key]. Action, asynchronous job and resource state events are dispatched onto worker lanes
+ * by resource uuid, so events of one resource stay ordered while different resources are handled in parallel.
+ *
+ * The action and asynchronous job listeners advance an event watermark, and each new broker connection starts a
+ * catch-up of the CS server events listed since that watermark.
  */
 @Configuration
 public class RabbitConfig {
@@ -106,6 +126,26 @@ public class RabbitConfig {
     @Value(value = "${spring.rabbit.server.email.queue}")
     private String csEmailQueueName;
 
+    /** Delay in milliseconds before an action event is handled, to let CS server commit the change. */
+    @Value(value = "${spring.rabbit.server.action.delay:5000}")
+    private Long actionEventDelay;
+
+    /** Additional delay in milliseconds before users are synced after a user action event. */
+    @Value(value = "${spring.rabbit.server.action.userSyncDelay:3000}")
+    private Long userSyncDelay;
+
+    /** Time in milliseconds of CS server events listed before the event watermark on catch-up. */
+    @Value(value = "${spring.rabbit.server.catchUp.overlap:900000}")
+    private Long catchUpOverlap;
+
+    /** Age in milliseconds of the event watermark over which a full sync runs instead of a catch-up. */
+    @Value(value = "${spring.rabbit.server.catchUp.maxAge:86400000}")
+    private Long catchUpMaxAge;
+
+    /** Time zone of the CS server, in which the catch-up gives the listEvents start date. */
+    @Value(value = "${spring.rabbit.server.catchUp.serverZone:UTC}")
+    private String catchUpServerZone;
+
     /** Admin username. */
     @Value("${backend.admin.username}")
     private String backendAdminUsername;
@@ -118,6 +158,10 @@ public class RabbitConfig {
     @Autowired
     private ApplicationContext applicationContext;
 
+    /** Environment reference, to read the listener container settings. */
+    @Autowired
+    private Environment environment;
+
     /**
      * Queue for action event messages.
      *
@@ -298,50 +342,48 @@ public class RabbitConfig {
     }
 
     /**
-     * Message listener adapter that delegates the handling of action event messages to target listener methods via
-     * reflection, with flexible type conversion.
+     * Action event listener, also running the sync of the events caught up.
      *
-     * @return message action event listener.
+     * @return action event listener.
      */
     @Bean
-    MessageListenerAdapter actionListenerAdapter() {
+    ActionListener actionListener() {
         SyncService syncService = applicationContext.getBean(SyncService.class);
         EmailJobService emailJobService = applicationContext.getBean(EmailJobService.class);
         AsynchronousJobService asyncService = applicationContext.getBean(AsynchronousJobService.class);
         CloudStackServer cloudStackServer = applicationContext.getBean(CloudStackServer.class);
         ConvertEntityService convertEntityService = applicationContext.getBean(ConvertEntityService.class);
-        return new MessageListenerAdapter(new ActionListener(syncService, asyncService, convertEntityService,
-                cloudStackServer, backendAdminUsername, backendAdminRole, emailJobService));
+        return new ActionListener(syncService, asyncService, convertEntityService, cloudStackServer,
+                backendAdminUsername, backendAdminRole, emailJobService, actionEventDelay, userSyncDelay,
+                eventWatermark());
     }
 
     /**
-     * Message listener adapter that delegates the handling of asynchronous job messages to target listener methods via
-     * reflection, with flexible type conversion.
+     * Asynchronous job listener, run on the lanes of its dispatcher.
      *
-     * @return message asynchronous job listener.
+     * @return asynchronous job listener.
      */
     @Bean
-    MessageListenerAdapter asynchJobListenerAdapter() {
+    AsynchronousJobListener asynchJobListener() {
         SyncService syncService = applicationContext.getBean(SyncService.class);
         AsynchronousJobService asyncService = applicationContext.getBean(AsynchronousJobService.class);
         CloudStackServer cloudStackServer = applicationContext.getBean(CloudStackServer.class);
         ConvertEntityService convertEntityService = applicationContext.getBean(ConvertEntityService.class);
         ConfigUtil configUtil = applicationContext.getBean(ConfigUtil.class);
-        return new MessageListenerAdapter(new AsynchronousJobListener(syncService, asyncService, cloudStackServer, convertEntityService, configUtil,
-            backendAdminUsername, backendAdminRole));
+        return new AsynchronousJobListener(syncService, asyncService, cloudStackServer, convertEntityService, configUtil,
+            backendAdminUsername, backendAdminRole, eventWatermark());
     }
 
     /**
-     * Message listener adapter that delegates the handling of resource state event messages to target listener methods
-     * via reflection, with flexible type conversion.
+     * Resource state listener, run on the lanes of its dispatcher.
      *
-     * @return message asynchronous job listener.
+     * @return resource state listener.
      */
     @Bean
-    MessageListenerAdapter resourceStateListenerAdapter() {
+    ResourceStateListener resourceStateListener() {
         ConvertEntityService convertEntityService = applicationContext.getBean(ConvertEntityService.class);
         SyncService sync = applicationContext.getBean(SyncService.class);
-        return new MessageListenerAdapter(new ResourceStateListener(convertEntityService,sync));
+        return new ResourceStateListener(convertEntityService,sync);
     }
 
     /**
@@ -358,14 +400,14 @@ public class RabbitConfig {
     }
 
     /**
-     * Message listener adapter that delegates the handling of usage messages to target listener methods via reflection,
-     * with flexible type conversion.
+     * Usage event listener, acknowledging each usage message once it is written to the usage ledger.
      *
-     * @return message usage listener.
+     * @return usage listener.
      */
     @Bean
-    MessageListenerAdapter usageListenerAdapter() {
-        return new MessageListenerAdapter(new UsageEventListener());
+    UsageEventListener usageListener() {
+        UsageLedgerService usageLedgerService = applicationContext.getBean(UsageLedgerService.class);
+        return new UsageEventListener(usageLedgerService);
     }
 
     /**
@@ -388,11 +430,7 @@ public class RabbitConfig {
      */
     @Bean
     SimpleMessageListenerContainer actionContainer(Queue queue) {
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
-        container.setConnectionFactory(connectionFactory());
-        container.setQueues(queue);
-        container.setMessageListener(actionListenerAdapter());
-        return container;
+        return createContainer("action", queue, actionDispatcher(), AcknowledgeMode.MANUAL);
     }
 
     /**
@@ -403,11 +441,7 @@ public class RabbitConfig {
      */
     @Bean
     SimpleMessageListenerContainer alertContainer(Queue queue3) {
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
-        container.setConnectionFactory(connectionFactory());
-        container.setQueues(queue3);
-        container.setMessageListener(alertListenerAdapter());
-        return container;
+        return createContainer("alert", queue3, alertListenerAdapter(), AcknowledgeMode.AUTO);
     }
 
     /**
@@ -418,11 +452,7 @@ public class RabbitConfig {
      */
     @Bean
     SimpleMessageListenerContainer usageContainer(Queue queue2) {
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
-        container.setConnectionFactory(connectionFactory());
-        container.setQueues(queue2);
-        container.setMessageListener(usageListenerAdapter());
-        return container;
+        return createContainer("usage", queue2, usageListener(), AcknowledgeMode.MANUAL);
     }
 
     /**
@@ -434,11 +464,7 @@ public class RabbitConfig {
      */
     @Bean
     SimpleMessageListenerContainer asynchJobContainer(Queue queue1) {
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
-        container.setConnectionFactory(connectionFactory());
-        container.setQueues(queue1);
-        container.setMessageListener(asynchJobListenerAdapter());
-        return container;
+        return createContainer("asynchJob", queue1, asynchJobDispatcher(), AcknowledgeMode.MANUAL);
     }
 
     /**
@@ -450,11 +476,7 @@ public class RabbitConfig {
      */
     @Bean
     SimpleMessageListenerContainer resourceStateContainer(Queue queue4) {
-        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
-        container.setConnectionFactory(connectionFactory());
-        container.setQueues(queue4);
-        container.setMessageListener(resourceStateListenerAdapter());
-        return container;
+        return createContainer("resource", queue4, resourceStateDispatcher(), AcknowledgeMode.MANUAL);
     }
 
     /**
@@ -466,10 +488,126 @@ public class RabbitConfig {
      */
     @Bean
     SimpleMessageListenerContainer emailContainer(Queue emailQueue) {
+        return createContainer("email", emailQueue, emailListenerAdapter(), AcknowledgeMode.AUTO);
+    }
+
+    /**
+     * Dispatcher handling action event messages on worker lanes by resource uuid.
+     *
+     * @return action event dispatcher.
+     */
+    @Bean(destroyMethod = "shutdown")
+    PartitionedMessageListener actionDispatcher() {
+        return createDispatcher("action", actionListener());
+    }
+
+    /**
+     * Dispatcher handling asynchronous job messages on worker lanes by resource uuid.
+     *
+     * @return asynchronous job dispatcher.
+     */
+    @Bean(destroyMethod = "shutdown")
+    PartitionedMessageListener asynchJobDispatcher() {
+        return createDispatcher("asynchJob", asynchJobListener());
+    }
+
+    /**
+     * Dispatcher handling resource state messages on worker lanes by resource uuid.
+     *
+     * @return resource state dispatcher.
+     */
+    @Bean(destroyMethod = "shutdown")
+    PartitionedMessageListener resourceStateDispatcher() {
+        return createDispatcher("resource", resourceStateListener());
+    }
+
+    /**
+     * Queue depth and listener lag metrics of the CS server event queues.
+     *
+     * @return queue metrics.
+     */
+    @Bean
+    RabbitQueueMetrics rabbitQueueMetrics() {
+        return new RabbitQueueMetrics(connectionFactory(),
+                Arrays.asList(csActionQueueName, csAsynchJobQueueName, csResourceQueueName, csAlertQueueName,
+                        csUsageQueueName, csEmailQueueName),
+                Arrays.asList(actionDispatcher(), asynchJobDispatcher(), resourceStateDispatcher()));
+    }
+
+    /**
+     * Watermark of the CS server events handled by the action and asynchronous job listeners.
+     *
+     * @return event watermark.
+     */
+    @Bean
+    EventWatermark eventWatermark() {
+        return new EventWatermark(applicationContext.getBean(JdbcTemplate.class));
+    }
+
+    /**
+     * Catch-up of the CS server events missed while disconnected, started by the leader node on each new broker
+     * connection and when it becomes the leader.
+     *
+     * @return event catch-up.
+     */
+    @Bean(destroyMethod = "shutdown")
+    EventCatchUp eventCatchUp() {
+        LeaderElection leaderElection = applicationContext.getBean(LeaderElection.class);
+        EventCatchUp eventCatchUp = new EventCatchUp(eventWatermark(),
+                applicationContext.getBean(CloudStackEventService.class), actionListener(),
+                applicationContext.getBean(ConfigUtil.class), leaderElection, catchUpOverlap, catchUpMaxAge,
+                ZoneId.of(catchUpServerZone));
+        connectionFactory().addConnectionListener(eventCatchUp);
+        leaderElection.addElectedListener(eventCatchUp::queueCatchUp);
+        return eventCatchUp;
+    }
+
+    /**
+     * Create a listener container with the consumer count and prefetch count configured for the queue key.
+     * Dispatchers and the usage listener acknowledge each message themselves once handled, so their containers use
+     * manual acknowledgement.
+     *
+     * @param key queue key under spring.rabbit.server
+     * @param queue queue to consume
+     * @param listener message listener
+     * @param acknowledgeMode acknowledge mode of the container
+     * @return message listener container.
+     */
+    private SimpleMessageListenerContainer createContainer(String key, Queue queue, Object listener,
+            AcknowledgeMode acknowledgeMode) {
+        int concurrency = listenerSetting(key, "concurrency", 1);
         SimpleMessageListenerContainer container = new SimpleMessageListenerContainer();
         container.setConnectionFactory(connectionFactory());
-        container.setQueues(emailQueue);
-        container.setMessageListener(emailListenerAdapter());
+        container.setQueues(queue);
+        container.setMessageListener(listener);
+        container.setAcknowledgeMode(acknowledgeMode);
+        container.setConcurrentConsumers(concurrency);
+        container.setMaxConcurrentConsumers(Math.max(concurrency, listenerSetting(key, "maxConcurrency", 1)));
+        container.setPrefetchCount(listenerSetting(key, "prefetch", 1));
         return container;
     }
+
+    /**
+     * Create a dispatcher with the lane count and lane capacity configured for the queue key.
+     *
+     * @param key queue key under spring.rabbit.server
+     * @param listener message listener handling the messages on the lanes
+     * @return dispatcher.
+     */
+    private PartitionedMessageListener createDispatcher(String key, MessageListener listener) {
+        return new PartitionedMessageListener(key, listener, listenerSetting(key, "lanes", 1),
+                listenerSetting(key, "laneCapacity", 100));
+    }
+
+    /**
+     * Read a listener setting of a queue key.
+     *
+     * @param key queue key under spring.rabbit.server
+     * @param name setting name
+     * @param defaultValue value used when the setting is missing
+     * @return setting value
+     */
+    private int listenerSetting(String key, String name, int defaultValue) {
+        return environment.getProperty("spring.rabbit.server." + key + "." + name, Integer.class, defaultValue);
+    }
 }
@@ -27,6 +27,7 @@ import ck.panda.service.RoleServiceImpl;
 import ck.panda.service.ThemeSettingService;
 import ck.panda.service.UserService;
 import ck.panda.service.UserServiceImpl;
+import ck.panda.util.CloudStackServer;
 import ck.panda.util.TokenDetails;
 import ck.panda.util.error.MessageByLocaleService;
 import ck.panda.util.infrastructure.externalwebservice.SomeExternalServiceAuthenticator;
@@ -72,6 +73,10 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private ThemeSettingService themeSettingService;
 
+    /** CloudStack server attribute. */
+    @Autowired
+    private CloudStackServer cloudStackServer;
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
 
@@ -83,7 +88,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .deleteCookies(GenericConstants.COOKIES_NAME).invalidateHttpSession(true).and().anonymous().disable()
                 .exceptionHandling().authenticationEntryPoint(unauthorizedEntryPoint());
 
-        http.addFilterBefore(new AuthenticationFilter(databaseAuthenticationManager, userTokenDetails, messageByLocaleService, themeSettingService),
+        http.addFilterBefore(new AuthenticationFilter(databaseAuthenticationManager, userTokenDetails, messageByLocaleService, themeSettingService,
+                cloudStackServer),
                 BasicAuthenticationFilter.class);
     }
 
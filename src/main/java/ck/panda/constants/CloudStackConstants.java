@@ -699,6 +699,9 @@ public class CloudStackConstants {
     /** Constant for uuid of instance. */
     public static final String CS_INSTANCE_UUID = "instanceUuid";
 
+    /** Constant for uuid of the entity of an action event. */
+    public static final String CS_ENTITY_UUID = "entityuuid";
+
     /** Constant for account id. */
     public static final String CS_ACCOUNT_ID = "accountid";
 
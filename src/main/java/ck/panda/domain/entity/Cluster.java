@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
@@ -21,6 +22,7 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.format.annotation.DateTimeFormat;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -32,6 +34,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "clusters")
+@EntityListeners(EntityIdCacheListener.class)
 @SuppressWarnings("serial")
 public class Cluster implements Serializable {
 
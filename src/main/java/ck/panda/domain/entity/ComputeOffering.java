@@ -30,6 +30,7 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.Version;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -42,7 +43,7 @@ import ck.panda.util.JsonUtil;
 @Entity
 @Table(name = "service_offerings")
 @SuppressWarnings("serial")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 public class ComputeOffering implements Serializable {
 
     /** The id of the Compute offering table. */
@@ -29,6 +29,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.domain.entity.User.UserType;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -37,7 +38,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "departments")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 public class Department implements Serializable {
 
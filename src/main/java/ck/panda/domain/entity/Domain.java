@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
@@ -22,6 +23,7 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.format.annotation.DateTimeFormat;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -30,6 +32,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "domains")
+@EntityListeners(EntityIdCacheListener.class)
 public class Domain implements Serializable {
 
     /** Unique ID of the Domain. */
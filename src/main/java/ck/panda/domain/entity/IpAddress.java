@@ -27,7 +27,9 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
+import ck.panda.util.SyncFingerprint;
 
 /**
  * IP addresses will need to be reserved for each POD, and a Guest IP Range assigned during the initial configuration of
@@ -35,7 +37,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "ip_addresses")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 public class IpAddress implements Serializable {
 
@@ -961,6 +963,16 @@ public class IpAddress implements Serializable {
         this.vpcId = vpcId;
     }
 
+    /**
+     * Get the fingerprint of the persisted fields which are copied from the CS server by sync.
+     *
+     * @return fingerprint of the synced fields.
+     */
+    public String syncFingerprint() {
+        return SyncFingerprint.of(uuid, publicIpAddress, state, isSourcenat, isStaticnat, networkId, vpcId, vpnUuid,
+                vpnPresharedKey, vpnState, vpnForDisplay, domainId, projectId, departmentId);
+    }
+
     /**
      * Convert JSONObject into pod object.
      *
@@ -27,6 +27,7 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -35,7 +36,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "networks")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 public class Network implements Serializable {
 
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
@@ -24,6 +25,7 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.Version;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -32,6 +34,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "network_offerings")
+@EntityListeners(EntityIdCacheListener.class)
 @SuppressWarnings("serial")
 public class NetworkOffering implements Serializable {
 
@@ -5,6 +5,7 @@ import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -25,6 +26,7 @@ import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.util.JsonUtil;
+import ck.panda.util.SyncFingerprint;
 
 /**
  * A Network Interface Card must be installed in a Virtual Machine so that it can be connected to a Network.
@@ -505,6 +507,21 @@ public class Nic implements Serializable {
         this.secondaryIpAddress = secondaryIpAddress;
     }
 
+    /**
+     * Get the fingerprint of the persisted fields which are copied from the CS server by sync. Ip addresses are
+     * compared by id, in id order.
+     *
+     * @return fingerprint of the synced fields
+     */
+    public String syncFingerprint() {
+        String vmIpAddressIds = null;
+        if (vmIpAddress != null) {
+            vmIpAddressIds = vmIpAddress.stream().map(vmIp -> String.valueOf(vmIp.getId())).sorted()
+                    .collect(Collectors.joining(","));
+        }
+        return SyncFingerprint.of(uuid, ipAddress, vmIpAddressIds);
+    }
+
     /**
      * Convert JSONObject to nic entity.
      *
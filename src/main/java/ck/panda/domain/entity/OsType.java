@@ -26,6 +26,7 @@ import org.springframework.data.annotation.LastModifiedBy;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -36,7 +37,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "os_types")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 public class OsType implements Serializable {
 
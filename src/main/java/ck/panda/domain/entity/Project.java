@@ -33,6 +33,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 
 /**
@@ -43,7 +44,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "projects")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 public class Project implements Serializable {
     /** Id of the project. */
@@ -31,6 +31,7 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 import ck.panda.util.JsonValidator;
 
@@ -40,7 +41,7 @@ import ck.panda.util.JsonValidator;
  *
  */
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @Table(name = "storage_offerings")
 @SuppressWarnings("serial")
 public class StorageOffering implements Serializable {
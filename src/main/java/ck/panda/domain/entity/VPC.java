@@ -26,6 +26,7 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 import ck.panda.util.JsonValidator;
 
@@ -36,7 +37,7 @@ import ck.panda.util.JsonValidator;
  */
 @Entity
 @Table(name = "vpc")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 public class VPC implements Serializable {
 
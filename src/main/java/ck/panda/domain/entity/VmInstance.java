@@ -28,10 +28,13 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
+import ck.panda.util.SyncFingerprint;
 
 /**
  * VM Instances are main entity in our panda project to keep track the status of each instances. Based on VM Instances
@@ -39,7 +42,7 @@ import ck.panda.util.JsonUtil;
  */
 @Entity
 @Table(name = "vm_instances")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @SuppressWarnings("serial")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class VmInstance implements Serializable {
@@ -468,6 +471,11 @@ public class VmInstance implements Serializable {
     @Transient
     private String transKeypairName;
 
+    /** Transient nics json of the instance from the instance list. */
+    @Transient
+    @JsonIgnore
+    private transient JSONArray transNics;
+
     /**
      * Get sync status.
      *
@@ -2011,6 +2019,24 @@ public class VmInstance implements Serializable {
         this.transKeypairName = transKeypairName;
     }
 
+    /**
+     * Get the transient nics json.
+     *
+     * @return the transNics
+     */
+    public JSONArray getTransNics() {
+        return transNics;
+    }
+
+    /**
+     * Set the transient nics json.
+     *
+     * @param transNics to set
+     */
+    public void setTransNics(JSONArray transNics) {
+        this.transNics = transNics;
+    }
+
     /**
      * Get the  compute offering min iops.
      *
@@ -2155,6 +2181,19 @@ public class VmInstance implements Serializable {
                 + ", lastModifiedDateTime=" + updatedDateTime + "]";
     }
 
+    /**
+     * Get the fingerprint of the persisted fields which are copied from the CS server by sync.
+     *
+     * @return fingerprint of the synced fields.
+     */
+    public String syncFingerprint() {
+        return SyncFingerprint.of(name, cpuCore, domainId, status, zoneId, hostId, podId, computeOfferingId, cpuSpeed,
+                memory, cpuUsage, keypairId, diskIoRead, diskIoWrite, diskKbsRead, diskKbsWrite, networkKbsRead,
+                networkKbsWrite, passwordEnabled, hypervisorId, isoName, ipAddress, instanceGuestIp, networkId,
+                instanceInternalName, volumeSize, displayName, departmentId, projectId, instanceOwnerId,
+                instanceUserName, osType, instanceOsType, templateName, vncPassword, publicIpAddress, instancePublicIp);
+    }
+
     /**
      * Convert JSONObject into vm object.
      *
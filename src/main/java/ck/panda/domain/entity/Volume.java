@@ -31,15 +31,17 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.format.annotation.DateTimeFormat;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.EntityIdCacheListener;
 import ck.panda.util.JsonUtil;
 import ck.panda.util.JsonValidator;
+import ck.panda.util.SyncFingerprint;
 
 /**
  * Secondary storage Entity.
  *
  */
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, EntityIdCacheListener.class })
 @Table(name = "volumes")
 @SuppressWarnings("serial")
 public class Volume implements Serializable {
@@ -1032,6 +1034,17 @@ public class Volume implements Serializable {
         this.transJobId = transJobId;
     }
 
+    /**
+     * Get the fingerprint of the persisted fields which are copied from the CS server by sync.
+     *
+     * @return fingerprint of the synced fields
+     */
+    public String syncFingerprint() {
+        return SyncFingerprint.of(name, storageOfferingId, zoneId, domainId, departmentId, vmInstanceId, volumeType,
+                isActive, diskSize, diskSizeFlag, projectId, checksum, status, diskMaxIops, diskMinIops,
+                createdDateTime, updatedDateTime);
+    }
+
     /**
      * Convert JSONObject to Volume entity.
      *
@@ -34,6 +34,16 @@ public interface IpaddressRepository extends PagingAndSortingRepository<IpAddres
     @Query(value = "SELECT ip FROM IpAddress ip WHERE ip.networkId=:networkId AND ip.state =:state")
     List<IpAddress> findByNetwork(@Param("networkId") Long networkId, @Param("state") IpAddress.State state);
 
+    /**
+     * Count the ipaddresses of a network by state.
+     *
+     * @param state get the ipaddress state.
+     * @param networkId from ipaddress
+     * @return ipaddress count.
+     */
+    @Query(value = "SELECT COUNT(ip) FROM IpAddress ip WHERE ip.networkId=:networkId AND ip.state =:state")
+    Long countByNetwork(@Param("networkId") Long networkId, @Param("state") IpAddress.State state);
+
     /**
      * Find all ipaddresses by network Id and Nat.
      *
@@ -116,4 +126,16 @@ public interface IpaddressRepository extends PagingAndSortingRepository<IpAddres
     @Query(value = "SELECT ip FROM IpAddress ip WHERE ip.isActive =:isActive AND ip.state =:state")
     List<IpAddress> findAllByIsActiveAndState(@Param("state") IpAddress.State state, @Param("isActive") Boolean isActive);
 
+    /**
+     * Count the ipaddresses of the active or inactive networks of a domain.
+     *
+     * @param state state of the ipaddresses.
+     * @param isActive count the ipaddresses of active or inactive networks.
+     * @param domainId domain id, 0 for all domains.
+     * @return ipaddress count.
+     */
+    @Query(value = "SELECT COUNT(ip) FROM IpAddress ip, Network net WHERE ip.networkId = net.id AND ip.state = :state AND net.isActive = :isActive AND (net.domainId = :domainId OR 0 = :domainId)")
+    Long countByNetworkDomain(@Param("state") IpAddress.State state, @Param("isActive") Boolean isActive,
+            @Param("domainId") Long domainId);
+
 }
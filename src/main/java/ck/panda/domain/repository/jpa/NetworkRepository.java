@@ -55,6 +55,27 @@ public interface NetworkRepository extends PagingAndSortingRepository<Network, L
     List<Network> findByProjectAndNetworkIsActive(@Param("projectId") Long projectId,
             @Param("isActive") Boolean isActive);
 
+    /**
+     * Count the networks of a department outside projects.
+     *
+     * @param departmentId department id.
+     * @param isActive true/false.
+     * @return network count.
+     */
+    @Query(value = "SELECT COUNT(net) FROM Network net WHERE net.projectId is NULL AND net.departmentId = :departmentId AND net.isActive = :isActive ")
+    Long countByDepartmentAndNetworkIsActive(@Param("departmentId") Long departmentId,
+            @Param("isActive") Boolean isActive);
+
+    /**
+     * Count the networks of a project.
+     *
+     * @param projectId project id.
+     * @param isActive true/false.
+     * @return network count.
+     */
+    @Query(value = "SELECT COUNT(net) FROM Network net WHERE net.projectId = :projectId AND net.isActive = :isActive ")
+    Long countByProjectAndNetworkIsActive(@Param("projectId") Long projectId, @Param("isActive") Boolean isActive);
+
     /**
      * Find all the active or inactive snapshots with pagination.
      *
@@ -267,4 +288,14 @@ public interface NetworkRepository extends PagingAndSortingRepository<Network, L
     @Query(value = "SELECT net FROM Network net JOIN net.networkOffering.supportedNetworkList supportedService WHERE net.vpcId =:vpcId AND net.isActive =:isActive AND supportedService.id = :serviceId ORDER BY net.id DESC")
     List<Network> findNetworkByVpcIdAndIsActiveAndType(@Param("vpcId") Long vpcId, @Param("isActive") Boolean isActive, @Param("serviceId") Long serviceId);
 
+    /**
+     * Count the active or inactive networks of a domain.
+     *
+     * @param isActive count the active or inactive networks.
+     * @param domainId domain id, 0 for all domains.
+     * @return network count.
+     */
+    @Query(value = "SELECT COUNT(net) FROM Network net WHERE net.isActive = :isActive AND (net.domainId = :domainId OR 0 = :domainId)")
+    Long countByDomainIsActive(@Param("isActive") Boolean isActive, @Param("domainId") Long domainId);
+
 }
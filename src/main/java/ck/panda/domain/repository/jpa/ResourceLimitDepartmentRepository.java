@@ -3,9 +3,11 @@ package ck.panda.domain.repository.jpa;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ck.panda.domain.entity.ResourceLimitDepartment;
 
 /**
@@ -171,4 +173,34 @@ public interface ResourceLimitDepartmentRepository extends PagingAndSortingRepos
      */
     @Query(value = "select resource from ResourceLimitDepartment resource where resource.isActive = :isActive AND resource.domainId = :domainId")
     List<ResourceLimitDepartment> findAllByDomainIdAndIsActive(@Param("domainId") Long domainId, @Param("isActive") Boolean isActive);
+
+    /**
+     * Add to the used limit of a department resource in one statement, so that concurrent updates are not lost.
+     *
+     * @param departmentId department id.
+     * @param resourceType resource type
+     * @param count count to add
+     * @param isActive true/false.
+     * @return number of rows updated.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "update ResourceLimitDepartment resource set resource.usedLimit = coalesce(resource.usedLimit, 0) + :count, resource.version = resource.version + 1 where resource.isActive = :isActive AND resource.departmentId = :departmentId AND resource.resourceType = :resourceType")
+    int addUsedLimit(@Param("departmentId") Long departmentId, @Param("resourceType") ResourceLimitDepartment.ResourceType resourceType,
+            @Param("count") Long count, @Param("isActive") Boolean isActive);
+
+    /**
+     * Subtract from the used limit of a department resource in one statement, not going below zero.
+     *
+     * @param departmentId department id.
+     * @param resourceType resource type
+     * @param count count to subtract
+     * @param isActive true/false.
+     * @return number of rows updated.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "update ResourceLimitDepartment resource set resource.usedLimit = case when coalesce(resource.usedLimit, 0) > :count then resource.usedLimit - :count else 0 end, resource.version = resource.version + 1 where resource.isActive = :isActive AND resource.departmentId = :departmentId AND resource.resourceType = :resourceType")
+    int subtractUsedLimit(@Param("departmentId") Long departmentId, @Param("resourceType") ResourceLimitDepartment.ResourceType resourceType,
+            @Param("count") Long count, @Param("isActive") Boolean isActive);
 }
@@ -3,9 +3,11 @@ package ck.panda.domain.repository.jpa;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import ck.panda.domain.entity.ResourceLimitDepartment;
 import ck.panda.domain.entity.ResourceLimitProject;
@@ -155,4 +157,33 @@ public interface ResourceLimitProjectRepository extends PagingAndSortingReposito
     @Query(value = "select sum(resource.usedLimit) from ResourceLimitProject resource where resource.isActive = :isActive AND resource.departmentId = :departmentId AND resource.resourceType = :resourceType ")
     Long findTotalResourceCountOfResourceDepartment(@Param("departmentId") Long departmentId, @Param("resourceType") ResourceLimitProject.ResourceType resourceType, @Param("isActive") Boolean isActive);
 
+    /**
+     * Add to the used limit of a project resource in one statement, so that concurrent updates are not lost.
+     *
+     * @param projectId project id.
+     * @param resourceType resource type
+     * @param count count to add
+     * @param isActive true/false.
+     * @return number of rows updated.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "update ResourceLimitProject resource set resource.usedLimit = coalesce(resource.usedLimit, 0) + :count, resource.version = resource.version + 1 where resource.isActive = :isActive AND resource.projectId = :projectId AND resource.resourceType = :resourceType")
+    int addUsedLimit(@Param("projectId") Long projectId, @Param("resourceType") ResourceLimitProject.ResourceType resourceType,
+            @Param("count") Long count, @Param("isActive") Boolean isActive);
+
+    /**
+     * Subtract from the used limit of a project resource in one statement, not going below zero.
+     *
+     * @param projectId project id.
+     * @param resourceType resource type
+     * @param count count to subtract
+     * @param isActive true/false.
+     * @return number of rows updated.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "update ResourceLimitProject resource set resource.usedLimit = case when coalesce(resource.usedLimit, 0) > :count then resource.usedLimit - :count else 0 end, resource.version = resource.version + 1 where resource.isActive = :isActive AND resource.projectId = :projectId AND resource.resourceType = :resourceType")
+    int subtractUsedLimit(@Param("projectId") Long projectId, @Param("resourceType") ResourceLimitProject.ResourceType resourceType,
+            @Param("count") Long count, @Param("isActive") Boolean isActive);
 }
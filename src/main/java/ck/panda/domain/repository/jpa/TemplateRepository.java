@@ -264,6 +264,28 @@ public interface TemplateRepository extends PagingAndSortingRepository<Template,
             + "OR template.zone.name LIKE %:search% OR template.hypervisor.name LIKE %:search% OR template.status LIKE %:search% )")
     List<Template> findTemplateCountsAndSearchText(@Param("type") TemplateType type, @Param("isActive") Boolean isActive,@Param("search") String search);
 
+    /**
+     * Count the templates without system type by format and OS type description.
+     *
+     * @param type of template
+     * @param isActive true/false
+     * @return rows of format, OS type description and template count
+     */
+    @Query(value = "SELECT template.format, osType.description, COUNT(template) FROM Template template JOIN template.osType osType WHERE template.type <>:type AND template.isActive = :isActive GROUP BY template.format, osType.description")
+    List<Object[]> countByFormatAndOsType(@Param("type") TemplateType type, @Param("isActive") Boolean isActive);
+
+    /**
+     * Count the templates without system type and with search text by format and OS type description.
+     *
+     * @param type of template
+     * @param isActive true/false
+     * @param search search text
+     * @return rows of format, OS type description and template count
+     */
+    @Query(value = "SELECT template.format, template.osType.description, COUNT(template) FROM Template template LEFT JOIN template.osCategory LEFT JOIN template.templateOwner LEFT JOIN template.osType LEFT JOIN template.zone WHERE template.type <>:type AND template.isActive = :isActive AND (template.name LIKE %:search% OR template.osType.description LIKE %:search% "
+            + "OR template.zone.name LIKE %:search% OR template.hypervisor.name LIKE %:search% OR template.status LIKE %:search% ) GROUP BY template.format, template.osType.description")
+    List<Object[]> countByFormatAndOsTypeAndSearchText(@Param("type") TemplateType type, @Param("isActive") Boolean isActive, @Param("search") String search);
+
 
     /**
      * Get the template by the type featured.
@@ -272,6 +272,23 @@ public interface VirtualMachineRepository extends PagingAndSortingRepository<VmI
     List<VmInstance> findAllByDepartmentAndProjectAndExceptStatus(@Param("status") Status status,
             @Param("department") Department department, @Param("project") Project project, @Param("search") String search);
 
+    /**
+     * Get the list of VMs by except given status and user belongs to department
+     * and any of the projects.
+     *
+     * @param status of the status of VM.
+     * @param department belongs to VM.
+     * @param projectList belongs to VM.
+     * @param search search text.
+     * @return instance list.
+     */
+    @Query(value = "SELECT vm FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status <> :status  AND (vm.project IN :projectList OR (vm.project IS NULL AND vm.department = :department))"
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    List<VmInstance> findAllByDepartmentAndProjectListAndExceptStatus(@Param("status") Status status,
+            @Param("department") Department department, @Param("projectList") List<Project> projectList,
+            @Param("search") String search);
+
     /**
      * Get the list of VMs by status and user belongs to project.
      *
@@ -445,4 +462,129 @@ public interface VirtualMachineRepository extends PagingAndSortingRepository<VmI
     @Query(value = "SELECT vm FROM VmInstance vm WHERE vm.instanceOwner = :user AND vm.status = :status")
     List<VmInstance> findAllByUserAndStatus(@Param("user") User instanceOwner, @Param("status") Status status);
 
+    /**
+     * Count the VMs of a domain and sum their cores and memory by status.
+     *
+     * @param domainId domain id, 0 for all domains.
+     * @param status status of the VMs to leave out.
+     * @return rows of status, VM count, core sum and memory sum.
+     */
+    @Query(value = "SELECT vm.status, COUNT(vm), SUM(vm.cpuCore), SUM(vm.memory) FROM VmInstance vm WHERE vm.status <> :status AND (vm.domainId = :domainId OR 0 = :domainId) GROUP BY vm.status")
+    List<Object[]> sumByDomainGroupByStatus(@Param("domainId") Long domainId, @Param("status") Status status);
+
+    /**
+     * Count the VMs of a department without project and sum their cores and memory by status.
+     *
+     * @param department department of the VMs.
+     * @param status status of the VMs to leave out.
+     * @return rows of status, VM count, core sum and memory sum.
+     */
+    @Query(value = "SELECT vm.status, COUNT(vm), SUM(vm.cpuCore), SUM(vm.memory) FROM VmInstance vm WHERE vm.status <> :status AND vm.project IS NULL AND vm.department = :department GROUP BY vm.status")
+    List<Object[]> sumByDepartmentGroupByStatus(@Param("department") Department department, @Param("status") Status status);
+
+    /**
+     * Count the VMs of a department and its projects and sum their cores and memory by status.
+     *
+     * @param department department of the VMs without project.
+     * @param projectList projects of the VMs.
+     * @param status status of the VMs to leave out.
+     * @return rows of status, VM count, core sum and memory sum.
+     */
+    @Query(value = "SELECT vm.status, COUNT(vm), SUM(vm.cpuCore), SUM(vm.memory) FROM VmInstance vm WHERE vm.status <> :status AND (vm.project in :projectList OR (vm.project IS NULL AND vm.department = :department)) GROUP BY vm.status")
+    List<Object[]> sumByDepartmentAndProjectGroupByStatus(@Param("department") Department department,
+            @Param("projectList") List<Project> projectList, @Param("status") Status status);
+
+    /**
+     * Count the VMs of a domain by status.
+     *
+     * @param domainId domain id, 0 for all domains.
+     * @param status status of the VMs.
+     * @param search search text.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status = :status AND (vm.domainId = :domainId OR 0 = :domainId) "
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    Long countByDomainAndStatus(@Param("domainId") Long domainId, @Param("status") Status status, @Param("search") String search);
+
+    /**
+     * Count the VMs of a domain except a status.
+     *
+     * @param domainId domain id, 0 for all domains.
+     * @param status status of the VMs to leave out.
+     * @param search search text.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status <> :status AND (vm.domainId = :domainId OR 0 = :domainId) "
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    Long countByDomainAndExceptStatus(@Param("domainId") Long domainId, @Param("status") Status status, @Param("search") String search);
+
+    /**
+     * Count the VMs of a department without project by status.
+     *
+     * @param status status of the VMs.
+     * @param department department of the VMs.
+     * @param search search text.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status = :status AND vm.project IS NULL AND vm.department = :department"
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    Long countByDepartmentAndStatus(@Param("status") Status status, @Param("department") Department department,
+            @Param("search") String search);
+
+    /**
+     * Count the VMs of a department without project except a status.
+     *
+     * @param status status of the VMs to leave out.
+     * @param department department of the VMs.
+     * @param search search text.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status <> :status AND vm.project IS NULL AND vm.department = :department"
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    Long countByDepartmentAndExceptStatus(@Param("status") Status status, @Param("department") Department department,
+            @Param("search") String search);
+
+    /**
+     * Count the VMs of a department and its projects by status.
+     *
+     * @param status status of the VMs.
+     * @param department department of the VMs without project.
+     * @param projectList projects of the VMs.
+     * @param search search text.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status = :status AND (vm.project in :projectList OR (vm.project IS NULL AND vm.department = :department))"
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    Long countByDepartmentAndProjectAndStatus(@Param("status") Status status, @Param("department") Department department,
+            @Param("projectList") List<Project> projectList, @Param("search") String search);
+
+    /**
+     * Count the VMs of a department and its projects except a status.
+     *
+     * @param status status of the VMs to leave out.
+     * @param department department of the VMs without project.
+     * @param projectList projects of the VMs.
+     * @param search search text.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm LEFT JOIN vm.instanceOwner owner WHERE vm.status <> :status AND (vm.project in :projectList OR (vm.project IS NULL AND vm.department = :department))"
+            + " AND (vm.displayName LIKE %:search% OR owner.userName LIKE %:search% OR vm.application LIKE %:search% OR vm.osType LIKE %:search% OR vm.cpuCore LIKE %:search%"
+            + " OR vm.memory LIKE %:search% OR CONCAT(vm.volumeSize/POWER(2, 30), LOWER(' GB')) LIKE LOWER(%:search%) OR vm.publicIpAddress LIKE %:search% OR vm.ipAddress LIKE %:search%)")
+    Long countByDepartmentAndProjectAndExceptStatus(@Param("status") Status status, @Param("department") Department department,
+            @Param("projectList") List<Project> projectList, @Param("search") String search);
+
+    /**
+     * Count the VMs except a status.
+     *
+     * @param status status of the VMs to leave out.
+     * @return instance count.
+     */
+    @Query(value = "SELECT COUNT(vm) FROM VmInstance vm WHERE vm.status <> :status")
+    Long countByExceptStatus(@Param("status") Status status);
+
 }
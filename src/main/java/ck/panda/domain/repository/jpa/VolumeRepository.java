@@ -267,8 +267,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume attached count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE volume.isActive = :isActive AND volume.vmInstanceId IS NOT NULL")
-    List<Volume> getAttachedCountByAdmin(@Param("isActive") Boolean isActive);
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE volume.isActive = :isActive AND volume.vmInstanceId IS NOT NULL")
+    Long getAttachedCountByAdmin(@Param("isActive") Boolean isActive);
 
     /**
      * Get the detached volume count based on admin.
@@ -276,8 +276,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume detached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE volume.isActive = :isActive AND volume.vmInstanceId IS NULL")
-    List<Volume> getDetachedCountByAdmin(@Param("isActive") Boolean isActive);
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE volume.isActive = :isActive AND volume.vmInstanceId IS NULL")
+    Long getDetachedCountByAdmin(@Param("isActive") Boolean isActive);
 
     /**
      * Get the attached volume count based on domain.
@@ -286,8 +286,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume attached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE volume.domainId = :domainId AND volume.isActive = :isActive AND volume.vmInstanceId IS NOT NULL")
-    List<Volume> getAttachedCountByDomain(@Param("domainId") Long domainId, @Param("isActive") Boolean isActive);
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE volume.domainId = :domainId AND volume.isActive = :isActive AND volume.vmInstanceId IS NOT NULL")
+    Long getAttachedCountByDomain(@Param("domainId") Long domainId, @Param("isActive") Boolean isActive);
 
     /**
      * Get the detached volume count based on domain.
@@ -296,8 +296,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume detached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE volume.domainId = :domainId AND volume.isActive = :isActive AND volume.vmInstanceId IS NULL")
-    List<Volume> getDetachedCountByDomain(@Param("domainId") Long domainId, @Param("isActive") Boolean isActive);
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE volume.domainId = :domainId AND volume.isActive = :isActive AND volume.vmInstanceId IS NULL")
+    Long getDetachedCountByDomain(@Param("domainId") Long domainId, @Param("isActive") Boolean isActive);
 
     /**
      * Get the attached volume count based on department.
@@ -307,8 +307,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume attached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE volume.departmentId = :departmentId AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.projectId IS NULL AND volume.vmInstanceId IS NOT NULL")
-    List<Volume> getAttachedCountByDepartment(@Param("departmentId") Long departmentId,
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE volume.departmentId = :departmentId AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.projectId IS NULL AND volume.vmInstanceId IS NOT NULL")
+    Long getAttachedCountByDepartment(@Param("departmentId") Long departmentId,
             @Param("volumeType") List<VolumeType> volumeType, @Param("isActive") Boolean isActive);
 
     /**
@@ -319,8 +319,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume detached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE volume.departmentId = :departmentId AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.projectId IS NULL AND volume.vmInstanceId IS NULL")
-    List<Volume> getDetachedCountByDepartment(@Param("departmentId") Long departmentId,
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE volume.departmentId = :departmentId AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.projectId IS NULL AND volume.vmInstanceId IS NULL")
+    Long getDetachedCountByDepartment(@Param("departmentId") Long departmentId,
             @Param("volumeType") List<VolumeType> volumeType, @Param("isActive") Boolean isActive);
 
     /**
@@ -332,8 +332,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume attached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE (volume.project in :project OR volume.departmentId = :departmentId) AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.vmInstanceId IS NOT NULL")
-    List<Volume> getAttachedCountByProject(@Param("project") List<Project> project,
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE (volume.project in :project OR volume.departmentId = :departmentId) AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.vmInstanceId IS NOT NULL")
+    Long getAttachedCountByProject(@Param("project") List<Project> project,
             @Param("departmentId") Long departmentId, @Param("volumeType") List<VolumeType> volumeType,
             @Param("isActive") Boolean isActive);
 
@@ -346,8 +346,8 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
      * @param isActive true/false
      * @return volume detached Count
      */
-    @Query(value = "SELECT volume FROM Volume volume WHERE (volume.project in :project OR volume.departmentId = :departmentId) AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.vmInstanceId IS NULL")
-    List<Volume> getDetachedCountByProject(@Param("project") List<Project> project,
+    @Query(value = "SELECT COUNT(volume) FROM Volume volume WHERE (volume.project in :project OR volume.departmentId = :departmentId) AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.vmInstanceId IS NULL")
+    Long getDetachedCountByProject(@Param("project") List<Project> project,
             @Param("departmentId") Long departmentId, @Param("volumeType") List<VolumeType> volumeType,
             @Param("isActive") Boolean isActive);
 
@@ -566,4 +566,40 @@ public interface VolumeRepository extends PagingAndSortingRepository<Volume, Lon
     List<Volume> findByProjectAndVolumeTypeCount(@Param("allProjectList") List<Project> allProjectList,
             @Param("departmentId") Long departmentId, @Param("isActive") Boolean isActive,
             @Param("volumeType") List<VolumeType> volumeType);
+
+    /**
+     * Sum the disk size of the active or inactive volumes of a domain.
+     *
+     * @param domainId domain id, 0 for all domains.
+     * @param isActive sum the active or inactive volumes.
+     * @return disk size in bytes.
+     */
+    @Query(value = "SELECT COALESCE(SUM(volume.diskSize), 0) FROM Volume volume WHERE volume.isActive = :isActive AND (volume.domainId = :domainId OR 0 = :domainId)")
+    Long sumDiskSizeByDomainAndIsActive(@Param("domainId") Long domainId, @Param("isActive") Boolean isActive);
+
+    /**
+     * Sum the disk size of the volumes of a department and its projects.
+     *
+     * @param projectList project list.
+     * @param departmentId department id.
+     * @param volumeType volume types.
+     * @param isActive sum the active or inactive volumes.
+     * @return disk size in bytes.
+     */
+    @Query(value = "SELECT COALESCE(SUM(volume.diskSize), 0) FROM Volume volume WHERE (volume.project in :projectList OR volume.departmentId = :departmentId) AND volume.volumeType in :volumeType AND volume.isActive = :isActive")
+    Long sumDiskSizeByProjectAndVolumeType(@Param("projectList") List<Project> projectList,
+            @Param("departmentId") Long departmentId, @Param("volumeType") List<VolumeType> volumeType,
+            @Param("isActive") Boolean isActive);
+
+    /**
+     * Sum the disk size of the detached volumes of a department without project.
+     *
+     * @param departmentId department id.
+     * @param volumeType volume types.
+     * @param isActive sum the active or inactive volumes.
+     * @return disk size in bytes.
+     */
+    @Query(value = "SELECT COALESCE(SUM(volume.diskSize), 0) FROM Volume volume WHERE volume.departmentId = :departmentId AND volume.volumeType in :volumeType AND volume.isActive = :isActive AND volume.projectId IS NULL AND volume.vmInstanceId IS NULL")
+    Long sumDiskSizeByDepartmentAndVolumeType(@Param("departmentId") Long departmentId,
+            @Param("volumeType") List<VolumeType> volumeType, @Param("isActive") Boolean isActive);
 }
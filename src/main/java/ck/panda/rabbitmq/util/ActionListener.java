@@ -1,10 +1,12 @@
 package ck.panda.rabbitmq.util;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageListener;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -19,19 +21,17 @@ import ck.panda.service.ConvertEntityService;
 import ck.panda.service.EmailJobService;
 import ck.panda.service.SyncService;
 import ck.panda.util.CloudStackServer;
+import ck.panda.util.DelayedTaskScheduler;
 import ck.panda.util.infrastructure.AuthenticatedExternalWebService;
 import ck.panda.util.infrastructure.externalwebservice.ExternalWebServiceStub;
 
 /**
  * Action event listener will listen and update resource data to our App DB when an event handled directly in CS server.
  */
-public class ActionListener implements MessageListener {
+public class ActionListener implements DeferredMessageListener {
     /** Logger attribute. */
     private static final Logger LOGGER = LoggerFactory.getLogger(ActionListener.class);
 
-    /** Response event entity. */
-    private ResponseEvent eventResponse = null;
-
     /** Sync service. */
     private SyncService syncService;
 
@@ -53,6 +53,18 @@ public class ActionListener implements MessageListener {
     /** Email job service. */
     private EmailJobService emailJobService;
 
+    /** Scheduler running the event handling once CS server has committed the change. */
+    private DelayedTaskScheduler delayedTaskScheduler;
+
+    /** Delay in milliseconds before an action event is handled. */
+    private long eventDelay;
+
+    /** Additional delay in milliseconds before users are synced after a user event. */
+    private long userSyncDelay;
+
+    /** Watermark of the handled events. */
+    private EventWatermark watermark;
+
     /**
      * Inject SyncService.
      *
@@ -61,9 +73,13 @@ public class ActionListener implements MessageListener {
      * @param cloudStackServer cloudStackServer object.
      * @param backendAdminUsername backend admin user name.
      * @param backendAdminRole backend admin user role.
+     * @param eventDelay delay in milliseconds before an action event is handled.
+     * @param userSyncDelay additional delay in milliseconds before users are synced after a user event.
+     * @param watermark watermark of the handled events.
      */
     public ActionListener(SyncService syncService, AsynchronousJobService asyncService, ConvertEntityService convertEntityService,
-            CloudStackServer cloudStackServer, String backendAdminUsername, String backendAdminRole, EmailJobService emailJobService) {
+            CloudStackServer cloudStackServer, String backendAdminUsername, String backendAdminRole, EmailJobService emailJobService,
+            long eventDelay, long userSyncDelay, EventWatermark watermark) {
         this.syncService = syncService;
         this.asyncService = asyncService;
         this.cloudStackServer = cloudStackServer;
@@ -71,47 +87,126 @@ public class ActionListener implements MessageListener {
         this.backendAdminRole = backendAdminRole;
         this.convertEntityService = convertEntityService;
         this.emailJobService = emailJobService;
+        this.delayedTaskScheduler = convertEntityService.getDelayedTaskScheduler();
+        this.eventDelay = eventDelay;
+        this.userSyncDelay = userSyncDelay;
+        this.watermark = watermark;
     }
 
-    /** Action event listener . */
+    /** Action event listener, waiting until the event is handled. */
     @Override
     public void onMessage(Message message) {
+        onMessageDeferred(message).join();
+    }
+
+    /** Action event listener, handling the event on the delayed task scheduler. */
+    @Override
+    public CompletableFuture<Void> onMessageDeferred(Message message) {
         try {
-            String eventName = "";
             JSONObject eventObject = new JSONObject(new String(message.getBody()));
             if (eventObject.has(CloudStackConstants.CS_EVENT_NAME)
                     && eventObject.has(CloudStackConstants.CS_EVENT_STATUS)) {
                     if (eventObject.getString(CloudStackConstants.CS_EVENT_NAME) != null) {
-                        eventName = eventObject.getString(CloudStackConstants.CS_EVENT_NAME);
+                        String eventName = eventObject.getString(CloudStackConstants.CS_EVENT_NAME);
                         String eventStart = eventName.substring(0, eventName.indexOf('.', 0)) + ".";
-                        this.handleActionEvent(eventName, eventStart, new String(message.getBody()));
+                        return this.handleActionEvent(eventName, eventStart, new String(message.getBody()));
                     }
             }
+            return CompletableFuture.completedFuture(null);
         } catch (Exception e) {
-            LOGGER.debug("Error on convert action event message", e.getMessage());
+            LOGGER.debug("Error on convert action event message: {}", e.getMessage());
+            CompletableFuture<Void> failed = new CompletableFuture<Void>();
+            failed.completeExceptionally(e);
+            return failed;
         }
     }
 
     /**
-     * Handling VM events and updated those in our application DB according to the type of events.
+     * Sync the resources changed by an event missed while the listener was not connected. The event is not recorded
+     * again and no mail is sent for it.
+     *
+     * @param eventName event name.
+     * @param eventMessage event message.
+     * @throws Exception exception.
+     */
+    public void replayActionEvent(String eventName, String eventMessage) throws Exception {
+        runAuthenticated(() -> syncActionEvent(eventName, eventName.substring(0, eventName.indexOf('.', 0)) + ".",
+                eventMessage));
+    }
+
+    /**
+     * Sync instances and volumes once when their events were missed. Their live changes come from the asynchronous
+     * job and resource state events, which cannot be listed again.
+     *
+     * @param eventStarts event name starts of the missed events.
+     * @throws Exception exception.
+     */
+    public void replayStateSync(Set<String> eventStarts) throws Exception {
+        runAuthenticated(() -> {
+            if (eventStarts.contains(EventTypes.EVENT_VM)) {
+                syncService.syncNic(syncService.syncInstances());
+            }
+            if (eventStarts.contains(EventTypes.EVENT_VOLUME)) {
+                syncService.syncVolume();
+            }
+        });
+    }
+
+    /**
+     * Run a full sync, when too many events were missed to replay them.
+     *
+     * @throws Exception exception.
+     */
+    public void resync() throws Exception {
+        runAuthenticated(() -> syncService.sync());
+    }
+
+    /**
+     * Schedule the handling of an action event once CS server has committed the change, and the sync a completed
+     * event requires once the event is recorded. The listener thread never waits; events of the same entity are
+     * handled in order. Only the sync is retried, the event record and its mail are not, so they are not repeated.
+     * The message is acknowledged once the event is recorded, so a redelivery never records it twice; a sync given
+     * up after its retries is logged and counted by the scheduler and sends no mail.
      *
      * @param eventName event name.
      * @param eventStart event name start with.
      * @param eventMessage event message.
+     * @return future completed once the event is recorded.
      * @throws Exception exception.
      */
-    public void handleActionEvent(String eventName, String eventStart, String eventMessage) throws Exception {
-        syncService.init(cloudStackServer);
-        ExternalWebServiceStub externalWebService = new ExternalWebServiceStub();
-        AuthenticatedExternalWebService authenticatedExternalWebService = new AuthenticatedExternalWebService(
-                backendAdminUsername, null, AuthorityUtils.commaSeparatedStringToAuthorityList(backendAdminRole));
-        authenticatedExternalWebService.setExternalWebService(externalWebService);
-        SecurityContextHolder.getContext().setAuthentication(authenticatedExternalWebService);
+    public CompletableFuture<Void> handleActionEvent(String eventName, String eventStart, String eventMessage)
+            throws Exception {
+        JSONObject eventObject = new JSONObject(eventMessage);
+        String entityUuid = eventObject.optString(CloudStackConstants.CS_ENTITY_UUID);
+        CompletableFuture<Void> recorded = delayedTaskScheduler.scheduleOnce(entityUuid, eventDelay,
+                () -> runAuthenticated(() -> recordActionEvent(eventMessage)));
+        if (!eventObject.getString(CloudStackConstants.CS_EVENT_STATUS)
+                .equalsIgnoreCase(CloudStackConstants.CS_EVENT_COMPLETE)) {
+            return recorded;
+        }
+        // Delay sync call for user to get success CRUD.
+        long syncDelay = eventStart.equals(EventTypes.EVENT_USER) ? userSyncDelay : 0;
+        AtomicReference<EmailEvent> mail = new AtomicReference<EmailEvent>();
+        recorded
+            .thenCompose(result -> delayedTaskScheduler.schedule(entityUuid, syncDelay,
+                () -> runAuthenticated(() -> mail.set(syncActionEvent(eventName, eventStart, eventMessage)))))
+            .thenCompose(result -> mail.get() == null ? CompletableFuture.<Void>completedFuture(null)
+                : delayedTaskScheduler.scheduleOnce(entityUuid, 0,
+                    () -> emailJobService.sendMessageToQueue(mail.get())));
+        return recorded;
+    }
+
+    /**
+     * Record the action event.
+     *
+     * @param eventMessage event message.
+     * @throws Exception exception.
+     */
+    private void recordActionEvent(String eventMessage) throws Exception {
         JSONObject eventObject = new JSONObject(eventMessage);
-        Thread.sleep(5000);
         // Event record from action listener call.
         ObjectMapper eventmapper = new ObjectMapper();
-        eventResponse = eventmapper.readValue(eventMessage, ResponseEvent.class);
+        ResponseEvent eventResponse = eventmapper.readValue(eventMessage, ResponseEvent.class);
         Event actionEvent = new Event();
         actionEvent.setEvent(eventResponse.getEvent());
         actionEvent.setEventDateTime(
@@ -130,191 +225,235 @@ public class ActionListener implements MessageListener {
         }
         // save the event get from action listener.
         convertEntityService.getWebsocketService().handleEventAction(actionEvent, eventObject);
-        if (eventObject.getString(CloudStackConstants.CS_EVENT_STATUS)
-                .equalsIgnoreCase(CloudStackConstants.CS_EVENT_COMPLETE)) {
-            switch (eventStart) {
-            case EventTypes.EVENT_USER:
-                if (eventName.equals(EventTypes.EVENT_USER_LOGIN) || eventName.equals(EventTypes.EVENT_USER_LOGOUT)) {
-                    LOGGER.debug("User sync", eventMessage); // TODO Will do login event.
-                } else {
-                    Thread.sleep(3000); // Delay sync call for user to get success CRUD.
-                    syncService.syncUser();
-                    if (eventName.equals(EventTypes.EVENT_USER_CREATE)) {
-                        syncService.syncUpdateUserRole();
-                        ObjectMapper mapper = new ObjectMapper();
-                        eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                        EmailEvent emailEvent = new EmailEvent();
-                        emailEvent.setEntityUuid(eventResponse.getEntityuuid());
-                        emailEvent.setResourceUuid(eventResponse.getEntityuuid());
-                        emailEvent.setEvent(EventTypes.EVENT_USER_CREATE);
-                        emailEvent.setEventType(EmailConstants.ACCOUNT);
-                        emailEvent.setEventDateTime(eventResponse.getEventDateTime());
-                        emailEvent.setUser(convertEntityService.getOwnerByUuid(eventResponse.getEntityuuid()).toString());
-                        emailEvent.setSubject(EmailConstants.SUBJECT_ACCOUNT_SIGNUP);
-                        emailJobService.sendMessageToQueue(emailEvent);
-                    } else if (eventName.equals(EventTypes.EVENT_USER_DELETE)) {
-                        syncService.syncUpdateUserRole();
-                        ObjectMapper mapper = new ObjectMapper();
-                        eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                        EmailEvent emailEvent = new EmailEvent();
-                        emailEvent.setEntityUuid(eventResponse.getEntityuuid());
-                        emailEvent.setResourceUuid(eventResponse.getEntityuuid());
-                        emailEvent.setEvent(EventTypes.EVENT_USER_DELETE);
-                        emailEvent.setEventType(EmailConstants.ACCOUNT);
-                        emailEvent.setEventDateTime(eventResponse.getEventDateTime());
-                        emailEvent.setUser(convertEntityService.getDeletedOwnerByUuid(eventResponse.getEntityuuid()).toString());
-                        emailEvent.setSubject(EmailConstants.SUBJECT_ACCOUNT_DELETE);
-                        emailJobService.sendMessageToQueue(emailEvent);
-                    }
-                }
-                break;
-            case EventTypes.EVENT_Email:
-                ObjectMapper mappers = new ObjectMapper();
-                eventResponse = mappers.readValue(eventMessage, ResponseEvent.class);
-                EmailEvent emailEvent = new EmailEvent();
-                emailEvent.setEntityUuid(eventResponse.getEntityuuid());
-                emailEvent.setResourceUuid(eventResponse.getEntityuuid());
-                emailEvent.setEvent(EventTypes.EVENT_USER_DELETE);
-                emailEvent.setEventType(EmailConstants.ACCOUNT);
-                emailEvent.setEventDateTime(eventResponse.getEventDateTime());
-                emailEvent.setUser(convertEntityService.getDeletedOwnerByUuid(eventResponse.getEntityuuid()).toString());
-                emailEvent.setSubject(EmailConstants.SUBJECT_ACCOUNT_DELETE);
-                emailJobService.sendMessageToQueue(emailEvent);
-                break;
-            case EventTypes.EVENT_REGISTER_SSH:
-                LOGGER.debug("Register SSH/API sync", eventMessage);
-                break;
-            case EventTypes.EVENT_ACCOUNT:
-                LOGGER.debug("Account sync", eventMessage);
-                syncService.syncDepartment();
-                break;
-            case EventTypes.EVENT_DISK:
-                LOGGER.debug("Storage offer sync", eventMessage);
-                syncService.syncStorageOffering();
-                break;
-            case EventTypes.EVENT_DOMAIN:
-                LOGGER.debug("Domain sync", eventMessage);
-                syncService.syncDomain();
-                if (eventName.equals(EventTypes.EVENT_DOMAIN_CREATE)
-                        || eventName.equals(EventTypes.EVENT_DOMAIN_UPDATE)) {
-                    ObjectMapper mapper = new ObjectMapper();
-                    eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                    syncService.syncResourceLimitActionEvent(eventResponse);
-                }
-                break;
-            case EventTypes.EVENT_ZONE:
-                LOGGER.debug("Zone sync", eventMessage);
-                syncService.syncZone();
-                break;
-            case EventTypes.EVENT_GUEST:
-                LOGGER.debug("OSType sync", eventMessage);
-                syncService.syncOsCategory();
-                syncService.syncOsTypes();
-                break;
-            case EventTypes.EVENT_ISO:
-                if (!eventName.contains(EventTypes.EVENT_ISO_TEMPLATE_DELETE)) {
-                    LOGGER.debug("ISO sync", eventMessage);
-                    syncService.syncTemplates();
-                }
-                break;
-            case EventTypes.EVENT_NETWORK:
-                if (eventName.contains(EventTypes.EVENT_NETWORK_OFFERING)) {
-                    LOGGER.debug("Network Offering sync", eventMessage);
-                    if (eventName.contains(EventTypes.EVENT_NETWORK_EDIT)
-                            || eventName.contains(EventTypes.EVENT_NETWORK_DELETE)) {
-                        ObjectMapper mapper = new ObjectMapper();
-                        eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                        asyncService.asyncNetworkOffering(eventResponse);
-                    } else {
-                        syncService.syncNetworkOffering();
-                    }
-                } else if (eventName.contains(EventTypes.EVENT_NETWORK_CREATE)
-                        && eventName.contains(EventTypes.EVENT_NETWORK_DELETE)) {
-                    LOGGER.debug("Network sync", eventMessage);
-                    syncService.syncNetwork();
-                }
-                break;
-            case EventTypes.EVENT_PHYSICAL:
-                LOGGER.debug("Physical Network sync", eventMessage);
-                break;
-            case EventTypes.EVENT_POD:
-                syncService.syncPod();
-                LOGGER.debug("POD sync", eventMessage);
-                break;
-            case EventTypes.EVENT_HOST:
-                syncService.syncHost();
-                LOGGER.debug("Host sync", eventMessage);
-                break;
-            case EventTypes.EVENT_PROXY:
-                LOGGER.debug("Proxy sync", eventMessage);
-                break;
-            case EventTypes.EVENT_ROUTER:
-                LOGGER.debug("Router sync", eventMessage);
-                break;
-            case EventTypes.EVENT_SERVICE:
-                LOGGER.debug("Compute Offering sync", eventMessage);
-                syncService.syncComputeOffering();
-                break;
-            case EventTypes.EVENT_SNAPSHOT:
-                LOGGER.debug("Volume snapshot sync", eventMessage);
-                break;
-            case EventTypes.EVENT_SNAPSHOT_POLICY:
-                if (eventName.equals(EventTypes.EVENT_SNAPSHOT_POLICY_CREATE)) {
-                    LOGGER.debug("Volume snapshot policy sync", eventMessage);
-                    syncService.syncSnapshotPolicy();
-                }
-                break;
-            case EventTypes.EVENT_VOLUME:
-                if (eventName.contains(EventTypes.EVENT_VOLUME_DELETE)) {
-                    LOGGER.debug("Volume sync", eventMessage);
+        watermark.advance(actionEvent.getEventDateTime());
+    }
+
+    /**
+     * Run a task as the backend admin with the admin CloudStack client bound, and clear both afterwards.
+     *
+     * @param task task to run.
+     * @throws Exception exception.
+     */
+    private void runAuthenticated(DelayedTaskScheduler.Task task) throws Exception {
+        try {
+            authenticate();
+            task.run();
+        } finally {
+            SecurityContextHolder.clearContext();
+            cloudStackServer.release();
+        }
+    }
+
+    /**
+     * Authenticate the current thread as the backend admin and bind the admin CloudStack client.
+     *
+     * @throws Exception exception.
+     */
+    private void authenticate() throws Exception {
+        syncService.init(cloudStackServer);
+        ExternalWebServiceStub externalWebService = new ExternalWebServiceStub();
+        AuthenticatedExternalWebService authenticatedExternalWebService = new AuthenticatedExternalWebService(
+                backendAdminUsername, null, AuthorityUtils.commaSeparatedStringToAuthorityList(backendAdminRole));
+        authenticatedExternalWebService.setExternalWebService(externalWebService);
+        SecurityContextHolder.getContext().setAuthentication(authenticatedExternalWebService);
+    }
+
+    /**
+     * Sync the resources changed by a completed action event.
+     *
+     * @param eventName event name.
+     * @param eventStart event name start with.
+     * @param eventMessage event message.
+     * @return mail to send for the event, null when none.
+     * @throws Exception exception.
+     */
+    private EmailEvent syncActionEvent(String eventName, String eventStart, String eventMessage) throws Exception {
+        EmailEvent mail = null;
+        ResponseEvent eventResponse;
+        // Entity changed by the event, refreshed alone instead of syncing the whole table.
+        String entityUuid = new JSONObject(eventMessage).optString(CloudStackConstants.CS_ENTITY_UUID);
+        switch (eventStart) {
+        case EventTypes.EVENT_USER:
+            if (eventName.equals(EventTypes.EVENT_USER_LOGIN) || eventName.equals(EventTypes.EVENT_USER_LOGOUT)) {
+                LOGGER.debug("User sync", eventMessage); // TODO Will do login event.
+            } else {
+                syncService.refreshUser(entityUuid);
+                if (eventName.equals(EventTypes.EVENT_USER_CREATE)) {
+                    syncService.syncUpdateUserRole();
                     ObjectMapper mapper = new ObjectMapper();
                     eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                    asyncService.asyncVolume(eventResponse);
-                }
-                break;
-            case EventTypes.EVENT_TEMPLATE:
-                if (!eventName.contains(EventTypes.EVENT_TEMPLATE_DELETE)) {
-                    LOGGER.debug("templates sync", eventMessage);
-                    syncService.syncTemplates();
-                }
-                break;
-            case EventTypes.EVENT_VM_SNAPSHOT:
-                LOGGER.debug("VM snapshot sync", eventMessage);
-                // syncService.syncVmSnapshots();
-                break;
-            case EventTypes.EVENT_VM:
-                LOGGER.debug("VM update sync", eventMessage);
-                if (eventName.contains(EventTypes.EVENT_VM_UPDATE)) {
+                    EmailEvent emailEvent = new EmailEvent();
+                    emailEvent.setEntityUuid(eventResponse.getEntityuuid());
+                    emailEvent.setResourceUuid(eventResponse.getEntityuuid());
+                    emailEvent.setEvent(EventTypes.EVENT_USER_CREATE);
+                    emailEvent.setEventType(EmailConstants.ACCOUNT);
+                    emailEvent.setEventDateTime(eventResponse.getEventDateTime());
+                    emailEvent.setUser(convertEntityService.getOwnerByUuid(eventResponse.getEntityuuid()).toString());
+                    emailEvent.setSubject(EmailConstants.SUBJECT_ACCOUNT_SIGNUP);
+                    mail = emailEvent;
+                } else if (eventName.equals(EventTypes.EVENT_USER_DELETE)) {
+                    syncService.syncUpdateUserRole();
                     ObjectMapper mapper = new ObjectMapper();
                     eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                    asyncService.syncVMUpdate(eventResponse.getEntityuuid());
+                    EmailEvent emailEvent = new EmailEvent();
+                    emailEvent.setEntityUuid(eventResponse.getEntityuuid());
+                    emailEvent.setResourceUuid(eventResponse.getEntityuuid());
+                    emailEvent.setEvent(EventTypes.EVENT_USER_DELETE);
+                    emailEvent.setEventType(EmailConstants.ACCOUNT);
+                    emailEvent.setEventDateTime(eventResponse.getEventDateTime());
+                    emailEvent.setUser(convertEntityService.getDeletedOwnerByUuid(eventResponse.getEntityuuid()).toString());
+                    emailEvent.setSubject(EmailConstants.SUBJECT_ACCOUNT_DELETE);
+                    mail = emailEvent;
                 }
-                break;
-            case EventTypes.EVENT_VNC:
-                LOGGER.debug("VNC sync", eventMessage);
-                break;
-            case EventTypes.EVENT_PROJECT:
-                LOGGER.debug("Project", eventMessage);
-                syncService.syncProject();
-                if (eventName.equals(EventTypes.EVENT_PROJECT_CREATE)) {
+            }
+            break;
+        case EventTypes.EVENT_Email:
+            ObjectMapper mappers = new ObjectMapper();
+            eventResponse = mappers.readValue(eventMessage, ResponseEvent.class);
+            EmailEvent emailEvent = new EmailEvent();
+            emailEvent.setEntityUuid(eventResponse.getEntityuuid());
+            emailEvent.setResourceUuid(eventResponse.getEntityuuid());
+            emailEvent.setEvent(EventTypes.EVENT_USER_DELETE);
+            emailEvent.setEventType(EmailConstants.ACCOUNT);
+            emailEvent.setEventDateTime(eventResponse.getEventDateTime());
+            emailEvent.setUser(convertEntityService.getDeletedOwnerByUuid(eventResponse.getEntityuuid()).toString());
+            emailEvent.setSubject(EmailConstants.SUBJECT_ACCOUNT_DELETE);
+            mail = emailEvent;
+            break;
+        case EventTypes.EVENT_REGISTER_SSH:
+            LOGGER.debug("Register SSH/API sync", eventMessage);
+            break;
+        case EventTypes.EVENT_ACCOUNT:
+            LOGGER.debug("Account sync", eventMessage);
+            syncService.refreshDepartment(entityUuid);
+            break;
+        case EventTypes.EVENT_DISK:
+            LOGGER.debug("Storage offer sync", eventMessage);
+            syncService.refreshStorageOffering(entityUuid);
+            break;
+        case EventTypes.EVENT_DOMAIN:
+            LOGGER.debug("Domain sync", eventMessage);
+            syncService.refreshDomain(entityUuid);
+            if (eventName.equals(EventTypes.EVENT_DOMAIN_CREATE)
+                    || eventName.equals(EventTypes.EVENT_DOMAIN_UPDATE)) {
+                ObjectMapper mapper = new ObjectMapper();
+                eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
+                syncService.syncResourceLimitActionEvent(eventResponse);
+            }
+            break;
+        case EventTypes.EVENT_ZONE:
+            LOGGER.debug("Zone sync", eventMessage);
+            syncService.refreshZone(entityUuid);
+            break;
+        case EventTypes.EVENT_GUEST:
+            LOGGER.debug("OSType sync", eventMessage);
+            syncService.syncOsCategory();
+            syncService.syncOsTypes();
+            break;
+        case EventTypes.EVENT_ISO:
+            if (!eventName.contains(EventTypes.EVENT_ISO_TEMPLATE_DELETE)) {
+                LOGGER.debug("ISO sync", eventMessage);
+                syncService.syncTemplates();
+            }
+            break;
+        case EventTypes.EVENT_NETWORK:
+            if (eventName.contains(EventTypes.EVENT_NETWORK_OFFERING)) {
+                LOGGER.debug("Network Offering sync", eventMessage);
+                if (eventName.contains(EventTypes.EVENT_NETWORK_EDIT)
+                        || eventName.contains(EventTypes.EVENT_NETWORK_DELETE)) {
                     ObjectMapper mapper = new ObjectMapper();
                     eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
-                    syncService.syncResourceLimitActionEventProject(eventResponse);
+                    asyncService.asyncNetworkOffering(eventResponse);
+                } else {
+                    syncService.syncNetworkOffering();
                 }
-                break;
-            case EventTypes.EVENT_VPC:
-                if (eventName.contains(EventTypes.EVENT_NETWORK_OFFERING)) {
-                    LOGGER.debug("VPC sync", eventMessage);
-                    syncService.syncVpcOffering();
-               }
-               break;
-            case EventTypes.EVENT_STATIC_NAT:
-                LOGGER.debug("Static nat sync", eventMessage);
-                syncService.syncIpAddress();
-                break;
-            default:
-                LOGGER.debug("No sync required", eventMessage);
+            } else if (eventName.contains(EventTypes.EVENT_NETWORK_CREATE)
+                    && eventName.contains(EventTypes.EVENT_NETWORK_DELETE)) {
+                LOGGER.debug("Network sync", eventMessage);
+                syncService.syncNetwork();
+            }
+            break;
+        case EventTypes.EVENT_PHYSICAL:
+            LOGGER.debug("Physical Network sync", eventMessage);
+            break;
+        case EventTypes.EVENT_POD:
+            syncService.refreshPod(entityUuid);
+            LOGGER.debug("POD sync", eventMessage);
+            break;
+        case EventTypes.EVENT_HOST:
+            syncService.refreshHost(entityUuid);
+            LOGGER.debug("Host sync", eventMessage);
+            break;
+        case EventTypes.EVENT_PROXY:
+            LOGGER.debug("Proxy sync", eventMessage);
+            break;
+        case EventTypes.EVENT_ROUTER:
+            LOGGER.debug("Router sync", eventMessage);
+            break;
+        case EventTypes.EVENT_SERVICE:
+            LOGGER.debug("Compute Offering sync", eventMessage);
+            syncService.syncComputeOffering();
+            break;
+        case EventTypes.EVENT_SNAPSHOT:
+            LOGGER.debug("Volume snapshot sync", eventMessage);
+            break;
+        case EventTypes.EVENT_SNAPSHOT_POLICY:
+            if (eventName.equals(EventTypes.EVENT_SNAPSHOT_POLICY_CREATE)) {
+                LOGGER.debug("Volume snapshot policy sync", eventMessage);
+                syncService.syncSnapshotPolicy();
+            }
+            break;
+        case EventTypes.EVENT_VOLUME:
+            if (eventName.contains(EventTypes.EVENT_VOLUME_DELETE)) {
+                LOGGER.debug("Volume sync", eventMessage);
+                ObjectMapper mapper = new ObjectMapper();
+                eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
+                asyncService.asyncVolume(eventResponse);
+            }
+            break;
+        case EventTypes.EVENT_TEMPLATE:
+            if (!eventName.contains(EventTypes.EVENT_TEMPLATE_DELETE)) {
+                LOGGER.debug("templates sync", eventMessage);
+                syncService.syncTemplates();
+            }
+            break;
+        case EventTypes.EVENT_VM_SNAPSHOT:
+            LOGGER.debug("VM snapshot sync", eventMessage);
+            // syncService.syncVmSnapshots();
+            break;
+        case EventTypes.EVENT_VM:
+            LOGGER.debug("VM update sync", eventMessage);
+            if (eventName.contains(EventTypes.EVENT_VM_UPDATE)) {
+                ObjectMapper mapper = new ObjectMapper();
+                eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
+                asyncService.syncVMUpdate(eventResponse.getEntityuuid());
+            }
+            break;
+        case EventTypes.EVENT_VNC:
+            LOGGER.debug("VNC sync", eventMessage);
+            break;
+        case EventTypes.EVENT_PROJECT:
+            LOGGER.debug("Project", eventMessage);
+            syncService.syncProject();
+            if (eventName.equals(EventTypes.EVENT_PROJECT_CREATE)) {
+                ObjectMapper mapper = new ObjectMapper();
+                eventResponse = mapper.readValue(eventMessage, ResponseEvent.class);
+                syncService.syncResourceLimitActionEventProject(eventResponse);
             }
+            break;
+        case EventTypes.EVENT_VPC:
+            if (eventName.contains(EventTypes.EVENT_NETWORK_OFFERING)) {
+                LOGGER.debug("VPC sync", eventMessage);
+                syncService.syncVpcOffering();
+           }
+           break;
+        case EventTypes.EVENT_STATIC_NAT:
+            LOGGER.debug("Static nat sync", eventMessage);
+            syncService.syncIpAddress();
+            break;
+        default:
+            LOGGER.debug("No sync required", eventMessage);
         }
+        return mail;
     }
 }
@@ -5,6 +5,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.listener.exception.ListenerExecutionFailedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,7 +17,7 @@ import ck.panda.service.AsynchronousJobService;
 import ck.panda.service.ConvertEntityService;
 import ck.panda.service.SyncService;
 import ck.panda.service.WebsocketService;
-import ck.panda.util.CloudStackInstanceService;
+import ck.panda.util.AsyncJobResultCache;
 import ck.panda.util.CloudStackServer;
 import ck.panda.util.ConfigUtil;
 import ck.panda.util.infrastructure.AuthenticatedExternalWebService;
@@ -44,8 +45,8 @@ public class AsynchronousJobListener implements MessageListener {
     /** Asynchronous service. */
     private AsynchronousJobService asyncService;
 
-    /** CloudStack connector reference for instance. */
-    private CloudStackInstanceService cloudStackInstanceService;
+    /** Short lived cache of async job results. */
+    private AsyncJobResultCache asyncJobResultCache;
 
     /** Websocket service reference. */
     private WebsocketService websocketService;
@@ -65,6 +66,9 @@ public class AsynchronousJobListener implements MessageListener {
     /** Admin role. */
     private String backendAdminRole;
 
+    /** Watermark of the handled events. */
+    private EventWatermark watermark;
+
     /**
      * Inject SyncService.
      *
@@ -73,10 +77,11 @@ public class AsynchronousJobListener implements MessageListener {
      * @param cloudStackServer cloudStackServer object.
      * @param backendAdminUsername default admin name.
      * @param backendAdminRole default admin role.
+     * @param watermark watermark of the handled events.
      */
     public AsynchronousJobListener(SyncService syncService, AsynchronousJobService asyncService,
             CloudStackServer cloudStackServer, ConvertEntityService convertEntityService, ConfigUtil configUtil,
-            String backendAdminUsername, String backendAdminRole) {
+            String backendAdminUsername, String backendAdminRole, EventWatermark watermark) {
         this.syncService = syncService;
         this.asyncService = asyncService;
         this.cloudStackServer = cloudStackServer;
@@ -84,8 +89,9 @@ public class AsynchronousJobListener implements MessageListener {
         this.backendAdminRole = backendAdminRole;
         this.convertEntityService = convertEntityService;
         this.configUtil = configUtil;
+        this.watermark = watermark;
         this.websocketService = convertEntityService.getWebsocket();
-        this.cloudStackInstanceService = convertEntityService.getCSInstanceService();
+        this.asyncJobResultCache = convertEntityService.getAsyncJobResultCache();
     }
 
     @Override
@@ -94,8 +100,9 @@ public class AsynchronousJobListener implements MessageListener {
             JSONObject instance = new JSONObject(new String(message.getBody()));
             this.handleStatusEvent(instance);
         } catch (Exception e) {
-            LOGGER.debug("Error on convert action event message", e);
-            e.printStackTrace();
+            throw new ListenerExecutionFailedException("Error on handling asynchronous job message", e);
+        } finally {
+            cloudStackServer.release();
         }
     }
 
@@ -116,8 +123,7 @@ public class AsynchronousJobListener implements MessageListener {
             Event asyncJobEvent = new Event();
             // Event record.
             configUtil.setServer(1L);
-            String eventObjectResult = cloudStackInstanceService
-                    .queryAsyncJobResult(eventObject.getString(CS_ASYNC_JOB_ID), CloudStackConstants.JSON);
+            String eventObjectResult = asyncJobResultCache.queryAsyncJobResult(eventObject.getString(CS_ASYNC_JOB_ID));
             JSONObject jobResultResponse = new JSONObject(eventObjectResult)
                     .getJSONObject(CloudStackConstants.QUERY_ASYNC_JOB_RESULT_RESPONSE);
             JSONObject jobResult = null;
@@ -158,6 +164,7 @@ public class AsynchronousJobListener implements MessageListener {
             asyncJobEvent.setJobId(eventObject.getString(CloudStackConstants.CS_ASYNC_JOB_ID));
             // websocket record for async call.
             websocketService.handleEventAction(asyncJobEvent, eventObject);
+            watermark.advance(asyncJobEvent.getEventDateTime());
         }
     }
 }
@@ -0,0 +1,20 @@
+package ck.panda.rabbitmq.util;
+
+import java.util.concurrent.CompletableFuture;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+
+/**
+ * Message listener whose handling completes after it returns, eg. on a delayed task. The dispatcher acknowledges the
+ * message once the returned future has completed.
+ */
+public interface DeferredMessageListener extends MessageListener {
+
+    /**
+     * Start the handling of a message.
+     *
+     * @param message message to handle
+     * @return future completed once the message has been handled, or completed exceptionally when its handling failed
+     */
+    CompletableFuture<Void> onMessageDeferred(Message message);
+}
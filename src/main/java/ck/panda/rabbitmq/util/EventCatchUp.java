@@ -0,0 +1,343 @@
+package ck.panda.rabbitmq.util;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.CloudStackEventService;
+import ck.panda.util.CloudStackItemHandler;
+import ck.panda.util.CloudStackListIncompleteException;
+import ck.panda.util.ConfigUtil;
+import ck.panda.util.JsonUtil;
+import ck.panda.util.LeaderElection;
+
+/**
+ * Catches up with the CS server events missed while the listeners were not connected.
+ *
+ * Each time a broker connection is opened, at startup and after a reconnect, the event watermark is read and the
+ * completed CS server events since then are listed with listEvents. Every resource changed by those events is synced
+ * once through the action event sync, the same targeted refresh a live action event runs. Instances and volumes, whose
+ * live changes come from events that cannot be listed again, are synced once when any of their events was missed.
+ *
+ * The listing starts an overlap before the watermark, since events are handled on parallel lanes and their times are
+ * not in order. The start date is given in the time zone of the CS server, which is how listEvents reads it. When the
+ * watermark is older than the maximum age a full sync runs instead; without a watermark the current time is taken as
+ * the first one.
+ *
+ * The live listeners keep advancing the watermark while a catch-up runs, so the start of the catch-up is recorded
+ * until it completes. A catch-up which fails, or fails to sync some of its resources, is started again from there.
+ *
+ * Only the leader node catches up, the first time when it becomes the leader; every node consumes the queues and
+ * advances the shared watermark. A catch-up stops once this node is no longer the leader of the term it started in,
+ * leaving its window to the new leader.
+ */
+public class EventCatchUp implements ConnectionListener, PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCatchUp.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "rabbitmq.catchUp.";
+
+    /** CS server listEvents start date format. */
+    private static final DateTimeFormatter START_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Action event date format. */
+    private static final DateTimeFormatter EVENT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss Z");
+
+    /** CS server event state of a completed event. */
+    private static final String STATE_COMPLETED = "Completed";
+
+    /** CS server event resource uuid. */
+    private static final String CS_RESOURCE_ID = "resourceid";
+
+    /** CS server event description. */
+    private static final String CS_DESCRIPTION = "description";
+
+    /** Watermark of the handled events. */
+    private final EventWatermark watermark;
+
+    /** CS server event service. */
+    private final CloudStackEventService cloudStackEventService;
+
+    /** Action listener running the targeted sync of an event and the full sync. */
+    private final ActionListener actionListener;
+
+    /** Cloud stack configuration reference. */
+    private final ConfigUtil configUtil;
+
+    /** Leader election of the backend nodes. */
+    private final LeaderElection leaderElection;
+
+    /** Time in milliseconds listed before the watermark. */
+    private final long overlap;
+
+    /** Age in milliseconds of the watermark over which a full sync runs instead. */
+    private final long maxAge;
+
+    /** Time zone of the CS server, in which listEvents reads the start date. */
+    private final ZoneId serverZone;
+
+    /** Runs one catch-up at a time. */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-catch-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Whether a catch-up is queued and has not started yet. */
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    /** Number of catch-ups run. */
+    private final AtomicLong runCount = new AtomicLong();
+
+    /** Number of events listed by the last catch-up. */
+    private final AtomicLong listedCount = new AtomicLong();
+
+    /** Number of resources synced by the last catch-up. */
+    private final AtomicLong replayedCount = new AtomicLong();
+
+    /** Number of resources whose sync failed in the last catch-up. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** Time in milliseconds the last catch-up took. */
+    private final AtomicLong lastDuration = new AtomicLong();
+
+    /**
+     * Create the catch-up.
+     *
+     * @param watermark watermark of the handled events
+     * @param cloudStackEventService CS server event service
+     * @param actionListener action listener running the targeted sync of an event and the full sync
+     * @param configUtil cloud stack configuration
+     * @param leaderElection leader election of the backend nodes
+     * @param overlap time in milliseconds listed before the watermark
+     * @param maxAge age in milliseconds of the watermark over which a full sync runs instead
+     * @param serverZone time zone of the CS server
+     */
+    public EventCatchUp(EventWatermark watermark, CloudStackEventService cloudStackEventService,
+            ActionListener actionListener, ConfigUtil configUtil, LeaderElection leaderElection, long overlap,
+            long maxAge, ZoneId serverZone) {
+        this.watermark = watermark;
+        this.cloudStackEventService = cloudStackEventService;
+        this.actionListener = actionListener;
+        this.configUtil = configUtil;
+        this.leaderElection = leaderElection;
+        this.overlap = overlap;
+        this.maxAge = maxAge;
+        this.serverZone = serverZone;
+    }
+
+    /**
+     * Queue a catch-up from the watermark as it is when the connection opens, before the listeners consume from it.
+     *
+     * @param connection opened connection
+     */
+    @Override
+    public void onCreate(Connection connection) {
+        queueCatchUp();
+    }
+
+    @Override
+    public void onClose(Connection connection) {
+        LOGGER.debug("Broker connection closed, events are caught up on the next connection");
+    }
+
+    /**
+     * Queue a catch-up from the watermark as it is now, when this node is the leader.
+     */
+    public void queueCatchUp() {
+        if (!leaderElection.isLeader()) {
+            LOGGER.debug("Not the leader node, no catch-up");
+            return;
+        }
+        Long since;
+        try {
+            since = watermark.get();
+        } catch (Exception e) {
+            LOGGER.error("Unable to read the event watermark, no catch-up", e);
+            return;
+        }
+        if (!queued.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            queued.set(false);
+            catchUp(since);
+        });
+    }
+
+    /**
+     * Stop the catch-up thread.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "runs", runCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "listed", listedCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "replayed", replayedCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "failed", failedCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "duration", lastDuration.get()));
+        return metrics;
+    }
+
+    /**
+     * Sync the resources changed since a watermark, or since the start of a catch-up which has not completed if it is
+     * earlier.
+     *
+     * @param watermarkTime watermark in milliseconds, null when no event was ever handled
+     */
+    void catchUp(Long watermarkTime) {
+        long term = leaderElection.getTerm();
+        if (!leaderElection.isLeader(term)) {
+            LOGGER.debug("No longer the leader node, no catch-up");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        runCount.incrementAndGet();
+        try {
+            Long pending = watermark.getPendingCatchUp();
+            Long since = pending != null && (watermarkTime == null || pending < watermarkTime) ? pending
+                    : watermarkTime;
+            if (since == null) {
+                LOGGER.info("No event watermark, catch-up starts from now");
+                watermark.advance(start);
+                return;
+            }
+            watermark.beginCatchUp(since);
+            if (start - since > maxAge) {
+                LOGGER.warn("Event watermark is " + (start - since) + " ms old, running a full sync");
+                actionListener.resync();
+                if (!isLeader(term)) {
+                    return;
+                }
+                watermark.advance(start);
+                watermark.endCatchUp();
+                return;
+            }
+            AtomicLong latest = new AtomicLong(since);
+            AtomicBoolean complete = new AtomicBoolean(true);
+            List<JSONObject> events = listEvents(since - overlap, latest, complete);
+            Set<String> eventStarts = new HashSet<String>();
+            int failed = 0;
+            for (JSONObject event : events) {
+                if (!isLeader(term)) {
+                    return;
+                }
+                String eventName = event.getString(CloudStackConstants.CS_EVENT_NAME);
+                eventStarts.add(eventName.substring(0, eventName.indexOf('.') + 1));
+                try {
+                    actionListener.replayActionEvent(eventName, event.toString());
+                } catch (Exception e) {
+                    failed++;
+                    LOGGER.error("Unable to sync missed event " + eventName + " of "
+                            + event.optString(CloudStackConstants.CS_ENTITY_UUID), e);
+                }
+            }
+            actionListener.replayStateSync(eventStarts);
+            replayedCount.set(events.size());
+            failedCount.set(failed);
+            if (!isLeader(term)) {
+                return;
+            }
+            watermark.advance(latest.get());
+            if (failed == 0 && complete.get()) {
+                watermark.endCatchUp();
+            }
+            LOGGER.info("Caught up " + listedCount.get() + " events since " + Instant.ofEpochMilli(since) + ", "
+                    + events.size() + " resources synced, " + failed + " failed");
+        } catch (Exception e) {
+            LOGGER.error("Event catch-up failed, the next connection tries again", e);
+        } finally {
+            configUtil.releaseServer();
+            lastDuration.set(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Check whether this node is still the leader of the term a catch-up started in.
+     *
+     * @param term leader term the catch-up started in
+     * @return true when the catch-up goes on
+     */
+    private boolean isLeader(long term) {
+        if (leaderElection.isLeader(term)) {
+            return true;
+        }
+        LOGGER.warn("Lost the leader lease, catch-up stopped and left to the new leader");
+        return false;
+    }
+
+    /**
+     * List the completed events since a time, keeping the latest event of each event name and resource.
+     *
+     * @param from time in milliseconds
+     * @param latest advanced to the time of the latest event listed
+     * @param complete cleared when the events changed while paging, so that some may not have been listed
+     * @return action event messages, oldest first
+     * @throws Exception if the events cannot be listed
+     */
+    private List<JSONObject> listEvents(long from, AtomicLong latest, AtomicBoolean complete) throws Exception {
+        configUtil.setServer(1L);
+        HashMap<String, String> optional = new HashMap<String, String>();
+        optional.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+        optional.put("startdate", START_DATE_FORMAT.format(Instant.ofEpochMilli(from).atZone(serverZone)));
+        Map<String, JSONObject> events = new LinkedHashMap<String, JSONObject>();
+        CloudStackItemHandler handler = event -> {
+            if (!STATE_COMPLETED.equalsIgnoreCase(event.optString(CloudStackConstants.CS_STATE))) {
+                return;
+            }
+            String eventName = event.optString(CloudStackConstants.CS_TYPE);
+            if (eventName.indexOf('.') <= 0) {
+                return;
+            }
+            ZonedDateTime created = JsonUtil.convertToZonedDateTime(event.optString(CloudStackConstants.CS_CREATED));
+            latest.accumulateAndGet(created.toInstant().toEpochMilli(), Math::max);
+            String resourceUuid = event.optString(CS_RESOURCE_ID);
+            JSONObject message = new JSONObject();
+            message.put(CloudStackConstants.CS_EVENT_NAME, eventName);
+            message.put(CloudStackConstants.CS_EVENT_STATUS, STATE_COMPLETED);
+            message.put(CloudStackConstants.CS_ENTITY_UUID, resourceUuid);
+            message.put("eventDateTime", EVENT_DATE_FORMAT.format(created));
+            message.put(CS_DESCRIPTION, event.optString(CS_DESCRIPTION));
+            // Events are listed newest first, so the first event of a resource is its latest.
+            events.putIfAbsent(eventName + ":" + resourceUuid, message);
+        };
+        try {
+            listedCount.set(cloudStackEventService.listEvents(optional, handler));
+        } catch (CloudStackListIncompleteException e) {
+            // Replay what was listed, and keep the window so that the next catch-up lists it again.
+            LOGGER.warn("Incomplete event listing, the catch-up window is kept: " + e.getMessage());
+            listedCount.set(events.size());
+            complete.set(false);
+        }
+        List<JSONObject> oldestFirst = new ArrayList<JSONObject>(events.values());
+        Collections.reverse(oldestFirst);
+        return oldestFirst;
+    }
+}
@@ -0,0 +1,160 @@
+package ck.panda.rabbitmq.util;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * High-water mark of the CS server events handled by the listeners.
+ *
+ * The listeners advance the mark in memory with the time of every event they handle, and the mark is written to the
+ * event_watermark table by a scheduled flush, so handling an event never waits for the database. The mark only moves
+ * forward.
+ *
+ * The start of a catch-up window is kept in a second row until the catch-up completes. The live mark keeps moving
+ * during a catch-up, so a catch-up which fails starts again from that row rather than from the live mark.
+ */
+public class EventWatermark {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventWatermark.class);
+
+    /** Watermark name of the CS server events. */
+    private static final String NAME = "cloudstack.events";
+
+    /** Watermark name of the start of a catch-up which has not completed. */
+    private static final String PENDING_CATCH_UP = "cloudstack.events.catchUp";
+
+    /** Watermark select statement. */
+    private static final String SELECT_WATERMARK = "SELECT event_time FROM event_watermark WHERE name = ?";
+
+    /** Watermark upsert statement, keeping the later time. */
+    private static final String UPSERT_WATERMARK = "INSERT INTO event_watermark (name, event_time, updated_date_time)"
+            + " VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE event_time = GREATEST(event_time, VALUES(event_time)),"
+            + " updated_date_time = VALUES(updated_date_time)";
+
+    /** Catch-up start upsert statement, keeping the earlier time. */
+    private static final String BEGIN_CATCH_UP = "INSERT INTO event_watermark (name, event_time, updated_date_time)"
+            + " VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE event_time = LEAST(event_time, VALUES(event_time)),"
+            + " updated_date_time = VALUES(updated_date_time)";
+
+    /** Catch-up start delete statement. */
+    private static final String END_CATCH_UP = "DELETE FROM event_watermark WHERE name = ?";
+
+    /** Value of a mark which is not set. */
+    private static final long UNSET = 0L;
+
+    /** JDBC template reference. */
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Time in milliseconds of the latest event handled, or read from the table. */
+    private final AtomicLong eventTime = new AtomicLong(UNSET);
+
+    /** Time in milliseconds last written to the table. */
+    private final AtomicLong flushedTime = new AtomicLong(UNSET);
+
+    /** Whether the mark was read from the table. */
+    private volatile boolean loaded;
+
+    /**
+     * Create the watermark.
+     *
+     * @param jdbcTemplate JDBC template
+     */
+    public EventWatermark(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Advance the mark to the time of a handled event, unless it is already later.
+     *
+     * @param eventDateTime time of the event, ignored when null
+     */
+    public void advance(ZonedDateTime eventDateTime) {
+        if (eventDateTime != null) {
+            advance(eventDateTime.toInstant().toEpochMilli());
+        }
+    }
+
+    /**
+     * Advance the mark to a time, unless it is already later.
+     *
+     * @param time time in milliseconds
+     */
+    public void advance(long time) {
+        eventTime.accumulateAndGet(time, Math::max);
+    }
+
+    /**
+     * Get the mark, reading it from the table the first time.
+     *
+     * @return time in milliseconds of the latest event handled, null when no event was ever handled
+     */
+    public Long get() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    List<Long> times = jdbcTemplate.queryForList(SELECT_WATERMARK, Long.class, NAME);
+                    if (!times.isEmpty()) {
+                        advance(times.get(0));
+                        flushedTime.accumulateAndGet(times.get(0), Math::max);
+                    }
+                    loaded = true;
+                }
+            }
+        }
+        long time = eventTime.get();
+        return time == UNSET ? null : time;
+    }
+
+    /**
+     * Get the start of the earliest catch-up which has not completed.
+     *
+     * @return time in milliseconds, null when every catch-up completed
+     */
+    public Long getPendingCatchUp() {
+        List<Long> times = jdbcTemplate.queryForList(SELECT_WATERMARK, Long.class, PENDING_CATCH_UP);
+        return times.isEmpty() ? null : times.get(0);
+    }
+
+    /**
+     * Record the start of a catch-up window, unless an earlier one is pending.
+     *
+     * @param since time in milliseconds the catch-up lists the events from
+     */
+    public void beginCatchUp(long since) {
+        jdbcTemplate.update(BEGIN_CATCH_UP, PENDING_CATCH_UP, since, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Drop the start of the catch-up window once the catch-up has completed.
+     */
+    public void endCatchUp() {
+        jdbcTemplate.update(END_CATCH_UP, PENDING_CATCH_UP);
+    }
+
+    /**
+     * Write the mark to the table if it moved since the last write.
+     */
+    @Scheduled(fixedDelayString = "${spring.rabbit.server.catchUp.flushInterval:10000}")
+    @PreDestroy
+    public void flush() {
+        long time = eventTime.get();
+        if (time == UNSET || time <= flushedTime.get()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(UPSERT_WATERMARK, NAME, time, Timestamp.valueOf(LocalDateTime.now()));
+            flushedTime.accumulateAndGet(time, Math::max);
+        } catch (Exception e) {
+            LOGGER.error("Unable to write the event watermark, written again on the next flush", e);
+        }
+    }
+}
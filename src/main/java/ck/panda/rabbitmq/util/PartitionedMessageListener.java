@@ -0,0 +1,322 @@
+package ck.panda.rabbitmq.util;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.core.ChannelAwareMessageListener;
+import com.rabbitmq.client.Channel;
+import ck.panda.constants.CloudStackConstants;
+
+/**
+ * Dispatches event messages onto worker lanes by resource uuid.
+ *
+ * Every lane is a single thread with a bounded queue. Messages of the same resource always hash to the same lane, so
+ * the events of one VM are handled in the order they were consumed, while events of different resources are handled
+ * in parallel. When a lane is full the consumer thread waits, which stops the container from fetching beyond its
+ * prefetch count.
+ *
+ * The container must use manual acknowledgement: a message is acknowledged once its listener has handled it, or
+ * when the listener is a {@link DeferredMessageListener}, once the handling it deferred has completed. A failed
+ * message is requeued once and dropped when it fails again. Messages still waiting in a lane on shutdown are left
+ * unacknowledged, so the broker delivers them again.
+ */
+public class PartitionedMessageListener implements ChannelAwareMessageListener {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedMessageListener.class);
+
+    /** Time in milliseconds to wait for the lanes to finish their current message on shutdown. */
+    private static final long SHUTDOWN_TIMEOUT = 10000L;
+
+    /** Listener name, used for thread names and metrics. */
+    private final String name;
+
+    /** Listener handling the messages. */
+    private final MessageListener delegate;
+
+    /** Worker lanes. */
+    private final Lane[] lanes;
+
+    /** Number of messages handled. */
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /** Number of messages whose handling failed. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** Time in milliseconds the last message waited in its lane. */
+    private final AtomicLong lastLag = new AtomicLong();
+
+    /** Longest time in milliseconds a message waited in its lane since the last read. */
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /** Whether the lanes accept messages. */
+    private volatile boolean running = true;
+
+    /**
+     * Create the listener and start its lanes.
+     *
+     * @param name listener name
+     * @param delegate listener handling the messages, a {@link DeferredMessageListener} to acknowledge the messages once
+     *            their deferred handling has completed
+     * @param laneCount number of lanes
+     * @param laneCapacity number of messages a lane holds before the consumer waits
+     */
+    public PartitionedMessageListener(String name, MessageListener delegate, int laneCount, int laneCapacity) {
+        this.name = name;
+        this.delegate = delegate;
+        this.lanes = new Lane[Math.max(1, laneCount)];
+        for (int index = 0; index < lanes.length; index++) {
+            lanes[index] = new Lane(name + "-lane-" + index, Math.max(1, laneCapacity));
+            lanes[index].start();
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, Channel channel) throws IOException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        if (!running) {
+            channel.basicNack(deliveryTag, false, true);
+            return;
+        }
+        Lane lane = lanes[Math.floorMod(partitionKey(message).hashCode(), lanes.length)];
+        try {
+            lane.queue.put(new Task(message, channel, System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            channel.basicNack(deliveryTag, false, true);
+        }
+    }
+
+    /**
+     * Get the key a message is partitioned by: the uuid of the resource the event is about, or the job id when the
+     * event has no resource.
+     *
+     * @param message event message
+     * @return partition key, empty when the message has none
+     */
+    static String partitionKey(Message message) {
+        try {
+            JSONObject event = new JSONObject(new String(message.getBody()));
+            String[] keys = {CloudStackConstants.CS_INSTANCE_UUID, CloudStackConstants.CS_ENTITY_UUID,
+                    CloudStackConstants.CS_ID, CloudStackConstants.CS_ASYNC_JOB_ID };
+            for (String key : keys) {
+                String value = event.optString(key, null);
+                if (value != null && !value.isEmpty() && !"null".equals(value)) {
+                    return value;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Message without json body, dispatched to the first lane: {}", e.getMessage());
+        }
+        return "";
+    }
+
+    /**
+     * Get the listener name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of messages waiting in the lanes.
+     *
+     * @return backlog
+     */
+    public int getBacklog() {
+        int backlog = 0;
+        for (Lane lane : lanes) {
+            backlog += lane.queue.size();
+        }
+        return backlog;
+    }
+
+    /**
+     * Get the number of lanes.
+     *
+     * @return lane count
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Get the number of messages handled.
+     *
+     * @return processed count
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Get the number of messages whose handling failed.
+     *
+     * @return failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Get the time the last message waited in its lane.
+     *
+     * @return lag in milliseconds
+     */
+    public long getLastLag() {
+        return lastLag.get();
+    }
+
+    /**
+     * Get the longest time a message waited in its lane since the previous call, and start a new period.
+     *
+     * @return lag in milliseconds
+     */
+    public long getAndResetMaxLag() {
+        return maxLag.getAndSet(0);
+    }
+
+    /**
+     * Stop accepting messages and let the lanes finish the message they are handling. Messages still waiting in the
+     * lanes are not handled and stay unacknowledged, so the broker delivers them again.
+     */
+    public void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        for (Lane lane : lanes) {
+            try {
+                lane.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (lane.isAlive()) {
+                LOGGER.warn(lane.getName() + " still handling a message after " + SHUTDOWN_TIMEOUT + " ms");
+            }
+            if (!lane.queue.isEmpty()) {
+                LOGGER.info(lane.getName() + " stopped with " + lane.queue.size()
+                        + " messages left unacknowledged for redelivery");
+            }
+        }
+    }
+
+    /**
+     * Handle one message on the lane thread and acknowledge it once handled.
+     *
+     * @param task dispatched message
+     */
+    private void handle(Task task) {
+        long lag = System.currentTimeMillis() - task.dispatchedAt;
+        lastLag.set(lag);
+        maxLag.accumulateAndGet(lag, Math::max);
+        CompletableFuture<Void> handled;
+        try {
+            if (delegate instanceof DeferredMessageListener) {
+                handled = ((DeferredMessageListener) delegate).onMessageDeferred(task.message);
+            } else {
+                delegate.onMessage(task.message);
+                handled = CompletableFuture.completedFuture(null);
+            }
+        } catch (Exception e) {
+            handled = new CompletableFuture<Void>();
+            handled.completeExceptionally(e);
+        }
+        handled.whenComplete((result, error) -> complete(task, error));
+    }
+
+    /**
+     * Acknowledge a handled message, or reject a failed one. A failed message is requeued unless it was already
+     * delivered again.
+     *
+     * @param task dispatched message
+     * @param error handling failure, null when the message was handled
+     */
+    private void complete(Task task, Throwable error) {
+        processedCount.incrementAndGet();
+        long deliveryTag = task.message.getMessageProperties().getDeliveryTag();
+        try {
+            if (error == null) {
+                task.channel.basicAck(deliveryTag, false);
+            } else {
+                failedCount.incrementAndGet();
+                boolean requeue = !Boolean.TRUE.equals(task.message.getMessageProperties().isRedelivered());
+                LOGGER.error("Error on handling " + name + " message, " + (requeue ? "requeued" : "dropped"), error);
+                task.channel.basicNack(deliveryTag, false, requeue);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unable to acknowledge " + name + " message, the broker delivers it again", e);
+        }
+    }
+
+    /**
+     * Message waiting in a lane.
+     */
+    private static final class Task {
+
+        /** Event message. */
+        private final Message message;
+
+        /** Channel the message was delivered on, which acknowledges it. */
+        private final Channel channel;
+
+        /** Dispatch time in milliseconds. */
+        private final long dispatchedAt;
+
+        /**
+         * Create a task.
+         *
+         * @param message event message
+         * @param channel channel the message was delivered on
+         * @param dispatchedAt dispatch time in milliseconds
+         */
+        Task(Message message, Channel channel, long dispatchedAt) {
+            this.message = message;
+            this.channel = channel;
+            this.dispatchedAt = dispatchedAt;
+        }
+    }
+
+    /**
+     * Single worker thread handling the messages of its queue in order.
+     */
+    private final class Lane extends Thread {
+
+        /** Messages waiting in the lane. */
+        private final BlockingQueue<Task> queue;
+
+        /**
+         * Create a lane.
+         *
+         * @param threadName thread name
+         * @param capacity queue capacity
+         */
+        Lane(String threadName, int capacity) {
+            super(threadName);
+            this.queue = new ArrayBlockingQueue<Task>(capacity);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    Task task = queue.poll(1, TimeUnit.SECONDS);
+                    if (task != null) {
+                        handle(task);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
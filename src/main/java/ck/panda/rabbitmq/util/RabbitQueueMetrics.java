@@ -0,0 +1,81 @@
+package ck.panda.rabbitmq.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Queue depth and listener lag metrics of the CS server event queues.
+ *
+ * Queue depth and consumer count are read from the broker when the metrics are requested. The backlog, lag and
+ * counters come from the partitioned listeners.
+ */
+public class RabbitQueueMetrics implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RabbitQueueMetrics.class);
+
+    /** Queue metric name prefix. */
+    private static final String QUEUE_PREFIX = "rabbitmq.queue.";
+
+    /** Listener metric name prefix. */
+    private static final String LISTENER_PREFIX = "rabbitmq.listener.";
+
+    /** Admin used to read the queue properties. */
+    private final RabbitAdmin rabbitAdmin;
+
+    /** Names of the monitored queues. */
+    private final List<String> queueNames;
+
+    /** Partitioned listeners. */
+    private final List<PartitionedMessageListener> listeners;
+
+    /**
+     * Create the metrics.
+     *
+     * @param connectionFactory broker connection factory
+     * @param queueNames names of the monitored queues
+     * @param listeners partitioned listeners
+     */
+    public RabbitQueueMetrics(ConnectionFactory connectionFactory, List<String> queueNames,
+            List<PartitionedMessageListener> listeners) {
+        this.rabbitAdmin = new RabbitAdmin(connectionFactory);
+        this.queueNames = queueNames;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        for (String queueName : queueNames) {
+            try {
+                Properties properties = rabbitAdmin.getQueueProperties(queueName);
+                if (properties != null) {
+                    metrics.add(new Metric<Number>(QUEUE_PREFIX + queueName + ".depth",
+                            (Number) properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT)));
+                    metrics.add(new Metric<Number>(QUEUE_PREFIX + queueName + ".consumers",
+                            (Number) properties.get(RabbitAdmin.QUEUE_CONSUMER_COUNT)));
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Unable to read the properties of queue " + queueName, e.getMessage());
+            }
+        }
+        for (PartitionedMessageListener listener : listeners) {
+            String prefix = LISTENER_PREFIX + listener.getName() + ".";
+            metrics.add(new Metric<Integer>(prefix + "lanes", listener.getLaneCount()));
+            metrics.add(new Metric<Integer>(prefix + "backlog", listener.getBacklog()));
+            metrics.add(new Metric<Long>(prefix + "lag.last", listener.getLastLag()));
+            metrics.add(new Metric<Long>(prefix + "lag.max", listener.getAndResetMaxLag()));
+            metrics.add(new Metric<Long>(prefix + "processed", listener.getProcessedCount()));
+            metrics.add(new Metric<Long>(prefix + "failed", listener.getFailedCount()));
+        }
+        return metrics;
+    }
+}
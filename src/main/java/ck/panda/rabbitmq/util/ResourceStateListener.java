@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.listener.exception.ListenerExecutionFailedException;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.EventTypes;
 import ck.panda.constants.GenericConstants;
@@ -113,7 +114,9 @@ public class ResourceStateListener implements MessageListener {
         try {
             this.handleResourceEvent(new String(message.getBody()), message);
         } catch (Exception e) {
-            e.printStackTrace();
+            throw new ListenerExecutionFailedException("Error on handling resource state message", e);
+        } finally {
+            server.release();
         }
     }
 
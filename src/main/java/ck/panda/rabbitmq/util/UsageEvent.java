@@ -0,0 +1,178 @@
+package ck.panda.rabbitmq.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Usage event published by CS server on the usage queue.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UsageEvent {
+
+    /** Usage event type, eg. VM.CREATE. */
+    private String event;
+
+    /** Resource type, eg. VirtualMachine. */
+    private String resource;
+
+    /** Resource uuid. */
+    private String id;
+
+    /** Account uuid. */
+    private String account;
+
+    /** Zone uuid. */
+    private String zone;
+
+    /** Project uuid, if the resource belongs to a project. */
+    private String project;
+
+    /** Event date and time. */
+    private String eventDateTime;
+
+    /** Size in bytes of the resource, sent with volume, template and snapshot events. */
+    private Long size;
+
+    /**
+     * Get the usage event type.
+     *
+     * @return the event
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * Set the usage event type.
+     *
+     * @param event to set
+     */
+    public void setEvent(String event) {
+        this.event = event;
+    }
+
+    /**
+     * Get the resource type.
+     *
+     * @return the resource
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource type.
+     *
+     * @param resource to set
+     */
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Get the resource uuid.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Set the resource uuid.
+     *
+     * @param id to set
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the account uuid.
+     *
+     * @return the account
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    /**
+     * Set the account uuid.
+     *
+     * @param account to set
+     */
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    /**
+     * Get the zone uuid.
+     *
+     * @return the zone
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    /**
+     * Set the zone uuid.
+     *
+     * @param zone to set
+     */
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Get the project uuid.
+     *
+     * @return the project
+     */
+    public String getProject() {
+        return project;
+    }
+
+    /**
+     * Set the project uuid.
+     *
+     * @param project to set
+     */
+    public void setProject(String project) {
+        this.project = project;
+    }
+
+    /**
+     * Get the event date and time.
+     *
+     * @return the eventDateTime
+     */
+    public String getEventDateTime() {
+        return eventDateTime;
+    }
+
+    /**
+     * Set the event date and time.
+     *
+     * @param eventDateTime to set
+     */
+    public void setEventDateTime(String eventDateTime) {
+        this.eventDateTime = eventDateTime;
+    }
+
+    /**
+     * Get the size of the resource.
+     *
+     * @return the size, null if the event has none
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * Set the size of the resource.
+     *
+     * @param size to set
+     */
+    public void setSize(Long size) {
+        this.size = size;
+    }
+}
@@ -1,14 +1,71 @@
 package ck.panda.rabbitmq.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.core.ChannelAwareMessageListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import ck.panda.service.UsageLedgerService;
 
 /**
  * Usage event listener will listen and update resource usage data to our App DB when an event handled directly in CS
  * server.
+ *
+ * Events are only parsed and queued here; the usage ledger service writes them in batches. The container uses manual
+ * acknowledgement: an event is acknowledged once its batch is committed, and requeued when the batch fails.
  */
-public class UsageEventListener implements MessageListener {
+public class UsageEventListener implements ChannelAwareMessageListener {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsageEventListener.class);
+
+    /** Json mapper, thread safe once configured. */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Usage ledger service reference. */
+    private UsageLedgerService usageLedgerService;
+
+    /**
+     * Inject usage ledger service.
+     *
+     * @param usageLedgerService usage ledger service object.
+     */
+    public UsageEventListener(UsageLedgerService usageLedgerService) {
+        this.usageLedgerService = usageLedgerService;
+    }
+
     @Override
-    public void onMessage(Message message) {
+    public void onMessage(Message message, Channel channel) throws Exception {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        UsageEvent usageEvent;
+        try {
+            usageEvent = MAPPER.readValue(message.getBody(), UsageEvent.class);
+        } catch (Exception e) {
+            LOGGER.error("Error on convert usage event message", e);
+            channel.basicReject(deliveryTag, false);
+            return;
+        }
+        if (usageEvent.getEvent() == null || usageEvent.getResource() == null) {
+            LOGGER.debug("Usage event without type: {}", new String(message.getBody()));
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+        try {
+            usageLedgerService.append(usageEvent).whenComplete((result, error) -> {
+                try {
+                    if (error == null) {
+                        channel.basicAck(deliveryTag, false);
+                    } else {
+                        channel.basicNack(deliveryTag, false, true);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("Unable to acknowledge usage event, the broker delivers it again", e);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            channel.basicNack(deliveryTag, false, true);
+        }
     }
 }
@@ -1,12 +1,10 @@
 package ck.panda.service;
 
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -45,6 +43,7 @@ import ck.panda.domain.entity.Volume;
 import ck.panda.domain.entity.VpnUser;
 import ck.panda.domain.entity.Volume.Status;
 import ck.panda.rabbitmq.util.ResponseEvent;
+import ck.panda.util.AsyncJobResultCache;
 import ck.panda.util.CloudStackInstanceService;
 import ck.panda.util.CloudStackLoadBalancerService;
 import ck.panda.util.CloudStackNetworkOfferingService;
@@ -109,6 +108,10 @@ public class AsynchronousJobServiceImpl implements AsynchronousJobService {
     @Autowired
     private CloudStackInstanceService cloudStackInstanceService;
 
+    /** Short lived cache of async job results, shared by every async event handler. */
+    @Autowired
+    private AsyncJobResultCache asyncJobResultCache;
+
     /** Template Service for listing templates. */
     @Autowired
     private TemplateService templateService;
@@ -227,8 +230,7 @@ public class AsynchronousJobServiceImpl implements AsynchronousJobService {
     public void syncResourceStatus(JSONObject eventObject) throws Exception {
         // Event record.
         configUtil.setServer(1L);
-        String eventObjectResult = cloudStackInstanceService.queryAsyncJobResult(eventObject.getString(CS_ASYNC_JOB_ID),
-                CloudStackConstants.JSON);
+        String eventObjectResult = asyncJobResultCache.queryAsyncJobResult(eventObject.getString(CS_ASYNC_JOB_ID));
         JSONObject jobResultResponse = new JSONObject(eventObjectResult)
                 .getJSONObject(CloudStackConstants.QUERY_ASYNC_JOB_RESULT_RESPONSE);
         JSONObject jobResult = null;
@@ -491,9 +493,7 @@ public class AsynchronousJobServiceImpl implements AsynchronousJobService {
                     LOGGER.debug("sync VM for ASYNC");
                     // VNC password set.
                     if (csVm.getPassword() != null) {
-                        String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes("utf-8"));
-                        byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                        SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
+                        SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                         String encryptedPassword = new String(EncryptionUtil.encrypt(csVm.getPassword(), originalKey));
                         instance.setVncPassword(encryptedPassword);
                     }
@@ -1636,11 +1636,7 @@ public class AsynchronousJobServiceImpl implements AsynchronousJobService {
         // Set password from CS for an instance with AES encryption.
         String encryptedValue = "";
         if (value != null) {
-            String strEncoded = Base64.getEncoder()
-                    .encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length,
-                    GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             encryptedValue = new String(EncryptionUtil.encrypt(value, originalKey));
         }
         return encryptedValue;
@@ -0,0 +1,20 @@
+package ck.panda.service;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Service interface for the CS server capacity alerts.
+ *
+ * Capacity is sampled in the background on the leader node. Capacity alert mails are sent by the sampler, once when a
+ * capacity goes over the alert threshold.
+ */
+@Service
+public interface CapacityService {
+
+    /**
+     * Sample the capacity of every zone from the CS server and send the capacity alerts.
+     *
+     * @throws Exception if the capacity could not be listed.
+     */
+    void sample() throws Exception;
+}
@@ -0,0 +1,194 @@
+package ck.panda.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ck.panda.constants.CloudStackConstants;
+import ck.panda.constants.EmailConstants;
+import ck.panda.constants.GenericConstants;
+import ck.panda.rabbitmq.util.EmailEvent;
+import ck.panda.util.CloudStackResourceCapacity;
+import ck.panda.util.ConfigUtil;
+import ck.panda.util.LeaderElection;
+
+/**
+ * Capacity service implementation.
+ *
+ * The leader node samples the capacity and sends an alert when a capacity goes over the alert threshold. The alert is
+ * recorded in the capacity_alert table and not sent again for that zone and capacity type until the capacity has gone
+ * back under the rearm threshold, so neither a restart nor a new leader sends it again.
+ */
+@Service
+public class CapacityServiceImpl implements CapacityService {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CapacityServiceImpl.class);
+
+    /** Alerted capacities query. */
+    private static final String LIST_ALERTS = "SELECT zone_uuid, capacity_type FROM capacity_alert";
+
+    /** Alert record statement, failing with a duplicate key when the capacity is alerted already. */
+    private static final String ADD_ALERT = "INSERT INTO capacity_alert (zone_uuid, capacity_type, percent_used,"
+            + " alerted_date_time) VALUES (?, ?, ?, ?)";
+
+    /** Alert rearm statement. */
+    private static final String REMOVE_ALERT = "DELETE FROM capacity_alert WHERE zone_uuid = ? AND capacity_type = ?";
+
+    /** Email event names by capacity type. */
+    private static final Map<String, String> EMAIL_EVENTS = new HashMap<String, String>();
+
+    static {
+        EMAIL_EVENTS.put(GenericConstants.RESOURCE_MEMORY, EmailConstants.EMAIL_Memory);
+        EMAIL_EVENTS.put(GenericConstants.RESOURCE_CPU, EmailConstants.EMAIL_Cpu);
+        EMAIL_EVENTS.put(GenericConstants.RESOURCE_PRIMARY_STORAGE, EmailConstants.EMAIL_Primary_storage);
+        EMAIL_EVENTS.put(GenericConstants.RESOURCE_IP_ADDRESS, EmailConstants.EMAIL_Ip);
+        EMAIL_EVENTS.put(GenericConstants.RESOURCE_SECONDARY_STORAGE, EmailConstants.EMAIL_Secondary_storage);
+    }
+
+    /** CloudStack Resource Capacity Service. */
+    @Autowired
+    private CloudStackResourceCapacity cloudStackResourceCapacity;
+
+    /** Email Job service. */
+    @Autowired
+    private EmailJobService emailJobService;
+
+    /** Cloud stack configuration utility class. */
+    @Autowired
+    private ConfigUtil config;
+
+    /** Leader election of the backend nodes. */
+    @Autowired
+    private LeaderElection leaderElection;
+
+    /** JDBC template reference. */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Used percentage over which a capacity alert is sent. */
+    @Value(value = "${capacity.alert.threshold:80}")
+    private Double alertThreshold;
+
+    /** Used percentage under which a capacity alert can be sent again. */
+    @Value(value = "${capacity.alert.rearm:75}")
+    private Double rearmThreshold;
+
+    /**
+     * Sample the capacity on the leader node, logging a failure so that the next run samples again.
+     */
+    @Scheduled(fixedDelayString = "${capacity.sample.interval:60000}")
+    public void sampleCapacity() {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        try {
+            sample();
+        } catch (Exception e) {
+            LOGGER.error("Unable to sample the capacity", e);
+        } finally {
+            config.releaseServer();
+        }
+    }
+
+    @Override
+    public synchronized void sample() throws Exception {
+        config.setServer(1L);
+        String csListResponse = cloudStackResourceCapacity.listCapacity(new HashMap<String, String>(),
+                CloudStackConstants.JSON);
+        JSONObject csCapacity = new JSONObject(csListResponse)
+                .getJSONObject(CloudStackConstants.CS_CAPACITY_LIST_RESPONSE);
+        Map<String, Map<String, Double>> sample = new HashMap<String, Map<String, Double>>();
+        Map<String, String> zoneNames = new HashMap<String, String>();
+        if (csCapacity.has(CloudStackConstants.CS_CAPACITY)) {
+            JSONArray capacityArrayJSON = csCapacity.getJSONArray(CloudStackConstants.CS_CAPACITY);
+            for (int i = 0, size = capacityArrayJSON.length(); i < size; i++) {
+                JSONObject capacity = capacityArrayJSON.getJSONObject(i);
+                String zoneUuid = capacity.optString(CloudStackConstants.CS_ZONE_ID);
+                sample.computeIfAbsent(zoneUuid, zone -> new HashMap<String, Double>()).put(
+                        capacity.getString(CloudStackConstants.CAPACITY_TYPE),
+                        Double.valueOf(capacity.getString(CloudStackConstants.CS_CAPACITY_PERCENT)));
+                zoneNames.put(zoneUuid, capacity.optString(EmailConstants.EMAIL_zonename));
+            }
+        }
+        Set<String> alerted = new HashSet<String>();
+        jdbcTemplate.query(LIST_ALERTS, (RowCallbackHandler) row -> alerted.add(
+                key(row.getString("zone_uuid"), row.getString("capacity_type"))));
+        for (Map.Entry<String, Map<String, Double>> zone : sample.entrySet()) {
+            alert(zone.getKey(), zoneNames.get(zone.getKey()), zone.getValue(), alerted);
+        }
+    }
+
+    /**
+     * Send an alert for each capacity of a zone over the alert threshold which is not alerted yet, and rearm the
+     * capacities back under the rearm threshold.
+     *
+     * @param zoneUuid zone uuid
+     * @param zoneName zone name
+     * @param percents used percentage by capacity type
+     * @param alerted zone uuid and capacity type of the capacities alerted and not rearmed yet
+     * @throws Exception if the alert could not be queued
+     */
+    private void alert(String zoneUuid, String zoneName, Map<String, Double> percents, Set<String> alerted)
+            throws Exception {
+        HashMap<String, String> resourceMap = new HashMap<String, String>();
+        for (Map.Entry<String, Double> percent : percents.entrySet()) {
+            if (EMAIL_EVENTS.containsKey(percent.getKey())) {
+                resourceMap.put(EMAIL_EVENTS.get(percent.getKey()), percent.getValue().toString());
+            }
+        }
+        for (Map.Entry<String, Double> percent : percents.entrySet()) {
+            if (!GenericConstants.RESOURCE_CAPACITY.containsKey(percent.getKey())) {
+                continue;
+            }
+            boolean isAlerted = alerted.contains(key(zoneUuid, percent.getKey()));
+            if (percent.getValue() < rearmThreshold && isAlerted) {
+                jdbcTemplate.update(REMOVE_ALERT, zoneUuid, percent.getKey());
+            } else if (percent.getValue() > alertThreshold && !isAlerted) {
+                try {
+                    jdbcTemplate.update(ADD_ALERT, zoneUuid, percent.getKey(), percent.getValue(),
+                            Timestamp.valueOf(LocalDateTime.now()));
+                } catch (DuplicateKeyException e) {
+                    // Recorded by a former leader since the alerts were listed.
+                    continue;
+                }
+                EmailEvent emailEvent = new EmailEvent();
+                emailEvent.setMessageBody(percent.getValue().toString());
+                emailEvent.setEventType(EmailConstants.EMAIL_CAPACITY);
+                emailEvent.setResourceUuid(zoneName);
+                emailEvent.setEvent(EMAIL_EVENTS.get(percent.getKey()));
+                emailEvent.setResources(resourceMap);
+                try {
+                    emailJobService.sendMessageToQueue(emailEvent);
+                } catch (Exception e) {
+                    jdbcTemplate.update(REMOVE_ALERT, zoneUuid, percent.getKey());
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the key of a capacity.
+     *
+     * @param zoneUuid zone uuid
+     * @param capacityType capacity type
+     * @return key of the capacity
+     */
+    private static String key(String zoneUuid, String capacityType) {
+        return zoneUuid + ":" + capacityType;
+    }
+}
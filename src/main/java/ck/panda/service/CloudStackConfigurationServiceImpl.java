@@ -1,6 +1,9 @@
 package ck.panda.service;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -249,6 +252,7 @@ public class CloudStackConfigurationServiceImpl implements CloudStackConfigurati
         syncService.syncRegion("CONNECTION_CHECK");
         pingConfigurationSetup(config, errors);
         configRepo.save(config);
+        configUtil.refreshConfiguration();
         syncService.sync();
         return config;
     }
@@ -280,17 +284,21 @@ public class CloudStackConfigurationServiceImpl implements CloudStackConfigurati
             throw new ApplicationException(errors);
         }
 
-        return configRepo.save(config);
+        CloudStackConfiguration persisted = configRepo.save(config);
+        configUtil.refreshConfiguration();
+        return persisted;
     }
 
     @Override
     public void delete(CloudStackConfiguration config) throws Exception {
         configRepo.delete(config);
+        configUtil.refreshConfiguration();
     }
 
     @Override
     public void delete(Long id) throws Exception {
         configRepo.delete(id);
+        configUtil.refreshConfiguration();
     }
 
     @Override
@@ -540,6 +548,7 @@ public class CloudStackConfigurationServiceImpl implements CloudStackConfigurati
      * @throws Exception raise if error
      */
     public void syncNetworkWithDependency() throws Exception {
+        Map<String, JSONArray> instanceNics = Collections.emptyMap();
         try {
             // 1. Sync Network entity
             syncService.syncNetwork();
@@ -548,7 +557,7 @@ public class CloudStackConfigurationServiceImpl implements CloudStackConfigurati
         }
         try {
             // 2. Sync Instance entity
-            syncService.syncInstances();
+            instanceNics = syncService.syncInstances();
         } catch (Exception e) {
             LOGGER.error("ERROR AT synch Instance", e);
         }
@@ -572,7 +581,7 @@ public class CloudStackConfigurationServiceImpl implements CloudStackConfigurati
         }
         try {
             // 6. Sync Nic entity
-            syncService.syncNic();
+            syncService.syncNic(instanceNics);
             LOGGER.debug("nic");
         } catch (Exception e) {
             LOGGER.error("ERROR AT synch Nic", e);
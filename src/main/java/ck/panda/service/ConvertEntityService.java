@@ -1,27 +1,29 @@
 package ck.panda.service;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ck.panda.constants.CloudStackConstants;
+import ck.panda.domain.entity.Cluster;
 import ck.panda.domain.entity.ComputeOffering;
 import ck.panda.domain.entity.Department;
 import ck.panda.domain.entity.Domain;
+import ck.panda.domain.entity.Host;
 import ck.panda.domain.entity.IpAddress;
 import ck.panda.domain.entity.LoadBalancerRule;
 import ck.panda.domain.entity.Network;
 import ck.panda.domain.entity.NetworkOffering;
 import ck.panda.domain.entity.Nic;
 import ck.panda.domain.entity.OsCategory;
+import ck.panda.domain.entity.OsType;
+import ck.panda.domain.entity.Pod;
 import ck.panda.domain.entity.Project;
 import ck.panda.domain.entity.ResourceLimitDepartment;
 import ck.panda.domain.entity.ResourceLimitDomain;
@@ -39,9 +41,13 @@ import ck.panda.domain.entity.ResourceLimitDomain.ResourceType;
 import ck.panda.domain.entity.ResourceLimitProject;
 import ck.panda.domain.entity.Snapshot;
 import ck.panda.domain.entity.SnapshotPolicy;
+import ck.panda.util.EncryptionUtil;
+import ck.panda.util.AsyncJobResultCache;
 import ck.panda.util.CloudStackInstanceService;
 import ck.panda.util.CloudStackResourceCapacity;
 import ck.panda.util.CloudStackServer;
+import ck.panda.util.DelayedTaskScheduler;
+import ck.panda.util.EntityIdCache;
 import ck.panda.util.audit.DateTimeService;
 import ck.panda.domain.entity.SSHKey;
 
@@ -247,6 +253,18 @@ public class ConvertEntityService {
     @Autowired
     private VpcAclService vpcAclService;
 
+    /** Short lived cache of async job results. */
+    @Autowired
+    private AsyncJobResultCache asyncJobResultCache;
+
+    /** Cache resolving CloudStack uuids to ids. */
+    @Autowired
+    private EntityIdCache entityIdCache;
+
+    /** Scheduler for delayed event handling. */
+    @Autowired
+    private DelayedTaskScheduler delayedTaskScheduler;
+
     /** Secret key value is append. */
     @Value(value = "${aes.salt.secretKey}")
     private String secretKey;
@@ -261,11 +279,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getDomainId(String uuid) throws Exception {
-        if (domainService.findbyUUID(uuid) != null) {
-            return domainService.findbyUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.DOMAIN, uuid, key -> {
+            Domain domain = domainService.findbyUUID(key);
+            return domain == null ? null : domain.getId();
+        });
     }
 
     /**
@@ -291,12 +308,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getZoneId(String uuid) throws Exception {
-        if (zoneService.findByUUID(uuid) != null) {
-            return zoneService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
-
+        return entityIdCache.resolve(EntityIdCache.Type.ZONE, uuid, key -> {
+            Zone zone = zoneService.findByUUID(key);
+            return zone == null ? null : zone.getId();
+        });
     }
 
     /**
@@ -322,11 +337,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getTemplateId(String uuid) throws Exception {
-        if (templateService.findByUUID(uuid) != null) {
-            return templateService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.TEMPLATE, uuid, key -> {
+            Template template = templateService.findByUUID(key);
+            return template == null ? null : template.getId();
+        });
     }
 
     /**
@@ -375,11 +389,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getComputeOfferId(String uuid) throws Exception {
-        if (computeService.findByUUID(uuid) != null) {
-            return computeService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.COMPUTE_OFFERING, uuid, key -> {
+            ComputeOffering computeOffering = computeService.findByUUID(key);
+            return computeOffering == null ? null : computeOffering.getId();
+        });
     }
 
     /**
@@ -405,11 +418,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getNetworkId(String uuid) throws Exception {
-        if (networkService.findByUUID(uuid) != null) {
-            return networkService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.NETWORK, uuid, key -> {
+            Network network = networkService.findByUUID(key);
+            return network == null ? null : network.getId();
+        });
     }
 
     /**
@@ -422,11 +434,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getNetworkByUuid(String uuid) throws Exception {
-        if (networkService.findByUUID(uuid) != null) {
-            return networkService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.NETWORK, uuid, key -> {
+            Network network = networkService.findByUUID(key);
+            return network == null ? null : network.getId();
+        });
     }
 
     /**
@@ -455,11 +466,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getVpcByUuid(String uuid) throws Exception {
-        if (vpcService.findByUUID(uuid) != null) {
-            return vpcService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.VIRTUAL_PRIVATE_CLOUD, uuid, key -> {
+            VPC vpc = vpcService.findByUUID(key);
+            return vpc == null ? null : vpc.getId();
+        });
     }
 
     /**
@@ -472,10 +482,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getNetworkOfferingId(String uuid) throws Exception {
-        if (networkOfferingService.findByUUID(uuid) != null) {
-            return networkOfferingService.findByUUID(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.NETWORK_OFFERING, uuid, key -> {
+            NetworkOffering networkOffering = networkOfferingService.findByUUID(key);
+            return networkOffering == null ? null : networkOffering.getId();
+        });
     }
 
     /**
@@ -501,10 +511,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getOsTypeId(String uuid) throws Exception {
-        if (osTypeService.findByUUID(uuid) != null) {
-            return osTypeService.findByUUID(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.OS_TYPE, uuid, key -> {
+            OsType osType = osTypeService.findByUUID(key);
+            return osType == null ? null : osType.getId();
+        });
     }
 
     /**
@@ -640,11 +650,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getOwnerByUuid(String uuid) throws Exception {
-        if (userService.findByUuIdAndIsActive(uuid, true) != null) {
-            return userService.findByUuIdAndIsActive(uuid, true).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.USER, uuid, key -> {
+            User user = userService.findByUuIdAndIsActive(key, true);
+            return user == null ? null : user.getId();
+        });
     }
 
     /**
@@ -698,11 +707,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getDepartmentId(String uuid) throws Exception {
-        if (departmentService.findbyUUID(uuid) != null) {
-            return departmentService.findbyUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.DEPARTMENT, uuid, key -> {
+            Department department = departmentService.findbyUUID(key);
+            return department == null ? null : department.getId();
+        });
     }
 
     /**
@@ -767,10 +775,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getProjectId(String uuid) throws Exception {
-        if (projectService.findByUuid(uuid) != null) {
-            return projectService.findByUuid(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.PROJECT, uuid, key -> {
+            Project project = projectService.findByUuid(key);
+            return project == null ? null : project.getId();
+        });
     }
 
     /**
@@ -783,10 +791,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getPodId(String uuid) throws Exception {
-        if (podService.findByUUID(uuid) != null) {
-            return podService.findByUUID(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.POD, uuid, key -> {
+            Pod pod = podService.findByUUID(key);
+            return pod == null ? null : pod.getId();
+        });
     }
 
     /**
@@ -799,10 +807,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getVolumeId(String uuid) throws Exception {
-        if (volumeService.findByUUID(uuid) != null) {
-            return volumeService.findByUUID(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.VOLUME, uuid, key -> {
+            Volume volume = volumeService.findByUUID(key);
+            return volume == null ? null : volume.getId();
+        });
     }
 
     /**
@@ -815,11 +823,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getVmInstanceId(String uuid) throws Exception {
-        if (virtualMachineService.findByUUID(uuid) != null) {
-            return virtualMachineService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.VM_INSTANCE, uuid, key -> {
+            VmInstance vmInstance = virtualMachineService.findByUUID(key);
+            return vmInstance == null ? null : vmInstance.getId();
+        });
     }
 
     /**
@@ -832,11 +839,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getHostId(String uuid) throws Exception {
-        if (hostService.findByUUID(uuid) != null) {
-            return hostService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.HOST, uuid, key -> {
+            Host host = hostService.findByUUID(key);
+            return host == null ? null : host.getId();
+        });
     }
 
     /**
@@ -849,10 +855,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getStorageOfferId(String uuid) throws Exception {
-        if (storageService.findUuid(uuid) != null) {
-            return storageService.findUuid(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.STORAGE_OFFERING, uuid, key -> {
+            StorageOffering storageOffering = storageService.findUuid(key);
+            return storageOffering == null ? null : storageOffering.getId();
+        });
     }
 
     /**
@@ -878,11 +884,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getVmId(String uuid) throws Exception {
-        if (virtualMachineService.findByUUID(uuid) != null) {
-            return virtualMachineService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.VM_INSTANCE, uuid, key -> {
+            VmInstance vmInstance = virtualMachineService.findByUUID(key);
+            return vmInstance == null ? null : vmInstance.getId();
+        });
     }
 
     /**
@@ -1035,10 +1040,7 @@ public class ConvertEntityService {
      *             unhandled errors.
      */
     public SecretKey getSecretKey() throws UnsupportedEncodingException {
-        String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes("utf-8"));
-        byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-        SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
-        return originalKey;
+        return EncryptionUtil.getSecretKey(secretKey);
     }
 
     /**
@@ -1081,11 +1083,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getClusterId(String uuid) throws Exception {
-        if (clusterService.findByUUID(uuid) != null) {
-            return clusterService.findByUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.CLUSTER, uuid, key -> {
+            Cluster cluster = clusterService.findByUUID(key);
+            return cluster == null ? null : cluster.getId();
+        });
     }
 
     /**
@@ -1196,11 +1197,10 @@ public class ConvertEntityService {
      *             unhandled exception.
      */
     public Long getIpAddressId(String uuid) throws Exception {
-        if (ipAddressService.findbyUUID(uuid) != null) {
-            return ipAddressService.findbyUUID(uuid).getId();
-        } else {
-            return null;
-        }
+        return entityIdCache.resolve(EntityIdCache.Type.IP_ADDRESS, uuid, key -> {
+            IpAddress ipAddress = ipAddressService.findbyUUID(key);
+            return ipAddress == null ? null : ipAddress.getId();
+        });
     }
 
     /**
@@ -1355,6 +1355,24 @@ public class ConvertEntityService {
         return this.cloudStackInstanceService;
     }
 
+    /**
+     * Get async job result cache object.
+     *
+     * @return async job result cache object
+     */
+    public AsyncJobResultCache getAsyncJobResultCache() {
+        return this.asyncJobResultCache;
+    }
+
+    /**
+     * Get delayed task scheduler object.
+     *
+     * @return delayed task scheduler object
+     */
+    public DelayedTaskScheduler getDelayedTaskScheduler() {
+        return this.delayedTaskScheduler;
+    }
+
     /**
      * Get Update Resource Count service object.
      *
@@ -1506,10 +1524,10 @@ public class ConvertEntityService {
      * @throws Exception unhandled exception.
      */
     public Long getVpcId(String uuid) throws Exception {
-        if (vpcService.findByUUID(uuid) != null) {
-            return vpcService.findByUUID(uuid).getId();
-        }
-        return null;
+        return entityIdCache.resolve(EntityIdCache.Type.VIRTUAL_PRIVATE_CLOUD, uuid, key -> {
+            VPC vpc = vpcService.findByUUID(key);
+            return vpc == null ? null : vpc.getId();
+        });
     }
 
     /**
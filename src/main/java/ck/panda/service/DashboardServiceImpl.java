@@ -2,25 +2,31 @@ package ck.panda.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.PostConstruct;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.GenericConstants;
 import ck.panda.domain.entity.Application;
 import ck.panda.domain.entity.Department;
 import ck.panda.domain.entity.IpAddress;
-import ck.panda.domain.entity.Network;
+import ck.panda.domain.entity.Project;
 import ck.panda.domain.entity.ResourceLimitDomain;
 import ck.panda.domain.entity.Template;
 import ck.panda.domain.entity.User;
-import ck.panda.domain.entity.VmInstance;
 import ck.panda.domain.entity.Volume;
 import ck.panda.domain.entity.User.UserType;
 import ck.panda.domain.entity.VmInstance.Status;
+import ck.panda.domain.repository.jpa.IpaddressRepository;
+import ck.panda.domain.repository.jpa.NetworkRepository;
+import ck.panda.domain.repository.jpa.VirtualMachineRepository;
+import ck.panda.domain.repository.jpa.VolumeRepository;
 import ck.panda.util.TokenDetails;
+import ck.panda.util.TtlCache;
 import ck.panda.web.resource.DashboardController;
 
 
@@ -34,13 +40,21 @@ public class DashboardServiceImpl implements DashboardService {
     /** Logger attribute. */
     private static final Logger LOGGER = LoggerFactory.getLogger(DashboardController.class);
 
-    /** Service reference to Virtual Machine. */
+    /** Virtual machine repository reference. */
     @Autowired
-    private VirtualMachineService virtualmachineService;
+    private VirtualMachineRepository virtualMachineRepo;
 
-    /** Service reference to Network. */
+    /** Network repository reference. */
     @Autowired
-    private NetworkService networkService;
+    private NetworkRepository networkRepo;
+
+    /** Ipaddress repository reference. */
+    @Autowired
+    private IpaddressRepository ipRepo;
+
+    /** Volume repository reference. */
+    @Autowired
+    private VolumeRepository volumeRepo;
 
     /** Service reference to Conver entity . */
     @Autowired
@@ -50,10 +64,6 @@ public class DashboardServiceImpl implements DashboardService {
     @Autowired
     private TemplateService templateService;
 
-    /** Service reference to Volume . */
-    @Autowired
-    private VolumeService volumeService;
-
     /** Service reference to Department . */
     @Autowired
     private DepartmentService departmentService;
@@ -62,10 +72,6 @@ public class DashboardServiceImpl implements DashboardService {
     @Autowired
     private ApplicationService applicationService;
 
-    /** Service reference to Ip . */
-    @Autowired
-    private IpaddressService ipService;
-
     /** Service reference to Project . */
     @Autowired
     private ProjectService projectService;
@@ -78,6 +84,20 @@ public class DashboardServiceImpl implements DashboardService {
     @Autowired
     private ResourceLimitDomainService resourceLimitDomainService;
 
+    /** Time in milliseconds the infrastructure counts are reused. */
+    @Value(value = "${dashboard.cache.ttl:30000}")
+    private Long cacheTtl;
+
+    /** Number of cached infrastructure counts above which expired counts are dropped. */
+    @Value(value = "${dashboard.cache.size:1000}")
+    private Integer cacheSize;
+
+    /** Infrastructure counts by domain and user, as json. */
+    private TtlCache<String> infrastructureCache;
+
+    /** Domain id matching all domains in the aggregate queries. */
+    private static final Long ALL_DOMAINS = 0L;
+
     /** Constant for VM count. */
     public static final String RUNNING_VM_COUNT = "runningVmCount", STOPPED_VM_COUNT = "stoppedVmCount";
 
@@ -102,43 +122,68 @@ public class DashboardServiceImpl implements DashboardService {
     /** Constant for template count. */
     public static final String TEMPLATE = "template";
 
+    /**
+     * Create the infrastructure cache.
+     */
+    @PostConstruct
+    public void init() {
+        infrastructureCache = new TtlCache<String>(cacheTtl, cacheSize);
+    }
+
     @Override
     public JSONObject getInfrastructure() throws Exception {
         User user = convertEntityService.getOwnerById(Long.valueOf(tokenDetails.getTokenDetails(CloudStackConstants.CS_ID)));
-        List<VmInstance> vmList = virtualmachineService.findAllByDomain(user.getDomainId(), user.getId(), "");
-        Integer runningVmCount = virtualmachineService.findCountByStatusAndDomain(Status.RUNNING, user.getDomainId(), user.getId(), "");
-        Integer stoppedVmCount = virtualmachineService.findCountByStatusAndDomain(Status.STOPPED, user.getDomainId(), user.getId(), "");
-        Integer vmCount = vmList.size();
-        List<Network> networkList = new ArrayList();
-        if (user != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
-            networkList = networkService.findAllByDomainId(user.getDomainId());
-        } else {
-            networkList = networkService.findAllByUserId(user.getId());
-        }
-        Integer networkCount = networkList.size();
-        List<IpAddress> ipAddressList = new ArrayList();
-        if(networkCount > 0) {
-            for(Network network : networkList) {
-                List<IpAddress> ipList = ipService.findByNetwork(network.getId());
-                ipAddressList.addAll(ipList);
-            }
-        }
-        Integer ipCount = ipAddressList.size();
-        Integer templateCount = templateService.findAllByUserIdIsActiveAndShare(Template.TemplateType.SYSTEM,
-                Template.Status.ACTIVE, true, Long.valueOf(tokenDetails.getTokenDetails(CloudStackConstants.CS_ID))).size();
-        Long storageSize = 0L;
-        List<Volume> volumeList = (List<Volume>) volumeService.findAllVolumeByUserId(Long.valueOf(tokenDetails.getTokenDetails(CloudStackConstants.CS_ID)));
-        for(Volume volume : volumeList) {
-            storageSize = (storageSize + (volume.getDiskSize() / (1024 * 1024 * 1024)));
-        }
+        String infra = infrastructureCache.get("user:" + user.getId(), () -> {
+            Long networkDomainId = user.getType().equals(UserType.ROOT_ADMIN) ? ALL_DOMAINS : user.getDomainId();
+            Integer templateCount = templateService.findAllByUserIdIsActiveAndShare(Template.TemplateType.SYSTEM,
+                    Template.Status.ACTIVE, true, user.getId()).size();
+            return buildInfrastructure(user.getDomainId(), user, networkDomainId, sumStorageSize(user),
+                    templateCount).toString();
+        });
+        return new JSONObject(infra);
+    }
 
-        Integer cpuCore = 0;
+    @Override
+    public JSONObject getInfrastructureByDomainId(Long domainId) throws Exception {
+        User user = convertEntityService.getOwnerById(Long.valueOf(tokenDetails.getTokenDetails(CloudStackConstants.CS_ID)));
+        String infra = infrastructureCache.get("domain:" + domainId + ":user:" + user.getId(), () -> {
+            Long storageSize = volumeRepo.sumDiskSizeByDomainAndIsActive(domainId, true);
+            Integer templateCount = templateService.findAllByDomainIdIsActiveAndShare(Template.TemplateType.SYSTEM,
+                    Template.Status.ACTIVE, true, domainId).size();
+            return buildInfrastructure(domainId, user, domainId, storageSize, templateCount).toString();
+        });
+        return new JSONObject(infra);
+    }
+
+    /**
+     * Build the infrastructure counts with one aggregate query per metric.
+     *
+     * @param domainId domain id of the VMs
+     * @param user current user
+     * @param networkDomainId domain id of the networks and ipaddresses, 0 for all domains
+     * @param storageSize disk size of the volumes in bytes
+     * @param templateCount template count
+     * @return infrastructure counts
+     * @throws Exception if the VM scope of the user could not be resolved
+     */
+    private JSONObject buildInfrastructure(Long domainId, User user, Long networkDomainId, Long storageSize,
+            Integer templateCount) throws Exception {
+        Integer runningVmCount = 0, stoppedVmCount = 0, vmCount = 0, cpuCore = 0;
         float memory = 0;
-        for(VmInstance vm : vmList) {
-            cpuCore = cpuCore + vm.getCpuCore();
-            memory = memory + (vm.getMemory());
+        for (Object[] row : sumVmsByStatus(domainId, user)) {
+            Integer count = ((Number) row[1]).intValue();
+            if (Status.RUNNING.equals(row[0])) {
+                runningVmCount = count;
+            } else if (Status.STOPPED.equals(row[0])) {
+                stoppedVmCount = count;
+            }
+            vmCount = vmCount + count;
+            cpuCore = cpuCore + (row[2] != null ? ((Number) row[2]).intValue() : 0);
+            memory = memory + (row[3] != null ? ((Number) row[3]).floatValue() : 0);
         }
         memory = (float) memory / 1024;
+        Long networkCount = networkRepo.countByDomainIsActive(true, networkDomainId);
+        Long ipCount = ipRepo.countByNetworkDomain(IpAddress.State.ALLOCATED, true, networkDomainId);
 
         JSONObject infra = new JSONObject();
         infra.put(RUNNING_VM_COUNT, runningVmCount);
@@ -146,59 +191,59 @@ public class DashboardServiceImpl implements DashboardService {
         infra.put(TOTAL_COUNT, vmCount);
         infra.put(VCPU, cpuCore);
         infra.put(RAM, memory);
-        infra.put(STORAGE, storageSize);
-        infra.put(PUBLIC_IP, ipCount);
-        infra.put(NETWORKS, networkCount);
+        infra.put(STORAGE, storageSize / (1024 * 1024 * 1024));
+        infra.put(PUBLIC_IP, ipCount.intValue());
+        infra.put(NETWORKS, networkCount.intValue());
         infra.put(TEMPLATE, templateCount);
         return infra;
     }
 
-
-    @Override
-    public JSONObject getInfrastructureByDomainId(Long domainId) throws Exception {
-        User user = convertEntityService.getOwnerById(Long.valueOf(tokenDetails.getTokenDetails(CloudStackConstants.CS_ID)));
-        List<VmInstance> vmList = virtualmachineService.findAllByDomain(domainId , user.getId(), "");
-        Integer runningVmCount = virtualmachineService.findCountByStatusAndDomain(Status.RUNNING, domainId, user.getId(), "");
-        Integer stoppedVmCount = virtualmachineService.findCountByStatusAndDomain(Status.STOPPED, domainId, user.getId(), "");
-        Integer vmCount = vmList.size();
-        List<Network> networkList = new ArrayList();
-        networkList = networkService.findAllByDomainId(domainId);
-        Integer networkCount = networkList.size();
-        List<IpAddress> ipAddressList = new ArrayList();
-        if(networkCount > 0) {
-            for(Network network : networkList) {
-                List<IpAddress> ipList = ipService.findByNetwork(network.getId());
-                ipAddressList.addAll(ipList);
+    /**
+     * Count the VMs visible to a user and sum their cores and memory by status.
+     *
+     * @param domainId domain id of the VMs for the root admin
+     * @param user current user
+     * @return rows of status, VM count, core sum and memory sum
+     * @throws Exception if the projects of the user could not be listed
+     */
+    private List<Object[]> sumVmsByStatus(Long domainId, User user) throws Exception {
+        if (user != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
+            if (user.getType().equals(UserType.DOMAIN_ADMIN)) {
+                return virtualMachineRepo.sumByDomainGroupByStatus(user.getDomainId(), Status.EXPUNGING);
             }
+            List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            if (projectList.size() > 0) {
+                return virtualMachineRepo.sumByDepartmentAndProjectGroupByStatus(user.getDepartment(), projectList,
+                        Status.EXPUNGING);
+            }
+            return virtualMachineRepo.sumByDepartmentGroupByStatus(user.getDepartment(), Status.EXPUNGING);
         }
-        Integer ipCount = ipAddressList.size();
-        Integer templateCount = templateService.findAllByDomainIdIsActiveAndShare(Template.TemplateType.SYSTEM,
-                Template.Status.ACTIVE, true, domainId).size();
-        Long storageSize = 0L;
-        List<Volume> volumeList = (List<Volume>) volumeService.findAllVolumeByDomainId(domainId);
-        for(Volume volume : volumeList) {
-            storageSize = (storageSize + (volume.getDiskSize() / (1024 * 1024 * 1024)));
-        }
+        return virtualMachineRepo.sumByDomainGroupByStatus(domainId, Status.EXPUNGING);
+    }
 
-        Integer cpuCore = 0;
-        float memory = 0;
-        for(VmInstance vm : vmList) {
-            cpuCore = cpuCore + vm.getCpuCore();
-            memory = memory + (vm.getMemory());
+    /**
+     * Sum the disk size of the volumes visible to a user.
+     *
+     * @param user current user
+     * @return disk size in bytes
+     * @throws Exception if the projects of the user could not be listed
+     */
+    private Long sumStorageSize(User user) throws Exception {
+        if (user.getDomainId() != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
+            if (user.getType().equals(UserType.DOMAIN_ADMIN)) {
+                return volumeRepo.sumDiskSizeByDomainAndIsActive(user.getDomainId(), true);
+            }
+            List<Volume.VolumeType> volumeType = new ArrayList<Volume.VolumeType>();
+            volumeType.add(Volume.VolumeType.DATADISK);
+            volumeType.add(Volume.VolumeType.ROOT);
+            List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            if (projectList.size() > 0) {
+                return volumeRepo.sumDiskSizeByProjectAndVolumeType(projectList, user.getDepartmentId(), volumeType,
+                        true);
+            }
+            return volumeRepo.sumDiskSizeByDepartmentAndVolumeType(user.getDepartmentId(), volumeType, true);
         }
-        memory = (float) memory / 1024;
-
-        JSONObject infra = new JSONObject();
-        infra.put(RUNNING_VM_COUNT, runningVmCount);
-        infra.put(STOPPED_VM_COUNT, stoppedVmCount);
-        infra.put(TOTAL_COUNT, vmCount);
-        infra.put(VCPU, cpuCore);
-        infra.put(RAM, memory);
-        infra.put(STORAGE, storageSize);
-        infra.put(PUBLIC_IP, ipCount);
-        infra.put(NETWORKS, networkCount);
-        infra.put(TEMPLATE, templateCount);
-        return infra;
+        return volumeRepo.sumDiskSizeByDomainAndIsActive(ALL_DOMAINS, true);
     }
 
     @Override
@@ -52,6 +52,15 @@ public interface DepartmentService extends CRUDService<Department> {
      */
     List<Department> findAllFromCSServer() throws Exception;
 
+    /**
+     * To get a department from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the department.
+     * @return department from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    Department findFromCSServer(String uuid) throws Exception;
+
     /**
      * Find the departments based on the given Uuid and isActive status.
      *
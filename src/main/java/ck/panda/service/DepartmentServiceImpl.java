@@ -3,7 +3,6 @@ package ck.panda.service;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +15,6 @@ import ck.panda.constants.GenericConstants;
 import ck.panda.domain.entity.Department;
 import ck.panda.domain.entity.Department.AccountType;
 import ck.panda.domain.entity.Domain;
-import ck.panda.domain.entity.Network;
 import ck.panda.domain.entity.Project;
 import ck.panda.domain.entity.ResourceLimitDepartment;
 import ck.panda.domain.entity.ResourceLimitDomain;
@@ -300,16 +298,16 @@ public class DepartmentServiceImpl implements DepartmentService {
             List<Volume> volumeResponse = volumeService.findByDepartmentAndIsActive(department.getId(), true);
             List<User> userResponse = userService.findByDepartment(department.getId());
             List<SSHKey> sshkeyResponse = sshkeyService.findAllByDepartmentAndIsActive(department.getId(), true);
-            List<Network> networkResponse = networkService.findByDepartmentAndNetworkIsActive(department.getId(), true);
+            Long networkCount = networkService.findCountByDepartmentAndNetworkIsActive(department.getId(), true);
             if (projectResponse.size() != 0 || vmResponse.size() != 0
-                    || roleResponse.size() != 0 || volumeResponse.size() != 0 || sshkeyResponse.size() != 0 || networkResponse.size() != 0 || userResponse.size() != 0 ) {
+                    || roleResponse.size() != 0 || volumeResponse.size() != 0 || sshkeyResponse.size() != 0 || networkCount != 0 || userResponse.size() != 0 ) {
                 errors.addGlobalError(GenericConstants.PAGE_ERROR_SEPARATOR + GenericConstants.TOKEN_SEPARATOR
                         + projectResponse.size() + GenericConstants.TOKEN_SEPARATOR
                         + vmResponse.size() + GenericConstants.TOKEN_SEPARATOR
                         + roleResponse.size() + GenericConstants.TOKEN_SEPARATOR
                         + volumeResponse.size() + GenericConstants.TOKEN_SEPARATOR
                         + sshkeyResponse.size() + GenericConstants.TOKEN_SEPARATOR
-                        + networkResponse.size() + GenericConstants.TOKEN_SEPARATOR
+                        + networkCount + GenericConstants.TOKEN_SEPARATOR
                         + userResponse.size());
 
             }
@@ -355,27 +353,40 @@ public class DepartmentServiceImpl implements DepartmentService {
 
     @Override
     public List<Department> findAllFromCSServer() throws Exception {
-        List<Department> departmentList = new ArrayList<Department>();
         HashMap<String, String> departmentMap = new HashMap<String, String>();
         departmentMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+        return findAllFromCSServer(departmentMap);
+    }
+
+    @Override
+    public Department findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> departmentMap = new HashMap<String, String>();
+        departmentMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+        departmentMap.put(CloudStackConstants.CS_ID, uuid);
+        List<Department> departmentList = findAllFromCSServer(departmentMap);
+        return departmentList.isEmpty() ? null : departmentList.get(0);
+    }
+
+    /**
+     * Get the departments from CS server matching the filter.
+     *
+     * @param departmentMap list filter.
+     * @return department list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<Department> findAllFromCSServer(HashMap<String, String> departmentMap) throws Exception {
+        List<Department> departmentList = new ArrayList<Department>();
         config.setServer(1L);
         // 1. Get the list of accounts from CS server using CS connector
-        String response = csAccountService.listAccounts(CloudStackConstants.JSON, departmentMap);
-        JSONArray userListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject(CloudStackConstants.CS_LIST_ACCOUNT_RESPONSE);
-        if (responseObject.has(CloudStackConstants.CS_ACCOUNT)) {
-            userListJSON = responseObject.getJSONArray(CloudStackConstants.CS_ACCOUNT);
-            // 2. Iterate the json list, convert the single json entity to department
-            for (int i = 0, size = userListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to department entity and
-                // Add the converted department entity to list
-                Department department = Department.convert(userListJSON.getJSONObject(i));
-                department.setDomainId(convertEntityService.getDomainId(department.getTransDomainId()));
-                if (!department.getUserName().equalsIgnoreCase(BAREMETAL_SYSTEM_ACCOUNT)) {
-                    departmentList.add(department);
-                }
+        csAccountService.listAccounts(departmentMap, departmentJson -> {
+            // 2.1 Call convert by passing JSONObject to department entity and
+            // Add the converted department entity to list
+            Department department = Department.convert(departmentJson);
+            department.setDomainId(convertEntityService.getDomainId(department.getTransDomainId()));
+            if (!department.getUserName().equalsIgnoreCase(BAREMETAL_SYSTEM_ACCOUNT)) {
+                departmentList.add(department);
             }
-        }
+        });
         return departmentList;
     }
 
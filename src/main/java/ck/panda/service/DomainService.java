@@ -22,6 +22,15 @@ public interface DomainService extends CRUDService<Domain> {
      */
     List<Domain> findAllFromCSServer() throws Exception;
 
+    /**
+     * To get a domain from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the domain.
+     * @return domain from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    Domain findFromCSServer(String uuid) throws Exception;
+
     /**
      * Find domain by uuid.
      *
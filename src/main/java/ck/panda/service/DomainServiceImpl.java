@@ -2,9 +2,7 @@ package ck.panda.service;
 
 import java.util.List;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -163,9 +161,7 @@ public class DomainServiceImpl implements DomainService {
                 domain.setSecondaryContactLastName(secondaryContactLastName);
                 domain.setSecondaryContactPhone(secondaryContactPhone);
 
-                String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes("utf-8"));
-                byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
+                SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                 String encryptedPassword = new String(EncryptionUtil.encrypt(password, originalKey));
                 domain.setPassword(encryptedPassword);
                 persistedDomain = domainRepo.save(domain);
@@ -416,18 +412,41 @@ public class DomainServiceImpl implements DomainService {
 
     @Override
     public List<Domain> findAllFromCSServer() throws Exception {
-        List<Domain> domainList = new ArrayList<Domain>();
         HashMap<String, String> domainMap = new HashMap<String, String>();
         domainMap.put("listall", "true");
+        return findAllFromCSServer(domainMap);
+    }
+
+    @Override
+    public Domain findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> domainMap = new HashMap<String, String>();
+        domainMap.put("listall", "true");
+        domainMap.put(CloudStackConstants.CS_ID, uuid);
+        List<Domain> domainList = findAllFromCSServer(domainMap);
+        return domainList.isEmpty() ? null : domainList.get(0);
+    }
+
+    /**
+     * Get the domains from CS server matching the filter.
+     *
+     * @param domainMap list filter.
+     * @return domain list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<Domain> findAllFromCSServer(HashMap<String, String> domainMap) throws Exception {
+        List<Domain> domainList = new ArrayList<Domain>();
         configServer.setServer(1L);
         // 1. Get the list of domains from CS server using CS connector
         String response = domainService.listDomains("json", domainMap);
-        JSONArray domainListJSON = new JSONObject(response).getJSONObject("listdomainsresponse").getJSONArray("domain");
-        // 2. Iterate the json list, convert the single json entity to domain
-        for (int i = 0, size = domainListJSON.length(); i < size; i++) {
-            // 2.1 Call convert by passing JSONObject to Domain entity and Add
-            // the converted Domain entity to list
-            domainList.add(Domain.convert(domainListJSON.getJSONObject(i)));
+        JSONObject responseObject = new JSONObject(response).getJSONObject("listdomainsresponse");
+        if (responseObject.has("domain")) {
+            JSONArray domainListJSON = responseObject.getJSONArray("domain");
+            // 2. Iterate the json list, convert the single json entity to domain
+            for (int i = 0, size = domainListJSON.length(); i < size; i++) {
+                // 2.1 Call convert by passing JSONObject to Domain entity and Add
+                // the converted Domain entity to list
+                domainList.add(Domain.convert(domainListJSON.getJSONObject(i)));
+            }
         }
         return domainList;
     }
@@ -1,10 +1,8 @@
 package ck.panda.service;
 
-import java.util.Base64;
 import java.util.List;
 import java.util.Properties;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import javax.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -46,9 +44,7 @@ public class EmailConfigurationServiceImpl implements EmailConfigurationService
         mailSender.setHost(email.getHost());
         mailSender.setPort(email.getPort());
         mailSender.setUsername(email.getUserName());
-        String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-        byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-        SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+        SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
         String encryptedPassword = new String(EncryptionUtil.decrypt(email.getPassword(), originalKey));
         email.setPassword(encryptedPassword);
         mailSender.setPassword(email.getPassword());
@@ -64,9 +60,7 @@ public class EmailConfigurationServiceImpl implements EmailConfigurationService
     public EmailConfiguration save(EmailConfiguration email) throws Exception {
         email.setIsActive(true);
         if (email.getPassword() != null) {
-            String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             String encryptedPassword = new String(EncryptionUtil.encrypt(email.getPassword(), originalKey));
             email.setPassword(encryptedPassword);
         }
@@ -78,9 +72,7 @@ public class EmailConfigurationServiceImpl implements EmailConfigurationService
         if (email.getPassword() != null) {
             EmailConfiguration emailConfig = emailRepo.findByIsActive(true);
             if (!emailConfig.getPassword().equals(email.getPassword())) {
-                String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-                byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+                SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                 String encryptedPassword = new String(EncryptionUtil.encrypt(email.getPassword(), originalKey));
                 email.setPassword(encryptedPassword);
             }
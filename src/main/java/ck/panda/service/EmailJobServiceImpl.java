@@ -3,11 +3,9 @@ package ck.panda.service;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import javax.mail.MessagingException;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -246,9 +244,7 @@ public class EmailJobServiceImpl implements EmailJobService {
             context.clear();
             account.setUserName(user.getUserName());
             if (user.getPassword() != null) {
-                String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-                byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+                SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                 String decryptedPassword = new String(EncryptionUtil.decrypt(user.getPassword(), originalKey));
                 account.setPassword(decryptedPassword);
             } else {
@@ -301,9 +297,7 @@ public class EmailJobServiceImpl implements EmailJobService {
             context.clear();
             account.setUserName(user.getUserName());
             if (user.getPassword() != null) {
-                String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-                byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+                SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                 String decryptedPassword = new String(EncryptionUtil.decrypt(user.getPassword(), originalKey));
                 account.setPassword(decryptedPassword);
             } else {
@@ -14,10 +14,8 @@ import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import javax.mail.internet.MimeMessage;
 import java.lang.reflect.Field;
-import java.util.Base64;
 
 /**
  * Email service for send mail.
@@ -66,9 +64,7 @@ public class EmailServiceImpl implements EmailService {
             javaMailService.setHost(emailConfiguration.getHost());
             javaMailService.setPort(emailConfiguration.getPort());
             javaMailService.setUsername(emailConfiguration.getUserName());
-            String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             String decryptedPassword = new String(EncryptionUtil.decrypt(emailConfiguration.getPassword(), originalKey));
             javaMailService.setPassword(decryptedPassword);
             MimeMessage message = javaMailService.createMimeMessage();
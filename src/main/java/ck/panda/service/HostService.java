@@ -20,6 +20,15 @@ public interface HostService extends CRUDService<Host> {
      */
     List<Host> findAllFromCSServer() throws Exception;
 
+    /**
+     * To get a host from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the host.
+     * @return host from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    Host findFromCSServer(String uuid) throws Exception;
+
     /**
      * To get host from cloudstack server.
      *
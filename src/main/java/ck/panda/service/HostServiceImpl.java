@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import ck.panda.constants.CloudStackConstants;
 import ck.panda.domain.entity.Host;
 import ck.panda.domain.repository.jpa.HostRepository;
 import ck.panda.util.CloudStackHostService;
@@ -82,8 +83,27 @@ public class HostServiceImpl implements HostService {
 
     @Override
     public List<Host> findAllFromCSServer() throws Exception {
-        List<Host> hostList = new ArrayList<Host>();
         HashMap<String, String> hostMap = new HashMap<String, String>();
+        return findAllFromCSServer(hostMap);
+    }
+
+    @Override
+    public Host findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> hostMap = new HashMap<String, String>();
+        hostMap.put(CloudStackConstants.CS_ID, uuid);
+        List<Host> hostList = findAllFromCSServer(hostMap);
+        return hostList.isEmpty() ? null : hostList.get(0);
+    }
+
+    /**
+     * Get the hosts from CS server matching the filter.
+     *
+     * @param hostMap list filter.
+     * @return host list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<Host> findAllFromCSServer(HashMap<String, String> hostMap) throws Exception {
+        List<Host> hostList = new ArrayList<Host>();
         configServer.setServer(1L);
         // 1. Get the list of hosts from CS server using CS connector
         String response = hostService.listHosts("json", hostMap);
@@ -42,6 +42,15 @@ public interface IpaddressService extends CRUDService<IpAddress> {
      */
     List<IpAddress> findByNetwork(Long networkId) throws Exception;
 
+    /**
+     * Count the allocated ipaddresses of a network.
+     *
+     * @param networkId network id.
+     * @return ipaddress count.
+     * @throws Exception exception
+     */
+    Long findCountByNetwork(Long networkId) throws Exception;
+
     /**
      * List by state based ipaddress.
      *
@@ -1,11 +1,9 @@
 package ck.panda.service;
 
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -387,6 +385,11 @@ public class IpaddressServiceImpl implements IpaddressService {
         return ipRepo.findByNetwork(networkId, State.ALLOCATED);
     }
 
+    @Override
+    public Long findCountByNetwork(Long networkId) throws Exception {
+        return ipRepo.countByNetwork(networkId, State.ALLOCATED);
+    }
+
     @Override
     public Page<IpAddress> findByNetwork(Long networkId, PagingAndSorting pagingAndSorting) throws Exception {
         return ipRepo.findByNetwork(pagingAndSorting.toPageRequest(), networkId, State.ALLOCATED);
@@ -400,53 +403,46 @@ public class IpaddressServiceImpl implements IpaddressService {
         ipMap.put("allocatedonly", "false");
         configServer.setServer(1L);
         // 1. Get the list of ipAddress from CS server using CS connector
-        String response = csipaddressService.listPublicIpAddresses(CloudStackConstants.JSON, ipMap);
-        JSONArray ipAddressListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject(CloudStackConstants.CS_PUBLIC_IPADDRESS_RESPONSE);
-        if (responseObject.has(CloudStackConstants.CS_PUBLIC_IP_ADDRESS)) {
-            ipAddressListJSON = responseObject.getJSONArray(CloudStackConstants.CS_PUBLIC_IP_ADDRESS);
-            // 2. Iterate the json list, convert the single json entity to pod
-            for (int i = 0, size = ipAddressListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to ipAddress entity
-                // the converted pod entity to list
-                IpAddress ipAddress = IpAddress.convert(ipAddressListJSON.getJSONObject(i));
-                ipAddress.setDomainId(convertEntityService.getDomainId(ipAddress.getTransDomainId()));
-                ipAddress.setZoneId(convertEntityService.getZoneId(ipAddress.getTransZoneId()));
-                if(ipAddress.getTransNetworkId() != null) {
-                    ipAddress.setNetworkId(convertEntityService.getNetworkId(ipAddress.getTransNetworkId()));
-                }
-                if(ipAddress.getTransVpcId() != null) {
-                    ipAddress.setVpcId(convertEntityService.getVpcId(ipAddress.getTransVpcId()));
-                }
+        csipaddressService.listPublicIpAddresses(ipMap, ipAddressJson -> {
+            // 2.1 Call convert by passing JSONObject to ipAddress entity
+            // the converted pod entity to list
+            IpAddress ipAddress = IpAddress.convert(ipAddressJson);
+            ipAddress.setDomainId(convertEntityService.getDomainId(ipAddress.getTransDomainId()));
+            ipAddress.setZoneId(convertEntityService.getZoneId(ipAddress.getTransZoneId()));
+            if(ipAddress.getTransNetworkId() != null) {
+                ipAddress.setNetworkId(convertEntityService.getNetworkId(ipAddress.getTransNetworkId()));
+            }
+            if(ipAddress.getTransVpcId() != null) {
+                ipAddress.setVpcId(convertEntityService.getVpcId(ipAddress.getTransVpcId()));
+            }
 
-                if((convertEntityService.getProjectId(ipAddress.getTransProjectId())) != null) {
-                    ipAddress.setProjectId(convertEntityService.getProjectId(ipAddress.getTransProjectId()));
-                    ipAddress.setDepartmentId(projectService.find(ipAddress.getProjectId()).getDepartmentId());
-                }
-                else {
-                    if(ipAddress.getDepartmentId() != null ) {
-                      ipAddress.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
-                              ipAddress.getTransDepartmentId(), convertEntityService.getDomain(ipAddress.getTransDomainId())));
-                    }
+            if((convertEntityService.getProjectId(ipAddress.getTransProjectId())) != null) {
+                ipAddress.setProjectId(convertEntityService.getProjectId(ipAddress.getTransProjectId()));
+                ipAddress.setDepartmentId(projectService.find(ipAddress.getProjectId()).getDepartmentId());
+            }
+            else {
+                if(ipAddress.getDepartmentId() != null ) {
+                  ipAddress.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
+                          ipAddress.getTransDepartmentId(), convertEntityService.getDomain(ipAddress.getTransDomainId())));
                 }
-                //Get all the VPN details
-                HashMap<String, String> vpnOptional = new HashMap<String, String>();
-                vpnOptional.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
-                String vpnResponse = csVPNService.listRemoteAccessVpns(ipAddress.getUuid(), vpnOptional, CloudStackConstants.JSON);
-                JSONArray vpnRemoteListJSON = null;
-                JSONObject responseVpnObject = new JSONObject(vpnResponse).getJSONObject(CloudStackConstants.CS_REMOTE_ACCESS_VPN_RESPONSE);
-                if (responseVpnObject.has(CloudStackConstants.CS_REMOTE_ACCESS_VPN)) {
-                    vpnRemoteListJSON = responseVpnObject.getJSONArray(CloudStackConstants.CS_REMOTE_ACCESS_VPN);
-                    for (int j = 0; j < vpnRemoteListJSON.length(); j++) {
-                        ipAddress.setVpnUuid(JsonUtil.getStringValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_ID));
-                        ipAddress.setVpnPresharedKey(convertEncryptedKey(JsonUtil.getStringValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_PRESHARED_KEY)));
-                        ipAddress.setVpnState(VpnState.valueOf(JsonUtil.getStringValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_STATE).toUpperCase()));
-                        ipAddress.setVpnForDisplay(JsonUtil.getBooleanValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_FOR_DISPLAY));
-                    }
+            }
+            //Get all the VPN details
+            HashMap<String, String> vpnOptional = new HashMap<String, String>();
+            vpnOptional.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+            String vpnResponse = csVPNService.listRemoteAccessVpns(ipAddress.getUuid(), vpnOptional, CloudStackConstants.JSON);
+            JSONArray vpnRemoteListJSON = null;
+            JSONObject responseVpnObject = new JSONObject(vpnResponse).getJSONObject(CloudStackConstants.CS_REMOTE_ACCESS_VPN_RESPONSE);
+            if (responseVpnObject.has(CloudStackConstants.CS_REMOTE_ACCESS_VPN)) {
+                vpnRemoteListJSON = responseVpnObject.getJSONArray(CloudStackConstants.CS_REMOTE_ACCESS_VPN);
+                for (int j = 0; j < vpnRemoteListJSON.length(); j++) {
+                    ipAddress.setVpnUuid(JsonUtil.getStringValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_ID));
+                    ipAddress.setVpnPresharedKey(convertEncryptedKey(JsonUtil.getStringValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_PRESHARED_KEY)));
+                    ipAddress.setVpnState(VpnState.valueOf(JsonUtil.getStringValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_STATE).toUpperCase()));
+                    ipAddress.setVpnForDisplay(JsonUtil.getBooleanValue(vpnRemoteListJSON.getJSONObject(j), CloudStackConstants.CS_FOR_DISPLAY));
                 }
-                ipList.add(ipAddress);
             }
-        }
+            ipList.add(ipAddress);
+        });
         return ipList;
     }
 
@@ -981,9 +977,7 @@ public class IpaddressServiceImpl implements IpaddressService {
         // Set password from CS for an instance with AES encryption.
         String encryptedValue = "";
         if (value != null) {
-            String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             encryptedValue = new String(EncryptionUtil.encrypt(value, originalKey));
         }
         return encryptedValue;
@@ -993,11 +987,7 @@ public class IpaddressServiceImpl implements IpaddressService {
     public IpAddress findByVpnKey(Long id) throws Exception {
         IpAddress ipAddress = ipRepo.findOne(id);
         if (ipAddress.getVpnPresharedKey() != null) {
-            String strEncoded = Base64.getEncoder()
-                    .encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length,
-                    GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             String decryptPassword = new String(EncryptionUtil.decrypt(ipAddress.getVpnPresharedKey(), originalKey));
             ipAddress.setVpnPresharedKey(decryptPassword);
         }
@@ -50,6 +50,16 @@ public interface NetworkService extends CRUDService<Network> {
      */
     List<Network> findByDepartmentAndNetworkIsActive(Long department, Boolean isActive) throws Exception;
 
+    /**
+     * Get the count of the networks of a department outside projects.
+     *
+     * @param department department id.
+     * @param isActive true/false.
+     * @return network count.
+     * @throws Exception unhandled errors.
+     */
+    Long findCountByDepartmentAndNetworkIsActive(Long department, Boolean isActive) throws Exception;
+
     /**
      * Soft delete for Network.
      *
@@ -79,6 +89,16 @@ public interface NetworkService extends CRUDService<Network> {
      */
     List<Network> findByProjectAndNetworkIsActive(Long projectId, Boolean isActive) throws Exception;
 
+    /**
+     * Get the count of the networks of a project.
+     *
+     * @param projectId project id.
+     * @param isActive true/false.
+     * @return network count.
+     * @throws Exception unhandled errors.
+     */
+    Long findCountByProjectAndNetworkIsActive(Long projectId, Boolean isActive) throws Exception;
+
     /**
      * To get active networks list.
      *
@@ -62,9 +62,6 @@ public class NetworkServiceImpl implements NetworkService {
     /** Constant for cloudStack network delete response. */
     private static final String CS_DELETE_NETWORK_RESPONSE = "deletenetworkresponse";
 
-    /** Constant for cloudStack network list response. */
-    private static final String CS_LIST_NETWORK_RESPONSE = "listnetworksresponse";
-
     /** Constant for cloudstack response restart. */
     private static final String CS_RESTART_NETWORK_RESPONSE = "restartnetworkresponse";
 
@@ -545,11 +542,8 @@ public class NetworkServiceImpl implements NetworkService {
      */
     private Page<Network> getNetworkListByUser(PagingAndSorting pagingAndSorting, Long userId) throws  Exception {
         User user = convertEntityService.getOwnerById(userId);
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = new ArrayList<Project>();
-            for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                allProjectList.add(project);
-            }
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             Page<Network> projectNetwork = networkRepo.findByProjectDepartmentAndIsActive(allProjectList,
                     user.getDepartmentId(), true, pagingAndSorting.toPageRequest());
             return projectNetwork;
@@ -592,41 +586,33 @@ public class NetworkServiceImpl implements NetworkService {
     private List<Network> getNetworkList(HashMap<String, String> networkMap, List<Network> networkList) throws Exception {
         config.setServer(1L);
         // 1. Get the list of domains from CS server using CS connector
-        String response = csNetwork.listNetworks(CloudStackConstants.JSON, networkMap);
-        JSONArray networkListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject(CS_LIST_NETWORK_RESPONSE);
-        if (responseObject.has(CS_NETWORK)) {
-            networkListJSON = responseObject.getJSONArray(CS_NETWORK);
-            // 2. Iterate the json list, convert the single json entity to
-            // domain
-            for (int i = 0, size = networkListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to Domain entity
-                // and Add the converted Domain entity to list
-                Network network = Network.convert(networkListJSON.getJSONObject(i));
-                network.setDomainId(convertEntityService.getDomainId(network.getTransDomainId()));
-                network.setZoneId(convertEntityService.getZoneId(network.getTransZoneId()));
-                network.setNetworkOfferingId(
-                        convertEntityService.getNetworkOfferingId(network.getTransNetworkOfferingId()));
-                 network.setProjectId(convertEntityService.getProjectId(network.getTransProjectId()));
-                 network.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
-                         network.getTransDepartmentId(), convertEntityService.getDomain(network.getTransDomainId())));
-                 if (network.getTransProjectId() != null) {
-                    Project project = projectService.findByUuid(network.getTransProjectId());
-                    network.setDepartmentId(project.getDepartmentId());
-                 }
-                 if (network.getTransVpcId() != null) {
-                     network.setVpcId(convertEntityService.getVpcId(network.getTransVpcId()));
-                     network.setNetworkCreationType(NetworkCreationType.VPC);
-                 } else {
-                     network.setNetworkCreationType(NetworkCreationType.ADVANCED_NETWORK);
-                 }
-                 if (network.getTransAclId() != null) {
-                     network.setAclId(convertEntityService.getVpcAclId(network.getTransAclId()));
-                 }
-
-                networkList.add(network);
-            }
-        }
+        csNetwork.listNetworks(networkMap, networkJson -> {
+            // 2.1 Call convert by passing JSONObject to Domain entity
+            // and Add the converted Domain entity to list
+            Network network = Network.convert(networkJson);
+            network.setDomainId(convertEntityService.getDomainId(network.getTransDomainId()));
+            network.setZoneId(convertEntityService.getZoneId(network.getTransZoneId()));
+            network.setNetworkOfferingId(
+                    convertEntityService.getNetworkOfferingId(network.getTransNetworkOfferingId()));
+             network.setProjectId(convertEntityService.getProjectId(network.getTransProjectId()));
+             network.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
+                     network.getTransDepartmentId(), convertEntityService.getDomain(network.getTransDomainId())));
+             if (network.getTransProjectId() != null) {
+                Project project = projectService.findByUuid(network.getTransProjectId());
+                network.setDepartmentId(project.getDepartmentId());
+             }
+             if (network.getTransVpcId() != null) {
+                 network.setVpcId(convertEntityService.getVpcId(network.getTransVpcId()));
+                 network.setNetworkCreationType(NetworkCreationType.VPC);
+             } else {
+                 network.setNetworkCreationType(NetworkCreationType.ADVANCED_NETWORK);
+             }
+             if (network.getTransAclId() != null) {
+                 network.setAclId(convertEntityService.getVpcAclId(network.getTransAclId()));
+             }
+
+            networkList.add(network);
+        });
         return networkList;
     }
 
@@ -716,6 +702,16 @@ public class NetworkServiceImpl implements NetworkService {
         return networkRepo.findByProjectAndNetworkIsActive(projectId, true);
     }
 
+    @Override
+    public Long findCountByDepartmentAndNetworkIsActive(Long department, Boolean isActive) throws Exception {
+        return networkRepo.countByDepartmentAndNetworkIsActive(department, isActive);
+    }
+
+    @Override
+    public Long findCountByProjectAndNetworkIsActive(Long projectId, Boolean isActive) throws Exception {
+        return networkRepo.countByProjectAndNetworkIsActive(projectId, isActive);
+    }
+
     @Override
     public Network findById(Long id) throws Exception {
         return networkRepo.findById(id);
@@ -880,8 +876,8 @@ public class NetworkServiceImpl implements NetworkService {
      */
     private List<Network> getNetworkListByUserWihtoutPaging(Long userId) throws  Exception {
         User user = convertEntityService.getOwnerById(userId);
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             List<Network> projectNetwork = networkRepo.findAByProjectDepartmentAndIsActiveWithoutPaging(allProjectList,
                     user.getDepartmentId(), true);
             return projectNetwork;
@@ -907,8 +903,8 @@ public class NetworkServiceImpl implements NetworkService {
                   networks = networkRepo.findByDomainIsActiveAndSearchText(domainId, true, pagingAndSorting.toPageRequest(),searchText);
               }
               else if (convertEntityService.getOwnerById(user.getId()).getType().equals(User.UserType.USER)) {
-                     if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                  List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                     List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                     if (!allProjectList.isEmpty()) {
                   Page<Network> projectNetwork = networkRepo.findByProjectDepartmentAndIsActiveWithPagingAndSorting(allProjectList,
                           user.getDepartmentId(),true, pagingAndSorting.toPageRequest(),searchText,user.getDomainId());
                   networks = projectNetwork;
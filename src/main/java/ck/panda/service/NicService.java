@@ -1,6 +1,8 @@
 package ck.panda.service;
 
 import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import ck.panda.domain.entity.Nic;
@@ -58,6 +60,16 @@ public interface NicService extends CRUDService<Nic> {
      */
     List<Nic> findAllFromCSServer() throws Exception;
 
+    /**
+     * Find all nics from CloudStack, taking the nics of a vm from the instance list payload when given, and listing
+     * them from CloudStack otherwise.
+     *
+     * @param instanceNics nics json by vm uuid from the instance list payload
+     * @return nic
+     * @throws Exception unhandled errors.
+     */
+    List<Nic> findAllFromCSServer(Map<String, JSONArray> instanceNics) throws Exception;
+
     /**
      * Paging and Sorting for displaying more number of elements in list.
      *
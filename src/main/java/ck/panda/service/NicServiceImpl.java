@@ -3,11 +3,17 @@ package ck.panda.service;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -20,8 +26,10 @@ import ck.panda.domain.entity.VmIpaddress;
 import ck.panda.domain.entity.VmIpaddress.IpType;
 import ck.panda.domain.repository.jpa.NicRepository;
 import ck.panda.util.AppValidator;
+import ck.panda.util.CloudStackClient;
 import ck.panda.util.CloudStackInstanceService;
 import ck.panda.util.CloudStackNicService;
+import ck.panda.util.CloudStackServer;
 import ck.panda.util.ConfigUtil;
 import ck.panda.util.domain.vo.PagingAndSorting;
 import ck.panda.util.error.Errors;
@@ -44,6 +52,10 @@ public class NicServiceImpl implements NicService {
     @Autowired
     private ConfigUtil configServer;
 
+    /** CloudStack connector. */
+    @Autowired
+    private CloudStackServer server;
+
     /** CloudStack connector reference for instance. */
     @Autowired
     private CloudStackInstanceService cloudStackInstanceService;
@@ -76,6 +88,10 @@ public class NicServiceImpl implements NicService {
     @Autowired
     private SyncService sync;
 
+    /** Number of vms whose nics are listed from CS server at the same time. */
+    @Value(value = "${sync.nicThreads:4}")
+    private Integer nicThreads;
+
     /** Constant for add ip to nic. */
     public static final String CS_ADD_IPTONIC = "addiptovmnicresponse";
 
@@ -353,82 +369,149 @@ public class NicServiceImpl implements NicService {
 
     @Override
     public List<Nic> findAllFromCSServer() throws Exception {
+        return findAllFromCSServer(new HashMap<String, JSONArray>());
+    }
+
+    @Override
+    public List<Nic> findAllFromCSServer(Map<String, JSONArray> instanceNics) throws Exception {
         List<VmInstance> vmInstanceList = vmService.findAllByExceptStatus(VmInstance.Status.EXPUNGING);
+        List<String> missingVms = new ArrayList<String>();
+        for (VmInstance vm : vmInstanceList) {
+            if (!instanceNics.containsKey(vm.getUuid())) {
+                missingVms.add(vm.getUuid());
+            }
+        }
+        LOGGER.debug("VM size " + vmInstanceList.size() + ", nics listed for " + missingVms.size());
+        // 1. Get the nics of the vms missing from the instance payload from CS server.
+        Map<String, JSONArray> listedNics = listNics(missingVms);
         List<Nic> nicList = new ArrayList<Nic>();
-        LOGGER.debug("VM size" + vmInstanceList.size());
         for (VmInstance vm : vmInstanceList) {
-            HashMap<String, String> nicMap = new HashMap<String, String>();
-            // Set virtual machine id to know nic belongs to which vm instance.
-            nicMap.put(CloudStackConstants.CS_VIRTUAL_MACHINE_ID, vm.getUuid());
-            configServer.setServer(1L);
-            // 1. Get the list of nics from CS server using CS connector
-            String response = cloudStackNicService.listNics(nicMap, CloudStackConstants.JSON);
-
-            JSONObject nicJSON = new JSONObject(response).getJSONObject(CS_NIC_LIST);
-            if (nicJSON.has(CS_NIC)) {
-            JSONArray nicListJSON = (JSONArray) nicJSON.get(CS_NIC);
+            JSONArray nicListJSON = instanceNics.containsKey(vm.getUuid()) ? instanceNics.get(vm.getUuid())
+                    : listedNics.get(vm.getUuid());
+            if (nicListJSON == null) {
+                continue;
+            }
             // 2. Iterate the json list, convert the single json entity to nic
             for (int i = 0, size = nicListJSON.length(); i < size; i++) {
-                 List<VmIpaddress> vmIpList = new ArrayList<VmIpaddress>();
-                 if (nicListJSON.getJSONObject(i).has("ipaddress")) {
-                     VmIpaddress vms = new VmIpaddress();
-                      vms.setGuestIpAddress(nicListJSON.getJSONObject(i).getString("ipaddress"));
-                      vms.setIpType(IpType.primaryIpAddress);
-                      vms.setUuid(nicListJSON.getJSONObject(i).getString("id"));
-                      vms.setIsActive(true);
-                      vms.setSyncFlag(false);
-                      if (vmIpService.findByUUID(vms.getUuid()) == null) {
-                          vmIpList.add(vmIpService.save(vms));
-                      } else {
-                          VmIpaddress vmObject = vmIpService.findByUUID(vms.getUuid());
-                          vmObject.setUuid(vms.getUuid());
-                          vmObject.setGuestIpAddress(vms.getGuestIpAddress());
-                          vmObject.setIpType(vms.getIpType());
-                          vmObject.setTransNicId(vms.getTransNicId());
-                          vmObject.setIsActive(true);
-                          vmObject.setSyncFlag(false);
-                          vmIpList.add(vmIpService.save(vmObject));
-                      }
-                 }
-                // 2.1 Call convert by passing JSONObject to nic entity and Add
-                // the converted nic entity to list
-                 Nic nic = Nic.convert(nicListJSON.getJSONObject(i));
-                 nic.setVmInstanceId(convertEntityService.getVmInstanceId(nic.getTransvmInstanceId()));
-                 nic.setNetworkId(convertEntityService.getNetworkId(nic.getTransNetworkId()));
-                 // Get secondary ip address from nic.
-                  if (nicListJSON.getJSONObject(i).has(CS_NIC_SECONDARYIP)) {
-                        // Get JSON array secondary ip.
-                        JSONArray secondaryIpJSON = nicListJSON.getJSONObject(i).getJSONArray(CS_NIC_SECONDARYIP);
-                        for (int j = 0, sizes = secondaryIpJSON.length(); j < sizes; j++) {
-                            JSONObject json = (JSONObject)secondaryIpJSON.get(j);
-                            json.put(CS_NIC_UUID, nicListJSON.getJSONObject(i).getString(CloudStackConstants.CS_ID));
-                            // 2.2  Call convert by passing JSONObject to Vmipaddress entity and Add
-                            // the converted vm ipaddress entity to list
-                            VmIpaddress vmIp = VmIpaddress.convert(json);
-                            if (vmIpService.findByUUID(vmIp.getUuid()) == null) {
-                                VmIpaddress persistVmIp = vmIpService.save(vmIp);
-                                vmIpList.add(persistVmIp);
-                            } else {
-                                VmIpaddress vmObject = vmIpService.findByUUID(vmIp.getUuid());
-                                vmObject.setUuid(vmIp.getUuid());
-                                vmObject.setGuestIpAddress(vmIp.getGuestIpAddress());
-                                vmObject.setIpType(vmIp.getIpType());
-                                vmObject.setTransNicId(vmIp.getTransNicId());
-                                vmObject.setIsActive(vmIp.getIsActive());
-                                vmObject.setSyncFlag(vmIp.getSyncFlag());
-                                vmIpService.update(vmObject);
-                            }
-
-                        }
+                JSONObject nicJSON = nicListJSON.getJSONObject(i);
+                // Nics in the instance payload do not carry the vm id.
+                if (!nicJSON.has(CloudStackConstants.CS_VIRTUAL_MACHINE_ID)) {
+                    nicJSON.put(CloudStackConstants.CS_VIRTUAL_MACHINE_ID, vm.getUuid());
                 }
-                if (vmIpList.size() > 0) {
-                    nic.setVmIpAddress(vmIpList);
+                nicList.add(convertNic(nicJSON));
+            }
+        }
+        return nicList;
+    }
+
+    /**
+     * List the nics of vms from CS server as root admin, a bounded number of vms at a time.
+     *
+     * @param vmUuids uuids of the vms
+     * @return nics json by vm uuid
+     * @throws Exception unhandled errors.
+     */
+    private Map<String, JSONArray> listNics(List<String> vmUuids) throws Exception {
+        Map<String, JSONArray> vmNics = new HashMap<String, JSONArray>();
+        if (vmUuids.isEmpty()) {
+            return vmNics;
+        }
+        CloudStackClient client = configServer.getAdminClient();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(nicThreads, vmUuids.size()));
+        try {
+            Map<String, Future<JSONArray>> responses = new HashMap<String, Future<JSONArray>>();
+            for (String vmUuid : vmUuids) {
+                responses.put(vmUuid, executor.submit(() -> {
+                    HashMap<String, String> nicMap = new HashMap<String, String>();
+                    // Set virtual machine id to know nic belongs to which vm instance.
+                    nicMap.put(CloudStackConstants.CS_VIRTUAL_MACHINE_ID, vmUuid);
+                    server.use(client);
+                    try {
+                        String response = cloudStackNicService.listNics(nicMap, CloudStackConstants.JSON);
+                        JSONObject nicJSON = new JSONObject(response).getJSONObject(CS_NIC_LIST);
+                        return nicJSON.has(CS_NIC) ? nicJSON.getJSONArray(CS_NIC) : new JSONArray();
+                    } finally {
+                        server.release();
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<JSONArray>> response : responses.entrySet()) {
+                try {
+                    vmNics.put(response.getKey(), response.getValue().get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
                 }
-                nicList.add(nic);
             }
+        } finally {
+            executor.shutdownNow();
+        }
+        return vmNics;
+    }
+
+    /**
+     * Convert a nic json to nic entity, saving its primary and secondary ip addresses.
+     *
+     * @param nicJSON nic json from CS server
+     * @return nic
+     * @throws Exception unhandled errors.
+     */
+    private Nic convertNic(JSONObject nicJSON) throws Exception {
+        List<VmIpaddress> vmIpList = new ArrayList<VmIpaddress>();
+        if (nicJSON.has("ipaddress")) {
+            VmIpaddress vms = new VmIpaddress();
+            vms.setGuestIpAddress(nicJSON.getString("ipaddress"));
+            vms.setIpType(IpType.primaryIpAddress);
+            vms.setUuid(nicJSON.getString("id"));
+            vms.setIsActive(true);
+            vms.setSyncFlag(false);
+            VmIpaddress vmObject = vmIpService.findByUUID(vms.getUuid());
+            if (vmObject == null) {
+                vmIpList.add(vmIpService.save(vms));
+            } else {
+                vmObject.setUuid(vms.getUuid());
+                vmObject.setGuestIpAddress(vms.getGuestIpAddress());
+                vmObject.setIpType(vms.getIpType());
+                vmObject.setTransNicId(vms.getTransNicId());
+                vmObject.setIsActive(true);
+                vmObject.setSyncFlag(false);
+                vmIpList.add(vmIpService.save(vmObject));
+            }
+        }
+        // 2.1 Call convert by passing JSONObject to nic entity
+        Nic nic = Nic.convert(nicJSON);
+        nic.setVmInstanceId(convertEntityService.getVmInstanceId(nic.getTransvmInstanceId()));
+        nic.setNetworkId(convertEntityService.getNetworkId(nic.getTransNetworkId()));
+        // Get secondary ip address from nic.
+        if (nicJSON.has(CS_NIC_SECONDARYIP)) {
+            // Get JSON array secondary ip.
+            JSONArray secondaryIpJSON = nicJSON.getJSONArray(CS_NIC_SECONDARYIP);
+            for (int j = 0, sizes = secondaryIpJSON.length(); j < sizes; j++) {
+                JSONObject json = (JSONObject) secondaryIpJSON.get(j);
+                json.put(CS_NIC_UUID, nicJSON.getString(CloudStackConstants.CS_ID));
+                // 2.2 Call convert by passing JSONObject to Vmipaddress entity and Add
+                // the converted vm ipaddress entity to list
+                VmIpaddress vmIp = VmIpaddress.convert(json);
+                VmIpaddress vmObject = vmIpService.findByUUID(vmIp.getUuid());
+                if (vmObject == null) {
+                    vmIpList.add(vmIpService.save(vmIp));
+                } else {
+                    vmObject.setUuid(vmIp.getUuid());
+                    vmObject.setGuestIpAddress(vmIp.getGuestIpAddress());
+                    vmObject.setIpType(vmIp.getIpType());
+                    vmObject.setTransNicId(vmIp.getTransNicId());
+                    vmObject.setIsActive(vmIp.getIsActive());
+                    vmObject.setSyncFlag(vmIp.getSyncFlag());
+                    vmIpService.update(vmObject);
+                }
             }
         }
-        return nicList;
+        if (vmIpList.size() > 0) {
+            nic.setVmIpAddress(vmIpList);
+        }
+        return nic;
     }
 
     @Override
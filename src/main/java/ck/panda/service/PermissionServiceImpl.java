@@ -18,9 +18,15 @@ public class PermissionServiceImpl implements PermissionService {
     @Autowired
     private PermissionRepository permissionRepository;
 
+    /** Role permission evaluator, holding the compiled permissions of every role. */
+    @Autowired
+    private RolePermissionService rolePermissionService;
+
     @Override
     public Permission save(Permission permission) throws Exception {
-        return permissionRepository.save(permission);
+        Permission savedPermission = permissionRepository.save(permission);
+        rolePermissionService.evictRoles();
+        return savedPermission;
     }
 
     @Override
@@ -20,6 +20,15 @@ public interface PodService extends CRUDService<Pod> {
      */
     List<Pod> findAllFromCSServer() throws Exception;
 
+    /**
+     * To get a pod from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the pod.
+     * @return pod from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    Pod findFromCSServer(String uuid) throws Exception;
+
     /**
      * To get pod from cloudstack server.
      *
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import ck.panda.constants.CloudStackConstants;
 import ck.panda.domain.entity.Pod;
 import ck.panda.domain.repository.jpa.PodRepository;
 import ck.panda.util.CloudStackPodService;
@@ -82,8 +83,27 @@ public class PodServiceImpl implements PodService {
 
     @Override
     public List<Pod> findAllFromCSServer() throws Exception {
-        List<Pod> podList = new ArrayList<Pod>();
         HashMap<String, String> podMap = new HashMap<String, String>();
+        return findAllFromCSServer(podMap);
+    }
+
+    @Override
+    public Pod findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> podMap = new HashMap<String, String>();
+        podMap.put(CloudStackConstants.CS_ID, uuid);
+        List<Pod> podList = findAllFromCSServer(podMap);
+        return podList.isEmpty() ? null : podList.get(0);
+    }
+
+    /**
+     * Get the pods from CS server matching the filter.
+     *
+     * @param podMap list filter.
+     * @return pod list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<Pod> findAllFromCSServer(HashMap<String, String> podMap) throws Exception {
+        List<Pod> podList = new ArrayList<Pod>();
 
         // 1. Get the list of pods from CS server using CS connector
         String response = podService.listPods("json", podMap);
@@ -14,7 +14,6 @@ import org.springframework.stereotype.Service;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.GenericConstants;
 import ck.panda.domain.entity.Department;
-import ck.panda.domain.entity.Network;
 import ck.panda.domain.entity.Project;
 import ck.panda.domain.entity.ResourceLimitDepartment;
 import ck.panda.domain.entity.ResourceLimitProject;
@@ -342,13 +341,13 @@ public class ProjectServiceImpl implements ProjectService {
             statusCode.add(VmInstance.Status.STARTING);
             statusCode.add(VmInstance.Status.STOPPING);
             List<VmInstance> vmList = virtualMachineService.findAllByProjectAndStatus(project.getId(), statusCode);
-            List<Network> networkList = networkService.findByProjectAndNetworkIsActive(project.getId(), true);
+            Long networkCount = networkService.findCountByProjectAndNetworkIsActive(project.getId(), true);
             List<SSHKey> sshKeyList = sshKeyService.findAllByProjectAndIsActive(project.getId(), true);
             List<Volume> volumeList = volumeService.findAllByProjectAndIsActive(project.getId(), true);
-            if (vmList.size() > 0 || networkList.size() > 0 || sshKeyList.size() > 0 || volumeList.size() > 0 ) {
+            if (vmList.size() > 0 || networkCount > 0 || sshKeyList.size() > 0 || volumeList.size() > 0 ) {
                 errors.addGlobalError(GenericConstants.PAGE_ERROR_SEPARATOR + GenericConstants.TOKEN_SEPARATOR
                         + vmList.size() + GenericConstants.TOKEN_SEPARATOR
-                        + networkList.size() + GenericConstants.TOKEN_SEPARATOR
+                        + networkCount + GenericConstants.TOKEN_SEPARATOR
                         + sshKeyList.size() + GenericConstants.TOKEN_SEPARATOR
                         + volumeList.size());
             }
@@ -425,26 +424,18 @@ public class ProjectServiceImpl implements ProjectService {
         projectMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
         config.setServer(1L);
         // 1. Get the list of Project from CS server using CS connector
-        String response = cloudStackProjectService.listProjects(CloudStackConstants.JSON, projectMap);
-        JSONArray projectListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject("listprojectsresponse");
-        if (responseObject.has(RESPONSE_PROJECT)) {
-            projectListJSON = responseObject.getJSONArray(RESPONSE_PROJECT);
-            // 2. Iterate the json list, convert the single json entity to
-            // Project
-            for (int i = 0, size = projectListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to Project entity
-                // and Add
-                // the converted Project entity to list
-                Project project = Project.convert(projectListJSON.getJSONObject(i));
-                project.setDomainId(convertEntityService.getDomainId(project.getTransDomainId()));
-                project.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
-                        project.getTransAccount(), convertEntityService.getDomain(project.getTransDomainId())));
-                project.setIsActive(convertEntityService.getState(project.getTransState()));
-                project.setStatus((Project.Status) convertEntityService.getStatus(project.getTransState()));
-                projectList.add(project);
-            }
-        }
+        cloudStackProjectService.listProjects(projectMap, projectJson -> {
+            // 2.1 Call convert by passing JSONObject to Project entity
+            // and Add
+            // the converted Project entity to list
+            Project project = Project.convert(projectJson);
+            project.setDomainId(convertEntityService.getDomainId(project.getTransDomainId()));
+            project.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
+                    project.getTransAccount(), convertEntityService.getDomain(project.getTransDomainId())));
+            project.setIsActive(convertEntityService.getState(project.getTransState()));
+            project.setStatus((Project.Status) convertEntityService.getStatus(project.getTransState()));
+            projectList.add(project);
+        });
         return projectList;
     }
 
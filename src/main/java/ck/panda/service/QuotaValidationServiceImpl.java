@@ -3,24 +3,17 @@ package ck.panda.service;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import ck.panda.domain.entity.IpAddress;
 import ck.panda.domain.entity.ResourceLimitDepartment;
-import ck.panda.rabbitmq.util.EmailEvent;
 import ck.panda.domain.entity.ResourceLimitDomain;
 import ck.panda.domain.entity.ResourceLimitProject;
 import ck.panda.domain.entity.VmInstance;
 import ck.panda.domain.entity.Volume;
-import ck.panda.email.util.Resource;
-import ck.panda.constants.CloudStackConstants;
-import ck.panda.constants.EmailConstants;
 import ck.panda.constants.GenericConstants;
 import ck.panda.util.CloudStackResourceCapacity;
-import ck.panda.util.ConfigUtil;
 import ck.panda.util.error.exception.CustomGenericException;
 
 @Service
@@ -49,23 +42,12 @@ public class QuotaValidationServiceImpl implements QuotaValidationService{
     @Autowired
     private ResourceLimitDomainService resourceLimitDomainService;
 
-    /** Email Job service. */
-    @Autowired
-    private EmailJobService emailJobService;
-
-    /** Cloud stack configuration utility class. */
-    @Autowired
-    private ConfigUtil config;
-
     @Override
     public String QuotaLimitCheckByResourceObject(Object resourceObject, String resourceType,
             Long accountTypeId, String accountType) throws Exception {
         /** Used for setting optional values for resource usage. */
         HashMap<String, Long> resourceUsageMap = new HashMap<String, Long>();
         List<String> resourceList = new ArrayList<String>();
-        // Api call from Root admin.
-        config.setServer(1L);
-        this.validateListResourceCapacity();
         switch(resourceType) {
         case "Instance":
             VmInstance vmInstance = (VmInstance)resourceObject;
@@ -281,107 +263,6 @@ public class QuotaValidationServiceImpl implements QuotaValidationService{
 //        convertEntityService.resourceCount(csResponse);
 //    }
 
-    /**
-     * Validate list resource capacity for domain.
-     *
-     * @throws Exception unhandled exception
-     */
-    public void validateListResourceCapacity() throws Exception {
-        HashMap<String, String> optionalMap = new HashMap<String, String>();
-        Resource resourceEmail = new Resource();
-        EmailEvent emailEvent = new EmailEvent();
-        HashMap<String, String> resourceMap = new HashMap<String, String>();
-        // 2. List capacity CS API call.
-        String csListResponse = cloudStackResourceCapacity.listCapacity(optionalMap, CloudStackConstants.JSON);
-        JSONObject csCapacity = new JSONObject(csListResponse).getJSONObject(CloudStackConstants.CS_CAPACITY_LIST_RESPONSE);
-        if (csCapacity.has(CloudStackConstants.CS_CAPACITY)) {
-            JSONArray capacityArrayJSON = csCapacity.getJSONArray(CloudStackConstants.CS_CAPACITY);
-            for (int i = 0, size = capacityArrayJSON.length(); i < size; i++) {
-                String resourceType = capacityArrayJSON.getJSONObject(i).getString(CloudStackConstants.CAPACITY_TYPE);
-                Double tempTotalCapacity = Double
-                        .valueOf(capacityArrayJSON.getJSONObject(i).getString(CloudStackConstants.CS_CAPACITY_PERCENT));
-                if (resourceType.equals(GenericConstants.RESOURCE_MEMORY)) {
-                    resourceEmail.setMemory(tempTotalCapacity.toString());
-                    resourceMap.put(EmailConstants.EMAIL_Memory, resourceEmail.getMemory());
-                }
-                if (resourceType.equals(GenericConstants.RESOURCE_CPU)) {
-                    resourceEmail.setCpu(tempTotalCapacity.toString());
-                    resourceMap.put(EmailConstants.EMAIL_Cpu, resourceEmail.getCpu());
-                }
-                if (resourceType.equals(GenericConstants.RESOURCE_PRIMARY_STORAGE)) {
-                    resourceEmail.setPrimaryStorage(tempTotalCapacity.toString());
-                    resourceMap.put(EmailConstants.EMAIL_Primary_storage, resourceEmail.getPrimaryStorage());
-                }
-                if (resourceType.equals(GenericConstants.RESOURCE_IP_ADDRESS)) {
-                    resourceEmail.setIp(tempTotalCapacity.toString());
-                    resourceMap.put(EmailConstants.EMAIL_Ip, resourceEmail.getIp());
-                }
-                if (resourceType.equals(GenericConstants.RESOURCE_SECONDARY_STORAGE)) {
-                    resourceEmail.setSecondaryStorage(tempTotalCapacity.toString());
-                    resourceMap.put(EmailConstants.EMAIL_Secondary_storage, resourceEmail.getSecondaryStorage());
-                }
-            }
-            for (int i = 0, size = capacityArrayJSON.length(); i < size; i++) {
-                String resourceType = capacityArrayJSON.getJSONObject(i).getString(CloudStackConstants.CAPACITY_TYPE);
-                String zonename = capacityArrayJSON.getJSONObject(i).getString(EmailConstants.EMAIL_zonename);
-                // 2.1 Total capacity in puplic pool for each resource type.
-                Double tempTotalCapacity = Double.valueOf(capacityArrayJSON.getJSONObject(i).getString(CloudStackConstants.CS_CAPACITY_PERCENT));
-                if (GenericConstants.RESOURCE_CAPACITY.containsKey(resourceType)) {
-                    switch (resourceType) {
-                    case GenericConstants.RESOURCE_MEMORY:
-                        if (tempTotalCapacity > CloudStackConstants.CS_CAPACITY_MAX) {
-                            emailEvent.setMessageBody(tempTotalCapacity.toString());
-                            emailEvent.setEventType(EmailConstants.EMAIL_CAPACITY);
-                            emailEvent.setEvent(EmailConstants.EMAIL_Memory);
-                            emailEvent.setResources(resourceMap);
-                            emailJobService.sendMessageToQueue(emailEvent);
-                        }
-                        break;
-                    case GenericConstants.RESOURCE_CPU:
-                        if (tempTotalCapacity > CloudStackConstants.CS_CAPACITY_MAX) {
-                            emailEvent.setMessageBody(tempTotalCapacity.toString());
-                            emailEvent.setEventType(EmailConstants.EMAIL_CAPACITY);
-                            emailEvent.setEvent(EmailConstants.EMAIL_Cpu);
-                            emailEvent.setResources(resourceMap);
-                            emailJobService.sendMessageToQueue(emailEvent);
-                        }
-                        break;
-                    case GenericConstants.RESOURCE_PRIMARY_STORAGE:
-                        if (tempTotalCapacity > CloudStackConstants.CS_CAPACITY_MAX) {
-                            emailEvent.setMessageBody(tempTotalCapacity.toString());
-                            emailEvent.setEventType(EmailConstants.EMAIL_CAPACITY);
-                            emailEvent.setEvent(EmailConstants.EMAIL_Primary_storage);
-                            emailEvent.setResources(resourceMap);
-                            emailJobService.sendMessageToQueue(emailEvent);
-                        }
-                        break;
-                    case GenericConstants.RESOURCE_IP_ADDRESS:
-                        if (tempTotalCapacity > CloudStackConstants.CS_CAPACITY_MAX) {
-                            emailEvent.setMessageBody(tempTotalCapacity.toString());
-                            emailEvent.setEventType(EmailConstants.EMAIL_CAPACITY);
-                            emailEvent.setResourceUuid(zonename);
-                            emailEvent.setEvent(EmailConstants.EMAIL_Ip);
-                            emailEvent.setResources(resourceMap);
-                            emailJobService.sendMessageToQueue(emailEvent);
-                        }
-                        break;
-                    case GenericConstants.RESOURCE_SECONDARY_STORAGE:
-                        if (tempTotalCapacity > CloudStackConstants.CS_CAPACITY_MAX) {
-                            emailEvent.setMessageBody(tempTotalCapacity.toString());
-                            emailEvent.setEventType(EmailConstants.EMAIL_CAPACITY);
-                            emailEvent.setResourceUuid(zonename);
-                            emailEvent.setEvent(EmailConstants.EMAIL_Secondary_storage);
-                            emailEvent.setResources(resourceMap);
-                            emailJobService.sendMessageToQueue(emailEvent);
-                        }
-                        break;
-                    }
-                }
-
-            }
-        }
-    }
-
     public ResourceLimitDepartment getMaxByDepartmentAndResourceType(Long departmentId, String resourceType) throws Exception {
         ResourceLimitDepartment departmentLimit = resourceLimitDepartmentService
                 .findByDepartmentAndResourceType(departmentId, ResourceLimitDepartment.ResourceType.valueOf(resourceType), true);
@@ -0,0 +1,62 @@
+package ck.panda.service;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import org.springframework.stereotype.Service;
+import ck.panda.util.PriceCatalog;
+import ck.panda.util.UsageRecords;
+
+/**
+ * Service interface for rating usage against the offering prices.
+ *
+ * Rating runs in process against a price catalog compiled from the compute offering, storage offering, template,
+ * miscellaneous cost and tax tables. The catalog is compiled again after any of those tables change.
+ */
+@Service
+public interface RatingService {
+
+    /** Name of the price catalog in the cache invalidations of the other nodes. */
+    String CATALOG_CACHE = "rating.catalog";
+
+    /**
+     * Get the current price catalog, compiling it if the cost tables changed.
+     *
+     * @return price catalog.
+     */
+    PriceCatalog getCatalog();
+
+    /**
+     * Drop the current price catalog of this node so that the next rating compiles a new one.
+     */
+    void invalidateCatalog();
+
+    /**
+     * Rate usage records in parallel.
+     *
+     * @param records usage records.
+     * @return charge of each record without tax, in record order.
+     */
+    double[] rate(UsageRecords records);
+
+    /**
+     * Rate usage records in parallel and total the charges of each department, taxes included.
+     *
+     * @param records usage records.
+     * @return total charge by department id.
+     */
+    Map<Long, Double> rateByDepartment(UsageRecords records);
+
+    /**
+     * Estimate the charges of the instances and volumes of a domain over a period, taxes included.
+     *
+     * Instances are charged the running or stoppage cost of their compute offering for the hours of the period they
+     * exist, by their current state, plus the setup cost when created within the period. Volumes are charged the
+     * monthly cost of their storage offering for the part of the month they exist.
+     *
+     * @param domainId domain id.
+     * @param from start of the period.
+     * @param to end of the period.
+     * @return estimated charge by department id.
+     */
+    Map<Long, Double> estimateByDepartment(Long domainId, ZonedDateTime from, ZonedDateTime to);
+}
@@ -0,0 +1,347 @@
+package ck.panda.service;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ck.panda.domain.entity.ComputeOfferingCost;
+import ck.panda.domain.entity.StorageOfferingCost;
+import ck.panda.domain.entity.TemplateCost;
+import ck.panda.domain.entity.VmInstance;
+import ck.panda.domain.entity.Volume;
+import ck.panda.domain.repository.jpa.ComputeOfferingCostRepository;
+import ck.panda.domain.repository.jpa.MiscellaneousCostRepository;
+import ck.panda.domain.repository.jpa.StorageOfferingCostRepository;
+import ck.panda.domain.repository.jpa.TaxRepository;
+import ck.panda.domain.repository.jpa.TemplateCostRepository;
+import ck.panda.domain.repository.jpa.VirtualMachineRepository;
+import ck.panda.domain.repository.jpa.VolumeRepository;
+import ck.panda.util.CacheInvalidation;
+import ck.panda.util.PriceCatalog;
+import ck.panda.util.UsageRecords;
+
+/**
+ * Rating service implementation.
+ *
+ * The price catalog is compiled on first use and again after a cost row changes, on this node or another one, or the
+ * catalog gets older than the configured time to live. Records are rated on a fork/join pool, split into ranges of the configured threshold.
+ */
+@Service
+public class RatingServiceImpl implements RatingService {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RatingServiceImpl.class);
+
+    /** Milliseconds per hour. */
+    private static final double HOUR = 3600000d;
+
+    /** Bytes per GB. */
+    private static final double GB = 1024d * 1024d * 1024d;
+
+    /** Compute offering cost repository reference. */
+    @Autowired
+    private ComputeOfferingCostRepository computeOfferingCostRepo;
+
+    /** Storage offering cost repository reference. */
+    @Autowired
+    private StorageOfferingCostRepository storageOfferingCostRepo;
+
+    /** Template cost repository reference. */
+    @Autowired
+    private TemplateCostRepository templateCostRepo;
+
+    /** Miscellaneous cost repository reference. */
+    @Autowired
+    private MiscellaneousCostRepository miscellaneousCostRepo;
+
+    /** Tax repository reference. */
+    @Autowired
+    private TaxRepository taxRepo;
+
+    /** Virtual machine repository reference. */
+    @Autowired
+    private VirtualMachineRepository virtualMachineRepo;
+
+    /** Volume repository reference. */
+    @Autowired
+    private VolumeRepository volumeRepo;
+
+    /** Cache invalidation across the nodes. */
+    @Autowired
+    private CacheInvalidation cacheInvalidation;
+
+    /** Number of rating threads, 0 for one per processor. */
+    @Value(value = "${rating.parallelism:0}")
+    private Integer parallelism;
+
+    /** Number of records rated by one task without splitting. */
+    @Value(value = "${rating.threshold:10000}")
+    private Integer threshold;
+
+    /** Time to live of the price catalog in milliseconds. */
+    @Value(value = "${rating.catalogTtl:300000}")
+    private Long catalogTtl;
+
+    /** Pool running the rating tasks. */
+    private ForkJoinPool pool;
+
+    /** Number of cost row changes, compared with the change count the catalog was compiled at. */
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /** Catalog version counter. */
+    private final AtomicLong versionCount = new AtomicLong();
+
+    /** Current price catalog, null before the first compile. */
+    private volatile PriceCatalog catalog;
+
+    /** Change count the current catalog was compiled at. */
+    private volatile long catalogChangeCount = -1;
+
+    /** Time in milliseconds the current catalog was compiled at. */
+    private volatile long catalogCompiledAt;
+
+    /**
+     * Create the rating pool, and drop the catalog when a cost row changes on another node.
+     */
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        cacheInvalidation.addListener(CATALOG_CACHE, this::invalidateCatalog);
+    }
+
+    /**
+     * Stop the rating pool.
+     */
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public PriceCatalog getCatalog() {
+        PriceCatalog current = catalog;
+        if (isCurrent(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = catalog;
+            if (!isCurrent(current)) {
+                long changes = changeCount.get();
+                current = compile();
+                catalogChangeCount = changes;
+                catalogCompiledAt = System.currentTimeMillis();
+                catalog = current;
+            }
+            return current;
+        }
+    }
+
+    @Override
+    public void invalidateCatalog() {
+        changeCount.incrementAndGet();
+    }
+
+    @Override
+    public double[] rate(UsageRecords records) {
+        return rate(getCatalog(), records);
+    }
+
+    @Override
+    public Map<Long, Double> rateByDepartment(UsageRecords records) {
+        PriceCatalog current = getCatalog();
+        double[] charges = rate(current, records);
+        Map<Long, Double> totals = new HashMap<Long, Double>();
+        for (int index = 0; index < charges.length; index++) {
+            totals.merge(records.getDepartmentId(index), charges[index], Double::sum);
+        }
+        for (Map.Entry<Long, Double> total : totals.entrySet()) {
+            total.setValue(current.withTax(total.getValue()));
+        }
+        return totals;
+    }
+
+    @Override
+    public Map<Long, Double> estimateByDepartment(Long domainId, ZonedDateTime from, ZonedDateTime to) {
+        List<VmInstance> instances = virtualMachineRepo.findAllByDomainAndExceptInStatus(domainId,
+                Arrays.asList(VmInstance.Status.EXPUNGING, VmInstance.Status.DESTROYED));
+        List<Volume> volumes = volumeRepo.findAllByDomainAndIsActive(domainId, true);
+        UsageRecords records = new UsageRecords(instances.size() * 2 + volumes.size());
+        double monthHours = 24d * from.toLocalDate().lengthOfMonth();
+        for (VmInstance instance : instances) {
+            if (instance.getComputeOfferingId() == null) {
+                continue;
+            }
+            double hours = hours(instance.getCreatedDateTime(), from, to);
+            if (hours <= 0) {
+                continue;
+            }
+            long departmentId = id(instance.getDepartmentId());
+            long zoneId = id(instance.getZoneId());
+            records.addCompute(departmentId, zoneId, instance.getComputeOfferingId(),
+                    instance.getStatus() == VmInstance.Status.RUNNING, hours, number(instance.getCpuCore()),
+                    number(instance.getMemory()), number(instance.getCpuSpeed()));
+            if (instance.getCreatedDateTime() != null && !instance.getCreatedDateTime().isBefore(from)) {
+                records.addSetup(departmentId, zoneId, instance.getComputeOfferingId(), 1);
+            }
+        }
+        for (Volume volume : volumes) {
+            if (volume.getStorageOfferingId() == null) {
+                continue;
+            }
+            double hours = hours(volume.getCreatedDateTime(), from, to);
+            if (hours > 0) {
+                records.addStorage(id(volume.getDepartmentId()), id(volume.getZoneId()), volume.getStorageOfferingId(),
+                        hours / monthHours, volume.getDiskSize() != null ? volume.getDiskSize() / GB : 0);
+            }
+        }
+        return rateByDepartment(records);
+    }
+
+    /**
+     * Get the hours of a period an entity exists.
+     *
+     * @param created creation date and time of the entity, null if unknown
+     * @param from start of the period
+     * @param to end of the period
+     * @return hours from the later of the creation and the period start to the period end
+     */
+    private static double hours(ZonedDateTime created, ZonedDateTime from, ZonedDateTime to) {
+        ZonedDateTime start = created != null && created.isAfter(from) ? created : from;
+        return Duration.between(start, to).toMillis() / HOUR;
+    }
+
+    /**
+     * Get an id, 0 when not set.
+     *
+     * @param id id
+     * @return id, 0 if null
+     */
+    private static long id(Long id) {
+        return id != null ? id : 0L;
+    }
+
+    /**
+     * Get a number, 0 when not set.
+     *
+     * @param value number
+     * @return number, 0 if null
+     */
+    private static int number(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Rate records on the rating pool.
+     *
+     * @param current price catalog
+     * @param records records to rate
+     * @return charge of each record without tax
+     */
+    private double[] rate(PriceCatalog current, UsageRecords records) {
+        double[] charges = new double[records.size()];
+        if (charges.length > 0) {
+            pool.invoke(new RateTask(current, records, charges, 0, charges.length, Math.max(1, threshold)));
+        }
+        return charges;
+    }
+
+    /**
+     * Check whether a catalog is compiled after the last cost row change and within its time to live.
+     *
+     * @param current catalog to check
+     * @return true if the catalog can be used
+     */
+    private boolean isCurrent(PriceCatalog current) {
+        return current != null && catalogChangeCount == changeCount.get()
+                && System.currentTimeMillis() - catalogCompiledAt < catalogTtl;
+    }
+
+    /**
+     * Compile a price catalog from the cost tables.
+     *
+     * @return price catalog
+     */
+    private PriceCatalog compile() {
+        List<ComputeOfferingCost> computeCosts = new ArrayList<ComputeOfferingCost>();
+        computeOfferingCostRepo.findAll().forEach(computeCosts::add);
+        List<StorageOfferingCost> storageCosts = new ArrayList<StorageOfferingCost>();
+        storageOfferingCostRepo.findAll().forEach(storageCosts::add);
+        List<TemplateCost> templateCosts = new ArrayList<TemplateCost>();
+        templateCostRepo.findAll().forEach(templateCosts::add);
+        PriceCatalog compiled = new PriceCatalog(versionCount.incrementAndGet(), computeCosts, storageCosts,
+                templateCosts, miscellaneousCostRepo.findAllByIsActive(true), taxRepo.findAllByIsActive(true));
+        LOGGER.debug("Price catalog version " + compiled.getVersion() + " compiled from " + computeCosts.size()
+                + " compute, " + storageCosts.size() + " storage and " + templateCosts.size() + " template costs");
+        return compiled;
+    }
+
+    /**
+     * Rates a range of records, splitting it in halves while it is larger than the threshold.
+     */
+    @SuppressWarnings("serial")
+    private static final class RateTask extends RecursiveAction {
+
+        /** Price catalog. */
+        private final PriceCatalog catalog;
+
+        /** Records to rate. */
+        private final UsageRecords records;
+
+        /** Charges by record index. */
+        private final double[] charges;
+
+        /** First record index, inclusive. */
+        private final int from;
+
+        /** Last record index, exclusive. */
+        private final int to;
+
+        /** Number of records rated without splitting. */
+        private final int threshold;
+
+        /**
+         * Create a rating task.
+         *
+         * @param catalog price catalog
+         * @param records records to rate
+         * @param charges charges by record index
+         * @param from first record index, inclusive
+         * @param to last record index, exclusive
+         * @param threshold number of records rated without splitting
+         */
+        RateTask(PriceCatalog catalog, UsageRecords records, double[] charges, int from, int to, int threshold) {
+            this.catalog = catalog;
+            this.records = records;
+            this.charges = charges;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int index = from; index < to; index++) {
+                    charges[index] = records.rate(catalog, index);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RateTask(catalog, records, charges, from, middle, threshold),
+                        new RateTask(catalog, records, charges, middle, to, threshold));
+            }
+        }
+    }
+}
@@ -60,6 +60,26 @@ public interface ResourceLimitDepartmentService extends CRUDService<ResourceLimi
     ResourceLimitDepartment findByDepartmentAndResourceType(Long departmentId,
             ResourceLimitDepartment.ResourceType resourceType, Boolean isActive);
 
+    /**
+     * Add to the used limit of a department resource in the database.
+     *
+     * @param departmentId department id
+     * @param resourceType resource type
+     * @param count count to add
+     * @return number of resource limits updated
+     */
+    int addUsedLimit(Long departmentId, ResourceLimitDepartment.ResourceType resourceType, Long count);
+
+    /**
+     * Subtract from the used limit of a department resource in the database, not going below zero.
+     *
+     * @param departmentId department id
+     * @param resourceType resource type
+     * @param count count to subtract
+     * @return number of resource limits updated
+     */
+    int subtractUsedLimit(Long departmentId, ResourceLimitDepartment.ResourceType resourceType, Long count);
+
     /**
      * Get resource limits of department.
      *
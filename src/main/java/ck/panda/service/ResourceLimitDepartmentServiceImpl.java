@@ -334,6 +334,16 @@ public class ResourceLimitDepartmentServiceImpl implements ResourceLimitDepartme
         return resourceLimitDepartmentRepo.findByDepartmentAndResourceType(departmentId, resourceType, isActive);
     }
 
+    @Override
+    public int addUsedLimit(Long departmentId, ResourceLimitDepartment.ResourceType resourceType, Long count) {
+        return resourceLimitDepartmentRepo.addUsedLimit(departmentId, resourceType, count, true);
+    }
+
+    @Override
+    public int subtractUsedLimit(Long departmentId, ResourceLimitDepartment.ResourceType resourceType, Long count) {
+        return resourceLimitDepartmentRepo.subtractUsedLimit(departmentId, resourceType, count, true);
+    }
+
     @Override
     public HashMap<String, String> getResourceLimitsOfDepartment(Long domainId) {
         HashMap<String, String> resourceTypeMap = convertEntityService.getResourceTypeValue();
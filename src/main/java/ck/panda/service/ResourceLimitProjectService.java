@@ -72,6 +72,26 @@ public interface ResourceLimitProjectService extends CRUDService<ResourceLimitPr
     ResourceLimitProject findByProjectAndResourceType(Long projectId,
             ResourceLimitProject.ResourceType resourceType, Boolean isActive) throws Exception;
 
+    /**
+     * Add to the used limit of a project resource in the database.
+     *
+     * @param projectId project id
+     * @param resourceType resource type
+     * @param count count to add
+     * @return number of resource limits updated
+     */
+    int addUsedLimit(Long projectId, ResourceLimitProject.ResourceType resourceType, Long count);
+
+    /**
+     * Subtract from the used limit of a project resource in the database, not going below zero.
+     *
+     * @param projectId project id
+     * @param resourceType resource type
+     * @param count count to subtract
+     * @return number of resource limits updated
+     */
+    int subtractUsedLimit(Long projectId, ResourceLimitProject.ResourceType resourceType, Long count);
+
     void deleteResourceLimitByProject(Long projectId);
 
     /**
@@ -389,6 +389,16 @@ public class ResourceLimitProjectServiceImpl implements ResourceLimitProjectServ
         return resourceLimitProjectRepo.findByProjectAndResourceType(projectId, resourceType, isActive);
     }
 
+    @Override
+    public int addUsedLimit(Long projectId, ResourceType resourceType, Long count) {
+        return resourceLimitProjectRepo.addUsedLimit(projectId, resourceType, count, true);
+    }
+
+    @Override
+    public int subtractUsedLimit(Long projectId, ResourceType resourceType, Long count) {
+        return resourceLimitProjectRepo.subtractUsedLimit(projectId, resourceType, count, true);
+    }
+
     @Override
     public ResourceLimitProject findResourceByProjectAndResourceType(Long projectId, ResourceType resourceType,
             Boolean isActive) throws Exception {
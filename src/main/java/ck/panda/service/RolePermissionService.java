@@ -1,9 +1,19 @@
 package ck.panda.service;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -12,12 +22,18 @@ import ck.panda.domain.entity.Role;
 import ck.panda.domain.entity.User;
 import ck.panda.domain.repository.jpa.RoleRepository;
 import ck.panda.domain.repository.jpa.UserRepository;
+import ck.panda.util.CacheInvalidation;
 import ck.panda.util.TokenDetails;
+import ck.panda.util.infrastructure.security.TokenPrincipal;
 
 /**
  * A role permission implementation that uses a Map to check whether a domain Object and access level exists for a
  * particular user.
  *
+ * Compiled role permissions and user suspended states are cached for a short time to live. A load only stores its
+ * value when no eviction ran since it started, so a value read before a change is never cached after the eviction
+ * of that change. An eviction is sent to the other backend nodes through the cache invalidation, and the time to live
+ * bounds a change whose invalidation was lost.
  */
 @Component
 public class RolePermissionService implements PermissionEvaluator {
@@ -37,6 +53,16 @@ public class RolePermissionService implements PermissionEvaluator {
     @Autowired
     private TokenDetails tokenDetails;
 
+    /** Cache invalidation name of the role permissions. */
+    private static final String ROLES_CACHE = "permission.roles";
+
+    /** Cache invalidation name of the user suspended states. */
+    private static final String USERS_CACHE = "permission.users";
+
+    /** Cache invalidation across the backend nodes. */
+    @Autowired
+    private CacheInvalidation cacheInvalidation;
+
     /** Role name constant for token details. */
     public static final String ROLE_NAME = "rolename";
 
@@ -46,6 +72,35 @@ public class RolePermissionService implements PermissionEvaluator {
     /** Id constant for token details. */
     public static final String ID = "id";
 
+    /** Time in milliseconds a cached permission set or suspended state is used. */
+    @Value(value = "${permission.cacheTtl:60000}")
+    private Long cacheTtl;
+
+    /** Compiled permissions by role name and department id. */
+    private final ConcurrentMap<String, Cached<CompiledPermissions>> rolePermissions =
+            new ConcurrentHashMap<String, Cached<CompiledPermissions>>();
+
+    /** Suspended state by user id. */
+    private final ConcurrentMap<Long, Cached<Boolean>> suspendedUsers = new ConcurrentHashMap<Long, Cached<Boolean>>();
+
+    /** Eviction count, read before a load to detect an eviction that ran during the load. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Drop the caches of this node when another node evicts them.
+     */
+    @PostConstruct
+    public void init() {
+        cacheInvalidation.addListener(ROLES_CACHE, () -> {
+            evictions.incrementAndGet();
+            rolePermissions.clear();
+        });
+        cacheInvalidation.addListener(USERS_CACHE, () -> {
+            evictions.incrementAndGet();
+            suspendedUsers.clear();
+        });
+    }
+
     @Override
     public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
         try {
@@ -59,21 +114,16 @@ public class RolePermissionService implements PermissionEvaluator {
                 }
             }
 
-            //TODO : We have to remove the token details from here
-            User user = userRepository.findOne(Long.parseLong(tokenDetails.getTokenDetails(ID)));
-            Role role = roleRepository.findWithPermissionsByNameDepartmentAndIsActive(
-                    tokenDetails.getTokenDetails(ROLE_NAME),
-                    Long.parseLong(tokenDetails.getTokenDetails(DEPARTMENT_ID)), true);
-            for (int i = 0; i < role.getPermissionList().size(); i++) {
-                if(user.getStatus() == User.Status.SUSPENDED
-                        && role.getPermissionList().get(i).getModule() == Permission.Module.BILLING
-                        && role.getPermissionList().get(i).getActionKey().equals(permission.toString())) {
-                        return true;
-                }
-                else if(user.getStatus() != User.Status.SUSPENDED && role.getPermissionList().get(i).getActionKey().equals(permission.toString())) {
-                    return true;
-                }
+            TokenPrincipal principal = tokenDetails.getTokenPrincipal();
+            Boolean suspended = isSuspended(principal.getUserId());
+            CompiledPermissions permissions = getPermissions(principal.getRoleName(), principal.getDepartmentId());
+            if (suspended == null || permissions == null) {
+                return false;
             }
+            if (suspended) {
+                return permissions.billingActionKeys.contains(permission.toString());
+            }
+            return permissions.actionKeys.contains(permission.toString());
         } catch (NumberFormatException e) {
             LOGGER.error("ERROR AT PERMISSION CHECK", e);
         } catch (Exception e) {
@@ -82,9 +132,142 @@ public class RolePermissionService implements PermissionEvaluator {
         return false;
     }
 
+    /**
+     * Drop every compiled role permission set on every node, after a role or permission has changed.
+     */
+    public void evictRoles() {
+        evictions.incrementAndGet();
+        rolePermissions.clear();
+        cacheInvalidation.invalidate(ROLES_CACHE);
+    }
+
+    /**
+     * Drop the cached suspended state of a user, after the user has changed. The other nodes drop every suspended
+     * state.
+     *
+     * @param userId user id
+     */
+    public void evictUser(Long userId) {
+        if (userId != null) {
+            evictions.incrementAndGet();
+            suspendedUsers.remove(userId);
+            cacheInvalidation.invalidate(USERS_CACHE);
+        }
+    }
+
+    /**
+     * Get the suspended state of the user, loading it once.
+     *
+     * @param userId user id
+     * @return true if suspended, null if the user does not exist
+     */
+    private Boolean isSuspended(Long userId) {
+        return get(suspendedUsers, userId, () -> {
+            User user = userRepository.findOne(userId);
+            return user == null ? null : user.getStatus() == User.Status.SUSPENDED;
+        });
+    }
+
+    /**
+     * Get the compiled permissions of the role in the department, loading them once.
+     *
+     * @param roleName role name
+     * @param departmentId department id
+     * @return compiled permissions or null if the role does not exist
+     */
+    private CompiledPermissions getPermissions(String roleName, Long departmentId) {
+        return get(rolePermissions, roleName + "@" + departmentId, () -> {
+            Role role = roleRepository.findWithPermissionsByNameDepartmentAndIsActive(roleName, departmentId, true);
+            return role == null ? null : new CompiledPermissions(role.getPermissionList());
+        });
+    }
+
+    /**
+     * Get a cached value, loading it when missing or expired. The loaded value is stored under the map lock of the
+     * key and only when no eviction ran since the load started, as an eviction removes the key after counting.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param cache cache to read
+     * @param key key of the value
+     * @param loader loads the value, null when it does not exist
+     * @return value or null if it does not exist
+     */
+    private <K, V> V get(ConcurrentMap<K, Cached<V>> cache, K key, Supplier<V> loader) {
+        long now = System.currentTimeMillis();
+        Cached<V> cached = cache.get(key);
+        if (cached != null && now < cached.expiresAt) {
+            return cached.value;
+        }
+        long loadedAfter = evictions.get();
+        V value = loader.get();
+        if (value == null) {
+            cache.remove(key);
+            return null;
+        }
+        Cached<V> loaded = new Cached<V>(value, now + cacheTtl);
+        cache.compute(key, (k, current) -> evictions.get() == loadedAfter ? loaded : current);
+        return value;
+    }
+
     @Override
     public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType,
             Object permission) {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Cached value and its expiry time.
+     *
+     * @param <V> value type
+     */
+    private static final class Cached<V> {
+
+        /** Cached value. */
+        private final V value;
+
+        /** Time in milliseconds after which the value is loaded again. */
+        private final long expiresAt;
+
+        /**
+         * Create a cached value.
+         *
+         * @param value cached value
+         * @param expiresAt expiry time in milliseconds
+         */
+        Cached(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Immutable action keys granted to a role.
+     */
+    private static final class CompiledPermissions {
+
+        /** Every action key of the role. */
+        private final Set<String> actionKeys;
+
+        /** Billing action keys of the role, the only ones a suspended user keeps. */
+        private final Set<String> billingActionKeys;
+
+        /**
+         * Compile the permission list.
+         *
+         * @param permissionList permissions of the role
+         */
+        CompiledPermissions(List<Permission> permissionList) {
+            Set<String> all = new HashSet<String>();
+            Set<String> billing = new HashSet<String>();
+            for (Permission permission : permissionList) {
+                all.add(permission.getActionKey());
+                if (permission.getModule() == Permission.Module.BILLING) {
+                    billing.add(permission.getActionKey());
+                }
+            }
+            this.actionKeys = Collections.unmodifiableSet(all);
+            this.billingActionKeys = Collections.unmodifiableSet(billing);
+        }
+    }
 }
@@ -53,6 +53,10 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private ConvertEntityService convertEntityService;
 
+    /** Role permission evaluator, holding the compiled permissions of every role. */
+    @Autowired
+    private RolePermissionService rolePermissionService;
+
     @Override
     @PreAuthorize("hasPermission(#role.getSyncFlag(), 'CREATE_ROLE')")
     public Role save(Role role, Long id) throws Exception {
@@ -66,7 +70,7 @@ public class RoleServiceImpl implements RoleService {
         if ((convertEntityService.getOwnerById(id).getType()).equals(User.UserType.USER)) {
             role.setDepartmentId(convertEntityService.getOwnerById(id).getDepartmentId());
         }
-        return roleRepo.save(role);
+        return saveAndEvict(role);
     }
 
     @Override
@@ -77,7 +81,7 @@ public class RoleServiceImpl implements RoleService {
         if (errors.hasErrors()) {
             throw new ApplicationException(errors);
         } else {
-            return roleRepo.save(role);
+            return saveAndEvict(role);
         }
     }
 
@@ -91,18 +95,20 @@ public class RoleServiceImpl implements RoleService {
         } else {
             role.setIsActive(false);
             role.setStatus(Status.DISABLED);
-            return roleRepo.save(role);
+            return saveAndEvict(role);
         }
     }
 
     @Override
     public void delete(Role role) throws Exception {
         roleRepo.delete(role);
+        rolePermissionService.evictRoles();
     }
 
     @Override
     public void delete(Long id) throws Exception {
         roleRepo.delete(id);
+        rolePermissionService.evictRoles();
     }
 
     @Override
@@ -185,9 +191,21 @@ public class RoleServiceImpl implements RoleService {
     @Override
     public Role save(Role role) throws Exception {
         if (!role.getSyncFlag()) {
-            return roleRepo.save(role);
+            return saveAndEvict(role);
         }
         return role;
     }
 
+
+    /**
+     * Save the role and drop the compiled role permissions.
+     *
+     * @param role role to save
+     * @return saved role
+     */
+    private Role saveAndEvict(Role role) {
+        Role savedRole = roleRepo.save(role);
+        rolePermissionService.evictRoles();
+        return savedRole;
+    }
 }
@@ -281,11 +281,8 @@ public class SSHKeyServiceImpl implements SSHKeyService {
      */
     private Page<SSHKey> getSSHKeyListByUser(PagingAndSorting pagingAndSorting, Long id) throws  Exception {
         User user = convertEntity.getOwnerById(id);
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = new ArrayList<Project>();
-            for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                allProjectList.add(project);
-            }
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             Page<SSHKey> projectSSHKey = sshkeyRepo.findByProjectDepartmentAndIsActive(allProjectList,
                     user.getDepartmentId(), true, pagingAndSorting.toPageRequest());
             return projectSSHKey;
@@ -455,8 +452,8 @@ public class SSHKeyServiceImpl implements SSHKeyService {
             sshKeys = sshkeyRepo.findDomainBySearchText((convertEntity.getOwnerById(user.getId())
                     .getDomainId()), pagingAndSorting.toPageRequest(), searchText, true);
         } else if (convertEntity.getOwnerById(user.getId()).getType().equals(User.UserType.USER)) {
-            if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            if (!allProjectList.isEmpty()) {
                 Page<SSHKey> projectSSHKey = sshkeyRepo.findByProjectDepartmentAndIsActiveAndSearchText(allProjectList, user.getDepartmentId(),true, pagingAndSorting.toPageRequest(),searchText,user.getDomainId());
                 sshKeys = projectSSHKey;
             } else {
@@ -3,7 +3,6 @@ package ck.panda.service;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -178,24 +177,16 @@ public class SnapshotServiceImpl implements SnapshotService {
         HashMap<String, String> snapshotMap = new HashMap<String, String>();
         snapshotMap.put("listall", "true");
         // 1. Get the list of domains from CS server using CS connector
-        String response = snapshotService.listSnapshots(snapshotMap, "json");
-        JSONArray snapshotListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject("listsnapshotsresponse");
-        if (responseObject.has("snapshot")) {
-            snapshotListJSON = responseObject.getJSONArray("snapshot");
-            // 2. Iterate the json list, convert the single json entity to
-            // domain
-            for (int i = 0, size = snapshotListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to Domain entity and
-                // Add
-                // the converted snapshot entity to list
-                Snapshot snapshot = Snapshot.convert(snapshotListJSON.getJSONObject(i));
-                snapshot.setDomainId(convertEntityService.getDomainId(snapshot.getTransDomainId()));
-                snapshot.setZoneId(convertEntityService.getZoneId(snapshot.getTransZoneId()));
-                snapshot.setVolumeId(convertEntityService.getVolumeId(snapshot.getTransVolumeId()));
-                snapshotList.add(snapshot);
-            }
-        }
+        snapshotService.listSnapshots(snapshotMap, snapshotJson -> {
+            // 2.1 Call convert by passing JSONObject to Domain entity and
+            // Add
+            // the converted snapshot entity to list
+            Snapshot snapshot = Snapshot.convert(snapshotJson);
+            snapshot.setDomainId(convertEntityService.getDomainId(snapshot.getTransDomainId()));
+            snapshot.setZoneId(convertEntityService.getZoneId(snapshot.getTransZoneId()));
+            snapshot.setVolumeId(convertEntityService.getVolumeId(snapshot.getTransVolumeId()));
+            snapshotList.add(snapshot);
+        });
         return snapshotList;
     }
 
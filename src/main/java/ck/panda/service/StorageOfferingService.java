@@ -22,6 +22,15 @@ public interface StorageOfferingService extends CRUDService<StorageOffering> {
      */
     List<StorageOffering> findAllFromCSServer() throws Exception;
 
+    /**
+     * To get a storage offering from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the storage offering.
+     * @return storage offering from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    StorageOffering findFromCSServer(String uuid) throws Exception;
+
     /**
      * To get Uuid list of Storage Offer from cloudstack server.
      *
@@ -216,9 +216,29 @@ public class StorageOfferingServiceImpl implements StorageOfferingService {
 
     @Override
     public List<StorageOffering> findAllFromCSServer() throws Exception {
-        List<StorageOffering> storageOfferingList = new ArrayList<StorageOffering>();
         HashMap<String, String> storageOfferingMap = new HashMap<String, String>();
         storageOfferingMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+        return findAllFromCSServer(storageOfferingMap);
+    }
+
+    @Override
+    public StorageOffering findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> storageOfferingMap = new HashMap<String, String>();
+        storageOfferingMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+        storageOfferingMap.put(CloudStackConstants.CS_ID, uuid);
+        List<StorageOffering> storageOfferingList = findAllFromCSServer(storageOfferingMap);
+        return storageOfferingList.isEmpty() ? null : storageOfferingList.get(0);
+    }
+
+    /**
+     * Get the storage offerings from CS server matching the filter.
+     *
+     * @param storageOfferingMap list filter.
+     * @return storage offering list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<StorageOffering> findAllFromCSServer(HashMap<String, String> storageOfferingMap) throws Exception {
+        List<StorageOffering> storageOfferingList = new ArrayList<StorageOffering>();
         // 1. Get the list of StorageOffering from CS server using CS connector
         config.setServer(1L);
         String response = csStorageService.listStorageOfferings(CloudStackConstants.JSON, storageOfferingMap);
@@ -1,5 +1,7 @@
 package ck.panda.service;
 
+import java.util.Map;
+import org.json.JSONArray;
 import org.springframework.stereotype.Service;
 import ck.panda.domain.entity.Domain;
 import ck.panda.domain.entity.Project;
@@ -143,9 +145,10 @@ public interface SyncService {
     /**
      * Sync with CloudStack server Instance list.
      *
+     * @return nics json by vm uuid from the instance list payload, for {@link #syncNic(Map)}
      * @throws Exception cloudstack unhandled errors
      */
-    void syncInstances() throws Exception;
+    Map<String, JSONArray> syncInstances() throws Exception;
 
     /**
      * Sync with CloudStack server Instance snapshot list.
@@ -230,6 +233,15 @@ public interface SyncService {
      */
     void syncNic() throws ApplicationException, Exception;
 
+    /**
+     * Sync with Cloud Server Nic, using the nics of the instance list payload and listing the others.
+     *
+     * @param instanceNics nics json by vm uuid from {@link #syncInstances()}
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception unhandled errors.
+     */
+    void syncNic(Map<String, JSONArray> instanceNics) throws ApplicationException, Exception;
+
    /**
     *
     * Sync with Cloud Server fire wall rules.
@@ -460,4 +472,67 @@ public interface SyncService {
      * @throws Exception cloudstack unhandled errors.
      */
     void syncPhysicalNetwork() throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single domain from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the domain.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshDomain(String uuid) throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single zone from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the zone.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshZone(String uuid) throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single storage offering from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the storage offering.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshStorageOffering(String uuid) throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single user from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the user.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshUser(String uuid) throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single account from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the account.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshDepartment(String uuid) throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single host from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the host.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshHost(String uuid) throws ApplicationException, Exception;
+
+    /**
+     * Refresh a single pod from CloudStack server by uuid, falling back to the full sync without uuid.
+     *
+     * @param uuid uuid of the pod.
+     * @throws ApplicationException unhandled application errors.
+     * @throws Exception cloudstack unhandled errors.
+     */
+    void refreshPod(String uuid) throws ApplicationException, Exception;
 }
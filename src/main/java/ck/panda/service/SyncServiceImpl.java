@@ -1,12 +1,22 @@
 package ck.panda.service;
 
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +24,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.EventsUtil;
@@ -21,7 +33,6 @@ import ck.panda.constants.PermissionUtil;
 import ck.panda.constants.PingConstants;
 import ck.panda.domain.entity.AffinityGroup;
 import ck.panda.domain.entity.AffinityGroupType;
-import ck.panda.domain.entity.CloudStackConfiguration;
 import ck.panda.domain.entity.Cluster;
 import ck.panda.domain.entity.ComputeOffering;
 import ck.panda.domain.entity.Department;
@@ -70,6 +81,7 @@ import ck.panda.domain.entity.VPNCustomerGateway;
 import ck.panda.domain.repository.jpa.VirtualMachineRepository;
 import ck.panda.rabbitmq.util.ResponseEvent;
 import ck.panda.domain.entity.VmInstance;
+import ck.panda.domain.entity.VmIpaddress;
 import ck.panda.domain.entity.VmSnapshot;
 import ck.panda.domain.entity.Volume;
 import ck.panda.domain.entity.Volume.VolumeType;
@@ -78,14 +90,22 @@ import ck.panda.domain.entity.VpcNetworkAcl;
 import ck.panda.domain.entity.VpcOffering;
 import ck.panda.domain.entity.VpnUser;
 import ck.panda.domain.entity.Zone;
+import ck.panda.util.AsyncJobResultCache;
 import ck.panda.util.CloudStackInstanceService;
 import ck.panda.util.CloudStackResourceCapacity;
 import ck.panda.util.CloudStackResourceLimitService;
+import ck.panda.util.CloudStackClient;
+import ck.panda.util.CloudStackListIncompleteException;
 import ck.panda.util.CloudStackServer;
+import ck.panda.util.ConfigUtil;
+import ck.panda.util.EntityIdCache;
 import ck.panda.util.EncryptionUtil;
 import ck.panda.util.error.Errors;
 import ck.panda.util.error.exception.ApplicationException;
 import ck.panda.util.PingService;
+import ck.panda.util.SyncBatchWriter;
+import ck.panda.util.SyncCounters;
+import ck.panda.util.TaskGraph;
 
 /**
  * We have to sync up with cloudstack server for the following data
@@ -190,6 +210,18 @@ public class SyncServiceImpl implements SyncService {
     @Autowired
     private CloudStackInstanceService cloudStackInstanceService;
 
+    /** Short lived cache of async job results, shared by every async event handler. */
+    @Autowired
+    private AsyncJobResultCache asyncJobResultCache;
+
+    /** Changed, unchanged, inserted and deleted row counts of the sync runs. */
+    @Autowired
+    private SyncCounters syncCounters;
+
+    /** Bulk writer of the rows changed by a sync. */
+    @Autowired
+    private SyncBatchWriter syncBatchWriter;
+
     /**
      * NetworkOfferingService for listing network offers in cloudstack server.
      */
@@ -270,14 +302,25 @@ public class SyncServiceImpl implements SyncService {
     @Autowired
     private CloudStackServer server;
 
-    /** CloudStack configuration . */
+    /** Cached cloudstack configuration and client handles. */
+    @Autowired
+    private ConfigUtil configUtil;
+
+    /** Cache resolving CloudStack uuids to ids, preloaded for each sync pass. */
     @Autowired
-    private CloudStackConfigurationService cloudConfigService;
+    private EntityIdCache entityIdCache;
 
     /** Secret key value is append. */
     @Value(value = "${aes.salt.secretKey}")
     private String secretKey;
 
+    /** Number of sync steps running in parallel. */
+    @Value(value = "${sync.threads:4}")
+    private Integer syncThreads;
+
+    /** Bounded pool running the sync steps. */
+    private ExecutorService syncExecutor;
+
     /** Autowired permission service. */
     @Autowired
     private PermissionService permissionService;
@@ -561,20 +604,41 @@ public class SyncServiceImpl implements SyncService {
 
     @Override
     public void init(CloudStackServer server) throws Exception {
-        CloudStackConfiguration cloudConfig = cloudConfigService.find(1L);
         this.server = server;
-        this.server.setServer(cloudConfig.getApiURL(), cloudConfig.getSecretKey(), cloudConfig.getApiKey());
+        this.server.use(configUtil.getAdminClient());
+    }
+
+    /**
+     * Create the bounded pool which runs the sync steps.
+     */
+    @PostConstruct
+    public void initSyncExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        syncExecutor = Executors.newFixedThreadPool(syncThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sync-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop the sync pool.
+     */
+    @PreDestroy
+    public void destroySyncExecutor() {
+        syncExecutor.shutdownNow();
     }
 
     /**
      * Sync call for synchronization list of Region, domain, SSH key, region. template, hypervisor
      *
+     * Region is synced first as a connection check. The remaining steps run in parallel on the sync pool as soon as
+     * the entities they reference are synced.
+     *
      * @throws Exception unhandled errors.
      */
     @Override
     public void sync() throws Exception {
-
-
         try {
             // 1. Sync manual sync items
             this.syncManualImportData();
@@ -592,294 +656,107 @@ public class SyncServiceImpl implements SyncService {
                 throw new ApplicationException(errors);
             }
         }
+        // 3. Sync every other entity after the entities it refers to.
+        CloudStackClient client = server.getCurrentClient();
+        // Nics json by vm uuid from the instance sync, handed to the nic sync.
+        AtomicReference<Map<String, JSONArray>> instanceNics =
+                new AtomicReference<Map<String, JSONArray>>(Collections.<String, JSONArray>emptyMap());
+        TaskGraph graph = new TaskGraph()
+            .add("Zone", bind(client, this::syncZone))
+            .add("Domain", bind(client, this::syncDomain))
+            .add("Pod", bind(client, this::syncPod), "Zone")
+            .add("Cluster", bind(client, this::syncCluster), "Pod")
+            .add("Host", bind(client, this::syncHost), "Cluster")
+            .add("Hypervisor", bind(client, this::syncHypervisor), "Zone")
+            .add("Department", bind(client, this::syncDepartment), "Domain")
+            .add("User", bind(client, this::syncUser), "Department")
+            .add("Project", bind(client, this::syncProject), "User")
+            .add("OsCategory", bind(client, this::syncOsCategory))
+            .add("OsTypes", bind(client, this::syncOsTypes), "OsCategory")
+            .add("PhysicalNetwork", bind(client, this::syncPhysicalNetwork), "Zone", "Domain")
+            .add("NetworkServiceProvider", bind(client, this::syncNetworkServiceProvider), "PhysicalNetwork")
+            .add("SupportedNetwork", bind(client, this::syncSupportedNetwork), "NetworkServiceProvider")
+            .add("NetworkOffering", bind(client, this::syncNetworkOffering), "SupportedNetwork")
+            .add("ComputeOffering", bind(client, this::syncComputeOffering), "Domain")
+            .add("StorageOffering", bind(client, this::syncStorageOffering), "Domain")
+            .add("Iso", bind(client, this::syncIso), "Zone", "OsTypes", "Project")
+            .add("VpcOffering", bind(client, this::syncVpcOffering), "SupportedNetwork")
+            .add("Vpc", bind(client, this::syncVpc), "VpcOffering", "Project")
+            .add("VpcAcl", bind(client, this::syncVpcAcl), "Vpc")
+            .add("Network", bind(client, this::syncNetwork), "NetworkOffering", "VpcAcl")
+            .add("Templates", bind(client, this::syncTemplates), "Zone", "Hypervisor", "OsTypes", "Project")
+            .add("SSHKey", bind(client, this::syncSSHKey), "Project")
+            .add("ResourceLimit", bind(client, this::syncResourceLimit), "Project")
+            .add("Instances", bind(client, () -> instanceNics.set(syncInstances())), "Host", "Network", "ComputeOffering", "Iso",
+                    "Templates", "SSHKey", "ResourceLimit")
+            .add("Volume", bind(client, this::syncVolume), "Instances", "StorageOffering")
+            .add("VmSnapshots", bind(client, this::syncVmSnapshots), "Instances")
+            .add("Snapshot", bind(client, this::syncSnapshot), "Volume")
+            .add("Nic", bind(client, () -> syncNic(instanceNics.get())), "Instances")
+            .add("IpAddress", bind(client, this::syncIpAddress), "Nic")
+            .add("EgressFirewallRules", bind(client, this::syncEgressFirewallRules), "Network")
+            .add("IngressFirewallRules", bind(client, this::syncIngressFirewallRules), "IpAddress")
+            .add("PortForwarding", bind(client, this::syncPortForwarding), "IpAddress")
+            .add("SnapshotPolicy", bind(client, this::syncSnapshotPolicy), "Volume")
+            .add("LoadBalancer", bind(client, this::syncLoadBalancer), "IpAddress")
+            .add("LoadBalancerStickyPolicy", bind(client, this::syncLoadBalancerStickyPolicy), "LoadBalancer")
+            .add("UpdateUserRole", bind(client, this::syncUpdateUserRole), "Project")
+            .add("VpnUser", bind(client, this::syncVpnUser), "IpAddress")
+            .add("EventList", bind(client, this::syncEventList))
+            .add("AffinityGroupType", bind(client, this::syncAffinityGroupType))
+            .add("AffinityGroup", bind(client, this::syncAffinityGroup), "AffinityGroupType", "Instances")
+            .add("VpcNetworkAcl", bind(client, this::syncVpcNetworkAcl), "Network")
+            .add("SecondaryStorage", bind(client, this::syncSecondaryStorage), "Zone")
+            .add("PrimaryStorage", bind(client, this::syncPrimaryStorage), "Host")
+            .add("VPNCustomerGateway", bind(client, this::syncVPNCustomerGateway), "Project")
+            .add("GeneralConfiguration", bind(client, this::syncGeneralConfiguration));
+        long start = System.currentTimeMillis();
+        entityIdCache.beginPass();
         try {
-            // 3. Sync Zone entity
-            this.syncZone();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Zone", e);
-        }
-        try {
-            // 4. Sync Domain entity
-            this.syncDomain();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Domaim", e);
-        }
-        try {
-            // 5. Sync Pod entity
-            this.syncPod();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Pod", e);
-        }
-        try {
-            // 6. Sync Cluster entity
-            this.syncCluster();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch cluster", e);
-        }
-        try {
-            // 7. Sync Host entity
-            this.syncHost();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Host", e);
-        }
-        try {
-            // 8. Sync Hypervisor entity
-            this.syncHypervisor();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Hypervisor", e);
-        }
-        try {
-            // 9. Sync Department entity
-            this.syncDepartment();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Department", e);
-        }
-        try {
-            // 10. Sync User entity
-            this.syncUser();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch User", e);
-        }
-        try {
-            // 11. Sync Project entity
-            this.syncProject();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT sync Project", e);
-        }
-        try {
-            // 12. Sync OSCategory entity
-            this.syncOsCategory();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch OS Category", e);
-        }
-        try {
-            // 13. Sync OSType entity.
-            this.syncOsTypes();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch OS Types", e);
-        }
-        try {
-            // 14. Sync physical network entity
-            this.syncPhysicalNetwork();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC offering", e);
-        }
-        try {
-            // 15. Sync network service provider entity
-            this.syncNetworkServiceProvider();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC offering", e);
-        }
-        try {
-            // 16. Sync supported network entity
-            this.syncSupportedNetwork();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC offering", e);
-        }
-        try {
-            // 17. Sync Network offering entity
-            this.syncNetworkOffering();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch NetworkOffering", e);
-        }
-        try {
-            // 18. Sync Compute Offering entity
-            this.syncComputeOffering();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Compute Offering", e);
-        }
-        try {
-            // 19. Sync Storage offering entity
-            this.syncStorageOffering();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Storage Offering", e);
-        }
-        try {
-            // 20. Sync Iso entity
-            this.syncIso();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Iso", e);
-        }
-        try {
-            // 21. Sync VPC offering entity
-            this.syncVpcOffering();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC offering", e);
-        }
-        try {
-            // 22. Sync VPC entity
-            this.syncVpc();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC", e);
-        }
-        try {
-            // 23. Sync VPC ACL entity
-            this.syncVpcAcl();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC ACL", e);
-        }
-        try {
-            // 24. Sync Network entity
-            this.syncNetwork();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Network ", e);
-        }
-        try {
-            // 25. Sync Templates entity
-            this.syncTemplates();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Templates", e);
-        }
-        try {
-            // 26. Sync SSHKey entity
-            this.syncSSHKey();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch SSH Key", e);
-        }
-        try {
-            // 27. Sync ResourceLimit entity
-            this.syncResourceLimit();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT sync ResourceLimit Domain", e);
-        }
-        try {
-            // 28. Sync Instance entity
-            this.syncInstances();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Instance", e);
-        }
-        try {
-            // 29. Sync Volume entity
-            this.syncVolume();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Volume", e);
-        }
-        try {
-            // 30. Sync VmSnapshot entity
-            this.syncVmSnapshots();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch vm snapshots", e);
-        }
-        try {
-            // 31. Sync Snapshot entity
-            this.syncSnapshot();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Snapshot", e);
-        }
-        try {
-            // 32. Sync Nic entity
-            this.syncNic();
-            LOGGER.debug("nic");
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Nic", e);
-        }
-        try {
-            // 33. Sync IP address entity
-            this.syncIpAddress();
-            LOGGER.debug("ipAddress");
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Ip Address", e);
-        }
-        try {
-            // 34. Sync Egress firewall rules entity
-            this.syncEgressFirewallRules();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch EgressRule", e);
-        }
-        try {
-            // 35. Sync Ingress firewall rules entity
-            this.syncIngressFirewallRules();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch EgressRule", e);
-        }
-        try {
-            // 36. Sync Port Forwarding entity
-            this.syncPortForwarding();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch PortForwarding", e);
-        }
-        try {
-            // 37. Sync SnapshotPolicy entity
-            this.syncSnapshotPolicy();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch SnapshotPolicy", e);
-        }
-        try {
-            // 38. Sync Load Balancer entity
-            this.syncLoadBalancer();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch LoadBalancer", e);
+            graph.execute(new DelegatingSecurityContextExecutor(syncExecutor, SecurityContextHolder.getContext()));
+        } finally {
+            entityIdCache.endPass();
         }
+        LOGGER.info("Sync finished in " + (System.currentTimeMillis() - start) + " ms, step timings "
+                + graph.getTimings() + ", failed steps " + graph.getFailures());
+    }
 
-       try {
-            // 39. Sync Load Balancer entity
-            this.syncLoadBalancerStickyPolicy();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch LoadBalancer", e);
-        }
-        try {
-            // 40. Sync for update role in user entity
-            this.syncUpdateUserRole();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT Sync for update role in user entity", e);
-        }
-        try {
-            // 41. Sync VPN user entity
-            this.syncVpnUser();
-            LOGGER.debug("ipAddress");
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Ip Address", e);
-        }
-        try {
-            // 42. Sync Load Balancer entity
-            this.syncEventList();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Event List", e);
-        }
-        try {
-            // 43. Sync affinity group type
-            this.syncAffinityGroupType();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Affinity group type", e);
-        }
-        try {
-            // 44. Sync affinity group
-            this.syncAffinityGroup();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Affinity group", e);
-        }
-        try {
-            // 45. Sync VPC ACL entity
-            this.syncVpcNetworkAcl();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPC NETWORK ACL", e);
-        }
-        try {
-            // 46. Sync Secondary storage entity
-            this.syncSecondaryStorage();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Secondary storage", e);
-        }
-        try {
-            // 47. Sync Primary storage entity
-            this. syncPrimaryStorage();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch Primary storage", e);
-        }
-        try {
-            // 48. Sync VPN Customer gateway entity
-            this. syncVPNCustomerGateway();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch VPN customer gateway", e);
-        }
+    /**
+     * Run the sync step with the caller's CloudStack client handle bound to the worker thread.
+     *
+     * @param client client handle of the thread which started the sync
+     * @param step sync step
+     * @return task for the sync graph
+     */
+    private TaskGraph.Task bind(CloudStackClient client, TaskGraph.Task step) {
+        return () -> {
+            server.use(client);
+            try {
+                step.run();
+            } finally {
+                server.release();
+            }
+        };
+    }
 
+    /**
+     * Stream a listing of the CS server, telling whether it listed every item. A listing which changed while paging
+     * may have skipped items, so the caller keeps the application objects it did not see instead of deleting them.
+     *
+     * @param resource resource name, for the log
+     * @param listing listing to run
+     * @return true when every item was listed
+     * @throws Exception if the listing fails
+     */
+    private boolean streamComplete(String resource, TaskGraph.Task listing) throws Exception {
         try {
-            // 49. Sync general configuration
-            this.syncGeneralConfiguration();
-        } catch (Exception e) {
-            LOGGER.error("ERROR AT synch General Configuration", e);
+            listing.run();
+            return true;
+        } catch (CloudStackListIncompleteException e) {
+            LOGGER.warn("Incomplete " + resource + " listing, no " + resource + " deleted until the next sync: "
+                    + e.getMessage());
+            return false;
         }
-
     }
 
     /**
@@ -905,12 +782,8 @@ public class SyncServiceImpl implements SyncService {
             // 3.1 Find the corresponding CS server domain object by finding it
             // in a hash using uuid
             if (csDomainMap.containsKey(domain.getUuid())) {
-                Domain csDomain = csDomainMap.get(domain.getUuid());
-
-                domain.setCompanyNameAbbreviation(csDomain.getCompanyNameAbbreviation());
-
                 // 3.2 If found, update the domain object in app db
-                domainService.update(domain);
+                updateDomain(domain, csDomainMap.get(domain.getUuid()));
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // domain which is not added in the app
@@ -954,12 +827,8 @@ public class SyncServiceImpl implements SyncService {
             // 3.1 Find the corresponding CS server zone object by finding it in
             // a hash using uuid
             if (csZoneMap.containsKey(zone.getUuid())) {
-                Zone csZone = csZoneMap.get(zone.getUuid());
-
-                zone.setName(csZone.getName());
-
                 // 3.2 If found, update the zone object in app db
-                zoneService.update(zone);
+                updateZone(zone, csZoneMap.get(zone.getUuid()));
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // zone which is not added in the app
@@ -1201,21 +1070,8 @@ public class SyncServiceImpl implements SyncService {
             // 3.1 Find the corresponding CS server osType object by finding it
             // in a hash using uuid
             if (csStorageOfferingMap.containsKey(storageOffering.getUuid())) {
-                StorageOffering csStorageOffering = csStorageOfferingMap.get(storageOffering.getUuid());
-                if (csStorageOffering.getTransDomainId() != null && convertEntityService.getDomain(csStorageOffering.getTransDomainId()) != null){
-                    storageOffering.setDomainId(convertEntityService.getDomain(csStorageOffering.getTransDomainId()).getId());
-                }
-                storageOffering.setStorageTags(csStorageOffering.getStorageTags());
-                storageOffering.setDiskBytesReadRate(csStorageOffering.getDiskBytesReadRate());
-                storageOffering.setDiskBytesWriteRate(csStorageOffering.getDiskBytesWriteRate());
-                storageOffering.setDiskIopsReadRate(csStorageOffering.getDiskIopsReadRate());
-                storageOffering.setDiskIopsWriteRate(csStorageOffering.getDiskIopsWriteRate());
-                storageOffering.setDiskMaxIops(csStorageOffering.getDiskMaxIops());
-                storageOffering.setDiskMinIops(csStorageOffering.getDiskMinIops());
-                storageOffering.setQosType(csStorageOffering.getQosType());
-                storageOffering.setProvisioningType(csStorageOffering.getProvisioningType());
                 // 3.2 If found, update the osType object in app db
-                storageService.update(storageOffering);
+                updateStorageOffering(storageOffering, csStorageOfferingMap.get(storageOffering.getUuid()));
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // osType which is not added in the app
@@ -1262,16 +1118,8 @@ public class SyncServiceImpl implements SyncService {
             // 3.1 Find the corresponding CS server user object by finding it in
             // a hash using uuid
             if (csUserMap.containsKey(user.getUuid())) {
-                User csUser = csUserMap.get(user.getUuid());
-
-                user.setFirstName(csUser.getFirstName());
-                user.setLastName(csUser.getLastName());
-                user.setEmail(csUser.getEmail());
-                user.setUserName(csUser.getUserName());
-                user.setIsActive(true);
-                user.setStatus(csUser.getStatus());
                 // 3.2 If found, update the user object in app db
-                userService.update(user);
+                updateUser(user, csUserMap.get(user.getUuid()));
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // user which is not added in the app
@@ -1486,22 +1334,24 @@ public class SyncServiceImpl implements SyncService {
     @Override
     public void syncTemplates() throws ApplicationException, Exception {
 
-        // 1. Get all the template objects from CS server as hash
-        List<Template> csTemplatesList = templateService.findAllFromCSServer();
-        HashMap<String, Template> csTemplateMap = (HashMap<String, Template>) Template.convert(csTemplatesList);
-
-        // 2. Get all the template objects from application
+        // 1. Get all the template objects from application as hash
         List<Template> appTemplateList = templateService.findAll();
-
-        // 3. Iterate application template list
-        int activeTemplateCount = 0;
+        Map<String, Template> appTemplateMap = new HashMap<String, Template>();
         for (Template template : appTemplateList) {
-            LOGGER.debug("Total rows updated : " + (appTemplateList.size()));
-            // 3.1 Find the corresponding CS server template object by finding
-            // it in a hash using uuid
-            if (csTemplateMap.containsKey(template.getUuid())) {
-                Template csTemplate = csTemplateMap.get(template.getUuid());
+            appTemplateMap.put(template.getUuid(), template);
+        }
+        Set<String> csTemplateUuids = new HashSet<String>();
+        AtomicInteger activeTemplateCount = new AtomicInteger();
+        AtomicInteger addedTemplateCount = new AtomicInteger();
 
+        // 2. Stream the template objects from CS server, matching each one as it is read
+        boolean complete = streamComplete("template", () -> templateService.findAllFromCSServer(csTemplate -> {
+            if (!csTemplateUuids.add(csTemplate.getUuid())) {
+                return;
+            }
+            // 2.1 Find the corresponding application template object in a hash using uuid
+            Template template = appTemplateMap.get(csTemplate.getUuid());
+            if (template != null) {
                 template.setSyncFlag(false);
                 template.setUuid(csTemplate.getUuid());
                 template.setName(csTemplate.getName());
@@ -1518,34 +1368,33 @@ public class SyncServiceImpl implements SyncService {
                 template.setExtractable(csTemplate.getExtractable());
                 template.setDynamicallyScalable(csTemplate.getDynamicallyScalable());
 
-                // 3.2 If found, update the template object in app db
+                // 2.2 If found, update the template object in app db
                 templateService.update(template);
                 if (template.getIsActive() == true) {
-                    activeTemplateCount++;
+                    activeTemplateCount.incrementAndGet();
                 }
-
-                // 3.3 Remove once updated, so that we can have the list of cs
-                // template which is not added in the app
-                csTemplateMap.remove(template.getUuid());
             } else {
+                // 2.3 If not found, add it to app db
+                templateService.save(csTemplate);
+                addedTemplateCount.incrementAndGet();
+                if (csTemplate.getIsActive() == true) {
+                    pingTemplateInitialSync(csTemplate);
+                    activeTemplateCount.incrementAndGet();
+                }
+            }
+        }));
+        LOGGER.debug("Total rows added : " + addedTemplateCount.get());
+
+        // 3. Soft delete the application template objects which are not on the CS server, once all were listed
+        for (Template template : appTemplateList) {
+            if (complete && !csTemplateUuids.contains(template.getUuid())) {
                 template.setSyncFlag(false);
                 templateService.softDelete(template);
             }
         }
-        // 4. Get the remaining list of cs server hash template object, then
-        // iterate and
-        // add it to app db
-        for (String key : csTemplateMap.keySet()) {
-            templateService.save(csTemplateMap.get(key));
-            if (csTemplateMap.get(key).getIsActive() == true) {
-                pingTemplateInitialSync(csTemplateMap.get(key));
-                activeTemplateCount++;
-            }
-        }
-        LOGGER.debug("Total rows added : " + (csTemplateMap.size()));
 
         //Update manual sync update domain count
-        updateManualSyncCount("TEMPLATE", activeTemplateCount, activeTemplateCount);
+        updateManualSyncCount("TEMPLATE", activeTemplateCount.get(), activeTemplateCount.get());
 
     }
 
@@ -1567,10 +1416,8 @@ public class SyncServiceImpl implements SyncService {
             department.setSyncFlag(false);
             // 3.1 Find the corresponding CS server user object by finding it in a hash using uuid
             if (csUserMap.containsKey(department.getUuid())) {
-                Department csUser = csUserMap.get(department.getUuid());
-                department.setUserName(csUser.getUserName());
                 // 3.2 If found, update the department object in app db
-                departmentService.update(department);
+                updateDepartment(department, csUserMap.get(department.getUuid()));
                 // 3.3 Remove once updated, so that we can have the list of cs department which is not
                 // added in the app
                 csUserMap.remove(department.getUuid());
@@ -1602,155 +1449,453 @@ public class SyncServiceImpl implements SyncService {
         updateManualSyncCount("DEPARTMENT", csAccountService.size(), csAccountService.size());
     }
 
+    @Override
+    public void refreshDomain(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncDomain();
+            return;
+        }
+        Domain csDomain = domainService.findFromCSServer(uuid);
+        Domain domain = domainService.findbyUUID(uuid);
+        if (domain == null) {
+            if (csDomain != null) {
+                domainService.save(csDomain);
+            }
+        } else if (csDomain != null) {
+            domain.setSyncFlag(false);
+            updateDomain(domain, csDomain);
+        } else {
+            domain.setSyncFlag(false);
+            domainService.softDelete(domain);
+        }
+    }
+
+    @Override
+    public void refreshZone(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncZone();
+            return;
+        }
+        Zone csZone = zoneService.findFromCSServer(uuid);
+        Zone zone = zoneService.findByUUID(uuid);
+        if (zone == null) {
+            if (csZone != null) {
+                zoneService.save(csZone);
+            }
+        } else if (csZone != null) {
+            updateZone(zone, csZone);
+        } else if (!zone.getIsActive()) {
+            zoneService.softDelete(zone);
+        }
+    }
+
+    @Override
+    public void refreshStorageOffering(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncStorageOffering();
+            return;
+        }
+        StorageOffering csStorageOffering = storageService.findFromCSServer(uuid);
+        StorageOffering storageOffering = storageService.findUuid(uuid);
+        if (storageOffering == null) {
+            if (csStorageOffering != null) {
+                storageService.save(csStorageOffering);
+            }
+        } else {
+            storageOffering.setIsSyncFlag(false);
+            if (csStorageOffering != null) {
+                updateStorageOffering(storageOffering, csStorageOffering);
+            } else {
+                storageService.softDelete(storageOffering);
+            }
+        }
+    }
+
+    @Override
+    public void refreshUser(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncUser();
+            return;
+        }
+        User csUser = userService.findFromCSServer(uuid);
+        User user = userService.findByUuId(uuid);
+        if (user == null) {
+            if (csUser != null) {
+                userService.save(csUser);
+            }
+        } else {
+            user.setSyncFlag(false);
+            if (csUser != null) {
+                updateUser(user, csUser);
+            } else {
+                userService.softDelete(user);
+            }
+        }
+    }
+
+    @Override
+    public void refreshDepartment(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncDepartment();
+            return;
+        }
+        Department csDepartment = departmentService.findFromCSServer(uuid);
+        Department department = departmentService.findbyUUID(uuid);
+        if (department == null) {
+            if (csDepartment == null) {
+                return;
+            }
+            department = departmentService.save(csDepartment);
+            if (department.getType().equals(AccountType.ROOT_ADMIN)
+                    || department.getType().equals(AccountType.DOMAIN_ADMIN)) {
+                // Create default roles and permissions
+                createRole(Collections.singletonList(department), permissionService.findAll());
+            }
+        } else {
+            department.setSyncFlag(false);
+            if (csDepartment != null) {
+                updateDepartment(department, csDepartment);
+            } else {
+                departmentService.softDelete(department);
+            }
+        }
+        if (department.getType().equals(AccountType.ROOT_ADMIN)) {
+            syncResourceLimitForDepartment(department);
+        }
+    }
+
+    @Override
+    public void refreshHost(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncHost();
+            return;
+        }
+        Host csHost = hostService.findFromCSServer(uuid);
+        Host host = hostService.findByUUID(uuid);
+        if (host == null) {
+            if (csHost != null) {
+                hostService.save(csHost);
+            }
+        } else if (csHost != null) {
+            updateHost(host, csHost);
+        } else {
+            hostService.softDelete(host);
+        }
+    }
+
+    @Override
+    public void refreshPod(String uuid) throws ApplicationException, Exception {
+        if (uuid == null || uuid.isEmpty()) {
+            syncPod();
+            return;
+        }
+        Pod csPod = podService.findFromCSServer(uuid);
+        Pod pod = podService.findByUUID(uuid);
+        if (pod == null) {
+            if (csPod != null) {
+                podService.save(csPod);
+            }
+        } else if (csPod != null) {
+            updatePod(pod, csPod);
+        } else {
+            podService.softDelete(pod);
+        }
+    }
+
+    /**
+     * Update the domain in app db from the CS server domain.
+     *
+     * @param domain domain in app db
+     * @param csDomain domain from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateDomain(Domain domain, Domain csDomain) throws Exception {
+        domain.setCompanyNameAbbreviation(csDomain.getCompanyNameAbbreviation());
+        domainService.update(domain);
+    }
+
+    /**
+     * Update the zone in app db from the CS server zone.
+     *
+     * @param zone zone in app db
+     * @param csZone zone from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateZone(Zone zone, Zone csZone) throws Exception {
+        zone.setName(csZone.getName());
+        zoneService.update(zone);
+    }
+
+    /**
+     * Update the storage offering in app db from the CS server storage offering.
+     *
+     * @param storageOffering storage offering in app db
+     * @param csStorageOffering storage offering from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateStorageOffering(StorageOffering storageOffering, StorageOffering csStorageOffering)
+            throws Exception {
+        if (csStorageOffering.getTransDomainId() != null && convertEntityService.getDomain(csStorageOffering.getTransDomainId()) != null){
+            storageOffering.setDomainId(convertEntityService.getDomain(csStorageOffering.getTransDomainId()).getId());
+        }
+        storageOffering.setStorageTags(csStorageOffering.getStorageTags());
+        storageOffering.setDiskBytesReadRate(csStorageOffering.getDiskBytesReadRate());
+        storageOffering.setDiskBytesWriteRate(csStorageOffering.getDiskBytesWriteRate());
+        storageOffering.setDiskIopsReadRate(csStorageOffering.getDiskIopsReadRate());
+        storageOffering.setDiskIopsWriteRate(csStorageOffering.getDiskIopsWriteRate());
+        storageOffering.setDiskMaxIops(csStorageOffering.getDiskMaxIops());
+        storageOffering.setDiskMinIops(csStorageOffering.getDiskMinIops());
+        storageOffering.setQosType(csStorageOffering.getQosType());
+        storageOffering.setProvisioningType(csStorageOffering.getProvisioningType());
+        storageService.update(storageOffering);
+    }
+
+    /**
+     * Update the user in app db from the CS server user.
+     *
+     * @param user user in app db
+     * @param csUser user from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateUser(User user, User csUser) throws Exception {
+        user.setFirstName(csUser.getFirstName());
+        user.setLastName(csUser.getLastName());
+        user.setEmail(csUser.getEmail());
+        user.setUserName(csUser.getUserName());
+        user.setIsActive(true);
+        user.setStatus(csUser.getStatus());
+        userService.update(user);
+    }
+
+    /**
+     * Update the department in app db from the CS server account.
+     *
+     * @param department department in app db
+     * @param csDepartment account from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateDepartment(Department department, Department csDepartment) throws Exception {
+        department.setUserName(csDepartment.getUserName());
+        departmentService.update(department);
+    }
+
+    /**
+     * Update the host in app db from the CS server host.
+     *
+     * @param host host in app db
+     * @param csHost host from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateHost(Host host, Host csHost) throws Exception {
+        host.setName(csHost.getName());
+        host.setHostIpaddress(csHost.getHostIpaddress());
+        host.setStatus(csHost.getStatus());
+        hostService.update(host);
+    }
+
+    /**
+     * Update the pod in app db from the CS server pod.
+     *
+     * @param pod pod in app db
+     * @param csPod pod from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updatePod(Pod pod, Pod csPod) throws Exception {
+        pod.setName(csPod.getName());
+        pod.setGateway(csPod.getGateway());
+        pod.setNetmask(csPod.getNetmask());
+        podService.update(pod);
+    }
+
     /**
      * Sync with Cloud Server Instance.
      *
+     * @return nics json by vm uuid from the instance list payload
      * @throws ApplicationException unhandled application errors.
      * @throws Exception cloudstack unhandled errors.
      */
     @Override
-    public void syncInstances() throws Exception {
-        // 1. Get all the vm objects from CS server as hash
-        List<VmInstance> csInstanceService = virtualMachineService.findAllFromCSServer();
-        HashMap<String, VmInstance> vmMap = (HashMap<String, VmInstance>) VmInstance.convert(csInstanceService);
-        // 2. Get all the vm objects from application
+    public Map<String, JSONArray> syncInstances() throws Exception {
+        // 1. Get all the vm objects from application as hash
         List<VmInstance> appVmList = (List<VmInstance>) virtualmachinerepository.findAll();
-        // 3. Iterate application user list
+        Map<String, VmInstance> appVmMap = new HashMap<String, VmInstance>();
         for (VmInstance instance : appVmList) {
             instance.setSyncFlag(false);
-            // 3.1 Find the corresponding CS server vm object by finding it in a
-            // hash using uuid
-            if (vmMap.containsKey(instance.getUuid())) {
-                VmInstance csVm = vmMap.get(instance.getUuid());
-                instance.setName(csVm.getName());
-                if (csVm.getCpuCore() != null) {
-                    instance.setCpuCore(csVm.getCpuCore());
-                }
-                if (csVm.getDomainId() != null) {
-                    instance.setDomainId(csVm.getDomainId());
-                }
-                instance.setStatus(csVm.getStatus());
-                if (csVm.getZoneId() != null) {
-                    instance.setZoneId(csVm.getZoneId());
-                }
-                if (csVm.getHostId() != null) {
-                    instance.setHostId(csVm.getHostId());
-                }
-                if (csVm.getPodId() != null) {
-                    instance.setPodId(csVm.getPodId());
-                }
-                if (csVm.getComputeOfferingId() != null) {
-                    instance.setComputeOfferingId(csVm.getComputeOfferingId());
-                }
-                if (csVm.getCpuSpeed() != null) {
-                    instance.setCpuSpeed(csVm.getCpuSpeed());
-                }
-                if (csVm.getMemory() != null) {
-                    instance.setMemory(csVm.getMemory());
-                }
-                if (csVm.getCpuUsage() != null) {
-                    instance.setCpuUsage(csVm.getCpuUsage());
-                }
-                if (csVm.getTransKeypairName() != null) {
-                    instance.setKeypairId(convertEntityService.getSSHKeyByNameAndDepartment(csVm.getTransKeypairName(), csVm.getDepartmentId()).getId());
-                }
-                instance.setDiskIoRead(csVm.getDiskIoRead());
-                instance.setDiskIoWrite(csVm.getDiskIoWrite());
-                instance.setDiskKbsRead(csVm.getDiskKbsRead());
-                instance.setDiskKbsWrite(csVm.getDiskKbsWrite());
-                instance.setNetworkKbsRead(csVm.getNetworkKbsRead());
-                instance.setNetworkKbsWrite(csVm.getNetworkKbsWrite());
-                instance.setPasswordEnabled(csVm.getPasswordEnabled());
-                instance.setHypervisorId(csVm.getHypervisorId());
-                if (csVm.getPassword() != null) {
-                    instance.setPassword(csVm.getPassword());
-                }
-                instance.setIso(csVm.getIso());
-                instance.setIsoName(csVm.getIsoName());
-                if (csVm.getIpAddress() != null) {
-                    instance.setIpAddress(csVm.getIpAddress());
-                    instance.setInstanceGuestIp(ipToLong(csVm.getIpAddress()));
-                }
-                if (csVm.getNetworkId() != null) {
-                    instance.setNetworkId(csVm.getNetworkId());
-                }
-                if (csVm.getInstanceInternalName() != null) {
-                    instance.setInstanceInternalName(csVm.getInstanceInternalName());
-                }
-                if (csVm.getVolumeSize() != null) {
-                    instance.setVolumeSize(csVm.getVolumeSize());
-                }
-                instance.setDisplayName(csVm.getDisplayName());
-                if (csVm.getDepartmentId() != null) {
-                    instance.setDepartmentId(csVm.getDepartmentId());
-                }
-                if (csVm.getProjectId() != null) {
-                    instance.setProjectId(csVm.getProjectId());
-                    instance.setDepartmentId(convertEntityService.getProjectById(csVm.getProjectId()).getDepartmentId());
-                }
-                if (csVm.getInstanceOwnerId() != null) {
-                    instance.setInstanceOwnerId(csVm.getInstanceOwnerId());
-                    instance.setInstanceUserName(userService.find(csVm.getInstanceOwnerId()).getUserName());
-                }
-                if (instance.getTemplateId() != null) {
-                    instance.setOsType(convertEntityService.getTemplateById(instance.getTemplateId()).getDisplayText());
-                    instance.setInstanceOsType(convertEntityService.getTemplateById(instance.getTemplateId()).getDisplayText());
-                }
-                instance.setTemplateName(csVm.getTemplateName());
-                LOGGER.debug("sync VM for ASYNC");
-                // VNC password set.
-                if (csVm.getPassword() != null) {
-                    String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes("utf-8"));
-                    byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                    SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
-                    String encryptedPassword = new String(EncryptionUtil.encrypt(csVm.getPassword(), originalKey));
-                    instance.setVncPassword(encryptedPassword);
-                }
-                LOGGER.debug("Instance uuid : "+instance.getUuid());
-                LOGGER.debug("Instance Network ID : "+instance.getNetworkId());
-                Network network = convertEntityService.getNetworkById(instance.getNetworkId());
-                IpAddress ipAddress = null;
-                if (network == null) {
-                    LOGGER.debug("Network uuid : null");
+            appVmMap.put(instance.getUuid(), instance);
+        }
+        SyncCounters.Run counts = syncCounters.start("instance");
+        List<VmInstance> changedVms = new ArrayList<VmInstance>();
+        Set<String> csVmUuids = new HashSet<String>();
+        Map<String, JSONArray> csNics = new HashMap<String, JSONArray>();
+        // 2. Stream the vm objects from CS server, matching each one as it is read so that the CS list is not held
+        boolean complete = streamComplete("instance", () -> virtualMachineService.findAllFromCSServer(csVm -> {
+            if (!csVmUuids.add(csVm.getUuid())) {
+                return;
+            }
+            if (csVm.getTransNics() != null) {
+                csNics.put(csVm.getUuid(), csVm.getTransNics());
+            }
+            // 2.1 Find the corresponding application vm object in a hash using uuid
+            VmInstance instance = appVmMap.get(csVm.getUuid());
+            if (instance != null) {
+                // 2.2 If found and changed, update the vm object in app db
+                String fingerprint = instance.syncFingerprint();
+                updateInstance(instance, csVm);
+                if (fingerprint.equals(instance.syncFingerprint())) {
+                    counts.unchanged();
                 } else {
-                    LOGGER.debug("Network uuid : "+instance.getUuid());
-                    ipAddress = ipService.UpdateIPByNetwork(network.getUuid());
-                }
-                LOGGER.debug("================================");
-                if (ipAddress != null) {
-                    instance.setPublicIpAddress(ipAddress.getPublicIpAddress());
-                    instance.setInstancePublicIp(ipToLong(ipAddress.getPublicIpAddress()));
+                    changedVms.add(instance);
+                    counts.changed();
                 }
-                // 3.2 If found, update the vm object in app db
-                virtualMachineService.update(instance);
-
-                // 3.3 Remove once updated, so that we can have the list of cs
-                // vm which is not added in the
-                // app
-                vmMap.remove(instance.getUuid());
             } else {
-                // 3.2 If not found, delete it from app db
-                virtualMachineService.delete(instance);
+                // 2.3 If not found, add it to app db
+                saveInstance(csVm);
+                counts.inserted();
             }
-        }
-        // 4. Get the remaining list of cs server hash vm object, then iterate
-        // and
-        // add it to app db
-        for (String key : vmMap.keySet()) {
-            VmInstance instances = virtualMachineService.save(vmMap.get(key));
-            if (instances.getIpAddress() != null) {
-                instances.setInstanceGuestIp(ipToLong(instances.getIpAddress()));
-                virtualMachineService.update(instances);
-            }
-            IpAddress ipAddress = ipService.UpdateIPByNetwork(convertEntityService.getNetworkById(instances.getNetworkId()).getUuid());
-            if (ipAddress != null) {
-                instances.setSyncFlag(false);
-                instances.setPublicIpAddress(ipAddress.getPublicIpAddress());
-                instances.setInstancePublicIp(ipToLong(ipAddress.getPublicIpAddress()));
-                instances.setInstanceGuestIp(ipToLong(instances.getIpAddress()));
-                virtualMachineService.update(instances);
+        }));
+        // 3. Delete the application vm objects which are not on the CS server, as the vm service does, once all were
+        // listed. A vm already removed is left as it is.
+        for (VmInstance instance : appVmList) {
+            if (complete && !csVmUuids.contains(instance.getUuid())
+                    && !Boolean.TRUE.equals(instance.getIsRemoved())) {
+                instance.setStatus(VmInstance.Status.EXPUNGING);
+                instance.setIsRemoved(true);
+                changedVms.add(instance);
+                counts.deleted();
             }
         }
+        syncBatchWriter.updateAll(changedVms);
+        counts.finish();
+        return csNics;
+    }
+
+    /**
+     * Update the vm in app db from the CS server vm, without saving it.
+     *
+     * @param instance vm in app db
+     * @param csVm vm from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void updateInstance(VmInstance instance, VmInstance csVm) throws Exception {
+        instance.setName(csVm.getName());
+        if (csVm.getCpuCore() != null) {
+            instance.setCpuCore(csVm.getCpuCore());
+        }
+        if (csVm.getDomainId() != null) {
+            instance.setDomainId(csVm.getDomainId());
+        }
+        instance.setStatus(csVm.getStatus());
+        if (csVm.getZoneId() != null) {
+            instance.setZoneId(csVm.getZoneId());
+        }
+        if (csVm.getHostId() != null) {
+            instance.setHostId(csVm.getHostId());
+        }
+        if (csVm.getPodId() != null) {
+            instance.setPodId(csVm.getPodId());
+        }
+        if (csVm.getComputeOfferingId() != null) {
+            instance.setComputeOfferingId(csVm.getComputeOfferingId());
+        }
+        if (csVm.getCpuSpeed() != null) {
+            instance.setCpuSpeed(csVm.getCpuSpeed());
+        }
+        if (csVm.getMemory() != null) {
+            instance.setMemory(csVm.getMemory());
+        }
+        if (csVm.getCpuUsage() != null) {
+            instance.setCpuUsage(csVm.getCpuUsage());
+        }
+        if (csVm.getTransKeypairName() != null) {
+            instance.setKeypairId(convertEntityService.getSSHKeyByNameAndDepartment(csVm.getTransKeypairName(), csVm.getDepartmentId()).getId());
+        }
+        instance.setDiskIoRead(csVm.getDiskIoRead());
+        instance.setDiskIoWrite(csVm.getDiskIoWrite());
+        instance.setDiskKbsRead(csVm.getDiskKbsRead());
+        instance.setDiskKbsWrite(csVm.getDiskKbsWrite());
+        instance.setNetworkKbsRead(csVm.getNetworkKbsRead());
+        instance.setNetworkKbsWrite(csVm.getNetworkKbsWrite());
+        instance.setPasswordEnabled(csVm.getPasswordEnabled());
+        instance.setHypervisorId(csVm.getHypervisorId());
+        if (csVm.getPassword() != null) {
+            instance.setPassword(csVm.getPassword());
+        }
+        instance.setIso(csVm.getIso());
+        instance.setIsoName(csVm.getIsoName());
+        if (csVm.getIpAddress() != null) {
+            instance.setIpAddress(csVm.getIpAddress());
+            instance.setInstanceGuestIp(ipToLong(csVm.getIpAddress()));
+        }
+        if (csVm.getNetworkId() != null) {
+            instance.setNetworkId(csVm.getNetworkId());
+        }
+        if (csVm.getInstanceInternalName() != null) {
+            instance.setInstanceInternalName(csVm.getInstanceInternalName());
+        }
+        if (csVm.getVolumeSize() != null) {
+            instance.setVolumeSize(csVm.getVolumeSize());
+        }
+        instance.setDisplayName(csVm.getDisplayName());
+        if (csVm.getDepartmentId() != null) {
+            instance.setDepartmentId(csVm.getDepartmentId());
+        }
+        if (csVm.getProjectId() != null) {
+            instance.setProjectId(csVm.getProjectId());
+            instance.setDepartmentId(convertEntityService.getProjectById(csVm.getProjectId()).getDepartmentId());
+        }
+        if (csVm.getInstanceOwnerId() != null) {
+            instance.setInstanceOwnerId(csVm.getInstanceOwnerId());
+            instance.setInstanceUserName(userService.find(csVm.getInstanceOwnerId()).getUserName());
+        }
+        if (instance.getTemplateId() != null) {
+            instance.setOsType(convertEntityService.getTemplateById(instance.getTemplateId()).getDisplayText());
+            instance.setInstanceOsType(convertEntityService.getTemplateById(instance.getTemplateId()).getDisplayText());
+        }
+        instance.setTemplateName(csVm.getTemplateName());
+        LOGGER.debug("sync VM for ASYNC");
+        // VNC password set.
+        if (csVm.getPassword() != null) {
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
+            String encryptedPassword = new String(EncryptionUtil.encrypt(csVm.getPassword(), originalKey));
+            instance.setVncPassword(encryptedPassword);
+        }
+        LOGGER.debug("Instance uuid : "+instance.getUuid());
+        LOGGER.debug("Instance Network ID : "+instance.getNetworkId());
+        Network network = convertEntityService.getNetworkById(instance.getNetworkId());
+        IpAddress ipAddress = null;
+        if (network == null) {
+            LOGGER.debug("Network uuid : null");
+        } else {
+            LOGGER.debug("Network uuid : "+instance.getUuid());
+            ipAddress = ipService.UpdateIPByNetwork(network.getUuid());
+        }
+        LOGGER.debug("================================");
+        if (ipAddress != null) {
+            instance.setPublicIpAddress(ipAddress.getPublicIpAddress());
+            instance.setInstancePublicIp(ipToLong(ipAddress.getPublicIpAddress()));
+        }
+    }
+
+    /**
+     * Add a vm of the CS server to app db.
+     *
+     * @param csVm vm from CS server
+     * @throws Exception unhandled errors.
+     */
+    private void saveInstance(VmInstance csVm) throws Exception {
+        VmInstance instances = virtualMachineService.save(csVm);
+        if (instances.getIpAddress() != null) {
+            instances.setInstanceGuestIp(ipToLong(instances.getIpAddress()));
+            virtualMachineService.update(instances);
+        }
+        IpAddress ipAddress = ipService.UpdateIPByNetwork(convertEntityService.getNetworkById(instances.getNetworkId()).getUuid());
+        if (ipAddress != null) {
+            instances.setSyncFlag(false);
+            instances.setPublicIpAddress(ipAddress.getPublicIpAddress());
+            instances.setInstancePublicIp(ipToLong(ipAddress.getPublicIpAddress()));
+            instances.setInstanceGuestIp(ipToLong(instances.getIpAddress()));
+            virtualMachineService.update(instances);
+        }
     }
 
     /**
@@ -1774,12 +1919,8 @@ public class SyncServiceImpl implements SyncService {
             // 3.1 Find the corresponding CS server host object by finding it in
             // a hash using uuid
             if (csHostMap.containsKey(host.getUuid())) {
-                Host csHost = csHostMap.get(host.getUuid());
-                host.setName(csHost.getName());
-                host.setHostIpaddress(csHost.getHostIpaddress());
-                host.setStatus(csHost.getStatus());
                 // 3.2 If found, update the user object in app db
-                hostService.update(host);
+                updateHost(host, csHostMap.get(host.getUuid()));
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // host which is not added in the app
@@ -1807,20 +1948,27 @@ public class SyncServiceImpl implements SyncService {
      */
     public void syncVolume() throws ApplicationException, Exception {
 
-        // 1. Get all the volume objects from CS server as hash
-        List<Volume> volumeList = volumeService.findAllFromCSServer();
-        HashMap<String, Volume> csVolumeMap = (HashMap<String, Volume>) Volume.convert(volumeList);
-
-        // 2. Get all the volume objects from application
+        // 1. Get all the volume objects from application as hash
         List<Volume> appVolumeServiceList = volumeService.findAll();
-
-        // 3. Iterate application volume list
+        Map<String, Volume> appVolumeMap = new HashMap<String, Volume>();
         for (Volume volume : appVolumeServiceList) {
             volume.setIsSyncFlag(false);
-            // 3.1 Find the corresponding CS server volume object by finding it
-            // in a hash using uuid
-            if (csVolumeMap.containsKey(volume.getUuid())) {
-                Volume csVolume = csVolumeMap.get(volume.getUuid());
+            appVolumeMap.put(volume.getUuid(), volume);
+        }
+        SyncCounters.Run counts = syncCounters.start("volume");
+        List<Volume> changedVolumes = new ArrayList<Volume>();
+        List<Volume> newVolumes = new ArrayList<Volume>();
+        Set<String> csVolumeUuids = new HashSet<String>();
+
+        // 2. Stream the volume objects from CS server, matching each one as it is read
+        boolean complete = streamComplete("volume", () -> volumeService.findAllFromCSServer(csVolume -> {
+            if (!csVolumeUuids.add(csVolume.getUuid())) {
+                return;
+            }
+            // 2.1 Find the corresponding application volume object in a hash using uuid
+            Volume volume = appVolumeMap.get(csVolume.getUuid());
+            if (volume != null) {
+                String fingerprint = volume.syncFingerprint();
                 volume.setName(csVolume.getName());
                 volume.setStorageOfferingId(csVolume.getStorageOfferingId());
                 volume.setZoneId(csVolume.getZoneId());
@@ -1844,32 +1992,48 @@ public class SyncServiceImpl implements SyncService {
                 volume.setDiskMinIops(csVolume.getDiskMinIops());
                 volume.setCreatedDateTime(csVolume.getCreatedDateTime());
                 volume.setUpdatedDateTime(csVolume.getUpdatedDateTime());
-                // 3.2 If found, update the volume object in app db
-                volumeService.update(volume);
-
-                // 3.3 Remove once updated, so that we can have the list of cs
-                // volume which is not added in the app
-                csVolumeMap.remove(volume.getUuid());
+                // 2.2 If found and changed, update the volume object in app db
+                if (fingerprint.equals(volume.syncFingerprint())) {
+                    counts.unchanged();
+                } else {
+                    changedVolumes.add(volume);
+                    counts.changed();
+                }
             } else {
-                volumeService.softDelete(volume);
+                // 2.3 If not found, add it to app db
+                newVolumes.add(csVolume);
+                counts.inserted();
+            }
+        }));
+
+        // 3. Soft delete the application volume objects which are not on the CS server, as the volume service does,
+        // once all were listed. A volume already inactive or removed is left as it is.
+        for (Volume volume : appVolumeServiceList) {
+            if (complete && !csVolumeUuids.contains(volume.getUuid()) && !Boolean.FALSE.equals(volume.getIsActive())
+                    && !Boolean.TRUE.equals(volume.getIsRemoved())) {
+                volume.setIsActive(false);
+                volume.setStatus(Volume.Status.DESTROY);
+                changedVolumes.add(volume);
+                counts.deleted();
             }
         }
-        // 4. Get the remaining list of cs server hash volume object, then
-        // iterate and
-        // add it to app db
-        for (String key : csVolumeMap.keySet()) {
-            volumeService.save(csVolumeMap.get(key));
-        }
+        syncBatchWriter.updateAll(changedVolumes);
+        syncBatchWriter.insertAll(newVolumes);
+        counts.finish();
 
         // Update instance disk size from volume
         List<Volume> listVolume = volumeService.findAll();
+        Map<Long, VmInstance> resizedVms = new LinkedHashMap<Long, VmInstance>();
         for (int j = 0; j < listVolume.size(); j++) {
             if (listVolume.get(j).getVolumeType() == VolumeType.ROOT && listVolume.get(j).getVmInstanceId() != null) {
                 VmInstance vmInstance = virtualMachineService.find(listVolume.get(j).getVmInstanceId());
-                vmInstance.setVolumeSize(listVolume.get(j).getDiskSize());
-                virtualMachineService.update(vmInstance);
+                if (!Objects.equals(vmInstance.getVolumeSize(), listVolume.get(j).getDiskSize())) {
+                    vmInstance.setVolumeSize(listVolume.get(j).getDiskSize());
+                    resizedVms.put(vmInstance.getId(), vmInstance);
+                }
             }
         }
+        syncBatchWriter.updateAll(new ArrayList<VmInstance>(resizedVms.values()));
     }
 
     @Override
@@ -1932,13 +2096,8 @@ public class SyncServiceImpl implements SyncService {
             // 3.1 Find the corresponding CS server host object by finding it in
             // a hash using uuid
             if (csPodMap.containsKey(pod.getUuid())) {
-                Pod csUser = csPodMap.get(pod.getUuid());
-
-                pod.setName(csUser.getName());
-                pod.setGateway(csUser.getGateway());
-                pod.setNetmask(csUser.getNetmask());
                 // 3.2 If found, update the pod object in app db
-                podService.update(pod);
+                updatePod(pod, csPodMap.get(pod.getUuid()));
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // host which is not added in the app
@@ -2110,10 +2269,9 @@ public class SyncServiceImpl implements SyncService {
      */
     @Override
     public void syncResourceStatus(String object) throws Exception {
-        CloudStackConfiguration cloudConfig = cloudConfigService.find(1L);
-        server.setServer(cloudConfig.getApiURL(), cloudConfig.getSecretKey(), cloudConfig.getApiKey());
+        server.use(configUtil.getAdminClient());
         cloudStackInstanceService.setServer(server);
-        String instances = cloudStackInstanceService.queryAsyncJobResult(object, "json");
+        String instances = asyncJobResultCache.queryAsyncJobResult(object);
         JSONObject jobresult = new JSONObject(instances).getJSONObject("queryasyncjobresultresponse")
                 .getJSONObject("jobresult");
         if (jobresult.has("virtualmachine")) {
@@ -2192,9 +2350,7 @@ public class SyncServiceImpl implements SyncService {
                 LOGGER.debug("sync VM for ASYNC");
                 // VNC password set.
                 if (csVm.getPassword() != null) {
-                    String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes("utf-8"));
-                    byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                    SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
+                    SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                     String encryptedPassword = new String(EncryptionUtil.encrypt(csVm.getPassword(), originalKey));
                     LOGGER.debug("sync VM for pass" + encryptedPassword);
                     instance.setVncPassword(encryptedPassword);
@@ -2589,43 +2745,80 @@ public class SyncServiceImpl implements SyncService {
 
     @Override
     public void syncNic() throws ApplicationException, Exception {
+        syncNic(Collections.<String, JSONArray>emptyMap());
+    }
 
-        // 1. Get all the nic objects from CS server as hash
-        List<Nic> csNicList = nicService.findAllFromCSServer();
+    @Override
+    public void syncNic(Map<String, JSONArray> instanceNics) throws ApplicationException, Exception {
+
+        // 1. Get all the nic objects from the instance sync or CS server as hash
+        List<Nic> csNicList = nicService.findAllFromCSServer(instanceNics);
         HashMap<String, Nic> csNicMap = (HashMap<String, Nic>) Nic.convert(csNicList);
 
         // 2. Get all the nic objects from application
         List<Nic> appnicList = nicService.findAll();
+        SyncCounters.Run counts = syncCounters.start("nic");
+        List<Nic> changedNics = new ArrayList<Nic>();
 
         // 3. Iterate application nic list
         for (Nic nic : appnicList) {
             nic.setSyncFlag(false);
-            LOGGER.debug("Total rows updated : " + (appnicList.size()));
             // 3.1 Find the corresponding CS server ntService object by
             // finding it in a hash using uuid
             if (csNicMap.containsKey(nic.getUuid())) {
                 Nic csNic = csNicMap.get(nic.getUuid());
+                String fingerprint = nic.syncFingerprint();
                 nic.setUuid(csNic.getUuid());
                 nic.setIpAddress(csNic.getIpAddress());
                 nic.setVmIpAddress(csNic.getVmIpAddress());
 
-                // 3.2 If found, update the nic object in app db
-                nicService.update(nic);
+                // 3.2 If found and changed, update the nic object and link its ip addresses in app db
+                if (fingerprint.equals(nic.syncFingerprint())) {
+                    counts.unchanged();
+                } else {
+                    linkVmIpAddresses(nic);
+                    changedNics.add(nic);
+                    counts.changed();
+                }
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // nic which is not added in the app
                 csNicMap.remove(nic.getUuid());
-            }else {
-                nicService.softDelete(nic);
+            } else if (!Boolean.FALSE.equals(nic.getIsActive())) {
+                // 3.4 Soft delete it, as the nic service does, unless it is already inactive
+                nic.setIsActive(false);
+                changedNics.add(nic);
+                counts.deleted();
             }
         }
-        // 4. Get the remaining list of cs server hash NetworkOffering object,
-        // then iterate and
-        // add it to app db
-        for (String key : csNicMap.keySet()) {
-            LOGGER.debug("Syncservice Nic uuid:");
-            nicService.save(csNicMap.get(key));
+        syncBatchWriter.updateAll(changedNics);
+        // 4. Add the remaining cs server nics to app db, then link their ip addresses once they have an id
+        List<Nic> newNics = new ArrayList<Nic>(csNicMap.values());
+        syncBatchWriter.insertAll(newNics);
+        List<VmIpaddress> linkedVmIps = new ArrayList<VmIpaddress>();
+        for (Nic nic : newNics) {
+            linkedVmIps.addAll(linkVmIpAddresses(nic));
+            counts.inserted();
         }
+        syncBatchWriter.updateAll(linkedVmIps);
+        counts.finish();
+    }
+
+    /**
+     * Set the nic and the vm instance of the ip addresses of a nic, as the nic service does on save.
+     *
+     * @param nic nic with an id
+     * @return ip addresses of the nic
+     */
+    private List<VmIpaddress> linkVmIpAddresses(Nic nic) {
+        if (nic.getVmIpAddress() == null) {
+            return Collections.emptyList();
+        }
+        for (VmIpaddress vmIp : nic.getVmIpAddress()) {
+            vmIp.setNicId(nic.getId());
+            vmIp.setVmInstanceId(nic.getVmInstanceId());
+        }
+        return nic.getVmIpAddress();
     }
 
     @Override
@@ -2743,15 +2936,17 @@ public class SyncServiceImpl implements SyncService {
 
         // 2. Get all the nic objects from application
         List<IpAddress> appIpList = ipAddressService.findAll();
+        SyncCounters.Run counts = syncCounters.start("ipAddress");
+        List<IpAddress> changedIps = new ArrayList<IpAddress>();
 
         // 3. Iterate application nic list
         for (IpAddress ipAddress : appIpList) {
             ipAddress.setSyncFlag(false);
-            LOGGER.debug("Total rows updated : " + (appIpList.size()));
             // 3.1 Find the corresponding CS server ntService object by
             // finding it in a hash using uuid
             if (csIpMap.containsKey(ipAddress.getUuid())) {
                 IpAddress csIp = csIpMap.get(ipAddress.getUuid());
+                String fingerprint = ipAddress.syncFingerprint();
 
                 ipAddress.setUuid(csIp.getUuid());
                 ipAddress.setPublicIpAddress(csIp.getPublicIpAddress());
@@ -2774,23 +2969,33 @@ public class SyncServiceImpl implements SyncService {
                 else if(csIp.getDepartmentId() != null) {
                     ipAddress.setDepartmentId(csIp.getDepartmentId());
                 }
-                // 3.2 If found, update the nic object in app db
-                ipAddressService.update(ipAddress);
+                // 3.2 If found and changed, update the nic object in app db
+                if (fingerprint.equals(ipAddress.syncFingerprint())) {
+                    counts.unchanged();
+                } else {
+                    changedIps.add(ipAddress);
+                    counts.changed();
+                }
 
                 // 3.3 Remove once updated, so that we can have the list of cs
                 // nic which is not added in the app
                 csIpMap.remove(ipAddress.getUuid());
-            } else {
-                ipAddressService.softDelete(ipAddress);
-            }
-        }
-        // 4. Get the remaining list of cs server hash NetworkOffering object,
-        // then iterate and
-        // add it to app db
-        for (String key : csIpMap.keySet()) {
-            LOGGER.debug("Syncservice IP Address uuid:");
-            ipAddressService.save(csIpMap.get(key));
-        }
+            } else if (!Boolean.FALSE.equals(ipAddress.getIsActive())) {
+                // 3.4 Soft delete it, as the ip address service does, unless it is already inactive
+                ipAddress.setIsActive(false);
+                ipAddress.setState(IpAddress.State.FREE);
+                changedIps.add(ipAddress);
+                counts.deleted();
+            }
+        }
+        syncBatchWriter.updateAll(changedIps);
+        // 4. Add the remaining cs server ip addresses to app db
+        List<IpAddress> newIps = new ArrayList<IpAddress>(csIpMap.values());
+        syncBatchWriter.insertAll(newIps);
+        for (int i = 0; i < newIps.size(); i++) {
+            counts.inserted();
+        }
+        counts.finish();
     }
 
     @Override
@@ -8,6 +8,7 @@ import ck.panda.domain.entity.OsCategory;
 import ck.panda.domain.entity.Template;
 import ck.panda.domain.entity.Template.Status;
 import ck.panda.domain.entity.Template.TemplateType;
+import ck.panda.util.CloudStackEntityHandler;
 import ck.panda.util.domain.CRUDService;
 import ck.panda.util.domain.vo.PagingAndSorting;
 
@@ -27,6 +28,14 @@ public interface TemplateService extends CRUDService<Template> {
      */
     List<Template> findAllFromCSServer() throws Exception;
 
+    /**
+     * To stream the templates and ISOs from cloud stack server, handing each template to the handler as it is read.
+     *
+     * @param handler handler of each template
+     * @throws Exception unhandled errors.
+     */
+    void findAllFromCSServer(CloudStackEntityHandler<Template> handler) throws Exception;
+
     /**
      * To get list of templates without system type from cloud stack server.
      *
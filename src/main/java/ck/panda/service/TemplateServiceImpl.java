@@ -28,6 +28,7 @@ import ck.panda.domain.entity.User.UserType;
 import ck.panda.domain.entity.Zone;
 import ck.panda.domain.repository.jpa.TemplateRepository;
 import ck.panda.util.AppValidator;
+import ck.panda.util.CloudStackEntityHandler;
 import ck.panda.util.CloudStackTemplateService;
 import ck.panda.util.ConfigUtil;
 import ck.panda.util.PingService;
@@ -275,88 +276,83 @@ public class TemplateServiceImpl implements TemplateService {
 
     @Override
     public List<Template> findAllFromCSServer() throws Exception {
-        configUtil.setServer(1L);
         List<Template> templateList = new ArrayList<Template>();
+        findAllFromCSServer(templateList::add);
+        return templateList;
+    }
+
+    @Override
+    public void findAllFromCSServer(CloudStackEntityHandler<Template> handler) throws Exception {
+        configUtil.setServer(1L);
         HashMap<String, String> templateMap = new HashMap<String, String>();
         templateMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
         templateMap.put("showremoved", CloudStackConstants.STATUS_ACTIVE);
-        String response = cloudStackTemplateService.listTemplates(ALL_TEMPLATE.toLowerCase(), CloudStackConstants.JSON, templateMap);
-        JSONArray templateListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject(CloudStackConstants.CS_LIST_TEMPLATE_RESPONSE);
-        if (responseObject.has(CloudStackConstants.TEMPLATE_NAME)) {
-            templateListJSON = responseObject.getJSONArray(CloudStackConstants.TEMPLATE_NAME);
-            for (int i = 0, size = templateListJSON.length(); i < size; i++) {
-                Template template = Template.convert(templateListJSON.getJSONObject(i));
-                OsType osType = osTypeService.findByUUID(template.getTransOsType());
-                if (osType != null) {
-                    template.setOsTypeId(osType.getId());
-                    template.setOsCategoryId(osType.getOsCategoryId());
-                    if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[0])) {
-                        template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[0]);
-                    } else if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[1])) {
-                        template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[1]);
-                    }
-                    template.setDisplayText(osType.getDescription());
-                }
-                Zone zone = zoneService.findByUUID(template.getTransZone());
-                if (zone != null) {
-                    template.setZoneId(zone.getId());
-                }
-                Hypervisor hypervisor = hypervisorService.findByName(template.getTransHypervisor());
-                if (hypervisor != null) {
-                    template.setHypervisorId(hypervisor.getId());
+        // Stream the templates page by page, converting each template as it is read.
+        cloudStackTemplateService.listTemplates(ALL_TEMPLATE.toLowerCase(), templateMap, templateJson -> {
+            Template template = Template.convert(templateJson);
+            OsType osType = osTypeService.findByUUID(template.getTransOsType());
+            if (osType != null) {
+                template.setOsTypeId(osType.getId());
+                template.setOsCategoryId(osType.getOsCategoryId());
+                if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[0])) {
+                    template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[0]);
+                } else if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[1])) {
+                    template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[1]);
                 }
-                template.setTemplateOwnerId(convertEntityService.getUserByName(template.getTransCreatedName(),
-                    convertEntityService.getDomain(template.getTransDomain())));
-                template.setDomainId(convertEntityService.getDomainId(template.getTransDomain()));
-                if((convertEntityService.getDepartmentByUsernameAndDomains(
-                        template.getTransDepartment(), convertEntityService.getDomain(template.getTransDomain())) != null)) {
-                template.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
-                        template.getTransDepartment(), convertEntityService.getDomain(template.getTransDomain())));
-                }
-                templateList.add(template);
+                template.setDisplayText(osType.getDescription());
             }
-        }
-        getIsoTemplateList(templateList, templateMap);
-        return templateList;
+            Zone zone = zoneService.findByUUID(template.getTransZone());
+            if (zone != null) {
+                template.setZoneId(zone.getId());
+            }
+            Hypervisor hypervisor = hypervisorService.findByName(template.getTransHypervisor());
+            if (hypervisor != null) {
+                template.setHypervisorId(hypervisor.getId());
+            }
+            template.setTemplateOwnerId(convertEntityService.getUserByName(template.getTransCreatedName(),
+                convertEntityService.getDomain(template.getTransDomain())));
+            template.setDomainId(convertEntityService.getDomainId(template.getTransDomain()));
+            if((convertEntityService.getDepartmentByUsernameAndDomains(
+                    template.getTransDepartment(), convertEntityService.getDomain(template.getTransDomain())) != null)) {
+            template.setDepartmentId(convertEntityService.getDepartmentByUsernameAndDomains(
+                    template.getTransDepartment(), convertEntityService.getDomain(template.getTransDomain())));
+            }
+            handler.handle(template);
+        });
+        getIsoTemplateList(handler, templateMap);
     }
 
     /**
      * Get all the ISO template list from CS.
      *
-     * @param templateList template list
+     * @param handler handler of each ISO template
      * @param templateMap template map
      * @throws Exception unhandled errors.
      */
-    public void getIsoTemplateList(List<Template> templateList, HashMap<String, String> templateMap) throws Exception {
-        //Getting the ISO template list from CS
-        String isoResponse = cloudStackTemplateService.listIsos(ALL_TEMPLATE.toLowerCase(), CloudStackConstants.JSON, templateMap);
-        JSONArray isoTemplateListJSON = null;
-        JSONObject isoResponseObject = new JSONObject(isoResponse).getJSONObject(CloudStackConstants.CS_LIST_ISO_RESPONSE);
-        if (isoResponseObject.has(CloudStackConstants.ISO_TEMPLATE_NAME)) {
-            isoTemplateListJSON = isoResponseObject.getJSONArray(CloudStackConstants.ISO_TEMPLATE_NAME);
-            for (int i = 0, size = isoTemplateListJSON.length(); i < size; i++) {
-                Template template = Template.convert(isoTemplateListJSON.getJSONObject(i));
-                OsType osType = osTypeService.findByUUID(template.getTransOsType());
-                if (osType != null) {
-                    template.setOsTypeId(osType.getId());
-                    template.setOsCategoryId(osType.getOsCategoryId());
-                    if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[0])) {
-                        template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[0]);
-                    } else if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[1])) {
-                        template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[1]);
-                    }
-                    template.setDisplayText(osType.getDescription());
-                }
-                if (!template.getTransZone().equals("") && zoneService.findByUUID(template.getTransZone()) != null) {
-                    template.setZoneId(zoneService.findByUUID(template.getTransZone()).getId());
+    public void getIsoTemplateList(CloudStackEntityHandler<Template> handler, HashMap<String, String> templateMap)
+            throws Exception {
+        //Stream the ISO template list from CS page by page
+        cloudStackTemplateService.listIsos(ALL_TEMPLATE.toLowerCase(), templateMap, isoJson -> {
+            Template template = Template.convert(isoJson);
+            OsType osType = osTypeService.findByUUID(template.getTransOsType());
+            if (osType != null) {
+                template.setOsTypeId(osType.getId());
+                template.setOsCategoryId(osType.getOsCategoryId());
+                if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[0])) {
+                    template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[0]);
+                } else if (osType.getDescription().contains(GenericConstants.TEMPLATE_ARCHITECTURE[1])) {
+                    template.setArchitecture(GenericConstants.TEMPLATE_ARCHITECTURE[1]);
                 }
-                template.setHypervisorId(1L);
-                template.setTemplateOwnerId(convertEntityService.getUserByName(template.getTransCreatedName(),
-                    convertEntityService.getDomain(template.getTransDomain())));
-                templateList.add(template);
+                template.setDisplayText(osType.getDescription());
             }
-        }
+            if (!template.getTransZone().equals("") && zoneService.findByUUID(template.getTransZone()) != null) {
+                template.setZoneId(zoneService.findByUUID(template.getTransZone()).getId());
+            }
+            template.setHypervisorId(1L);
+            template.setTemplateOwnerId(convertEntityService.getUserByName(template.getTransCreatedName(),
+                convertEntityService.getDomain(template.getTransDomain())));
+            handler.handle(template);
+        });
     }
 
     @Override
@@ -475,36 +471,7 @@ public class TemplateServiceImpl implements TemplateService {
 
     @Override
     public HashMap<String, Integer> findTemplateCounts() throws Exception {
-        List<Template> template = templateRepository.findTemplateCounts(TemplateType.SYSTEM, true);
-        Integer windowsCount = 0, linuxCount = 0, totalCount = 0;
-        Integer windowsIsoCount = 0, linuxIsoCount = 0, totalIsoCount = 0;
-        for (int i = 0; i < template.size(); i++) {
-            if (template.get(i).getFormat() == Template.Format.ISO) {
-                if (template.get(i).getOsType().getDescription().contains(WINDOWS_TEMPLATE)) {
-                    windowsIsoCount++;
-                } else {
-                    linuxIsoCount++;
-                }
-                totalIsoCount++;
-                } else {
-                    if (template.get(i).getOsType().getDescription().contains(WINDOWS_TEMPLATE)) {
-                        windowsCount++;
-                    } else {
-                        linuxCount++;
-                    }
-                    totalCount++;
-                }
-            }
-
-        /** Template minimum core. */
-        HashMap<String, Integer> templateCount = new HashMap<String, Integer>();
-        templateCount.put(WINDOWS_COUNT, windowsCount);
-        templateCount.put(LINUX_COUNT, linuxCount);
-        templateCount.put(TOTAL_COUNT, totalCount);
-        templateCount.put(WINDOWS_ISO_COUNT, windowsIsoCount);
-        templateCount.put(LINUX_ISO_COUNT, linuxIsoCount);
-        templateCount.put(TOTAL_ISO_COUNT, totalIsoCount);
-        return templateCount;
+        return templateCounts(templateRepository.countByFormatAndOsType(TemplateType.SYSTEM, true));
     }
 
     /**
@@ -1068,28 +1035,39 @@ public class TemplateServiceImpl implements TemplateService {
 
     @Override
     public HashMap<String, Integer> findTemplateCountsAndSearchText(String searchText) throws Exception {
-        List<Template> template = templateRepository.findTemplateCountsAndSearchText(TemplateType.SYSTEM, true,searchText);
+        return templateCounts(
+                templateRepository.countByFormatAndOsTypeAndSearchText(TemplateType.SYSTEM, true, searchText));
+    }
+
+    /**
+     * Add up the template counts of each format and OS type into windows, linux and total counts.
+     *
+     * @param rows rows of format, OS type description and template count
+     * @return template counts
+     */
+    private HashMap<String, Integer> templateCounts(List<Object[]> rows) {
         Integer windowsCount = 0, linuxCount = 0, totalCount = 0;
         Integer windowsIsoCount = 0, linuxIsoCount = 0, totalIsoCount = 0;
-        for (int i = 0; i < template.size(); i++) {
-            if (template.get(i).getFormat() == Template.Format.ISO) {
-                if (template.get(i).getOsType().getDescription().contains(WINDOWS_TEMPLATE)) {
-                    windowsIsoCount++;
+        for (Object[] row : rows) {
+            Integer count = ((Number) row[2]).intValue();
+            boolean windows = row[1] != null && row[1].toString().contains(WINDOWS_TEMPLATE);
+            if (row[0] == Template.Format.ISO) {
+                if (windows) {
+                    windowsIsoCount += count;
                 } else {
-                    linuxIsoCount++;
+                    linuxIsoCount += count;
                 }
-                totalIsoCount++;
+                totalIsoCount += count;
+            } else {
+                if (windows) {
+                    windowsCount += count;
                 } else {
-                    if (template.get(i).getOsType().getDescription().contains(WINDOWS_TEMPLATE)) {
-                        windowsCount++;
-                    } else {
-                        linuxCount++;
-                    }
-                    totalCount++;
+                    linuxCount += count;
                 }
+                totalCount += count;
             }
+        }
 
-        /** Template minimum core. */
         HashMap<String, Integer> templateCount = new HashMap<String, Integer>();
         templateCount.put(WINDOWS_COUNT, windowsCount);
         templateCount.put(LINUX_COUNT, linuxCount);
@@ -3,12 +3,21 @@ package ck.panda.service;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.GenericConstants;
+import ck.panda.domain.entity.Department;
 import ck.panda.domain.entity.IpAddress;
 import ck.panda.domain.entity.Network;
+import ck.panda.domain.entity.Project;
 import ck.panda.domain.entity.ResourceLimitDepartment;
 import ck.panda.domain.entity.ResourceLimitProject;
 import ck.panda.domain.entity.VPC;
@@ -16,14 +25,21 @@ import ck.panda.domain.entity.VmInstance;
 import ck.panda.domain.entity.Volume;
 import ck.panda.util.CloudStackResourceCapacity;
 import ck.panda.util.ConfigUtil;
+import ck.panda.util.LeaderElection;
 
 /**
  * Update resource count service implementation.
  *
+ * Used limits are changed with single update statements, so concurrent changes of one resource limit are not lost. A
+ * scheduled job recounts the usage in CloudStack and corrects the used limits that drifted; it runs on the leader node
+ * only.
  */
 @Service
 public class UpdateResourceCountServiceImpl implements UpdateResourceCountService {
 
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateResourceCountServiceImpl.class);
+
     /** Reference of the convert entity service. */
     @Autowired
     private ConvertEntityService convertEntityService;
@@ -48,6 +64,18 @@ public class UpdateResourceCountServiceImpl implements UpdateResourceCountServic
     @Autowired
     private ConfigUtil config;
 
+    /** Department service reference. */
+    @Autowired
+    private DepartmentService departmentService;
+
+    /** Project service reference. */
+    @Autowired
+    private ProjectService projectService;
+
+    /** Leader election of the backend nodes. */
+    @Autowired
+    private LeaderElection leaderElection;
+
 	@Override
 	public String QuotaUpdateByResourceObject(Object resourceObject, String resourceType, Long accountTypeId,
 			String accountType, String status) throws Exception {
@@ -153,9 +181,9 @@ public class UpdateResourceCountServiceImpl implements UpdateResourceCountServic
 			resourceList.clear();
 			resourceList.add(ConvertEntityService.CS_NETWORK);
 			resourceUsageMap.put(ConvertEntityService.CS_NETWORK, 1L);
-			List<IpAddress> ipaddresse = ipaddressService.findByNetwork(net.getId());
-			if (ipaddresse.size() > 0) {
-				resourceUsageMap.put(ConvertEntityService.CS_IP, Long.valueOf(ipaddresse.size()));
+			Long ipaddresse = ipaddressService.findCountByNetwork(net.getId());
+			if (ipaddresse > 0) {
+				resourceUsageMap.put(ConvertEntityService.CS_IP, ipaddresse);
 				resourceList.add(ConvertEntityService.CS_IP);
 			}
 			if (accountType.equals(GenericConstants.PROJECT)) {
@@ -169,9 +197,9 @@ public class UpdateResourceCountServiceImpl implements UpdateResourceCountServic
 			resourceList.clear();
 			resourceList.add(ConvertEntityService.CS_VPC);
 			resourceUsageMap.put(ConvertEntityService.CS_VPC, 1L);
-			List<IpAddress> ipaddressVpc = ipaddressService.findByNetwork(vpc.getId());
-			if (ipaddressVpc.size() > 0) {
-				resourceUsageMap.put(ConvertEntityService.CS_IP, Long.valueOf(ipaddressVpc.size()));
+			Long ipaddressVpc = ipaddressService.findCountByNetwork(vpc.getId());
+			if (ipaddressVpc > 0) {
+				resourceUsageMap.put(ConvertEntityService.CS_IP, ipaddressVpc);
 				resourceList.add(ConvertEntityService.CS_IP);
 			}
 			if (accountType.equals(GenericConstants.PROJECT)) {
@@ -285,19 +313,16 @@ public class UpdateResourceCountServiceImpl implements UpdateResourceCountServic
 	 */
 	public void updateCountByDepartmentAndResourceType(Long departmentId, String resourceType, Long updateResourceCount,
 			String status) throws Exception {
-		ResourceLimitDepartment departmentLimit = resourceLimitDepartmentService.findByDepartmentAndResourceType(
-				departmentId, ResourceLimitDepartment.ResourceType.valueOf(resourceType), true);
+		ResourceLimitDepartment.ResourceType type = ResourceLimitDepartment.ResourceType.valueOf(resourceType);
+		int updated = 0;
 		if (status.equalsIgnoreCase(GenericConstants.UPDATE)) {
-			departmentLimit.setUsedLimit(EmptytoLong(departmentLimit.getUsedLimit()) + updateResourceCount);
+			updated = resourceLimitDepartmentService.addUsedLimit(departmentId, type, updateResourceCount);
 		} else if (status.equalsIgnoreCase(GenericConstants.DELETE)) {
-			if (EmptytoLong(departmentLimit.getUsedLimit()) > 0L) {
-				departmentLimit.setUsedLimit(departmentLimit.getUsedLimit() - updateResourceCount);
-			} else {
-				departmentLimit.setUsedLimit(0L);
-			}
+			updated = resourceLimitDepartmentService.subtractUsedLimit(departmentId, type, updateResourceCount);
+		}
+		if (updated == 0) {
+			LOGGER.debug("No active " + resourceType + " resource limit of department " + departmentId);
 		}
-		departmentLimit.setIsSyncFlag(false);
-		resourceLimitDepartmentService.update(departmentLimit);
 	}
 
 	/**
@@ -316,19 +341,141 @@ public class UpdateResourceCountServiceImpl implements UpdateResourceCountServic
 	 */
 	public void updateCountByProjectAndResourceType(Long projectId, String resourceType, Long updateResourceCount,
 			String status) throws Exception {
-		ResourceLimitProject projectLimit = resourceLimitProjectService.findByProjectAndResourceType(projectId,
-				ResourceLimitProject.ResourceType.valueOf(resourceType), true);
+		ResourceLimitProject.ResourceType type = ResourceLimitProject.ResourceType.valueOf(resourceType);
+		int updated = 0;
 		if (status.equalsIgnoreCase(GenericConstants.UPDATE)) {
-			projectLimit.setUsedLimit(EmptytoLong(projectLimit.getUsedLimit()) + updateResourceCount);
+			updated = resourceLimitProjectService.addUsedLimit(projectId, type, updateResourceCount);
 		} else if (status.equalsIgnoreCase(GenericConstants.DELETE)) {
-			if (EmptytoLong(projectLimit.getUsedLimit()) > 0L) {
-				projectLimit.setUsedLimit(projectLimit.getUsedLimit() - updateResourceCount);
-			} else {
-				projectLimit.setUsedLimit(0L);
+			updated = resourceLimitProjectService.subtractUsedLimit(projectId, type, updateResourceCount);
+		}
+		if (updated == 0) {
+			LOGGER.debug("No active " + resourceType + " resource limit of project " + projectId);
+		}
+	}
+
+	/**
+	 * Recount the resource usage of every active department and project in CloudStack and store it, logging the
+	 * used limits which had drifted from the CloudStack count. Stops once this node is no longer the leader of the term
+	 * it started in.
+	 */
+	@Scheduled(initialDelayString = "${resourceLimit.reconcile.interval:3600000}",
+			fixedDelayString = "${resourceLimit.reconcile.interval:3600000}")
+	public void reconcileResourceCounts() {
+		long term = leaderElection.getTerm();
+		if (!leaderElection.isLeader(term)) {
+			return;
+		}
+		int drifted = 0;
+		try {
+			config.setServer(1L);
+			for (Department department : departmentService.findAllByActive(true)) {
+				if (!leaderElection.isLeader(term)) {
+					LOGGER.warn("Lost the leader lease, resource count reconcile stopped");
+					return;
+				}
+				HashMap<String, String> accountMap = new HashMap<String, String>();
+				accountMap.put(CloudStackConstants.CS_ACCOUNT, department.getUserName());
+				drifted += reconcile(department.getDomainId(), accountMap, () -> usedLimits(
+						resourceLimitDepartmentService.findAllByDepartmentIdAndIsActive(department.getId(), true)),
+						"department " + department.getId());
+			}
+			for (Project project : projectService.findAllByActive(true)) {
+				if (!leaderElection.isLeader(term)) {
+					LOGGER.warn("Lost the leader lease, resource count reconcile stopped");
+					return;
+				}
+				HashMap<String, String> projectMap = new HashMap<String, String>();
+				projectMap.put(CloudStackConstants.CS_PROJECT_ID, project.getUuid());
+				drifted += reconcile(project.getDomainId(), projectMap, () -> projectUsedLimits(
+						resourceLimitProjectService.findAllByProjectIdAndIsActive(project.getId(), true)),
+						"project " + project.getId());
 			}
+		} catch (Exception e) {
+			LOGGER.error("Unable to reconcile resource counts", e);
+		} finally {
+			config.releaseServer();
 		}
-		projectLimit.setIsSyncFlag(false);
-		resourceLimitProjectService.update(projectLimit);
+		if (drifted > 0) {
+			LOGGER.warn(drifted + " resource used limits corrected from CloudStack counts");
+		}
+	}
+
+	/**
+	 * Recount the resource usage of an account or project in CloudStack and store it.
+	 *
+	 * @param domainId domain id
+	 * @param countMap account or project of the count
+	 * @param usedLimits reads the used limits by resource type
+	 * @param owner department or project, for logging
+	 * @return number of used limits which had drifted
+	 */
+	private int reconcile(Long domainId, HashMap<String, String> countMap, UsedLimits usedLimits, String owner) {
+		try {
+			HashMap<String, Long> before = usedLimits.read();
+			String csResponse = cloudStackResourceCapacity.updateResourceCount(
+					convertEntityService.getDomainById(domainId).getUuid(), countMap, CloudStackConstants.JSON);
+			convertEntityService.resourceCount(csResponse);
+			int drifted = 0;
+			for (Map.Entry<String, Long> used : usedLimits.read().entrySet()) {
+				Long previous = EmptytoLong(before.get(used.getKey()));
+				if (!previous.equals(used.getValue())) {
+					LOGGER.debug("Resource " + used.getKey() + " of " + owner + " drifted from " + previous + " to "
+							+ used.getValue());
+					drifted++;
+				}
+			}
+			return drifted;
+		} catch (OptimisticLockingFailureException | OptimisticLockException e) {
+			// A concurrent update bumped the version, the next run recounts again.
+			LOGGER.debug("Resource counts of " + owner + " updated concurrently, recounted on the next run: "
+					+ e.getMessage());
+			return 0;
+		} catch (Exception e) {
+			LOGGER.error("Unable to reconcile resource counts of " + owner, e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Get the used limits of department resources by resource type.
+	 *
+	 * @param limits department resource limits
+	 * @return used limits by resource type
+	 */
+	private HashMap<String, Long> usedLimits(List<ResourceLimitDepartment> limits) {
+		HashMap<String, Long> usedLimits = new HashMap<String, Long>();
+		for (ResourceLimitDepartment limit : limits) {
+			usedLimits.put(limit.getResourceType().name(), EmptytoLong(limit.getUsedLimit()));
+		}
+		return usedLimits;
+	}
+
+	/**
+	 * Get the used limits of project resources by resource type.
+	 *
+	 * @param limits project resource limits
+	 * @return used limits by resource type
+	 */
+	private HashMap<String, Long> projectUsedLimits(List<ResourceLimitProject> limits) {
+		HashMap<String, Long> usedLimits = new HashMap<String, Long>();
+		for (ResourceLimitProject limit : limits) {
+			usedLimits.put(limit.getResourceType().name(), EmptytoLong(limit.getUsedLimit()));
+		}
+		return usedLimits;
+	}
+
+	/**
+	 * Reads used limits by resource type.
+	 */
+	private interface UsedLimits {
+
+		/**
+		 * Read the used limits.
+		 *
+		 * @return used limits by resource type
+		 * @throws Exception if error occurs
+		 */
+		HashMap<String, Long> read() throws Exception;
 	}
 
 	/**
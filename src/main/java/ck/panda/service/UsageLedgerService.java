@@ -0,0 +1,56 @@
+package ck.panda.service;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.stereotype.Service;
+import ck.panda.rabbitmq.util.UsageEvent;
+
+/**
+ * Service interface for the usage ledger.
+ *
+ * Usage events from CS server are appended to the ledger in batches. Hourly and daily event counts and quantities
+ * per domain, department, project and resource type are kept up to date while appending.
+ */
+@Service
+public interface UsageLedgerService {
+
+    /**
+     * Queue a usage event for the next batch. Waits while the queue is full.
+     *
+     * @param usageEvent usage event from CS server.
+     * @return future completed once the event is committed, or completed exceptionally if it was not written.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    CompletableFuture<Void> append(UsageEvent usageEvent) throws InterruptedException;
+
+    /**
+     * Write the queued usage events and update the rollups.
+     *
+     * @return number of usage events written.
+     */
+    int flush();
+
+    /**
+     * Get the hourly usage of a domain.
+     *
+     * @param domainId domain id, null for all domains.
+     * @param from start of the period, inclusive.
+     * @param to end of the period, exclusive.
+     * @return rows of period start, domain id, department id, project id, resource type, event type, event count and
+     *         quantity.
+     */
+    List<Map<String, Object>> findHourlyUsage(Long domainId, ZonedDateTime from, ZonedDateTime to);
+
+    /**
+     * Get the daily usage of a domain.
+     *
+     * @param domainId domain id, null for all domains.
+     * @param from start of the period, inclusive.
+     * @param to end of the period, exclusive.
+     * @return rows of period start, domain id, department id, project id, resource type, event type, event count and
+     *         quantity.
+     */
+    List<Map<String, Object>> findDailyUsage(Long domainId, ZonedDateTime from, ZonedDateTime to);
+}
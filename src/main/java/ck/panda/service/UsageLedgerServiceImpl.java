@@ -0,0 +1,480 @@
+package ck.panda.service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ck.panda.domain.entity.Department;
+import ck.panda.rabbitmq.util.UsageEvent;
+import ck.panda.util.ConfigUtil;
+import ck.panda.util.SyncFingerprint;
+
+/**
+ * Usage ledger service implementation.
+ *
+ * Usage events are queued by the usage listener and written by a scheduled flush. Each flush inserts its events with
+ * one JDBC batch and adds their counts and quantities to the hourly and daily rollups with one upsert batch each, in
+ * one transaction. The ledger is append only; the rollups are the only rows ever updated.
+ *
+ * Events are delivered at least once, so each ledger row has a unique key, the fingerprint of the event fields. An
+ * event whose key is already in the ledger, as after a redelivery, is not inserted again and not added to the
+ * rollups; only the rows actually inserted are counted.
+ *
+ * The future of a queued event completes once its batch is committed, and fails when the batch cannot be written,
+ * so the listener acknowledges an event only once it is stored and the broker delivers it again otherwise.
+ */
+@Service
+public class UsageLedgerServiceImpl implements UsageLedgerService {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsageLedgerServiceImpl.class);
+
+    /** Ledger insert statement, skipping events already written. */
+    private static final String INSERT_LEDGER = "INSERT IGNORE INTO usage_ledger (event_key, event_type,"
+            + " resource_type, resource_uuid, zone_uuid, account_uuid, domain_id, department_id, project_id, quantity,"
+            + " event_date_time, received_date_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** Ledger event key select statement, the key placeholders are filled in. */
+    private static final String SELECT_EVENT_KEYS = "SELECT event_key FROM usage_ledger WHERE event_key IN (%s)";
+
+    /** Rollup upsert statement, the table name is filled in. */
+    private static final String UPSERT_ROLLUP = "INSERT INTO %s (period_start, domain_id, department_id, project_id,"
+            + " resource_type, event_type, event_count, quantity) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE event_count = event_count + VALUES(event_count),"
+            + " quantity = quantity + VALUES(quantity)";
+
+    /** Rollup select statement, the table name and domain condition are filled in. */
+    private static final String SELECT_ROLLUP = "SELECT period_start, domain_id, department_id, project_id,"
+            + " resource_type, event_type, event_count, quantity FROM %s WHERE period_start >= ? AND period_start < ?%s"
+            + " ORDER BY period_start";
+
+    /** Hourly rollup table. */
+    private static final String HOURLY_TABLE = "usage_rollup_hourly";
+
+    /** Daily rollup table. */
+    private static final String DAILY_TABLE = "usage_rollup_daily";
+
+    /** Id used for a domain, department or project that is not known. */
+    private static final long UNKNOWN_ID = 0L;
+
+    /** JDBC template reference. */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Transaction manager reference. */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /** Convert entity service reference. */
+    @Autowired
+    private ConvertEntityService convertEntityService;
+
+    /** Cloud stack configuration reference. */
+    @Autowired
+    private ConfigUtil configUtil;
+
+    /** Maximum number of usage events written by one batch. */
+    @Value(value = "${usage.ledger.batchSize:500}")
+    private Integer batchSize;
+
+    /** Maximum number of usage events waiting for a flush. */
+    @Value(value = "${usage.ledger.queueCapacity:10000}")
+    private Integer queueCapacity;
+
+    /** Usage events waiting for a flush. */
+    private BlockingQueue<Pending> pending;
+
+    /** Whether the flush still writes, false once shutting down. */
+    private volatile boolean running = true;
+
+    /** Department id and domain id by account uuid. */
+    private final ConcurrentMap<String, long[]> accounts = new ConcurrentHashMap<String, long[]>();
+
+    /**
+     * Create the queue.
+     */
+    @PostConstruct
+    public void init() {
+        pending = new LinkedBlockingQueue<Pending>(queueCapacity);
+    }
+
+    /**
+     * Stop writing and fail the events still queued. The listener containers have stopped and closed their channels
+     * by now, so these events are not acknowledged and the broker delivers them again.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        List<Pending> left = new ArrayList<Pending>();
+        pending.drainTo(left);
+        if (!left.isEmpty()) {
+            LOGGER.info(left.size() + " usage events not written, left for redelivery");
+        }
+        IllegalStateException stopped = new IllegalStateException("Usage ledger stopped");
+        for (Pending event : left) {
+            event.committed.completeExceptionally(stopped);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> append(UsageEvent usageEvent) throws InterruptedException {
+        Pending event = new Pending(usageEvent);
+        pending.put(event);
+        return event.committed;
+    }
+
+    /**
+     * Write every queued usage event, one batch at a time.
+     */
+    @Scheduled(fixedDelayString = "${usage.ledger.flushInterval:5000}")
+    public void flushAll() {
+        try {
+            while (running && flush() == batchSize) {
+                LOGGER.debug("Usage ledger batch written, " + pending.size() + " events left");
+            }
+        } finally {
+            // Account lookups may bind a CloudStack client to the scheduler thread.
+            configUtil.releaseServer();
+        }
+    }
+
+    @Override
+    public int flush() {
+        List<Pending> batch = new ArrayList<Pending>(batchSize);
+        pending.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Timestamp receivedAt = Timestamp.valueOf(LocalDateTime.now());
+        // A redelivered event may be queued twice in one batch, it is written once.
+        Map<String, LedgerRow> rows = new LinkedHashMap<String, LedgerRow>();
+        try {
+            for (Pending event : batch) {
+                UsageEvent usageEvent = event.usageEvent;
+                String eventKey = eventKey(usageEvent);
+                if (!rows.containsKey(eventKey)) {
+                    rows.put(eventKey, new LedgerRow(eventKey, usageEvent, eventDateTime(usageEvent),
+                            resolveAccount(usageEvent.getAccount()), resolveProject(usageEvent.getProject())));
+                }
+            }
+            new TransactionTemplate(transactionManager).execute(status -> {
+                List<LedgerRow> inserted = insertLedger(new ArrayList<LedgerRow>(rows.values()), receivedAt);
+                Map<List<Object>, long[]> hourly = new HashMap<List<Object>, long[]>();
+                Map<List<Object>, long[]> daily = new HashMap<List<Object>, long[]>();
+                for (LedgerRow row : inserted) {
+                    count(hourly, Timestamp.valueOf(row.eventAt.truncatedTo(ChronoUnit.HOURS)), row);
+                    count(daily, Date.valueOf(row.eventAt.toLocalDate()), row);
+                }
+                if (inserted.size() < rows.size()) {
+                    LOGGER.info((rows.size() - inserted.size()) + " usage events already written, not counted again");
+                }
+                jdbcTemplate.batchUpdate(String.format(UPSERT_ROLLUP, HOURLY_TABLE), rollupRows(hourly));
+                jdbcTemplate.batchUpdate(String.format(UPSERT_ROLLUP, DAILY_TABLE), rollupRows(daily));
+                return null;
+            });
+        } catch (Exception e) {
+            LOGGER.error("Unable to write " + batch.size() + " usage events, left for redelivery", e);
+            for (Pending event : batch) {
+                event.committed.completeExceptionally(e);
+            }
+            return 0;
+        }
+        for (Pending event : batch) {
+            event.committed.complete(null);
+        }
+        return batch.size();
+    }
+
+    @Override
+    public List<Map<String, Object>> findHourlyUsage(Long domainId, ZonedDateTime from, ZonedDateTime to) {
+        return findUsage(HOURLY_TABLE, domainId, Timestamp.valueOf(localDateTime(from)),
+                Timestamp.valueOf(localDateTime(to)));
+    }
+
+    @Override
+    public List<Map<String, Object>> findDailyUsage(Long domainId, ZonedDateTime from, ZonedDateTime to) {
+        return findUsage(DAILY_TABLE, domainId, Date.valueOf(localDateTime(from).toLocalDate()),
+                Date.valueOf(localDateTime(to).toLocalDate()));
+    }
+
+    /**
+     * Read the rollup rows of a period.
+     *
+     * @param table rollup table
+     * @param domainId domain id, null for all domains
+     * @param from start of the period, inclusive
+     * @param to end of the period, exclusive
+     * @return rollup rows
+     */
+    private List<Map<String, Object>> findUsage(String table, Long domainId, Object from, Object to) {
+        if (domainId == null) {
+            return jdbcTemplate.queryForList(String.format(SELECT_ROLLUP, table, ""), from, to);
+        }
+        return jdbcTemplate.queryForList(String.format(SELECT_ROLLUP, table, " AND domain_id = ?"), from, to,
+                domainId);
+    }
+
+    /**
+     * Insert the ledger rows whose event key is not in the ledger yet.
+     *
+     * The keys already written are read first, as the update counts of a rewritten batch are not known; the insert
+     * skips a row written in between, which then reports no update.
+     *
+     * @param rows ledger rows, one per event key
+     * @param receivedAt time the batch is written
+     * @return rows inserted
+     */
+    private List<LedgerRow> insertLedger(List<LedgerRow> rows, Timestamp receivedAt) {
+        StringBuilder placeholders = new StringBuilder();
+        Object[] keys = new Object[rows.size()];
+        for (int index = 0; index < rows.size(); index++) {
+            placeholders.append(index == 0 ? "?" : ", ?");
+            keys[index] = rows.get(index).eventKey;
+        }
+        Set<String> written = new HashSet<String>(
+                jdbcTemplate.queryForList(String.format(SELECT_EVENT_KEYS, placeholders), String.class, keys));
+        List<LedgerRow> candidates = new ArrayList<LedgerRow>(rows.size());
+        List<Object[]> ledgerRows = new ArrayList<Object[]>(rows.size());
+        for (LedgerRow row : rows) {
+            if (!written.contains(row.eventKey)) {
+                UsageEvent usageEvent = row.usageEvent;
+                candidates.add(row);
+                ledgerRows.add(new Object[] {row.eventKey, usageEvent.getEvent(), usageEvent.getResource(),
+                        usageEvent.getId(), usageEvent.getZone(), usageEvent.getAccount(), row.account[1],
+                        row.account[0], row.projectId, row.quantity, Timestamp.valueOf(row.eventAt), receivedAt });
+            }
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_LEDGER, ledgerRows);
+        List<LedgerRow> inserted = new ArrayList<LedgerRow>(candidates.size());
+        for (int index = 0; index < candidates.size(); index++) {
+            if (counts == null || index >= counts.length || counts[index] != 0) {
+                inserted.add(candidates.get(index));
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Add a ledger row to the rollup count and quantity of a period.
+     *
+     * @param rollup count and quantity by rollup key
+     * @param periodStart start of the hour or day
+     * @param row ledger row
+     */
+    private void count(Map<List<Object>, long[]> rollup, Object periodStart, LedgerRow row) {
+        List<Object> key = new ArrayList<Object>(6);
+        key.add(periodStart);
+        key.add(row.account[1]);
+        key.add(row.account[0]);
+        key.add(row.projectId);
+        key.add(row.usageEvent.getResource());
+        key.add(row.usageEvent.getEvent());
+        long[] totals = rollup.computeIfAbsent(key, rollupKey -> new long[2]);
+        totals[0]++;
+        totals[1] += row.quantity;
+    }
+
+    /**
+     * Get the key of a usage event, the same for each delivery of the event.
+     *
+     * @param usageEvent usage event
+     * @return hex SHA-256 fingerprint of the event fields
+     */
+    private String eventKey(UsageEvent usageEvent) {
+        return SyncFingerprint.of(usageEvent.getEvent(), usageEvent.getResource(), usageEvent.getId(),
+                usageEvent.getAccount(), usageEvent.getZone(), usageEvent.getProject(), usageEvent.getEventDateTime(),
+                usageEvent.getSize());
+    }
+
+    /**
+     * Convert the rollup counts and quantities to upsert rows.
+     *
+     * @param rollup count and quantity by rollup key
+     * @return upsert rows
+     */
+    private List<Object[]> rollupRows(Map<List<Object>, long[]> rollup) {
+        List<Object[]> rows = new ArrayList<Object[]>(rollup.size());
+        for (Map.Entry<List<Object>, long[]> entry : rollup.entrySet()) {
+            List<Object> row = new ArrayList<Object>(entry.getKey());
+            row.add(entry.getValue()[0]);
+            row.add(entry.getValue()[1]);
+            rows.add(row.toArray());
+        }
+        return rows;
+    }
+
+    /**
+     * Get the usage quantity of an event: the resource size in bytes when the event carries one, as CS server sends
+     * no other usage measure on the event bus.
+     *
+     * @param usageEvent usage event
+     * @return quantity, 0 when the event has none
+     */
+    private long quantity(UsageEvent usageEvent) {
+        return usageEvent.getSize() != null ? usageEvent.getSize() : 0L;
+    }
+
+    /**
+     * Get the event date and time in the server time zone, or the current time if the event has none.
+     *
+     * @param usageEvent usage event
+     * @return event date and time
+     */
+    private LocalDateTime eventDateTime(UsageEvent usageEvent) {
+        if (usageEvent.getEventDateTime() != null) {
+            try {
+                return localDateTime(
+                        convertEntityService.getTimeService().convertDateAndTime(usageEvent.getEventDateTime()));
+            } catch (Exception e) {
+                LOGGER.debug("Invalid usage event date " + usageEvent.getEventDateTime(), e.getMessage());
+            }
+        }
+        return LocalDateTime.now();
+    }
+
+    /**
+     * Convert a date and time to the server time zone.
+     *
+     * @param dateTime date and time
+     * @return local date and time
+     */
+    private LocalDateTime localDateTime(ZonedDateTime dateTime) {
+        return dateTime.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    /**
+     * Get the department id and domain id of an account.
+     *
+     * @param accountUuid account uuid
+     * @return department id and domain id, unknown ids if the account is not synced yet
+     */
+    private long[] resolveAccount(String accountUuid) {
+        if (accountUuid == null) {
+            return new long[] {UNKNOWN_ID, UNKNOWN_ID };
+        }
+        long[] ids = accounts.get(accountUuid);
+        if (ids == null) {
+            try {
+                Department department = convertEntityService.getDepartment(accountUuid);
+                if (department != null) {
+                    long domainId = department.getDomainId() != null ? department.getDomainId() : UNKNOWN_ID;
+                    ids = new long[] {department.getId(), domainId };
+                    accounts.put(accountUuid, ids);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Unable to resolve usage account " + accountUuid, e.getMessage());
+            }
+        }
+        return ids != null ? ids : new long[] {UNKNOWN_ID, UNKNOWN_ID };
+    }
+
+    /**
+     * Get the id of a project.
+     *
+     * @param projectUuid project uuid
+     * @return project id, unknown id if the event has no project
+     */
+    private long resolveProject(String projectUuid) {
+        if (projectUuid == null || projectUuid.isEmpty()) {
+            return UNKNOWN_ID;
+        }
+        try {
+            Long projectId = convertEntityService.getProjectId(projectUuid);
+            return projectId != null ? projectId : UNKNOWN_ID;
+        } catch (Exception e) {
+            LOGGER.debug("Unable to resolve usage project " + projectUuid, e.getMessage());
+            return UNKNOWN_ID;
+        }
+    }
+
+    /**
+     * Ledger row of a usage event.
+     */
+    private final class LedgerRow {
+
+        /** Event key. */
+        private final String eventKey;
+
+        /** Usage event. */
+        private final UsageEvent usageEvent;
+
+        /** Event date and time in the server time zone. */
+        private final LocalDateTime eventAt;
+
+        /** Department id and domain id. */
+        private final long[] account;
+
+        /** Project id. */
+        private final long projectId;
+
+        /** Usage quantity of the event. */
+        private final long quantity;
+
+        /**
+         * Create a ledger row.
+         *
+         * @param eventKey event key
+         * @param usageEvent usage event
+         * @param eventAt event date and time
+         * @param account department id and domain id
+         * @param projectId project id
+         */
+        LedgerRow(String eventKey, UsageEvent usageEvent, LocalDateTime eventAt, long[] account, long projectId) {
+            this.eventKey = eventKey;
+            this.usageEvent = usageEvent;
+            this.eventAt = eventAt;
+            this.account = account;
+            this.projectId = projectId;
+            this.quantity = quantity(usageEvent);
+        }
+    }
+
+    /**
+     * Usage event waiting for a flush.
+     */
+    private static final class Pending {
+
+        /** Usage event. */
+        private final UsageEvent usageEvent;
+
+        /** Completed once the event is committed. */
+        private final CompletableFuture<Void> committed = new CompletableFuture<Void>();
+
+        /**
+         * Create a pending event.
+         *
+         * @param usageEvent usage event
+         */
+        Pending(UsageEvent usageEvent) {
+            this.usageEvent = usageEvent;
+        }
+    }
+}
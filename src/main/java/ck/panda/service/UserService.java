@@ -41,6 +41,15 @@ public interface UserService extends CRUDService<User> {
      */
     List<User> findAllFromCSServerByDomain() throws Exception;
 
+    /**
+     * To get a user from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the user.
+     * @return user from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    User findFromCSServer(String uuid) throws Exception;
+
     /**
      * To get list of users by department.
      *
@@ -1,14 +1,12 @@
 package ck.panda.service;
 
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -60,6 +58,10 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
 
+    /** Role permission evaluator, caching the suspended state of users. */
+    @Autowired
+    private RolePermissionService rolePermissionService;
+
     /** CloudStack user service reference. */
     @Autowired
     private CloudStackUserService csUserService;
@@ -137,9 +139,7 @@ public class UserServiceImpl implements UserService {
                 user.setType(User.UserType.USER);
                 user.setStatus(Status.ACTIVE);
                 user.setRoleId(user.getRole().getId());
-                String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-                byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+                SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                 String encryptedPassword = new String(EncryptionUtil.encrypt(user.getPassword(), originalKey));
                 user.setIsActive(true);
                 if ((convertEntityService.getOwnerById(id).getType()).equals(User.UserType.ROOT_ADMIN)) {
@@ -179,7 +179,7 @@ public class UserServiceImpl implements UserService {
                 user.setDomainId(user.getDomainId());
                 user.setStatus(user.getStatus()
                         .valueOf(userRes.getString(CloudStackConstants.CS_STATE).toUpperCase()));
-                user = userRepository.save(user);
+                user = saveAndEvict(user);
                 if (user.getProjectList() != null) {
                     for (Project project : user.getProjectList()) {
                         Project persistProject = projectService.find(project.getId());
@@ -193,7 +193,7 @@ public class UserServiceImpl implements UserService {
                 return user;
             }
         } else {
-            return userRepository.save(user);
+            return saveAndEvict(user);
         }
     }
 
@@ -242,10 +242,10 @@ public class UserServiceImpl implements UserService {
                     domain.setSyncFlag(false);
                     domainService.update(domain);
                 }
-                return userRepository.save(user);
+                return saveAndEvict(user);
             }
         } else {
-            return userRepository.save(user);
+            return saveAndEvict(user);
         }
     }
 
@@ -298,38 +298,51 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public List<User> findAllFromCSServerByDomain() throws Exception {
-        List<User> userList = new ArrayList<User>();
         HashMap<String, String> userMap = new HashMap<String, String>();
-        // userMap.put("domainid", domainUuid);
         userMap.put(cloudStackConstants.CS_LIST_ALL, "true");
+        return findAllFromCSServerByDomain(userMap);
+    }
+
+    @Override
+    public User findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> userMap = new HashMap<String, String>();
+        userMap.put(cloudStackConstants.CS_LIST_ALL, "true");
+        userMap.put(cloudStackConstants.CS_ID, uuid);
+        List<User> userList = findAllFromCSServerByDomain(userMap);
+        return userList.isEmpty() ? null : userList.get(0);
+    }
+
+    /**
+     * Get the users from CS server matching the filter.
+     *
+     * @param userMap list filter.
+     * @return user list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<User> findAllFromCSServerByDomain(HashMap<String, String> userMap) throws Exception {
+        List<User> userList = new ArrayList<User>();
+        // userMap.put("domainid", domainUuid);
         // 1. Get the list of users from CS server using CS connector
         config.setServer(1L);
-        String response = csUserService.listUsers(userMap, cloudStackConstants.JSON);
-        JSONArray userListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject("listusersresponse");
-        if (responseObject.has(cloudStackConstants.CS_USER)) {
-            userListJSON = responseObject.getJSONArray(cloudStackConstants.CS_USER);
-            // 2. Iterate the json list, convert the single json entity to user
-            for (int i = 0, size = userListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to User entity and Add
-                // the converted User entity to list.
-                User user = User.convert(userListJSON.getJSONObject(i));
-                if(user.getType() == UserType.DOMAIN_ADMIN) {
-                    Domain domain = domainService.findByUUIDAndIsActive(user.getTransDomainId());
-                    domain.setEmail(user.getEmail());
-                    domain.setLastName(user.getLastName());
-                    domain.setPrimaryFirstName(user.getFirstName());
-                    domain.setPortalUserName(user.getUserName());
-                    domain.setSyncFlag(false);
-                    domainService.save(domain);
-                }
-                if (!user.getUserName().equalsIgnoreCase("baremetal-system-account")) {
-                    user.setDepartmentId((convertEntityService.getDepartment(user.getTransDepartment()).getId()));
-                    user.setDomainId(convertEntityService.getDomainId(user.getTransDomainId()));
-                    userList.add(user);
-                }
+        csUserService.listUsers(userMap, userJson -> {
+            // 2.1 Call convert by passing JSONObject to User entity and Add
+            // the converted User entity to list.
+            User user = User.convert(userJson);
+            if(user.getType() == UserType.DOMAIN_ADMIN) {
+                Domain domain = domainService.findByUUIDAndIsActive(user.getTransDomainId());
+                domain.setEmail(user.getEmail());
+                domain.setLastName(user.getLastName());
+                domain.setPrimaryFirstName(user.getFirstName());
+                domain.setPortalUserName(user.getUserName());
+                domain.setSyncFlag(false);
+                domainService.save(domain);
             }
-        }
+            if (!user.getUserName().equalsIgnoreCase("baremetal-system-account")) {
+                user.setDepartmentId((convertEntityService.getDepartment(user.getTransDepartment()).getId()));
+                user.setDomainId(convertEntityService.getDomainId(user.getTransDomainId()));
+                userList.add(user);
+            }
+        });
         return userList;
     }
 
@@ -373,12 +386,10 @@ public class UserServiceImpl implements UserService {
         }
         User user = userRepository.findByUser(userName.trim(), domainService.findByName(domain), true);
         if (user != null && password != null) {
-            String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             String encryptedPassword = new String(EncryptionUtil.encrypt(password, originalKey));
             user.setPassword(encryptedPassword);
-            userRepository.save(user);
+            saveAndEvict(user);
         }
         return user;
     }
@@ -405,7 +416,7 @@ public class UserServiceImpl implements UserService {
                 roleService.save(role);
             }
         }
-        return userRepository.save(user);
+        return saveAndEvict(user);
     }
 
     /**
@@ -451,7 +462,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public List<User> assignUserRoles(List<User> users) throws Exception {
         for (User user : users) {
-            userRepository.save(user);
+            saveAndEvict(user);
         }
         return users;
     }
@@ -495,7 +506,7 @@ public class UserServiceImpl implements UserService {
         user.setIsActive(true);
         user.setStatus(user.getStatus()
                 .valueOf(enableUserResponse.getString(CloudStackConstants.CS_STATE).toUpperCase()));
-        return userRepository.save(user);
+        return saveAndEvict(user);
     }
 
     @Override
@@ -515,7 +526,7 @@ public class UserServiceImpl implements UserService {
                     .getJSONObject(CloudStackConstants.QUERY_ASYNC_JOB_RESULT_RESPONSE);
             user.setStatus(Status.DISABLED);
         }
-        return userRepository.save(user);
+        return saveAndEvict(user);
       }
 
     @Override
@@ -523,9 +534,7 @@ public class UserServiceImpl implements UserService {
     public User updatePassword(User user) throws Exception {
         if (user.getSyncFlag()) {
             Errors errors = validator.rejectIfNullEntity(cloudStackConstants.CS_USER, user);
-            String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(CS_UTF));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, CS_AES);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             if (user.getPassword() != null) {
                 User validateUser = userRepository.findOne(user.getId());
                 String validatePassword = new String(EncryptionUtil.encrypt(user.getPassword(), originalKey));
@@ -550,10 +559,10 @@ public class UserServiceImpl implements UserService {
                 user.setPassword(encryptedPassword);
             }
             sendEmailForPasswordUpdate(user);
-            return userRepository.save(user);
+            return saveAndEvict(user);
         } else {
             user.setStatus(Status.ACTIVE);
-            return userRepository.save(user);
+            return saveAndEvict(user);
         }
     }
 
@@ -647,7 +656,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public User save(User user) throws Exception {
         if (!user.getSyncFlag()) {
-            return userRepository.save(user);
+            return saveAndEvict(user);
         }
         return user;
     }
@@ -681,7 +690,7 @@ public class UserServiceImpl implements UserService {
         if (user.getStatus() == User.Status.SUSPENDED) {
             virtualMachineService.updateVmToStoppedByOwnerAndStatus(users, VmInstance.Status.RUNNING);
         }
-        return userRepository.save(users);
+        return saveAndEvict(users);
     }
 
     @Override
@@ -781,7 +790,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public User update(User user) throws Exception {
         if (!user.getSyncFlag()) {
-            return userRepository.save(user);
+            return saveAndEvict(user);
         }
         return user;
     }
@@ -789,8 +798,20 @@ public class UserServiceImpl implements UserService {
     @Override
     public User softDelete(User user) throws Exception {
         if (!user.getSyncFlag()) {
-            return userRepository.save(user);
+            return saveAndEvict(user);
         }
         return user;
     }
+
+    /**
+     * Save the user and drop its cached permission state.
+     *
+     * @param user user to save
+     * @return saved user
+     */
+    private User saveAndEvict(User user) {
+        User savedUser = userRepository.save(user);
+        rolePermissionService.evictUser(savedUser.getId());
+        return savedUser;
+    }
 }
@@ -535,8 +535,8 @@ public class VPCServiceImpl implements VPCService {
      */
     private List<VPC> getVPCListByUserWihtoutPaging(Long userId) throws  Exception {
         User user = convertEntityService.getOwnerById(userId);
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             List<VPC> projectVPC = vpcRepository.findAByProjectDepartmentAndIsActiveWithoutPaging(allProjectList,
                     user.getDepartmentId(), true, Status.ENABLED);
             return projectVPC;
@@ -555,11 +555,8 @@ public class VPCServiceImpl implements VPCService {
      */
     private Page<VPC> getVPCListByUser(PagingAndSorting pagingAndSorting, Long userId) throws  Exception {
         User user = convertEntityService.getOwnerById(userId);
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = new ArrayList<Project>();
-            for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                allProjectList.add(project);
-            }
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             Page<VPC> projectVpc = vpcRepository.findByProjectDepartmentAndIsActive(allProjectList,
                     user.getDepartmentId(), true, pagingAndSorting.toPageRequest(), Status.ENABLED);
             return projectVpc;
@@ -624,8 +621,8 @@ public class VPCServiceImpl implements VPCService {
             vpcs = vpcRepository.findDomainBySearchText((convertEntityService.getOwnerById(user.getId())
                     .getDomainId()), pagingAndSorting.toPageRequest(), searchText, true, Status.ENABLED);
         } else if (convertEntityService.getOwnerById(user.getId()).getType().equals(User.UserType.USER)) {
-            if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            if (!allProjectList.isEmpty()) {
                 Page<VPC> projectVPC = vpcRepository.findByProjectDepartmentAndIsActiveAndSearchText(allProjectList, user.getDepartmentId(),true, pagingAndSorting.toPageRequest(),searchText,user.getDomainId(), Status.ENABLED);
                 vpcs = projectVPC;
             } else {
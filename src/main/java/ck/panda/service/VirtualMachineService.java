@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 import ck.panda.domain.entity.User;
 import ck.panda.domain.entity.VmInstance;
 import ck.panda.domain.entity.VmInstance.Status;
+import ck.panda.util.CloudStackEntityHandler;
 import ck.panda.util.domain.CRUDService;
 import ck.panda.util.domain.vo.PagingAndSorting;
 
@@ -68,6 +69,14 @@ public interface VirtualMachineService extends CRUDService<VmInstance> {
      */
     List<VmInstance> findAllFromCSServer() throws Exception;
 
+    /**
+     * To stream the instances from cloudstack server, handing each instance to the handler as it is read.
+     *
+     * @param handler handler of each instance.
+     * @throws Exception unhandled errors.
+     */
+    void findAllFromCSServer(CloudStackEntityHandler<VmInstance> handler) throws Exception;
+
     /**
      * To get list of instance by except status.
      *
@@ -136,6 +145,15 @@ public interface VirtualMachineService extends CRUDService<VmInstance> {
      */
     Integer findCountByStatus(Status status, Long userId);
 
+    /**
+     * Get the count of the instances of a user, except expunging instances.
+     *
+     * @param userId user id.
+     * @return count.
+     * @throws Exception unhandled errors.
+     */
+    Integer findCountByUser(Long userId) throws Exception;
+
     /**
      * Get the count of the instance based on the status.
      *
@@ -298,6 +316,17 @@ public interface VirtualMachineService extends CRUDService<VmInstance> {
      */
     Integer findCountByStatusAndDomain(Status status, Long domainId, Long userId, String searchText);
 
+    /**
+     * Get the count of the instances of a domain, except expunging instances.
+     *
+     * @param domainId domain id.
+     * @param userId user id.
+     * @param searchText search text.
+     * @return count.
+     * @throws Exception unhandled errors.
+     */
+    Integer findCountByDomain(Long domainId, Long userId, String searchText) throws Exception;
+
     /**
      * Find list of vm Instances by domain without pagination.
      *
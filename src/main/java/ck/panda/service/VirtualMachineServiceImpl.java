@@ -1,12 +1,9 @@
 package ck.panda.service;
 
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.EventTypes;
 import ck.panda.constants.GenericConstants;
@@ -24,6 +21,7 @@ import ck.panda.domain.entity.VmInstance.Status;
 import ck.panda.domain.entity.User.UserType;
 import ck.panda.domain.repository.jpa.VirtualMachineRepository;
 import ck.panda.util.AppValidator;
+import ck.panda.util.CloudStackEntityHandler;
 import ck.panda.util.CloudStackInstanceService;
 import ck.panda.util.CloudStackIsoService;
 import ck.panda.util.CloudStackResourceCapacity;
@@ -586,9 +584,7 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 if (!jobState.equals(GenericConstants.DEFAULT_JOB_STATUS)
                         && !jobState.equals(GenericConstants.ERROR_JOB_STATUS)) {
                     if (jobState.equals(GenericConstants.SUCCEEDED_JOB_STATUS)) {
-                        String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-                        byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-                        SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, GenericConstants.ENCRYPT_ALGORITHM);
+                        SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
                         config.setUserServer();
                         String instances = cloudStackInstanceService.queryAsyncJobResult(
                                 instance.getString(CloudStackConstants.CS_JOB_ID), CloudStackConstants.JSON);
@@ -641,12 +637,8 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<Project> projectList = new ArrayList<Project>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms are not in expunging state by project and/or department.
-                        projectList.add(project);
-                    }
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     Page<VmInstance> allInstanceTempList = virtualmachinerepository
                             .findAllByDepartmentAndProjectAndExceptStatusAndPage(Status.EXPUNGING, user.getDepartment(),
                                     projectList, pagingAndSorting.toPageRequest(), EMPTY_SEARCH_FILTER);
@@ -677,12 +669,8 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<Project> projectList = new ArrayList<Project>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms for the current user by status and project and/or department.
-                        projectList.add(project);
-                    }
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     Page<VmInstance> allInstanceList = virtualmachinerepository
                             .findAllByDepartmentAndProjectAndStatusAndPage(status, user.getDepartment(), projectList,
                                     pagingAndSorting.toPageRequest(), EMPTY_SEARCH_FILTER);
@@ -712,19 +700,12 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                             .findAllByDomainAndExceptStatus(user.getDomainId(), Status.EXPUNGING, EMPTY_SEARCH_FILTER);
                     return allInstanceList;
                 } else {
-                    if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                        List<VmInstance> allInstanceList = new ArrayList<VmInstance>();
-                        // Get active project list for current user.
-                        for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                            // List all Vms are not in expunging state by project and/or department.
-                            List<VmInstance> allInstanceTempList = virtualmachinerepository
-                                    .findAllByDepartmentAndProjectAndExceptStatus(Status.EXPUNGING,
-                                            user.getDepartment(), project, EMPTY_SEARCH_FILTER);
-                            allInstanceList.addAll(allInstanceTempList);
-                        }
+                    // Get active project list for current user.
+                    List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                    if (!projectList.isEmpty()) {
                         // List all Vms are not in expunging state by current user, belongs to department and project.
-                        List<VmInstance> instances = allInstanceList.stream().distinct().collect(Collectors.toList());
-                        return instances;
+                        return virtualmachinerepository.findAllByDepartmentAndProjectListAndExceptStatus(
+                                Status.EXPUNGING, user.getDepartment(), projectList, EMPTY_SEARCH_FILTER);
                     } else {
                         // List all Vms are not in expunging state for ROOT admin.
                         List<VmInstance> allInstanceLists = virtualmachinerepository
@@ -812,27 +793,23 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
     @Override
     public List<VmInstance> findAllFromCSServer() throws Exception {
         List<VmInstance> vmList = new ArrayList<VmInstance>();
+        findAllFromCSServer(vmList::add);
+        return vmList;
+    }
+
+    @Override
+    public void findAllFromCSServer(CloudStackEntityHandler<VmInstance> handler) throws Exception {
         List<Project> project = projectService.findAllByActive(true);
         HashMap<String, String> vmMap = new HashMap<String, String>();
-        List<VmInstance> csVmList = null;
-        if (project.size() > 0) {
-            for (int j = 0; j < project.size(); j++) {
-                vmMap.clear();
-                vmMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
-                vmMap.put(CloudStackConstants.CS_PROJECT_ID, project.get(j).getUuid());
-                csVmList = updateVmFromCSServer(vmMap);
-                if (csVmList != null) {
-                    vmList.addAll(csVmList);
-                }
-            }
+        for (int j = 0; j < project.size(); j++) {
+            vmMap.clear();
+            vmMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
+            vmMap.put(CloudStackConstants.CS_PROJECT_ID, project.get(j).getUuid());
+            updateVmFromCSServer(vmMap, handler);
         }
         vmMap.clear();
         vmMap.put(CloudStackConstants.CS_LIST_ALL, CloudStackConstants.STATUS_ACTIVE);
-        csVmList = updateVmFromCSServer(vmMap);
-        if (csVmList != null) {
-            vmList.addAll(csVmList);
-        }
-        return vmList;
+        updateVmFromCSServer(vmMap, handler);
     }
 
     /**
@@ -846,26 +823,19 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
             if (user != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
                 if (user.getType().equals(UserType.DOMAIN_ADMIN)) {
                     // Vms count by status for domain admin.
-                    List<VmInstance> allInstanceList = virtualmachinerepository
-                            .findAllByDomainAndStatus(user.getDomainId(), status, EMPTY_SEARCH_FILTER);
-                    return allInstanceList.size();
+                    return virtualmachinerepository.countByDomainAndStatus(user.getDomainId(), status,
+                            EMPTY_SEARCH_FILTER).intValue();
                 } else {
                     // Get active project list for current user.
-                    if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                        List<VmInstance> allInstanceList = new ArrayList<VmInstance>();
-                        for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                            List<VmInstance> allInstanceTempList = virtualmachinerepository
-                                    .findAllByDepartmentAndProjectAndStatus(status, user.getDepartment(), project, EMPTY_SEARCH_FILTER);
-                            allInstanceList.addAll(allInstanceTempList);
-                        }
-                        List<VmInstance> instances = allInstanceList.stream().distinct().collect(Collectors.toList());
+                    List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                    if (projectList.size() > 0) {
                         // Vms count by status belongs to the project and/or department.
-                        return instances.size();
+                        return virtualmachinerepository.countByDepartmentAndProjectAndStatus(status,
+                                user.getDepartment(), projectList, EMPTY_SEARCH_FILTER).intValue();
                     } else {
-                        List<VmInstance> allInstanceLists = virtualmachinerepository
-                                .findAllByDepartmentAndStatus(status, user.getDepartment(), EMPTY_SEARCH_FILTER);
                         // Vms count by status for an ROOT admin.
-                        return allInstanceLists.size();
+                        return virtualmachinerepository.countByDepartmentAndStatus(status, user.getDepartment(),
+                                EMPTY_SEARCH_FILTER).intValue();
                     }
                 }
             }
@@ -875,6 +845,29 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
         return virtualmachinerepository.findCountByStatus(status);
     }
 
+    @Override
+    public Integer findCountByUser(Long userId) throws Exception {
+        User user = convertEntityService.getOwnerById(userId);
+        if (user != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
+            if (user.getType().equals(UserType.DOMAIN_ADMIN)) {
+                // Count all Vms except expunging for domain admin.
+                return virtualmachinerepository.countByDomainAndExceptStatus(user.getDomainId(), Status.EXPUNGING,
+                        EMPTY_SEARCH_FILTER).intValue();
+            }
+            // Get active project list for current user.
+            List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            if (projectList.size() > 0) {
+                // Count all Vms except expunging, belongs to the project and/or department.
+                return virtualmachinerepository.countByDepartmentAndProjectAndExceptStatus(Status.EXPUNGING,
+                        user.getDepartment(), projectList, EMPTY_SEARCH_FILTER).intValue();
+            } else {
+                return virtualmachinerepository.countByDepartmentAndExceptStatus(Status.EXPUNGING,
+                        user.getDepartment(), EMPTY_SEARCH_FILTER).intValue();
+            }
+        }
+        return virtualmachinerepository.countByExceptStatus(Status.EXPUNGING).intValue();
+    }
+
     @Override
     public VmInstance updateDisplayName(VmInstance vminstance) throws Exception {
         Errors errors = validator.rejectIfNullEntity(CloudStackConstants.ENTITY_VMINSTANCE, vminstance);
@@ -1058,9 +1051,7 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
     private VmInstance convertEncryptPassword(VmInstance vminstance) throws Exception {
         // Set password from CS for an instance with AES encryption.
         if (vminstance.getVncPassword() != null && vminstance.getVncPassword().length() < 10) {
-            String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             String encryptedPassword = new String(EncryptionUtil.encrypt(vminstance.getVncPassword(), originalKey));
             vminstance.setVncPassword(encryptedPassword);
         }
@@ -1129,64 +1120,73 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
      */
     public List<VmInstance> updateVmFromCSServer(HashMap<String, String> vmMap) throws Exception {
         List<VmInstance> vmList = new ArrayList<VmInstance>();
+        updateVmFromCSServer(vmMap, vmList::add);
+        return vmList;
+    }
+
+    /**
+     * Stream VMs from cloudStack server, handing each converted VM to the handler as it is read.
+     *
+     * @param vmMap optional arguments
+     * @param handler handler of each VM
+     * @throws Exception if error occurs
+     */
+    private void updateVmFromCSServer(HashMap<String, String> vmMap, CloudStackEntityHandler<VmInstance> handler)
+            throws Exception {
         // 1. Get the list of vms from CS server using CS connector
         config.setServer(1L);
-        String response = cloudStackInstanceService.listVirtualMachines(CloudStackConstants.JSON, vmMap);
-        JSONArray vmListJSON = null;
-        JSONObject responseObject = new JSONObject(response).getJSONObject(CloudStackConstants.CS_LIST_VM_RESPONSE);
-        if (responseObject.has(CloudStackConstants.CS_VM)) {
-            vmListJSON = responseObject.getJSONArray(CloudStackConstants.CS_VM);
-            // 2. Iterate the json list, convert the single json entity to vm.
-            for (int i = 0, size = vmListJSON.length(); i < size; i++) {
-                // 2.1 Call convert by passing JSONObject to vm entity.
-                VmInstance vmInstance = VmInstance.convert(vmListJSON.getJSONObject(i));
-                VmInstance persistInstance = findByUUID(vmInstance.getUuid());
-                if (persistInstance != null) {
-                    if (volumeService.findByInstanceAndVolumeType(persistInstance.getId()) != null) {
-                        vmInstance.setVolumeSize(
-                                volumeService.findByInstanceAndVolumeType(persistInstance.getId()).getDiskSize());
-                    }
-                }
-                // 2.2 update vm entity by transient variable.
-                vmInstance.setInstanceGuestIp(ipToLong(vmInstance.getIpAddress()));
-                vmInstance.setDomainId(convertEntityService.getDomainId(vmInstance.getTransDomainId()));
-                vmInstance.setZoneId(convertEntityService.getZoneId(vmInstance.getTransZoneId()));
-                vmInstance.setNetworkId(convertEntityService.getNetworkId(vmInstance.getTransNetworkId()));
-                vmInstance.setProjectId(convertEntityService.getProjectId(vmInstance.getTransProjectId()));
-                if (vmInstance.getTransHypervisor() != null) {
-                    if (hypervisorService.findByName(vmInstance.getTransHypervisor()) != null) {
-                        vmInstance
-                                .setHypervisorId(hypervisorService.findByName(vmInstance.getTransHypervisor()).getId());
-                    }
-                }
-                vmInstance.setDepartmentId(
-                        convertEntityService.getDepartmentByUsernameAndDomains(vmInstance.getTransDepartmentId(),
-                                convertEntityService.getDomain(vmInstance.getTransDomainId())));
-                if (vmInstance.getTransProjectId() != null) {
-                    vmInstance.setDepartmentId(convertEntityService.getProject(vmInstance.getTransProjectId()).getDepartmentId());
+        // 2. Stream the vms page by page, convert each single json entity to vm as it is read.
+        cloudStackInstanceService.listVirtualMachines(vmMap, vmJson -> {
+            // 2.1 Call convert by passing JSONObject to vm entity.
+            VmInstance vmInstance = VmInstance.convert(vmJson);
+            VmInstance persistInstance = findByUUID(vmInstance.getUuid());
+            if (persistInstance != null) {
+                if (volumeService.findByInstanceAndVolumeType(persistInstance.getId()) != null) {
+                    vmInstance.setVolumeSize(
+                            volumeService.findByInstanceAndVolumeType(persistInstance.getId()).getDiskSize());
                 }
-                vmInstance.setHostId(convertEntityService.getHostId(vmInstance.getTransHostId()));
-                vmInstance.setInstanceOwnerId(convertEntityService.getOwnerByUuid(vmInstance.getTransOwnerId()));
-                vmInstance.setTemplateId(convertEntityService.getTemplateId(vmInstance.getTransTemplateId()));
-                vmInstance.setInstanceOsType(convertEntityService.getTemplateById(convertEntityService.getTemplateId(vmInstance.getTransTemplateId())).getDisplayText());
-                vmInstance.setComputeOfferingId(
-                        convertEntityService.getComputeOfferId(vmInstance.getTransComputeOfferingId()));
-                if (vmInstance.getHostId() != null) {
-                    vmInstance.setPodId(convertEntityService
-                            .getPodIdByHost(convertEntityService.getHostId(vmInstance.getTransHostId())));
-                }
-                if (vmInstance.getTemplateId() != null) {
-                    vmInstance.setOsType(convertEntityService.getTemplateById(vmInstance.getTemplateId()).getDisplayText());
-                    vmInstance.setInstanceOsType(convertEntityService.getTemplateById(vmInstance.getTemplateId()).getDisplayText());
-                }
-                if (vmInstance.getTransKeypairName() != null) {
-                    vmInstance.setKeypairId(convertEntityService.getSSHKeyByNameAndDepartment(vmInstance.getTransKeypairName(), vmInstance.getDepartmentId()).getId());
+            }
+            // 2.2 update vm entity by transient variable.
+            vmInstance.setInstanceGuestIp(ipToLong(vmInstance.getIpAddress()));
+            vmInstance.setDomainId(convertEntityService.getDomainId(vmInstance.getTransDomainId()));
+            vmInstance.setZoneId(convertEntityService.getZoneId(vmInstance.getTransZoneId()));
+            vmInstance.setNetworkId(convertEntityService.getNetworkId(vmInstance.getTransNetworkId()));
+            vmInstance.setProjectId(convertEntityService.getProjectId(vmInstance.getTransProjectId()));
+            if (vmInstance.getTransHypervisor() != null) {
+                if (hypervisorService.findByName(vmInstance.getTransHypervisor()) != null) {
+                    vmInstance
+                            .setHypervisorId(hypervisorService.findByName(vmInstance.getTransHypervisor()).getId());
                 }
-                // 2.3 and the converted vm entity to list.
-                vmList.add(vmInstance);
             }
-        }
-        return vmList;
+            vmInstance.setDepartmentId(
+                    convertEntityService.getDepartmentByUsernameAndDomains(vmInstance.getTransDepartmentId(),
+                            convertEntityService.getDomain(vmInstance.getTransDomainId())));
+            if (vmInstance.getTransProjectId() != null) {
+                vmInstance.setDepartmentId(convertEntityService.getProject(vmInstance.getTransProjectId()).getDepartmentId());
+            }
+            vmInstance.setHostId(convertEntityService.getHostId(vmInstance.getTransHostId()));
+            vmInstance.setInstanceOwnerId(convertEntityService.getOwnerByUuid(vmInstance.getTransOwnerId()));
+            vmInstance.setTemplateId(convertEntityService.getTemplateId(vmInstance.getTransTemplateId()));
+            vmInstance.setInstanceOsType(convertEntityService.getTemplateById(convertEntityService.getTemplateId(vmInstance.getTransTemplateId())).getDisplayText());
+            vmInstance.setComputeOfferingId(
+                    convertEntityService.getComputeOfferId(vmInstance.getTransComputeOfferingId()));
+            if (vmInstance.getHostId() != null) {
+                vmInstance.setPodId(convertEntityService
+                        .getPodIdByHost(convertEntityService.getHostId(vmInstance.getTransHostId())));
+            }
+            if (vmInstance.getTemplateId() != null) {
+                vmInstance.setOsType(convertEntityService.getTemplateById(vmInstance.getTemplateId()).getDisplayText());
+                vmInstance.setInstanceOsType(convertEntityService.getTemplateById(vmInstance.getTemplateId()).getDisplayText());
+            }
+            if (vmInstance.getTransKeypairName() != null) {
+                vmInstance.setKeypairId(convertEntityService.getSSHKeyByNameAndDepartment(vmInstance.getTransKeypairName(), vmInstance.getDepartmentId()).getId());
+            }
+            // Keep the nics so that the nic sync does not list them again.
+            vmInstance.setTransNics(vmJson.has(CloudStackConstants.CS_NIC)
+                    ? vmJson.getJSONArray(CloudStackConstants.CS_NIC) : new JSONArray());
+            // 2.3 hand the converted vm entity over.
+            handler.handle(vmInstance);
+        });
     }
 
     @Override
@@ -1205,12 +1205,8 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<Project> projectList = new ArrayList<Project>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms for the current user by status and project and/or department.
-                        projectList.add(project);
-                    }
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     Page<VmInstance> allInstanceLists = virtualmachinerepository
                             .findAllByDepartmentAndProjectAndExceptStatusAndPage(Status.EXPUNGING, user.getDepartment(),
                                     projectList, pagingAndSorting.toPageRequest(), EMPTY_SEARCH_FILTER);
@@ -1238,18 +1234,11 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<VmInstance> allInstanceList = new ArrayList<VmInstance>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms for the current user by status and project and/or department.
-                        List<VmInstance> allInstanceTempList = virtualmachinerepository
-                                .findAllByDepartmentAndProjectAndExceptStatus(Status.EXPUNGING, user.getDepartment(),
-                                        project, EMPTY_SEARCH_FILTER);
-                        allInstanceList.addAll(allInstanceTempList);
-                    }
-                    List<VmInstance> instances = allInstanceList.stream().distinct().collect(Collectors.toList());
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     // List all Vms by status for the current user, belongs to department and project.
-                    return instances;
+                    return virtualmachinerepository.findAllByDepartmentAndProjectListAndExceptStatus(Status.EXPUNGING,
+                            user.getDepartment(), projectList, EMPTY_SEARCH_FILTER);
                 } else {
                     // List all Vms by status for ROOT admin.
                     List<VmInstance> allInstanceLists = virtualmachinerepository
@@ -1288,11 +1277,7 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
     public VmInstance findByIdWithVncPassword(Long id) throws Exception {
         VmInstance vmInstance = virtualmachinerepository.findOne(id);
         if (vmInstance.getVncPassword() != null) {
-            String strEncoded = Base64.getEncoder()
-                    .encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length,
-                    GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             String decryptPassword = new String(EncryptionUtil.decrypt(vmInstance.getVncPassword(), originalKey));
             vmInstance.setVncPassword(decryptPassword);
         }
@@ -1321,12 +1306,8 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<Project> projectList = new ArrayList<Project>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms for the current user by status and project and/or department.
-                        projectList.add(project);
-                    }
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     Page<VmInstance> allInstanceLists = virtualmachinerepository
                             .findAllByDepartmentAndProjectAndExceptStatusAndPage(Status.EXPUNGING, user.getDepartment(),
                                     projectList, pagingAndSorting.toPageRequest(), searchText);
@@ -1356,12 +1337,8 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<Project> projectList = new ArrayList<Project>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms for the current user by status and project and/or department.
-                        projectList.add(project);
-                    }
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     Page<VmInstance> allInstanceList = virtualmachinerepository
                             .findAllByDepartmentAndProjectAndStatusAndPage(status, user.getDepartment(), projectList,
                                     pagingAndSorting.toPageRequest(), searchText);
@@ -1387,33 +1364,50 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
             if (user != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
                 if (user.getType().equals(UserType.DOMAIN_ADMIN)) {
                     // Vms count by status for domain admin.
-                    List<VmInstance> allInstanceList = virtualmachinerepository
-                            .findAllByDomainAndStatus(user.getDomainId(), status, searchText);
-                    return allInstanceList.size();
+                    return virtualmachinerepository.countByDomainAndStatus(user.getDomainId(), status, searchText)
+                            .intValue();
                 } else {
                     // Get active project list for current user.
-                    if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                        List<VmInstance> allInstanceList = new ArrayList<VmInstance>();
-                        for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                            List<VmInstance> allInstanceTempList = virtualmachinerepository
-                                    .findAllByDepartmentAndProjectAndStatus(status, user.getDepartment(), project, searchText);
-                            allInstanceList.addAll(allInstanceTempList);
-                        }
-                        List<VmInstance> instances = allInstanceList.stream().distinct().collect(Collectors.toList());
+                    List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                    if (projectList.size() > 0) {
                         // Vms count by status belongs to the project and/or department.
-                        return instances.size();
+                        return virtualmachinerepository.countByDepartmentAndProjectAndStatus(status,
+                                user.getDepartment(), projectList, searchText).intValue();
                     } else {
-                        List<VmInstance> allInstanceLists = virtualmachinerepository
-                                .findAllByDepartmentAndStatus(status, user.getDepartment(), searchText);
                         // Vms count by status for an ROOT admin.
-                        return allInstanceLists.size();
+                        return virtualmachinerepository.countByDepartmentAndStatus(status, user.getDepartment(),
+                                searchText).intValue();
                     }
                 }
             }
         } catch (NumberFormatException e) {
         } catch (Exception e) {
         }
-        return virtualmachinerepository.findAllByDomainAndStatus(domainId, status, searchText).size();
+        return virtualmachinerepository.countByDomainAndStatus(domainId, status, searchText).intValue();
+    }
+
+    @Override
+    public Integer findCountByDomain(Long domainId, Long userId, String searchText) throws Exception {
+        User user = convertEntityService.getOwnerById(userId);
+        if (user != null && !user.getType().equals(UserType.ROOT_ADMIN)) {
+            if (user.getType().equals(UserType.DOMAIN_ADMIN)) {
+                // Count all Vms except expunging for domain admin.
+                return virtualmachinerepository.countByDomainAndExceptStatus(user.getDomainId(), Status.EXPUNGING,
+                        searchText).intValue();
+            }
+            // Get active project list for current user.
+            List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+            if (projectList.size() > 0) {
+                // Count all Vms except expunging, belongs to the project and/or department.
+                return virtualmachinerepository.countByDepartmentAndProjectAndExceptStatus(Status.EXPUNGING,
+                        user.getDepartment(), projectList, searchText).intValue();
+            } else {
+                return virtualmachinerepository.countByDepartmentAndExceptStatus(Status.EXPUNGING,
+                        user.getDepartment(), searchText).intValue();
+            }
+        }
+        return virtualmachinerepository.countByDomainAndExceptStatus(domainId, Status.EXPUNGING, searchText)
+                .intValue();
     }
 
     @Override
@@ -1427,18 +1421,11 @@ public class VirtualMachineServiceImpl implements VirtualMachineService {
                 return allInstanceList;
             } else {
                 // Get active project list for current user.
-                if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-                    List<VmInstance> allInstanceList = new ArrayList<VmInstance>();
-                    for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                        // List all Vms for the current user by status and project and/or department.
-                        List<VmInstance> allInstanceTempList = virtualmachinerepository
-                                .findAllByDepartmentAndProjectAndExceptStatus(Status.EXPUNGING, user.getDepartment(),
-                                        project, searchText);
-                        allInstanceList.addAll(allInstanceTempList);
-                    }
-                    List<VmInstance> instances = allInstanceList.stream().distinct().collect(Collectors.toList());
+                List<Project> projectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+                if (!projectList.isEmpty()) {
                     // List all Vms by status for the current user, belongs to department and project.
-                    return instances;
+                    return virtualmachinerepository.findAllByDepartmentAndProjectListAndExceptStatus(Status.EXPUNGING,
+                            user.getDepartment(), projectList, searchText);
                 } else {
                     // List all Vms by status for ROOT admin.
                     List<VmInstance> allInstanceLists = virtualmachinerepository
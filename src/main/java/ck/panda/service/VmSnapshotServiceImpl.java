@@ -346,11 +346,8 @@ public class VmSnapshotServiceImpl implements VmSnapshotService {
      */
     private Page<VmSnapshot> getSnapshotListByUser(PagingAndSorting pagingAndSorting, Long userId) throws  Exception {
         User user = convertEntityService.getOwnerById(userId);
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = new ArrayList<Project>();
-            for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                allProjectList.add(project);
-            }
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             Page<VmSnapshot> projectSnapshot = vmSnapshotRepository.findByProjectDepartmentAndIsActive(allProjectList,
                     user.getDepartmentId(), false, pagingAndSorting.toPageRequest(), Status.Expunging);
             return projectSnapshot;
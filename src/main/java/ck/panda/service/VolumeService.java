@@ -6,6 +6,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Service;
 import ck.panda.domain.entity.Volume;
 import ck.panda.domain.entity.Volume.VolumeType;
+import ck.panda.util.CloudStackEntityHandler;
 import ck.panda.util.domain.CRUDService;
 import ck.panda.util.domain.vo.PagingAndSorting;
 
@@ -23,6 +24,14 @@ public interface VolumeService extends CRUDService<Volume> {
      */
     List<Volume> findAllFromCSServer() throws Exception;
 
+    /**
+     * To stream the Volumes from cloudstack server, handing each volume to the handler as it is read.
+     *
+     * @param handler handler of each volume
+     * @throws Exception unhandled errors.
+     */
+    void findAllFromCSServer(CloudStackEntityHandler<Volume> handler) throws Exception;
+
     /**
      * To get volume from cloudstack server.
      *
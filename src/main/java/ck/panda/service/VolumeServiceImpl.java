@@ -31,6 +31,7 @@ import ck.panda.domain.entity.Volume.Status;
 import ck.panda.domain.entity.Volume.VolumeType;
 import ck.panda.domain.repository.jpa.VolumeRepository;
 import ck.panda.util.AppValidator;
+import ck.panda.util.CloudStackEntityHandler;
 import ck.panda.util.CloudStackOptionalUtil;
 import ck.panda.util.CloudStackResourceCapacity;
 import ck.panda.util.CloudStackVolumeService;
@@ -539,11 +540,8 @@ public class VolumeServiceImpl implements VolumeService {
                 List<Volume.VolumeType> volumeType = new ArrayList<>();
                 volumeType.add(VolumeType.DATADISK);
                 volumeType.add(VolumeType.ROOT);
-                if (projectService.findAllByUserAndIsActive(userId, true).size() > 0) {
-                    List<Project> allProjectList = new ArrayList<Project>();
-                    for (Project project : projectService.findAllByUserAndIsActive(userId, true)) {
-                        allProjectList.add(project);
-                    }
+                List<Project> allProjectList = projectService.findAllByUserAndIsActive(userId, true);
+                if (!allProjectList.isEmpty()) {
                     Page<Volume> allProjectTempList = volumeRepo.findByProjectAndVolumeTypeAndPage(allProjectList,
                             convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true, pagingAndSorting.toPageRequest());
                     return allProjectTempList;
@@ -630,8 +628,14 @@ public class VolumeServiceImpl implements VolumeService {
 
     @Override
     public List<Volume> findAllFromCSServer() throws Exception {
-        List<Project> project = projectService.findAllByActive(true);
         List<Volume> volumeList = new ArrayList<Volume>();
+        findAllFromCSServer(volumeList::add);
+        return volumeList;
+    }
+
+    @Override
+    public void findAllFromCSServer(CloudStackEntityHandler<Volume> handler) throws Exception {
+        List<Project> project = projectService.findAllByActive(true);
         for (int j = 0; j <= project.size(); j++) {
             HashMap<String, String> volumeMap = new HashMap<String, String>();
             if (j == project.size()) {
@@ -641,38 +645,29 @@ public class VolumeServiceImpl implements VolumeService {
             }
             // 1. Get the list of Volume from CS server using CS connector
             config.setServer(1L);
-            String response = csVolumeService.listVolumes(CloudStackConstants.JSON, volumeMap);
-            JSONArray volumeListJSON = null;
-            JSONObject responseObject = new JSONObject(response).getJSONObject(CS_LIST_VOLUME_RESPONSE);
-            if (responseObject.has(CS_VOLUME)) {
-                volumeListJSON = responseObject.getJSONArray(CS_VOLUME);
-                // 2. Iterate the json list, convert the single json entity to
-                // Volume
-                for (int i = 0, size = volumeListJSON.length(); i < size; i++) {
-                    // 2.1 Call convert by passing JSONObject to Volume entity
-                    // and Add
-                    // the converted Volume entity to list
-                    Volume volume = Volume.convert(volumeListJSON.getJSONObject(i));
-                    volume.setZoneId(convertEntityService.getZoneId(volume.getTransZoneId()));
-                    volume.setDomainId(convertEntityService.getDomainId(volume.getTransDomainId()));
-                    volume.setStorageOfferingId(
-                            convertEntityService.getStorageOfferId(volume.getTransStorageOfferingId()));
-                    volume.setVmInstanceId(convertEntityService.getVmInstanceId(volume.getTransvmInstanceId()));
-                    if (volume.getTransProjectId() != null) {
-                        volume.setProjectId(convertEntityService.getProjectId(volume.getTransProjectId()));
-                        volume.setDepartmentId(projectService.find(volume.getProjectId()).getDepartmentId());
-                    } else {
-                        // departmentRepository.findByUuidAndIsActive(volume.getTransDepartmentId(),
-                        // true);
-                        Domain domain = domainService.find(volume.getDomainId());
-                        volume.setDepartmentId(convertEntityService
-                                .getDepartmentByUsernameAndDomains(volume.getTransDepartmentId(), domain));
-                    }
-                    volumeList.add(volume);
+            // 2. Stream the volumes page by page, convert each single json entity to Volume as it is read
+            csVolumeService.listVolumes(volumeMap, volumeJson -> {
+                // 2.1 Call convert by passing JSONObject to Volume entity
+                // and hand the converted Volume entity over
+                Volume volume = Volume.convert(volumeJson);
+                volume.setZoneId(convertEntityService.getZoneId(volume.getTransZoneId()));
+                volume.setDomainId(convertEntityService.getDomainId(volume.getTransDomainId()));
+                volume.setStorageOfferingId(
+                        convertEntityService.getStorageOfferId(volume.getTransStorageOfferingId()));
+                volume.setVmInstanceId(convertEntityService.getVmInstanceId(volume.getTransvmInstanceId()));
+                if (volume.getTransProjectId() != null) {
+                    volume.setProjectId(convertEntityService.getProjectId(volume.getTransProjectId()));
+                    volume.setDepartmentId(projectService.find(volume.getProjectId()).getDepartmentId());
+                } else {
+                    // departmentRepository.findByUuidAndIsActive(volume.getTransDepartmentId(),
+                    // true);
+                    Domain domain = domainService.find(volume.getDomainId());
+                    volume.setDepartmentId(convertEntityService
+                            .getDepartmentByUsernameAndDomains(volume.getTransDepartmentId(), domain));
                 }
-            }
+                handler.handle(volume);
+            });
         }
-        return volumeList;
     }
 
     /**
@@ -1138,23 +1133,23 @@ public class VolumeServiceImpl implements VolumeService {
                 && !convertEntityService.getOwnerById(userId).getType().equals(User.UserType.ROOT_ADMIN)) {
             if (convertEntityService.getOwnerById(userId).getType().equals(User.UserType.DOMAIN_ADMIN)) {
                 Integer domainAttachedCount = volumeRepo
-                        .getAttachedCountByDomain(convertEntityService.getOwnerById(userId).getDomainId(), true).size();
+                        .getAttachedCountByDomain(convertEntityService.getOwnerById(userId).getDomainId(), true).intValue();
                 return domainAttachedCount;
             } else {
                 if (projectList.size() > 0) {
                     Integer projectAttachedCount = volumeRepo
                             .getAttachedCountByProject(projectList,
                                     convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true)
-                            .size();
+                            .intValue();
                     return projectAttachedCount;
                 } else {
                     Integer departmentAttachedCount = volumeRepo.getAttachedCountByDepartment(
-                            convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true).size();
+                            convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true).intValue();
                     return departmentAttachedCount;
                 }
             }
         } else {
-            Integer adminAttachedCount = volumeRepo.getAttachedCountByAdmin(true).size();
+            Integer adminAttachedCount = volumeRepo.getAttachedCountByAdmin(true).intValue();
             return adminAttachedCount;
         }
     }
@@ -1169,23 +1164,23 @@ public class VolumeServiceImpl implements VolumeService {
                 && !convertEntityService.getOwnerById(userId).getType().equals(User.UserType.ROOT_ADMIN)) {
             if (convertEntityService.getOwnerById(userId).getType().equals(User.UserType.DOMAIN_ADMIN)) {
                 Integer domainDetachedCount = volumeRepo
-                        .getDetachedCountByDomain(convertEntityService.getOwnerById(userId).getDomainId(), true).size();
+                        .getDetachedCountByDomain(convertEntityService.getOwnerById(userId).getDomainId(), true).intValue();
                 return domainDetachedCount;
             } else {
                 if (projectList.size() > 0) {
                     Integer projectDetachedCount = volumeRepo
                             .getDetachedCountByProject(projectList,
                                     convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true)
-                            .size();
+                            .intValue();
                     return projectDetachedCount;
                 } else {
                     Integer departmentDetachedCount = volumeRepo.getDetachedCountByDepartment(
-                            convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true).size();
+                            convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true).intValue();
                     return departmentDetachedCount;
                 }
             }
         } else {
-            Integer adminDetachedCount = volumeRepo.getDetachedCountByAdmin(true).size();
+            Integer adminDetachedCount = volumeRepo.getDetachedCountByAdmin(true).intValue();
             return adminDetachedCount;
         }
     }
@@ -1307,11 +1302,8 @@ public class VolumeServiceImpl implements VolumeService {
      */
     public Page<Volume> volumeUserFilter(User user, PagingAndSorting pagingAndSorting, String searchText, List<VolumeType> volumeType)
             throws Exception {
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = new ArrayList<Project>();
-            for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                allProjectList.add(project);
-            }
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             Page<Volume> allProjectTempList = null;
             if (volumeType.size() == 0) {
                 allProjectTempList = volumeRepo.findByProjectAndVolumeTypeAndPage(allProjectList,
@@ -1379,11 +1371,8 @@ public class VolumeServiceImpl implements VolumeService {
      */
     public List<Volume> volumeUserFilterCount(User user, String searchText, List<VolumeType> volumeType)
             throws Exception {
-        if (projectService.findAllByUserAndIsActive(user.getId(), true).size() > 0) {
-            List<Project> allProjectList = new ArrayList<Project>();
-            for (Project project : projectService.findAllByUserAndIsActive(user.getId(), true)) {
-                allProjectList.add(project);
-            }
+        List<Project> allProjectList = projectService.findAllByUserAndIsActive(user.getId(), true);
+        if (!allProjectList.isEmpty()) {
             List<Volume> allProjectTempList = null;
             if (volumeType.size() == 0) {
                 allProjectTempList = volumeRepo.findByProjectAndVolumeTypeCount(allProjectList,
@@ -1414,8 +1403,8 @@ public class VolumeServiceImpl implements VolumeService {
                 List<Volume.VolumeType> volumeType = new ArrayList<>();
                 volumeType.add(VolumeType.DATADISK);
                 volumeType.add(VolumeType.ROOT);
-                if (projectService.findAllByUserAndIsActive(userId, true).size() > 0) {
-                    List<Project> projectList = projectService.findAllByUserAndIsActive(userId, true);
+                List<Project> projectList = projectService.findAllByUserAndIsActive(userId, true);
+                if (!projectList.isEmpty()) {
 
                     return volumeRepo.findAllByProjectAndVolumeType(projectList,
                             convertEntityService.getOwnerById(userId).getDepartmentId(), volumeType, true);
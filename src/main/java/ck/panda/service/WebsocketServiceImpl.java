@@ -12,7 +12,6 @@ import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import ck.panda.constants.CloudStackConstants;
 import ck.panda.constants.EventTypes;
-import ck.panda.domain.entity.CloudStackConfiguration;
 import ck.panda.domain.entity.Domain;
 import ck.panda.domain.entity.Event;
 import ck.panda.domain.entity.Network;
@@ -24,6 +23,7 @@ import ck.panda.domain.entity.VmInstance;
 import ck.panda.domain.entity.VmSnapshot;
 import ck.panda.domain.entity.Volume;
 import ck.panda.domain.entity.Volume.VolumeType;
+import ck.panda.util.AsyncJobResultCache;
 import ck.panda.util.CloudStackInstanceService;
 import ck.panda.util.CloudStackResourceCapacity;
 import ck.panda.util.CloudStackServer;
@@ -98,6 +98,10 @@ public class WebsocketServiceImpl implements WebsocketService {
     @Autowired
     private CloudStackInstanceService cloudStackInstanceService;
 
+    /** Short lived cache of async job results, shared by every async event handler. */
+    @Autowired
+    private AsyncJobResultCache asyncJobResultCache;
+
     /** Cloud stack configuration utility class. */
     @Autowired
     private ConfigUtil config;
@@ -158,7 +162,7 @@ public class WebsocketServiceImpl implements WebsocketService {
         if (event != null) {
             if (event.getEvent() != null) {
                 if (event.getEventType().equals(Event.EventType.ASYNC)) {
-                    String instanceResponse = cloudStackInstanceService.queryAsyncJobResult(event.getJobId(),CloudStackConstants.JSON);
+                    String instanceResponse = asyncJobResultCache.queryAsyncJobResult(event.getJobId());
                     JSONObject instance = new JSONObject(instanceResponse).getJSONObject(CloudStackConstants.QUERY_ASYNC_JOB_RESULT_RESPONSE);
                     if (instance.has(CloudStackConstants.CS_JOB_INSTANCE_ID)) {
                         event.setResourceUuid(instance.getString(CloudStackConstants.CS_JOB_INSTANCE_ID));
@@ -409,10 +413,7 @@ public class WebsocketServiceImpl implements WebsocketService {
                                                 if (event.getMessage()
                                                         .equalsIgnoreCase(EventTypes.EVENT_STATUS_RUNNING)) {
                                                     if (vmInstance.getHostId() == null) {
-                                                        CloudStackConfiguration cloudConfig = cloudConfigService
-                                                                .find(1L);
-                                                        server.setServer(cloudConfig.getApiURL(),
-                                                                cloudConfig.getSecretKey(), cloudConfig.getApiKey());
+                                                        server.use(config.getAdminClient());
                                                         cloudStackInstanceService.setServer(server);
                                                         HashMap<String, String> vmMap = new HashMap<String, String>();
                                                         vmMap.put(CloudStackConstants.CS_ID, vmInstance.getUuid());
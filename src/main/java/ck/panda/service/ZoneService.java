@@ -21,6 +21,15 @@ public interface ZoneService extends CRUDService<Zone> {
      */
     List<Zone> findAllFromCSServer() throws Exception;
 
+    /**
+     * To get a zone from cloudstack server by uuid.
+     *
+     * @param uuid uuid of the zone.
+     * @return zone from server, null if not found
+     * @throws Exception unhandled errors.
+     */
+    Zone findFromCSServer(String uuid) throws Exception;
+
     /**
      * To get zone from cloudstack server.
      *
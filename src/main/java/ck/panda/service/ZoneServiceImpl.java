@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
+import ck.panda.constants.CloudStackConstants;
 import ck.panda.domain.entity.Zone;
 import ck.panda.domain.repository.jpa.ZoneRepository;
 import ck.panda.util.CloudStackZoneService;
@@ -78,18 +79,40 @@ public class ZoneServiceImpl implements ZoneService {
      * @throws Exception unhadled errors
      */
     public List<Zone> findAllFromCSServer() throws Exception {
-        List<Zone> zoneList = new ArrayList<Zone>();
         HashMap<String, String> zoneMap = new HashMap<String, String>();
         zoneMap.put("available", "true");
+        return findAllFromCSServer(zoneMap);
+    }
+
+    @Override
+    public Zone findFromCSServer(String uuid) throws Exception {
+        HashMap<String, String> zoneMap = new HashMap<String, String>();
+        zoneMap.put("available", "true");
+        zoneMap.put(CloudStackConstants.CS_ID, uuid);
+        List<Zone> zoneList = findAllFromCSServer(zoneMap);
+        return zoneList.isEmpty() ? null : zoneList.get(0);
+    }
+
+    /**
+     * Get the zones from CS server matching the filter.
+     *
+     * @param zoneMap list filter.
+     * @return zone list from server.
+     * @throws Exception unhandled errors.
+     */
+    private List<Zone> findAllFromCSServer(HashMap<String, String> zoneMap) throws Exception {
+        List<Zone> zoneList = new ArrayList<Zone>();
         // 1. Get the list of Zones from CS server using CS connector
         String response = zoneService.listZones(zoneMap, "json");
-        JSONArray zoneListJSON = new JSONObject(response).getJSONObject("listzonesresponse").getJSONArray("zone");
-
-        // 2. Iterate the json list, convert the single json entity to Zone
-        for (int i = 0, size = zoneListJSON.length(); i < size; i++) {
-            // 2.1 Call convert by passing JSONObject to Zone entity and Add
-            // the converted Zone entity to list
-            zoneList.add(Zone.convert(zoneListJSON.getJSONObject(i)));
+        JSONObject responseObject = new JSONObject(response).getJSONObject("listzonesresponse");
+        if (responseObject.has("zone")) {
+            JSONArray zoneListJSON = responseObject.getJSONArray("zone");
+            // 2. Iterate the json list, convert the single json entity to Zone
+            for (int i = 0, size = zoneListJSON.length(); i < size; i++) {
+                // 2.1 Call convert by passing JSONObject to Zone entity and Add
+                // the converted Zone entity to list
+                zoneList.add(Zone.convert(zoneListJSON.getJSONObject(i)));
+            }
         }
         return zoneList;
     }
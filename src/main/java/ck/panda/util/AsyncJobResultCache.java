@@ -0,0 +1,179 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import ck.panda.constants.CloudStackConstants;
+
+/**
+ * Short lived cache of CloudStack async job results.
+ *
+ * One async job event is looked up by the job listener, the websocket service and the resource status sync. Lookups
+ * of the same job that run at the same time share one HTTP call, and a finished job result is reused for a few
+ * seconds. Results of jobs still in progress are never kept, so polling always sees the latest state.
+ */
+@Component
+public class AsyncJobResultCache implements PublicMetrics {
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "cloudstack.asyncjob.cache.";
+
+    /** CloudStack instance service reference. */
+    @Autowired
+    private CloudStackInstanceService cloudStackInstanceService;
+
+    /** CloudStack server reference, to key results by the calling credentials. */
+    @Autowired
+    private CloudStackServer server;
+
+    /** Time in milliseconds a finished job result is reused. */
+    @Value(value = "${cloudstack.asyncJobCache.ttl:15000}")
+    private Long ttl;
+
+    /** Finished job results by key. */
+    private final ConcurrentMap<String, CachedResult> results = new ConcurrentHashMap<String, CachedResult>();
+
+    /** Lookups in flight by key. */
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+    /** Number of lookups answered from the cache. */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** Number of lookups which joined a call already in flight. */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /** Number of lookups which called CloudStack. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Get the async job result with the credentials bound to the current thread.
+     *
+     * @param jobId job id
+     * @return queryAsyncJobResult json response
+     * @throws Exception if the CloudStack call fails
+     */
+    public String queryAsyncJobResult(String jobId) throws Exception {
+        String key = server.getCurrentClient().getApiKey() + "|" + jobId;
+        long now = System.currentTimeMillis();
+        CachedResult cached = results.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            hitCount.incrementAndGet();
+            return cached.response;
+        }
+        CompletableFuture<String> lookup = new CompletableFuture<String>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, lookup);
+        if (running != null) {
+            coalescedCount.incrementAndGet();
+            return await(running);
+        }
+        missCount.incrementAndGet();
+        try {
+            String response = cloudStackInstanceService.queryAsyncJobResult(jobId, CloudStackConstants.JSON);
+            if (isFinished(response)) {
+                evictExpired(now);
+                results.put(key, new CachedResult(response, now + ttl));
+            }
+            lookup.complete(response);
+            return response;
+        } catch (Exception e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, lookup);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "hits", hitCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "coalesced", coalescedCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "misses", missCount.get()));
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "size", results.size()));
+        return metrics;
+    }
+
+    /**
+     * Wait for a lookup started by another thread.
+     *
+     * @param running lookup in flight
+     * @return response
+     * @throws Exception the failure of the lookup
+     */
+    private String await(CompletableFuture<String> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether the job has finished, successfully or not.
+     *
+     * @param response queryAsyncJobResult json response
+     * @return true if the job status is no longer in progress
+     */
+    private boolean isFinished(String response) {
+        JSONObject jobResult = new JSONObject(response);
+        if (!jobResult.has(CloudStackConstants.QUERY_ASYNC_JOB_RESULT_RESPONSE)) {
+            return false;
+        }
+        JSONObject jobResultResponse = jobResult.getJSONObject(CloudStackConstants.QUERY_ASYNC_JOB_RESULT_RESPONSE);
+        return jobResultResponse.has(CloudStackConstants.CS_JOB_STATUS) && !CloudStackConstants.PROGRESS_JOB_STATUS
+                .equals(jobResultResponse.get(CloudStackConstants.CS_JOB_STATUS).toString());
+    }
+
+    /**
+     * Drop the expired results.
+     *
+     * @param now current time in milliseconds
+     */
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, CachedResult>> entries = results.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue().expiresAt <= now) {
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Finished job result with its expiry time.
+     */
+    private static final class CachedResult {
+
+        /** Json response. */
+        private final String response;
+
+        /** Expiry time in milliseconds. */
+        private final long expiresAt;
+
+        /**
+         * Create a cached result.
+         *
+         * @param response json response
+         * @param expiresAt expiry time in milliseconds
+         */
+        CachedResult(String response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
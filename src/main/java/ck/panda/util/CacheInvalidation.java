@@ -0,0 +1,179 @@
+package ck.panda.util;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidation of the node local caches across the backend nodes sharing one database.
+ *
+ * Each cache has a row of the cache_invalidation table whose version a node increments when it drops the cache after a
+ * change. Every node reads the versions on its own thread and calls the listeners of a cache whose version moved by
+ * more than the increments it wrote itself, so a change made on one node applies on the others within the poll
+ * interval. The time to live of the caches still bounds a change whose invalidation could not be written.
+ */
+@Component
+public class CacheInvalidation implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidation.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "cache.invalidation.";
+
+    /** Version increment statement. */
+    private static final String INCREMENT_VERSION = "UPDATE cache_invalidation SET version = version + 1,"
+            + " updated_date_time = ? WHERE name = ?";
+
+    /** Version select statement. */
+    private static final String SELECT_VERSIONS = "SELECT name, version FROM cache_invalidation";
+
+    /** JDBC template reference. */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Time in milliseconds between two reads of the versions. */
+    @Value(value = "${cache.invalidation.pollInterval:2000}")
+    private Long pollInterval;
+
+    /** Thread reading the versions. */
+    private ScheduledExecutorService poller;
+
+    /** Listeners by cache name. */
+    private final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<String, List<Runnable>>();
+
+    /** Versions last read by cache name, null before the first read. */
+    private volatile Map<String, Long> versions;
+
+    /** Increments written by this node and not yet read back, by cache name. */
+    private final Map<String, AtomicLong> written = new ConcurrentHashMap<String, AtomicLong>();
+
+    /** Number of invalidations received from the versions. */
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    /** Number of failed reads and writes of the versions. */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Start reading the versions.
+     */
+    @PostConstruct
+    public void init() {
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reading the versions.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * Add a listener dropping a cache of this node when another node invalidates it.
+     *
+     * @param name cache name
+     * @param listener listener to call, which should return quickly
+     */
+    public void addListener(String name, Runnable listener) {
+        listeners.computeIfAbsent(name, key -> new CopyOnWriteArrayList<Runnable>()).add(listener);
+    }
+
+    /**
+     * Invalidate a cache on the other nodes, once the caller has dropped it on this node. The write joins the
+     * transaction of the caller, so the other nodes read it once the change is committed.
+     *
+     * @param name cache name
+     */
+    public void invalidate(String name) {
+        try {
+            if (jdbcTemplate.update(INCREMENT_VERSION, Timestamp.valueOf(LocalDateTime.now()), name) == 0) {
+                LOGGER.warn("No cache invalidation row of " + name + ", other nodes drop it once expired");
+                return;
+            }
+            written.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            LOGGER.error("Unable to invalidate cache " + name + " on the other nodes, dropped once expired", e);
+        }
+    }
+
+    /**
+     * Read the versions and call the listeners of the caches whose version moved since the last read, unless only this
+     * node moved it. An increment of this node read back before it was counted, or counted but rolled back, drops the
+     * cache once more, it never hides the increment of another node.
+     */
+    public void poll() {
+        Map<String, Long> read = new HashMap<String, Long>();
+        try {
+            jdbcTemplate.query(SELECT_VERSIONS, row -> {
+                read.put(row.getString("name"), row.getLong("version"));
+            });
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            LOGGER.error("Unable to read the cache invalidations", e);
+            return;
+        }
+        Map<String, Long> previous = versions;
+        versions = read;
+        if (previous == null) {
+            return;
+        }
+        for (Map.Entry<String, Long> version : read.entrySet()) {
+            Long previousVersion = previous.get(version.getKey());
+            if (version.getValue().equals(previousVersion)) {
+                continue;
+            }
+            AtomicLong own = written.get(version.getKey());
+            long ownIncrements = own == null ? 0L : own.getAndSet(0L);
+            if (previousVersion != null && version.getValue() - previousVersion <= ownIncrements) {
+                continue;
+            }
+            receivedCount.incrementAndGet();
+            LOGGER.debug("Cache " + version.getKey() + " invalidated");
+            for (Runnable listener : listeners.getOrDefault(version.getKey(), new ArrayList<Runnable>())) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    LOGGER.error("Cache invalidation listener of " + version.getKey() + " failed", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "received", receivedCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "failures", failureCount.get()));
+        return metrics;
+    }
+}
@@ -116,6 +116,18 @@ public class CloudStackAddressService {
         return server.request(arguments);
     }
 
+    /**
+     * Lists all public ip addresses page by page, handing each public ip address to the handler as it is read.
+     *
+     * @param optional optional values
+     * @param handler handler for each public ip address
+     * @return number of public ip addresses listed.
+     * @throws Exception error
+     */
+    public int listPublicIpAddresses(HashMap<String, String> optional, CloudStackItemHandler handler) throws Exception {
+        return server.listAll("listPublicIpAddresses", optional, "listpublicipaddressesresponse", "publicipaddress", handler);
+    }
+
     /**
      * Retrieves the current status of asynchronous job for Ip address rules.
      *
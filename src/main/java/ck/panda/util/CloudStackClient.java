@@ -0,0 +1,204 @@
+package ck.panda.util;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.util.EncodingUtil;
+
+/**
+ * Immutable CloudStack client handle for one credential pair.
+ *
+ * Handles are cached by {@link ConfigUtil} and can be shared between threads, since the url, keys and signing key
+ * never change after construction.
+ */
+public final class CloudStackClient {
+
+    /** Signature algorithm. */
+    private static final String HMAC_SHA1 = "HmacSHA1";
+
+    /** Orders query parameters by name before signing. */
+    private static final Comparator<NameValuePair> NAME_ORDER = new Comparator<NameValuePair>() {
+        public int compare(NameValuePair o1, NameValuePair o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    /** URL that connects with cloudstack. */
+    private final String apiURL;
+
+    /** api key unique for an account. */
+    private final String apikey;
+
+    /** HMAC key built from the secret key. */
+    private final SecretKeySpec signingKey;
+
+    /** Pooled HTTP client shared by all handles. */
+    private final CloudStackHttpClient httpClient;
+
+    /**
+     * Create a client handle.
+     *
+     * @param httpClient pooled HTTP client
+     * @param apiURL URL of the CloudStack server
+     * @param secret secret key combination with HMAC SHA1 to generate command String signature.
+     * @param apikey which uniquely identifies the account.
+     */
+    public CloudStackClient(CloudStackHttpClient httpClient, String apiURL, String secret, String apikey) {
+        this.httpClient = httpClient;
+        this.apiURL = apiURL;
+        this.apikey = apikey;
+        this.signingKey = secret == null ? null : new SecretKeySpec(secret.getBytes(), HMAC_SHA1);
+    }
+
+    /**
+     * Get the api key of the handle.
+     *
+     * @return api key
+     */
+    public String getApiKey() {
+        return apikey;
+    }
+
+    /**
+     * Get the CloudStack URL of the handle.
+     *
+     * @return api url
+     */
+    public String getApiURL() {
+        return apiURL;
+    }
+
+    /**
+     * Sign and submit the request as HTTP GET.
+     *
+     * @param queryValues command and parameters
+     * @return response
+     * @throws Exception if any invalid parameters.
+     */
+    public String request(LinkedList<NameValuePair> queryValues) throws Exception {
+        return httpClient.execute(signedGet(queryValues));
+    }
+
+    /**
+     * Sign and submit the request as HTTP GET and hand the response body stream to the reader.
+     *
+     * @param <T> result type
+     * @param queryValues command and parameters
+     * @param reader reader consuming the response body
+     * @return result of the reader
+     * @throws Exception if any invalid parameters.
+     */
+    public <T> T request(LinkedList<NameValuePair> queryValues, CloudStackHttpClient.ResponseReader<T> reader)
+            throws Exception {
+        return httpClient.execute(signedGet(queryValues), reader);
+    }
+
+    /**
+     * Sign and submit the login request as HTTP POST.
+     *
+     * @param queryValues command and parameters
+     * @return response
+     * @throws Exception if any invalid parameters.
+     */
+    public String requestLogin(LinkedList<NameValuePair> queryValues) throws Exception {
+        HttpMethod method = null;
+        String querySignature = DatatypeConverter.printBase64Binary(toQueryString(queryValues).getBytes());
+        queryValues.add(new NameValuePair("signature", querySignature));
+        method = new PostMethod(apiURL);
+        method.setQueryString(queryValues.toArray(new NameValuePair[0]));
+        return httpClient.execute(method);
+    }
+
+    /**
+     * Build the query with command and api key of this handle.
+     *
+     * @param command web service eg. Create an instance
+     * @param optional excluding mandatory fields
+     * @return query values.
+     */
+    public LinkedList<NameValuePair> getDefaultQuery(String command, HashMap<String, String> optional) {
+        LinkedList<NameValuePair> queryValues = getDefaultQueryLogin(command, optional);
+        queryValues.add(1, new NameValuePair("apiKey", apikey));
+        return queryValues;
+    }
+
+    /**
+     * Build the query with command only, used for login.
+     *
+     * @param command web service eg. Create an instance
+     * @param optional excluding mandatory fields
+     * @return query values.
+     */
+    public LinkedList<NameValuePair> getDefaultQueryLogin(String command, HashMap<String, String> optional) {
+        LinkedList<NameValuePair> queryValues = new LinkedList<NameValuePair>();
+        queryValues.add(new NameValuePair("command", command));
+        if (optional != null) {
+            for (Map.Entry<String, String> pairs : optional.entrySet()) {
+                queryValues.add(new NameValuePair(pairs.getKey(), pairs.getValue()));
+            }
+        }
+        return queryValues;
+    }
+
+    /**
+     * Build the signed HTTP GET method for the query.
+     *
+     * @param queryValues command and parameters
+     * @return signed method
+     * @throws CloudStackException if the request cannot be signed
+     */
+    private HttpMethod signedGet(LinkedList<NameValuePair> queryValues) throws CloudStackException {
+        try {
+            String querySignature = signRequest(queryValues);
+            queryValues.add(new NameValuePair("signature", querySignature));
+            HttpMethod method = new GetMethod(apiURL);
+            method.setFollowRedirects(true);
+            method.setQueryString(queryValues.toArray(new NameValuePair[0]));
+            return method;
+        } catch (InvalidKeyException | NoSuchAlgorithmException e) {
+            throw new CloudStackException(e);
+        }
+    }
+
+    /**
+     * Sign the request with HMAC SHA1 of the sorted, lower cased query string.
+     *
+     * @param queryValues web service commands like create service offering
+     * @return value for request.
+     * @throws NoSuchAlgorithmException if tried to execute different algorithm except HMAC SHA1
+     * @throws InvalidKeyException if secret or api key is invalid.
+     */
+    private String signRequest(LinkedList<NameValuePair> queryValues)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        if (signingKey == null) {
+            throw new InvalidKeyException("CloudStack secret key is not set");
+        }
+        Mac mac = Mac.getInstance(HMAC_SHA1);
+        mac.init(signingKey);
+        byte[] digest = mac.doFinal(toQueryString(queryValues).getBytes());
+        return DatatypeConverter.printBase64Binary(digest);
+    }
+
+    /**
+     * Sort the query values and encode them as the lower cased string CloudStack signs.
+     *
+     * @param queryValues query values
+     * @return query string to sign
+     */
+    private String toQueryString(LinkedList<NameValuePair> queryValues) {
+        Collections.sort(queryValues, NAME_ORDER);
+        return EncodingUtil.formUrlEncode(queryValues.toArray(new NameValuePair[queryValues.size()]), "UTF-8")
+                .replace("+", "%20").replace("%5B", "[").replace("%5D", "]").toLowerCase();
+    }
+}
@@ -0,0 +1,17 @@
+package ck.panda.util;
+
+/**
+ * Handles one entity converted from an item of a paged CloudStack list response.
+ *
+ * @param <T> entity type
+ */
+public interface CloudStackEntityHandler<T> {
+
+    /**
+     * Handle a converted entity, eg. one virtual machine of listVirtualMachines.
+     *
+     * @param entity converted entity
+     * @throws Exception if the entity cannot be handled
+     */
+    void handle(T entity) throws Exception;
+}
@@ -0,0 +1,28 @@
+package ck.panda.util;
+
+import java.util.HashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * CloudStack event service for connectivity with CloudStack server.
+ */
+@Service
+public class CloudStackEventService {
+
+    /** Cloudstack server for connectivity. */
+    @Autowired
+    private CloudStackServer server;
+
+    /**
+     * Lists events page by page, handing each event to the handler as it is read.
+     *
+     * @param optional optional values, eg. startdate or listall
+     * @param handler handler for each event
+     * @return number of events listed.
+     * @throws Exception error
+     */
+    public int listEvents(HashMap<String, String> optional, CloudStackItemHandler handler) throws Exception {
+        return server.listAll("listEvents", optional, "listeventsresponse", "event", handler);
+    }
+}
@@ -0,0 +1,182 @@
+package ck.panda.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared HTTP client used for every CloudStack API call.
+ *
+ * Connections are pooled per host and kept alive between calls, so the CloudStack services do not pay a TCP/TLS
+ * handshake for each request. Pool state is published through the actuator metrics endpoint.
+ */
+@Component
+public class CloudStackHttpClient implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CloudStackHttpClient.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "cloudstack.http.";
+
+    /** Maximum connections kept open per CloudStack host. */
+    @Value(value = "${cloudstack.http.maxConnectionsPerHost:20}")
+    private Integer maxConnectionsPerHost;
+
+    /** Maximum connections kept open in total. */
+    @Value(value = "${cloudstack.http.maxTotalConnections:40}")
+    private Integer maxTotalConnections;
+
+    /** Timeout in milliseconds to establish a connection. */
+    @Value(value = "${cloudstack.http.connectTimeout:10000}")
+    private Integer connectTimeout;
+
+    /** Timeout in milliseconds to wait for response data. */
+    @Value(value = "${cloudstack.http.readTimeout:120000}")
+    private Integer readTimeout;
+
+    /** Timeout in milliseconds to wait for a free connection from the pool. */
+    @Value(value = "${cloudstack.http.poolTimeout:30000}")
+    private Long poolTimeout;
+
+    /** Idle time in milliseconds after which a kept alive connection is closed. */
+    @Value(value = "${cloudstack.http.idleTimeout:60000}")
+    private Long idleTimeout;
+
+    /** Pooled connection manager. */
+    private PooledHttpConnectionManager connectionManager;
+
+    /** Client shared by all threads. */
+    private HttpClient client;
+
+    /** Background thread closing idle connections. */
+    private IdleConnectionTimeoutThread idleConnectionThread;
+
+    /** Number of executed requests. */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /** Number of failed requests. */
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * Create the connection pool and the shared client.
+     */
+    @PostConstruct
+    public void init() {
+        connectionManager = new PooledHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        params.setMaxTotalConnections(maxTotalConnections);
+        params.setConnectionTimeout(connectTimeout);
+        params.setSoTimeout(readTimeout);
+        params.setStaleCheckingEnabled(true);
+        client = new HttpClient(connectionManager);
+        client.getParams().setConnectionManagerTimeout(poolTimeout);
+
+        idleConnectionThread = new IdleConnectionTimeoutThread();
+        idleConnectionThread.setName("cloudstack-http-idle");
+        idleConnectionThread.setConnectionTimeout(idleTimeout);
+        idleConnectionThread.setTimeoutInterval(idleTimeout / 2);
+        idleConnectionThread.addConnectionManager(connectionManager);
+        idleConnectionThread.start();
+    }
+
+    /**
+     * Close every pooled connection.
+     */
+    @PreDestroy
+    public void destroy() {
+        idleConnectionThread.shutdown();
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Execute the method on a pooled connection and return the response body. The connection is always returned to
+     * the pool.
+     *
+     * @param method HTTP method to execute
+     * @return response body
+     * @throws IOException if the request fails
+     */
+    public String execute(HttpMethod method) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            client.executeMethod(method);
+            String response = method.getResponseBodyAsString();
+            LOGGER.debug(response);
+            return response;
+        } catch (IOException e) {
+            errorCount.incrementAndGet();
+            throw e;
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * Execute the method on a pooled connection and hand the response body stream to the reader, so large responses
+     * are never held in memory as a whole. The connection is always returned to the pool.
+     *
+     * @param <T> result type
+     * @param method HTTP method to execute
+     * @param reader reader consuming the response body
+     * @return result of the reader
+     * @throws Exception if the request or the reader fails
+     */
+    public <T> T execute(HttpMethod method, ResponseReader<T> reader) throws Exception {
+        requestCount.incrementAndGet();
+        try {
+            client.executeMethod(method);
+            InputStream body = method.getResponseBodyAsStream();
+            return reader.read(body);
+        } catch (IOException e) {
+            errorCount.incrementAndGet();
+            throw e;
+        } finally {
+            method.releaseConnection();
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.leased", connectionManager.getLeasedConnections()));
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.idle", connectionManager.getIdleConnections()));
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.waiting", connectionManager.getWaitingRequests()));
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.max", maxTotalConnections));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "requests", requestCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "errors", errorCount.get()));
+        return metrics;
+    }
+
+    /**
+     * Consumes a response body stream.
+     *
+     * @param <T> result type
+     */
+    public interface ResponseReader<T> {
+
+        /**
+         * Read the response body.
+         *
+         * @param body response body stream
+         * @return result
+         * @throws Exception if the body cannot be read
+         */
+        T read(InputStream body) throws Exception;
+    }
+}
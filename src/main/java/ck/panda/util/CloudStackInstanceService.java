@@ -220,6 +220,20 @@ public class CloudStackInstanceService {
         return server.request(arguments);
     }
 
+    /**
+     * List the virtual machines owned by the account page by page, handing each virtual machine to the handler as it
+     * is read.
+     *
+     * @param optional optional parameters.
+     * @param handler handler for each virtual machine.
+     * @return number of virtual machines listed.
+     * @throws Exception unhandled exceptions.
+     */
+    public int listVirtualMachines(HashMap<String, String> optional, CloudStackItemHandler handler) throws Exception {
+        return server.listAll("listVirtualMachines", optional, "listvirtualmachinesresponse", "virtualmachine",
+                handler);
+    }
+
     /**
      * Returns an encrypted password for the virtual machine.
      *
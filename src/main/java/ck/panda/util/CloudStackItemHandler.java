@@ -0,0 +1,17 @@
+package ck.panda.util;
+
+import org.json.JSONObject;
+
+/**
+ * Handles one item of a paged CloudStack list response.
+ */
+public interface CloudStackItemHandler {
+
+    /**
+     * Handle a list item, eg. one virtual machine of listVirtualMachines.
+     *
+     * @param item json object of the item
+     * @throws Exception if the item cannot be handled
+     */
+    void handle(JSONObject item) throws Exception;
+}
@@ -0,0 +1,21 @@
+package ck.panda.util;
+
+/**
+ * Thrown once every page of a CloudStack listing has been handled, when the listed items changed while paging, so
+ * an item may have moved across a page boundary and not been listed. The items listed are valid, but an item that
+ * was not listed must not be taken as removed.
+ */
+public class CloudStackListIncompleteException extends CloudStackException {
+
+    /** Serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create the exception.
+     *
+     * @param message that consists of reason.
+     */
+    public CloudStackListIncompleteException(String message) {
+        super(message);
+    }
+}
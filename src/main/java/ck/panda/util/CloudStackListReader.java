@@ -0,0 +1,179 @@
+package ck.panda.util;
+
+import java.io.InputStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import ck.panda.constants.CloudStackConstants;
+
+/**
+ * Streaming reader for one page of a CloudStack list response.
+ *
+ * The body is parsed token by token with Jackson, and each item of the list is built as a JSONObject straight from
+ * the tokens and handed to the handler as soon as it has been read. Only one item is held in memory at a time,
+ * instead of the whole response string and JSON tree.
+ */
+public class CloudStackListReader implements CloudStackHttpClient.ResponseReader<Integer> {
+
+    /** Shared parser factory, thread safe once configured. */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /** Name of the total count field in list responses. */
+    private static final String COUNT = "count";
+
+    /** Response name, eg. listvirtualmachinesresponse. */
+    private final String responseName;
+
+    /** Item name, eg. virtualmachine. */
+    private final String itemName;
+
+    /** Handler for each item. */
+    private final CloudStackItemHandler handler;
+
+    /** Total count reported by CloudStack, -1 if not reported. */
+    private int count = -1;
+
+    /**
+     * Create a reader for one page.
+     *
+     * @param responseName response name
+     * @param itemName item name
+     * @param handler handler for each item
+     */
+    public CloudStackListReader(String responseName, String itemName, CloudStackItemHandler handler) {
+        this.responseName = responseName;
+        this.itemName = itemName;
+        this.handler = handler;
+    }
+
+    /**
+     * Read the page and pass every item to the handler.
+     *
+     * @param body response body stream
+     * @return number of items on the page
+     * @throws Exception if the response is an error or cannot be parsed
+     */
+    @Override
+    public Integer read(InputStream body) throws Exception {
+        int items = 0;
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new CloudStackException("Unexpected CloudStack response for " + responseName);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (responseName.equals(name)) {
+                    items = readResponse(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Get the total count reported by CloudStack with the last page.
+     *
+     * @return total count or -1 if not reported
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Read the fields of the response object.
+     *
+     * @param parser parser positioned on the start of the response object
+     * @return number of items read
+     * @throws Exception if the response is an error or the handler fails
+     */
+    private int readResponse(JsonParser parser) throws Exception {
+        int items = 0;
+        String errorText = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (itemName.equals(name) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    handler.handle(readObject(parser));
+                    items++;
+                }
+            } else if (COUNT.equals(name)) {
+                count = parser.getIntValue();
+            } else if (CloudStackConstants.CS_ERROR_TEXT.equals(name)) {
+                errorText = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (errorText != null) {
+            throw new CloudStackException(errorText);
+        }
+        return items;
+    }
+
+    /**
+     * Read a json object.
+     *
+     * @param parser parser positioned on the start of the object
+     * @return json object
+     * @throws Exception if the object cannot be parsed
+     */
+    private JSONObject readObject(JsonParser parser) throws Exception {
+        JSONObject object = new JSONObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            object.put(name, readValue(parser, parser.nextToken()));
+        }
+        return object;
+    }
+
+    /**
+     * Read a json array.
+     *
+     * @param parser parser positioned on the start of the array
+     * @return json array
+     * @throws Exception if the array cannot be parsed
+     */
+    private JSONArray readArray(JsonParser parser) throws Exception {
+        JSONArray array = new JSONArray();
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            array.put(readValue(parser, token));
+        }
+        return array;
+    }
+
+    /**
+     * Read the value the parser is positioned on, as the value org.json would have parsed.
+     *
+     * @param parser parser positioned on the value
+     * @param token current token
+     * @return json object, json array, string, number, boolean or JSONObject.NULL
+     * @throws Exception if the value cannot be parsed
+     */
+    private Object readValue(JsonParser parser, JsonToken token) throws Exception {
+        switch (token) {
+        case START_OBJECT:
+            return readObject(parser);
+        case START_ARRAY:
+            return readArray(parser);
+        case VALUE_NUMBER_INT:
+            return parser.getNumberType() == JsonParser.NumberType.INT ? (Object) parser.getIntValue()
+                    : (Object) parser.getLongValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return JSONObject.NULL;
+        default:
+            return parser.getText();
+        }
+    }
+}
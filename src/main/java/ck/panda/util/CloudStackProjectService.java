@@ -179,6 +179,18 @@ public class CloudStackProjectService {
         return listResponse;
     }
 
+    /**
+     * Lists all projects page by page, handing each project to the handler as it is read.
+     *
+     * @param optional optional values
+     * @param handler handler for each project
+     * @return number of projects listed.
+     * @throws Exception error
+     */
+    public int listProjects(HashMap<String, String> optional, CloudStackItemHandler handler) throws Exception {
+        return server.listAll("listProjects", optional, "listprojectsresponse", "project", handler);
+    }
+
     /**
      * Lists the project accounts.
      *
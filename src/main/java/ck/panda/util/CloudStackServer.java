@@ -1,48 +1,57 @@
 package ck.panda.util;
 
 import java.io.IOException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.xml.bind.DatatypeConverter;
-import org.apache.commons.httpclient.HttpClient;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.NameValuePair;
-import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.util.EncodingUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import ck.panda.constants.CloudStackConstants;
+import ck.panda.util.error.exception.EntityNotFoundException;
 
 /**
  * Cloudstack server component to connect to cloudstack server.
  *
- * It requires cloudstack credentials to be set.
+ * Credentials are never stored on this shared component. Each call is signed with the immutable
+ * {@link CloudStackClient} handle bound to the calling thread by {@link ConfigUtil}, or with the admin handle when
+ * nothing is bound.
  *
  */
 @Component
 public class CloudStackServer {
 
-    /** secret key for authentication. */
-    private String secret;
+    /** Logger attribute. */
+    private static final Log LOGER = LogFactory.getLog(CloudStackServer.class);
 
-    /** api key unique for an account.This should have been generated by the administrator of the cloud instance. */
-    private String apikey;
+    /** Handle bound to the current request or listener thread. */
+    private final ThreadLocal<CloudStackClient> boundClient = new ThreadLocal<CloudStackClient>();
 
-    /** URL that connects with cloudstack. */
-    private String apiURL;
+    /** Immutable client handles keyed by url and credential pair. */
+    private final ConcurrentMap<String, CloudStackClient> clients = new ConcurrentHashMap<String, CloudStackClient>();
 
-    /** Logger attribute. */
-    private static final Log LOGER = LogFactory.getLog(CloudStackServer.class);
+    /** Pooled HTTP client shared by all CloudStack calls. */
+    @Autowired
+    private CloudStackHttpClient httpClient;
+
+    /** Number of items requested per page by list calls. */
+    @Value(value = "${cloudstack.pageSize:500}")
+    private Integer pageSize;
+
+    /** Configuration utility to resolve the admin handle. */
+    @Autowired
+    private ConfigUtil configUtil;
 
     /** Default Constructor. */
     public CloudStackServer() {
@@ -50,16 +59,75 @@ public class CloudStackServer {
     }
 
     /**
-     * Parameterized constructor to set cloudstack credentials.
+     * Bind the cached handle for the given cloudstack credentials to the current thread.
      *
      * @param apiURL URL of the CloudStack server
      * @param secret secret key combination with HMAC SHA1 to generate command String signature.
      * @param apikey which uniquely identifies the account.
      */
     public void setServer(String apiURL, String secret, String apikey) {
-        this.apiURL = apiURL;
-        this.secret = secret;
-        this.apikey = apikey;
+        use(getClient(apiURL, secret, apikey));
+    }
+
+    /**
+     * Get the cached immutable handle for the given cloudstack credentials.
+     *
+     * @param apiURL URL of the CloudStack server
+     * @param secret secret key
+     * @param apikey api key
+     * @return client handle
+     */
+    public CloudStackClient getClient(String apiURL, String secret, String apikey) {
+        String key = apiURL + "|" + apikey + "|" + secret;
+        CloudStackClient client = clients.get(key);
+        if (client == null) {
+            CloudStackClient created = new CloudStackClient(httpClient, apiURL, secret, apikey);
+            client = clients.putIfAbsent(key, created);
+            if (client == null) {
+                client = created;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Drop every cached handle, used when the cloudstack configuration changes.
+     */
+    public void evictClients() {
+        clients.clear();
+    }
+
+    /**
+     * Bind the handle to the current thread.
+     *
+     * @param client handle to sign the following calls with
+     */
+    public void use(CloudStackClient client) {
+        boundClient.set(client);
+    }
+
+    /**
+     * Remove the handle bound to the current thread.
+     */
+    public void release() {
+        boundClient.remove();
+    }
+
+    /**
+     * Get the handle used by the current thread.
+     *
+     * @return bound handle or the admin handle
+     */
+    public CloudStackClient getCurrentClient() {
+        CloudStackClient client = boundClient.get();
+        if (client == null) {
+            try {
+                client = configUtil.getAdminClient();
+            } catch (EntityNotFoundException e) {
+                throw new IllegalStateException("CloudStack configuration is not available", e);
+            }
+        }
+        return client;
     }
 
     /**
@@ -72,18 +140,66 @@ public class CloudStackServer {
      * @throws Exception if any invalid parameters.
      */
     public String request(LinkedList<NameValuePair> queryValues) throws Exception {
-        HttpMethod method = null;
-
-        try {
-            String querySignature = signRequest(queryValues);
-            queryValues.add(new NameValuePair("signature", querySignature));
-            method = new GetMethod(apiURL);
-            method.setFollowRedirects(true);
-            method.setQueryString(queryValues.toArray(new NameValuePair[0]));
-        } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-            throw new CloudStackException(e);
+        return getCurrentClient().request(queryValues);
+    }
+
+    /**
+     * List every item of a CloudStack list command page by page. Each page is requested with page/pagesize and
+     * parsed as a stream; its items are handed to the handler once the page is read and its connection released, so
+     * the handler may write to the database without holding a pooled connection.
+     *
+     * Items are told apart by their id and zone id, as templates and isos are listed once per zone. An item listed
+     * again on a later page, after an insert moved it across a page boundary, is handed over once. When the total
+     * count changed between the first and the last page, or fewer items than the count were listed, an item may have
+     * been skipped by the paging: the listing is then incomplete and a CloudStackListIncompleteException is thrown
+     * once every page has been handled.
+     *
+     * @param command list command, eg. listVirtualMachines
+     * @param optional optional parameters, eg. listall or projectid
+     * @param responseName response name, eg. listvirtualmachinesresponse
+     * @param itemName item name, eg. virtualmachine
+     * @param handler handler for each item
+     * @return number of items listed
+     * @throws CloudStackListIncompleteException if the items changed while paging
+     * @throws Exception if any request fails
+     */
+    public int listAll(String command, HashMap<String, String> optional, String responseName, String itemName,
+            CloudStackItemHandler handler) throws Exception {
+        CloudStackClient client = getCurrentClient();
+        Set<String> listed = new HashSet<String>();
+        int firstCount = -1;
+        int total = 0;
+        for (int page = 1;; page++) {
+            HashMap<String, String> arguments = new HashMap<String, String>();
+            if (optional != null) {
+                arguments.putAll(optional);
+            }
+            arguments.put("page", String.valueOf(page));
+            arguments.put("pagesize", String.valueOf(pageSize));
+            LinkedList<NameValuePair> queryValues = client.getDefaultQuery(command, arguments);
+            queryValues.add(new NameValuePair("response", "json"));
+            List<JSONObject> pageItems = new ArrayList<JSONObject>(pageSize);
+            CloudStackListReader reader = new CloudStackListReader(responseName, itemName, pageItems::add);
+            int items = client.request(queryValues, reader);
+            if (page == 1) {
+                firstCount = reader.getCount();
+            }
+            for (JSONObject item : pageItems) {
+                String id = item.optString(CloudStackConstants.CS_ID);
+                if (id.isEmpty() || listed.add(id + "/" + item.optString(CloudStackConstants.CS_ZONE_ID))) {
+                    handler.handle(item);
+                    total++;
+                }
+            }
+            int count = reader.getCount();
+            if (items < pageSize || (count >= 0 && total >= count)) {
+                if (count >= 0 && (count != firstCount || total < count)) {
+                    throw new CloudStackListIncompleteException(command + " changed while paging, " + total + " of "
+                            + count + " items listed, " + firstCount + " counted on the first page");
+                }
+                return total;
+            }
         }
-        return getResponse(method);
     }
 
     /**
@@ -96,17 +212,7 @@ public class CloudStackServer {
      * @throws Exception if any invalid parameters.
      */
     public String requestLogin(LinkedList<NameValuePair> queryValues) throws Exception {
-        HttpMethod method = null;
-
-        try {
-            String querySignature = signRequestLogin(queryValues);
-            queryValues.add(new NameValuePair("signature", querySignature));
-            method = new PostMethod(apiURL);
-            method.setQueryString(queryValues.toArray(new NameValuePair[0]));
-        } catch (InvalidKeyException | NoSuchAlgorithmException e) {
-            throw new CloudStackException(e);
-        }
-        return getResponse(method);
+        return getCurrentClient().requestLogin(queryValues);
     }
 
     /**
@@ -119,73 +225,9 @@ public class CloudStackServer {
      * @throws Exception general exceptions
      */
     public String getResponse(HttpMethod method) throws HttpException, IOException, Exception {
-        HttpClient client = new HttpClient();
-
         LOGER.debug(method.getQueryString());
         LOGER.debug(method.getPath());
-
-        String response = null;
-        client.executeMethod(method);
-
-        LOGER.debug(method.getResponseBodyAsString());
-
-        response = method.getResponseBodyAsString();
-
-        method.releaseConnection();
-        return response;
-    }
-
-    /**
-     * Whether you access the CloudStack API with HTTP or HTTPS, it must still be signed so that CloudStack can verify
-     * the caller has been authenticated and authorized to execute the command.
-     *
-     * @param queryValues web service commands like create service offering
-     * @return value for request.
-     * @throws java.security.NoSuchAlgorithmException if tried to execute different algorithm except HMAC SHA1
-     * @throws java.security.InvalidKeyException if secret or api key is invalid.
-     */
-    private String signRequest(LinkedList<NameValuePair> queryValues)
-            throws java.security.NoSuchAlgorithmException, java.security.InvalidKeyException {
-        Collections.sort(queryValues, new Comparator<NameValuePair>() {
-            public int compare(NameValuePair o1, NameValuePair o2) {
-                return o1.getName().compareTo(o2.getName());
-            }
-        });
-
-        String queryString = EncodingUtil
-                .formUrlEncode(queryValues.toArray(new NameValuePair[queryValues.size()]), "UTF-8").replace("+", "%20")
-                .replace("%5B", "[").replace("%5D", "]");
-        Mac mac = Mac.getInstance("HmacSHA1");
-        SecretKeySpec secretKey = new SecretKeySpec(secret.getBytes(), "HmacSHA1");
-        mac.init(secretKey);
-        byte[] digest = mac.doFinal(queryString.toLowerCase().getBytes());
-
-        return DatatypeConverter.printBase64Binary(digest);
-    }
-
-    /**
-     * Whether you access the CloudStack API with HTTP or HTTPS, it must still be signed so that CloudStack can verify
-     * the caller has been authenticated and authorized to execute the command.
-     *
-     * @param queryValues web service commands like create service offering
-     * @return value for request.
-     * @throws java.security.NoSuchAlgorithmException if tried to execute different algorithm except HMAC SHA1
-     * @throws java.security.InvalidKeyException if secret or api key is invalid.
-     */
-    private String signRequestLogin(LinkedList<NameValuePair> queryValues)
-            throws java.security.NoSuchAlgorithmException, java.security.InvalidKeyException {
-        Collections.sort(queryValues, new Comparator<NameValuePair>() {
-            public int compare(NameValuePair o1, NameValuePair o2) {
-                return o1.getName().compareTo(o2.getName());
-            }
-        });
-
-        String queryString = EncodingUtil
-                .formUrlEncode(queryValues.toArray(new NameValuePair[queryValues.size()]), "UTF-8").replace("+", "%20")
-                .replace("%5B", "[").replace("%5D", "]");
-        byte[] digest = queryString.toLowerCase().getBytes();
-
-        return DatatypeConverter.printBase64Binary(digest);
+        return httpClient.execute(method);
     }
 
     /**
@@ -196,17 +238,7 @@ public class CloudStackServer {
      * @return query values.
      */
     public LinkedList<NameValuePair> getDefaultQuery(String command, HashMap<String, String> optional) {
-        LinkedList<NameValuePair> queryValues = new LinkedList<NameValuePair>();
-        queryValues.add(new NameValuePair("command", command));
-        queryValues.add(new NameValuePair("apiKey", apikey));
-        if (optional != null) {
-            Iterator optionalIt = optional.entrySet().iterator();
-            while (optionalIt.hasNext()) {
-                Map.Entry pairs = (Map.Entry) optionalIt.next();
-                queryValues.add(new NameValuePair((String) pairs.getKey(), (String) pairs.getValue()));
-            }
-        }
-        return queryValues;
+        return getCurrentClient().getDefaultQuery(command, optional);
     }
 
     /**
@@ -217,16 +249,7 @@ public class CloudStackServer {
      * @return query values.
      */
     public LinkedList<NameValuePair> getDefaultQueryLogin(String command, HashMap<String, String> optional) {
-        LinkedList<NameValuePair> queryValues = new LinkedList<NameValuePair>();
-        queryValues.add(new NameValuePair("command", command));
-        if (optional != null) {
-            Iterator optionalIt = optional.entrySet().iterator();
-            while (optionalIt.hasNext()) {
-                Map.Entry pairs = (Map.Entry) optionalIt.next();
-                queryValues.add(new NameValuePair((String) pairs.getKey(), (String) pairs.getValue()));
-            }
-        }
-        return queryValues;
+        return getCurrentClient().getDefaultQueryLogin(command, optional);
     }
 
     /**
@@ -220,6 +220,25 @@ public class CloudStackTemplateService {
         return responseJson;
     }
 
+    /**
+     * List all templates for the filter page by page, handing each template to the handler as it is read.
+     *
+     * @param templateFilter - Possible values are "featured", "self", "self-executable", "executable", and community".
+     * @param optional - List of optional values
+     * @param handler - handler for each template
+     * @return - number of templates listed
+     * @throws Exception - Raise if any error
+     */
+    public int listTemplates(String templateFilter, HashMap<String, String> optional, CloudStackItemHandler handler)
+            throws Exception {
+        HashMap<String, String> arguments = new HashMap<String, String>();
+        if (optional != null) {
+            arguments.putAll(optional);
+        }
+        arguments.put("templatefilter", templateFilter);
+        return server.listAll("listTemplates", arguments, "listtemplatesresponse", "template", handler);
+    }
+
     /**
      * List all public, private, and privileged ISO templates.
      *
@@ -243,6 +262,25 @@ public class CloudStackTemplateService {
         return responseJson;
     }
 
+    /**
+     * List all ISO templates for the filter page by page, handing each ISO to the handler as it is read.
+     *
+     * @param isofilter - Possible values are "featured", "self", "self-executable", "executable", and community".
+     * @param optional - List of optional values
+     * @param handler - handler for each ISO
+     * @return - number of ISOs listed
+     * @throws Exception - Raise if any error
+     */
+    public int listIsos(String isofilter, HashMap<String, String> optional, CloudStackItemHandler handler)
+            throws Exception {
+        HashMap<String, String> arguments = new HashMap<String, String>();
+        if (optional != null) {
+            arguments.putAll(optional);
+        }
+        arguments.put("isofilter", isofilter);
+        return server.listAll("listIsos", arguments, "listisosresponse", "iso", handler);
+    }
+
     /**
      * Updates a template visibility permissions. A public template is visible to all accounts within the same domain. A
      * private template is visible only to the owner of the template. A priviledged template is a private template with
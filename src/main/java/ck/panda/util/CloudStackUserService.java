@@ -116,6 +116,18 @@ public class CloudStackUserService {
         return responseDocument;
     }
 
+    /**
+     * Lists all users page by page, handing each user to the handler as it is read.
+     *
+     * @param optional optional values
+     * @param handler handler for each user
+     * @return number of users listed.
+     * @throws Exception error
+     */
+    public int listUsers(HashMap<String, String> optional, CloudStackItemHandler handler) throws Exception {
+        return server.listAll("listUsers", optional, "listusersresponse", "user", handler);
+    }
+
     /**
      * Locks user.
      *
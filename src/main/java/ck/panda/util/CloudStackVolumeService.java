@@ -92,6 +92,18 @@ public class CloudStackVolumeService {
         return listResponse;
     }
 
+    /**
+     * Lists all volumes page by page, handing each volume to the handler as it is read.
+     *
+     * @param optional optional values
+     * @param handler handler for each volume
+     * @return number of volumes listed.
+     * @throws Exception error
+     */
+    public int listVolumes(HashMap<String, String> optional, CloudStackItemHandler handler) throws Exception {
+        return server.listAll("listVolumes", optional, "listvolumesresponse", "volume", handler);
+    }
+
     /**
      * Retrieves the current status of asynchronous job for volume.
      *
@@ -12,6 +12,8 @@ import ck.panda.util.error.exception.EntityNotFoundException;
 /**
  * This class acts as intermediate between cloudstack and cloudstack configuration repository.
  *
+ * The configuration row is read once and cached until {@link #refreshConfiguration()} is called. Client handles are
+ * immutable and cached per credential pair, so concurrent requests never share mutable keys.
  */
 
 @Service
@@ -20,6 +22,9 @@ public class ConfigUtil {
     /** Logger attribute. */
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigUtil.class);
 
+    /** Id of the cloudstack configuration row. */
+    private static final Long CONFIG_ID = 1L;
+
     /** Repository to store apikey, secretkey and url. */
     @Autowired
     private CloudStackConfigurationRepository configRepo;
@@ -36,6 +41,69 @@ public class ConfigUtil {
     @Value(value = "${cloudstack.url}")
     private String apiURL;
 
+    /** Cached cloudstack configuration. */
+    private volatile CloudStackConfiguration configuration;
+
+    /**
+     * Get the cached cloudstack configuration, loading it on first use.
+     *
+     * @return cloudstack configuration
+     * @throws EntityNotFoundException if entity not found
+     */
+    public CloudStackConfiguration getConfiguration() throws EntityNotFoundException {
+        CloudStackConfiguration config = configuration;
+        if (config == null) {
+            config = configRepo.findOne(CONFIG_ID);
+            if (config == null) {
+                throw new EntityNotFoundException("config.not.found");
+            }
+            configuration = config;
+        }
+        return config;
+    }
+
+    /**
+     * Drop the cached configuration and client handles so the next call reads the updated row.
+     */
+    public void refreshConfiguration() {
+        LOGGER.debug("Refreshing cloudstack configuration");
+        configuration = null;
+        server.evictClients();
+    }
+
+    /**
+     * Get the handle signed with the admin api key and secret key.
+     *
+     * @return admin client handle
+     * @throws EntityNotFoundException if entity not found
+     */
+    public CloudStackClient getAdminClient() throws EntityNotFoundException {
+        CloudStackConfiguration config = getConfiguration();
+        return server.getClient(config.getApiURL(), config.getSecretKey(), config.getApiKey());
+    }
+
+    /**
+     * Get the handle signed with the logged in user's api key and secret key.
+     *
+     * @return user client handle
+     * @throws Exception raise if error
+     */
+    public CloudStackClient getUserClient() throws Exception {
+        return getClient(tokenDetails.getTokenDetails("secretkey"), tokenDetails.getTokenDetails("apikey"));
+    }
+
+    /**
+     * Get the handle signed with the given api key and secret key.
+     *
+     * @param secretkey secret key
+     * @param apikey api key
+     * @return client handle
+     * @throws EntityNotFoundException if entity not found
+     */
+    public CloudStackClient getClient(String secretkey, String apikey) throws EntityNotFoundException {
+        return server.getClient(getConfiguration().getApiURL(), secretkey, apikey);
+    }
+
     /**
      * To find the apikey, secret key and url from our db.
      *
@@ -44,10 +112,13 @@ public class ConfigUtil {
      * @throws EntityNotFoundException if entity not found
      */
     public CloudStackServer setServer(Long id) throws EntityNotFoundException {
-        CloudStackConfiguration config = configRepo.findOne(id);
-        if (config == null) {
-            throw new EntityNotFoundException("config.not.found");
+        if (CONFIG_ID.equals(id)) {
+            server.use(getAdminClient());
         } else {
+            CloudStackConfiguration config = configRepo.findOne(id);
+            if (config == null) {
+                throw new EntityNotFoundException("config.not.found");
+            }
             server.setServer(config.getApiURL(), config.getSecretKey(), config.getApiKey());
         }
         return server;
@@ -61,13 +132,7 @@ public class ConfigUtil {
      * @throws Exception raise if error
      */
     public CloudStackServer setUserServer() throws NumberFormatException, Exception {
-        CloudStackConfiguration config = configRepo.findOne(1L);
-        if (config == null) {
-            throw new EntityNotFoundException("config.not.found");
-        } else {
-            server.setServer(config.getApiURL(), tokenDetails.getTokenDetails("secretkey"),
-                    tokenDetails.getTokenDetails("apikey"));
-        }
+        server.use(getUserClient());
         return server;
     }
 
@@ -81,12 +146,15 @@ public class ConfigUtil {
      * @throws Exception raise if error
      */
     public CloudStackServer setInstanceUserServer(String secretkey, String apikey) throws NumberFormatException, Exception {
-        CloudStackConfiguration config = configRepo.findOne(1L);
-        if (config == null) {
-            throw new EntityNotFoundException("config.not.found");
-        } else {
-            server.setServer(config.getApiURL(), secretkey, apikey);
-        }
+        server.use(getClient(secretkey, apikey));
         return server;
     }
+
+    /**
+     * Remove the handle bound to the current thread by setServer, setUserServer or setInstanceUserServer. Pooled
+     * threads call it when their task ends, so the handle does not leak into the next task of the thread.
+     */
+    public void releaseServer() {
+        server.release();
+    }
 }
@@ -0,0 +1,348 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs tasks after a delay, retrying failed tasks with an increasing delay.
+ *
+ * Used where an event has to wait until CloudStack has committed the change, instead of sleeping on the listener
+ * thread. Tasks of the same key run one at a time in the order they were scheduled: a task waits until the task
+ * before it has run, and a failed task keeps its place until its retries end, so a later task never overtakes an
+ * earlier one. A single timer thread holds the delays; a due task runs on a worker picked by its key. The CloudStack
+ * client handle a task binds to its worker is removed when the task ends. On shutdown the pending tasks run at once,
+ * without retries.
+ */
+@Component
+public class DelayedTaskScheduler implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DelayedTaskScheduler.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "scheduler.delayed.";
+
+    /**
+     * Task run by the scheduler. A task that throws is retried, unless scheduled to run once.
+     */
+    public interface Task {
+
+        /**
+         * Run the task.
+         *
+         * @throws Exception if the task failed and should be retried
+         */
+        void run() throws Exception;
+    }
+
+    /** CloudStack server, whose client handle a task binds to the worker. */
+    @Autowired
+    private CloudStackServer cloudStackServer;
+
+    /** Number of worker threads. */
+    @Value(value = "${scheduler.delayed.threads:4}")
+    private Integer threads;
+
+    /** Number of attempts before a task is given up. */
+    @Value(value = "${scheduler.delayed.maxAttempts:5}")
+    private Integer maxAttempts;
+
+    /** Delay in milliseconds before the first retry. */
+    @Value(value = "${scheduler.delayed.retryDelay:2000}")
+    private Long retryDelay;
+
+    /** Factor the retry delay grows by on every attempt. */
+    @Value(value = "${scheduler.delayed.backoffMultiplier:2}")
+    private Integer backoffMultiplier;
+
+    /** Longest delay in milliseconds between two attempts. */
+    @Value(value = "${scheduler.delayed.maxRetryDelay:60000}")
+    private Long maxRetryDelay;
+
+    /** Time in milliseconds to wait on shutdown for the pending tasks to run. */
+    @Value(value = "${scheduler.delayed.shutdownTimeout:30000}")
+    private Long shutdownTimeout;
+
+    /** Timer holding the delayed tasks. */
+    private ScheduledExecutorService timer;
+
+    /** Single threaded workers running the due tasks. */
+    private ExecutorService[] workers;
+
+    /** Pending tasks by key in schedule order, the first task of a key is the one waiting for its delay or running. */
+    private final Map<String, Deque<Entry>> pendingTasks = new HashMap<String, Deque<Entry>>();
+
+    /** Whether the scheduler waits out delays and retries, false once shutting down. */
+    private volatile boolean running = true;
+
+    /** Number of tasks waiting for their delay or a worker. */
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /** Number of tasks scheduled. */
+    private final AtomicLong scheduledCount = new AtomicLong();
+
+    /** Number of retries. */
+    private final AtomicLong retryCount = new AtomicLong();
+
+    /** Number of tasks given up after the last attempt. */
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    /**
+     * Start the timer and the workers.
+     */
+    @PostConstruct
+    public void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delayed-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers = new ExecutorService[Math.max(1, threads)];
+        for (int index = 0; index < workers.length; index++) {
+            String name = "delayed-worker-" + index;
+            workers[index] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Stop the timer and run the pending tasks at once, without retries, then stop the workers. Tasks scheduled by
+     * the pending tasks run as well.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        timer.shutdownNow();
+        long deadline = System.currentTimeMillis() + shutdownTimeout;
+        synchronized (pendingTasks) {
+            for (Deque<Entry> tasks : pendingTasks.values()) {
+                submit(tasks.peek());
+            }
+            try {
+                while (!pendingTasks.isEmpty() && System.currentTimeMillis() < deadline) {
+                    pendingTasks.wait(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!pendingTasks.isEmpty()) {
+                LOGGER.warn("Delayed task scheduler stopped with " + pendingCount.get() + " tasks pending");
+            }
+        }
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Run a task after a delay, retrying it when it fails.
+     *
+     * @param key task key, tasks of the same key run one at a time in schedule order
+     * @param delay delay in milliseconds
+     * @param task task to run
+     * @return future completed once the task has run, or completed exceptionally once it is given up
+     */
+    public CompletableFuture<Void> schedule(String key, long delay, Task task) {
+        return schedule(key, delay, task, maxAttempts);
+    }
+
+    /**
+     * Run a task after a delay, without retrying it, for tasks which must not run twice.
+     *
+     * @param key task key, tasks of the same key run one at a time in schedule order
+     * @param delay delay in milliseconds
+     * @param task task to run
+     * @return future completed once the task has run, or completed exceptionally when it failed
+     */
+    public CompletableFuture<Void> scheduleOnce(String key, long delay, Task task) {
+        return schedule(key, delay, task, 1);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pending", pendingCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "scheduled", scheduledCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "retries", retryCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "exhausted", exhaustedCount.get()));
+        return metrics;
+    }
+
+    /**
+     * Queue a task behind the pending tasks of its key, and start its delay when it is the first.
+     *
+     * @param key task key
+     * @param delay delay in milliseconds
+     * @param task task to run
+     * @param attempts number of attempts before the task is given up
+     * @return future of the task
+     */
+    private CompletableFuture<Void> schedule(String key, long delay, Task task, int attempts) {
+        scheduledCount.incrementAndGet();
+        pendingCount.incrementAndGet();
+        Entry entry = new Entry(key == null ? "" : key, task, attempts, System.currentTimeMillis() + delay);
+        synchronized (pendingTasks) {
+            Deque<Entry> tasks = pendingTasks.computeIfAbsent(entry.key, taskKey -> new ArrayDeque<Entry>());
+            tasks.add(entry);
+            if (tasks.size() == 1) {
+                start(entry);
+            }
+        }
+        return entry.done;
+    }
+
+    /**
+     * Run the first task of a key once it is due, at once when shutting down.
+     *
+     * @param entry first task of its key
+     */
+    private void start(Entry entry) {
+        long delay = entry.dueAt - System.currentTimeMillis();
+        if (running && delay > 0) {
+            try {
+                timer.schedule(() -> submit(entry), delay, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Timer stopped, delayed task {} runs at once", entry.key);
+            }
+        }
+        submit(entry);
+    }
+
+    /**
+     * Hand a due task to the worker of its key, unless it is already there.
+     *
+     * @param entry due task
+     */
+    private void submit(Entry entry) {
+        if (entry.submitted.compareAndSet(false, true)) {
+            try {
+                workers[Math.floorMod(entry.key.hashCode(), workers.length)].execute(() -> attempt(entry));
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Delayed task " + entry.key + " dropped, the scheduler has stopped");
+                entry.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Run an attempt of a task on its worker. A failed task is retried after its retry delay, still ahead of the
+     * later tasks of its key; otherwise the next task of the key is started. A task throwing an error is not retried,
+     * but still leaves its key, so the later tasks of the key run.
+     *
+     * @param entry task to run
+     */
+    private void attempt(Entry entry) {
+        Throwable failure = null;
+        try {
+            entry.task.run();
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            cloudStackServer.release();
+        }
+        if (failure instanceof Exception && running && entry.attempt < entry.attempts) {
+            retryCount.incrementAndGet();
+            LOGGER.debug("Delayed task {} failed on attempt {}, retry in {} ms: {}", entry.key, entry.attempt,
+                    entry.nextRetryDelay, failure.getMessage());
+            entry.attempt++;
+            entry.dueAt = System.currentTimeMillis() + entry.nextRetryDelay;
+            entry.nextRetryDelay = Math.min(entry.nextRetryDelay * backoffMultiplier, maxRetryDelay);
+            entry.submitted.set(false);
+            synchronized (pendingTasks) {
+                start(entry);
+            }
+            return;
+        }
+        pendingCount.decrementAndGet();
+        synchronized (pendingTasks) {
+            Deque<Entry> tasks = pendingTasks.get(entry.key);
+            tasks.poll();
+            if (tasks.isEmpty()) {
+                pendingTasks.remove(entry.key);
+                pendingTasks.notifyAll();
+            } else {
+                start(tasks.peek());
+            }
+        }
+        if (failure == null) {
+            entry.done.complete(null);
+        } else {
+            if (entry.attempts > 1) {
+                exhaustedCount.incrementAndGet();
+            }
+            LOGGER.error("Delayed task " + entry.key + " failed after " + entry.attempt + " attempts", failure);
+            entry.done.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Task waiting in the queue of its key.
+     */
+    private final class Entry {
+
+        /** Task key. */
+        private final String key;
+
+        /** Task to run. */
+        private final Task task;
+
+        /** Number of attempts before the task is given up. */
+        private final int attempts;
+
+        /** Future of the task. */
+        private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+        /** Whether the task is handed to its worker. */
+        private final AtomicBoolean submitted = new AtomicBoolean();
+
+        /** Time in milliseconds the next attempt is due. */
+        private volatile long dueAt;
+
+        /** Number of the next attempt, starting at 1. */
+        private volatile int attempt = 1;
+
+        /** Delay in milliseconds before the attempt after the next one. */
+        private volatile long nextRetryDelay = retryDelay;
+
+        /**
+         * Create a task entry.
+         *
+         * @param key task key
+         * @param task task to run
+         * @param attempts number of attempts before the task is given up
+         * @param dueAt time in milliseconds the first attempt is due
+         */
+        Entry(String key, Task task, int attempts, long dueAt) {
+            this.key = key;
+            this.task = task;
+            this.attempts = attempts;
+            this.dueAt = dueAt;
+        }
+    }
+}
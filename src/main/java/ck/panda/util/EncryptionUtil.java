@@ -1,18 +1,61 @@
 package ck.panda.util;
 
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import ck.panda.constants.GenericConstants;
 
 /**
  * Encrypt and Decrypt the string using the secret key.
+ *
+ * A Cipher is not thread safe, so every thread keeps its own instance and re-initializes it per call. Nothing is
+ * shared between threads except the immutable keys, so concurrent callers never wait on each other.
  */
 public class EncryptionUtil {
 
     /**
-     * Encrypted text.
+     * Cipher of the current thread.
      */
-    private static Cipher cipher;
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance(GenericConstants.ENCRYPT_ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * AES keys built from the configured secret values.
+     */
+    private static final ConcurrentMap<String, SecretKey> KEYS = new ConcurrentHashMap<String, SecretKey>();
+
+    /**
+     * Get the AES key for a secret value, eg. aes.salt.secretKey. The key is built once and reused.
+     *
+     * @param secret secret value
+     * @return secret key
+     * @throws UnsupportedEncodingException raise if UTF-8 is not supported
+     */
+    public static SecretKey getSecretKey(String secret) throws UnsupportedEncodingException {
+        SecretKey key = KEYS.get(secret);
+        if (key == null) {
+            byte[] keyBytes = secret.getBytes(GenericConstants.CHARACTER_ENCODING);
+            key = new SecretKeySpec(keyBytes, 0, keyBytes.length, GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey existing = KEYS.putIfAbsent(secret, key);
+            if (existing != null) {
+                key = existing;
+            }
+        }
+        return key;
+    }
 
     /**
      * To encrypt text using 'AES' algorithm.
@@ -22,8 +65,8 @@ public class EncryptionUtil {
      * @return encrypted text
      * @throws Exception raise if error
      */
-    public static synchronized String encrypt(String plainText, SecretKey secretKey) throws Exception {
-        cipher = Cipher.getInstance("AES");
+    public static String encrypt(String plainText, SecretKey secretKey) throws Exception {
+        Cipher cipher = CIPHER.get();
         byte[] plainTextByte = plainText.getBytes();
         cipher.init(Cipher.ENCRYPT_MODE, secretKey);
         byte[] encryptedByte = cipher.doFinal(plainTextByte);
@@ -40,8 +83,8 @@ public class EncryptionUtil {
      * @return encrypted text
      * @throws Exception raise if error
      */
-    public static synchronized String decrypt(String plainText, SecretKey secretKey) throws Exception {
-        cipher = Cipher.getInstance("AES");
+    public static String decrypt(String plainText, SecretKey secretKey) throws Exception {
+        Cipher cipher = CIPHER.get();
         Base64.Decoder decoder = Base64.getDecoder();
         byte[] encryptedTextByte = decoder.decode(plainText);
         cipher.init(Cipher.DECRYPT_MODE, secretKey);
@@ -0,0 +1,302 @@
+package ck.panda.util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ck.panda.domain.entity.Cluster;
+import ck.panda.domain.entity.ComputeOffering;
+import ck.panda.domain.entity.Department;
+import ck.panda.domain.entity.Domain;
+import ck.panda.domain.entity.Host;
+import ck.panda.domain.entity.IpAddress;
+import ck.panda.domain.entity.Network;
+import ck.panda.domain.entity.NetworkOffering;
+import ck.panda.domain.entity.OsType;
+import ck.panda.domain.entity.Pod;
+import ck.panda.domain.entity.Project;
+import ck.panda.domain.entity.StorageOffering;
+import ck.panda.domain.entity.Template;
+import ck.panda.domain.entity.User;
+import ck.panda.domain.entity.VPC;
+import ck.panda.domain.entity.VmInstance;
+import ck.panda.domain.entity.Volume;
+import ck.panda.domain.entity.Zone;
+
+/**
+ * Resolves CloudStack uuids to database ids.
+ *
+ * During a sync pass every table is bulk loaded once into a uuid to id map, so converting thousands of CloudStack
+ * resources does not run a query per lookup. Outside a pass, resolved ids are kept in a bounded LRU cache. Entries
+ * are evicted by {@link EntityIdCacheListener} when an entity is deleted, or when an active-only entity is updated.
+ */
+@Component
+public class EntityIdCache {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityIdCache.class);
+
+    /** Instance used by the JPA entity listener, which is not a Spring bean. */
+    private static volatile EntityIdCache instance;
+
+    /**
+     * Cached entity types.
+     */
+    public enum Type {
+
+        /** Domain. */
+        DOMAIN(Domain.class, false, entity -> ((Domain) entity).getUuid()),
+
+        /** Zone. */
+        ZONE(Zone.class, false, entity -> ((Zone) entity).getUuid()),
+
+        /** Pod. */
+        POD(Pod.class, false, entity -> ((Pod) entity).getUuid()),
+
+        /** Cluster. */
+        CLUSTER(Cluster.class, false, entity -> ((Cluster) entity).getUuid()),
+
+        /** Host. */
+        HOST(Host.class, false, entity -> ((Host) entity).getUuid()),
+
+        /** Department, resolved only while active. */
+        DEPARTMENT(Department.class, true, entity -> ((Department) entity).getUuid()),
+
+        /** User, resolved only while active. */
+        USER(User.class, true, entity -> ((User) entity).getUuid()),
+
+        /** Project. */
+        PROJECT(Project.class, false, entity -> ((Project) entity).getUuid()),
+
+        /** Os type. */
+        OS_TYPE(OsType.class, false, entity -> ((OsType) entity).getUuid()),
+
+        /** Template. */
+        TEMPLATE(Template.class, false, entity -> ((Template) entity).getUuid()),
+
+        /** Compute offering. */
+        COMPUTE_OFFERING(ComputeOffering.class, false, entity -> ((ComputeOffering) entity).getUuid()),
+
+        /** Storage offering. */
+        STORAGE_OFFERING(StorageOffering.class, false, entity -> ((StorageOffering) entity).getUuid()),
+
+        /** Network offering. */
+        NETWORK_OFFERING(NetworkOffering.class, false, entity -> ((NetworkOffering) entity).getUuid()),
+
+        /** VPC. */
+        VIRTUAL_PRIVATE_CLOUD(VPC.class, false, entity -> ((VPC) entity).getUuid()),
+
+        /** Network. */
+        NETWORK(Network.class, false, entity -> ((Network) entity).getUuid()),
+
+        /** Virtual machine. */
+        VM_INSTANCE(VmInstance.class, false, entity -> ((VmInstance) entity).getUuid()),
+
+        /** Volume. */
+        VOLUME(Volume.class, false, entity -> ((Volume) entity).getUuid()),
+
+        /** Public IP address. */
+        IP_ADDRESS(IpAddress.class, false, entity -> ((IpAddress) entity).getUuid());
+
+        /** Entity class. */
+        private final Class<?> entityClass;
+
+        /** Whether only active rows resolve, as in the repository lookup. */
+        private final boolean activeOnly;
+
+        /** Reads the uuid of an entity. */
+        private final Function<Object, String> uuidOf;
+
+        /**
+         * Create a type.
+         *
+         * @param entityClass entity class
+         * @param activeOnly whether only active rows resolve
+         * @param uuidOf reads the uuid of an entity
+         */
+        Type(Class<?> entityClass, boolean activeOnly, Function<Object, String> uuidOf) {
+            this.entityClass = entityClass;
+            this.activeOnly = activeOnly;
+            this.uuidOf = uuidOf;
+        }
+
+        /**
+         * Get the type of an entity class.
+         *
+         * @param entityClass entity class
+         * @return type or null if not cached
+         */
+        public static Type of(Class<?> entityClass) {
+            for (Type type : values()) {
+                if (type.entityClass.isAssignableFrom(entityClass)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Repository lookup used on a cache miss.
+     */
+    public interface Loader {
+
+        /**
+         * Load the id of the uuid from the database.
+         *
+         * @param uuid CloudStack uuid
+         * @return id or null if not found
+         * @throws Exception if the lookup fails
+         */
+        Long load(String uuid) throws Exception;
+    }
+
+    /** Entity manager for the bulk loads. */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Maximum number of ids kept outside a sync pass. */
+    @Value(value = "${sync.idCacheSize:10000}")
+    private Integer maxEntries;
+
+    /** Ids bulk loaded for the running sync pass, null when no pass is running. */
+    private volatile Map<Type, Map<String, Long>> preloaded;
+
+    /** Bounded LRU cache used outside a sync pass. */
+    private Map<Type, Map<String, Long>> recent;
+
+    /**
+     * Create the LRU cache and publish this instance to the entity listener.
+     */
+    @PostConstruct
+    public void init() {
+        recent = new EnumMap<Type, Map<String, Long>>(Type.class);
+        int perType = Math.max(1, maxEntries / Type.values().length);
+        for (Type type : Type.values()) {
+            recent.put(type, Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > perType;
+                }
+            }));
+        }
+        instance = this;
+    }
+
+    /**
+     * Get the instance published to the entity listener.
+     *
+     * @return cache or null before startup
+     */
+    static EntityIdCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Bulk load every cached table for a sync pass. Lookups resolve from memory until {@link #endPass()}.
+     */
+    @Transactional(readOnly = true)
+    public void beginPass() {
+        long start = System.currentTimeMillis();
+        Map<Type, Map<String, Long>> maps = new EnumMap<Type, Map<String, Long>>(Type.class);
+        for (Type type : Type.values()) {
+            maps.put(type, load(type));
+        }
+        preloaded = maps;
+        LOGGER.info("Entity id cache preloaded in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Drop the ids loaded for the sync pass.
+     */
+    public void endPass() {
+        preloaded = null;
+    }
+
+    /**
+     * Resolve the id of a uuid, loading it with the loader on a miss.
+     *
+     * @param type entity type
+     * @param uuid CloudStack uuid
+     * @param loader repository lookup used on a miss
+     * @return id or null if not found
+     * @throws Exception if the lookup fails
+     */
+    public Long resolve(Type type, String uuid, Loader loader) throws Exception {
+        if (uuid == null) {
+            return null;
+        }
+        Map<Type, Map<String, Long>> pass = preloaded;
+        Map<String, Long> ids = pass != null ? pass.get(type) : recent.get(type);
+        Long id = ids.get(uuid);
+        if (id == null) {
+            id = loader.load(uuid);
+            if (id != null) {
+                ids.put(uuid, id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Evict the uuid of an entity type.
+     *
+     * @param type entity type
+     * @param uuid CloudStack uuid
+     */
+    public void evict(Type type, String uuid) {
+        if (uuid == null) {
+            return;
+        }
+        recent.get(type).remove(uuid);
+        Map<Type, Map<String, Long>> pass = preloaded;
+        if (pass != null) {
+            pass.get(type).remove(uuid);
+        }
+    }
+
+    /**
+     * Evict a changed entity. Deleted entities are always evicted, updated ones only when their lookup depends on the
+     * active flag.
+     *
+     * @param entity changed entity
+     * @param deleted whether the entity was deleted
+     */
+    void evict(Object entity, boolean deleted) {
+        Type type = Type.of(entity.getClass());
+        if (type != null && (deleted || type.activeOnly)) {
+            evict(type, type.uuidOf.apply(entity));
+        }
+    }
+
+    /**
+     * Load the uuid and id of every row of the type.
+     *
+     * @param type entity type
+     * @return uuid to id map
+     */
+    private Map<String, Long> load(Type type) {
+        String query = "SELECT entity.uuid, entity.id FROM " + type.entityClass.getSimpleName() + " entity"
+                + " WHERE entity.uuid IS NOT NULL" + (type.activeOnly ? " AND entity.isActive = true" : "");
+        List<?> rows = entityManager.createQuery(query).getResultList();
+        Map<String, Long> ids = new ConcurrentHashMap<String, Long>(Math.max(16, rows.size() * 2));
+        for (Object row : rows) {
+            Object[] values = (Object[]) row;
+            ids.put((String) values[0], (Long) values[1]);
+        }
+        return ids;
+    }
+}
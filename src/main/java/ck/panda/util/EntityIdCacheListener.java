@@ -0,0 +1,36 @@
+package ck.panda.util;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA entity listener keeping {@link EntityIdCache} consistent with entity updates and deletes.
+ */
+public class EntityIdCacheListener {
+
+    /**
+     * Evict the entity after an update.
+     *
+     * @param entity updated entity
+     */
+    @PostUpdate
+    public void afterUpdate(Object entity) {
+        EntityIdCache cache = EntityIdCache.getInstance();
+        if (cache != null) {
+            cache.evict(entity, false);
+        }
+    }
+
+    /**
+     * Evict the entity after a delete.
+     *
+     * @param entity deleted entity
+     */
+    @PostRemove
+    public void afterRemove(Object entity) {
+        EntityIdCache cache = EntityIdCache.getInstance();
+        if (cache != null) {
+            cache.evict(entity, true);
+        }
+    }
+}
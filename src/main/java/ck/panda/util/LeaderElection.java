@@ -0,0 +1,228 @@
+package ck.panda.util;
+
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Leader election of the backend nodes sharing one database.
+ *
+ * The leader holds a time limited lease on a row of the leader_lease table and renews it on its own thread, so the
+ * scheduled jobs never delay a renewal. A node takes
+ * the lease over once it has expired, so the jobs which must run on one node only move to another node when the
+ * leader stops. A node no longer acts as leader once its lease time has passed without a renewal, even before another
+ * node takes the lease over. Lease times are taken from the node clocks, which must be in sync to well under the
+ * lease time.
+ *
+ * Each time this node becomes the leader a new term starts. A long job reads the term when it starts and checks it
+ * with {@link #isLeader(long)} as it goes, so it stops once the lease is lost even if this node is elected again.
+ */
+@Component
+public class LeaderElection implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaderElection.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "leader.";
+
+    /** Lease name of the backend leader. */
+    private static final String NAME = "backend.leader";
+
+    /** Lease renew statement, taking the lease over when it is free or expired. */
+    private static final String RENEW_LEASE = "UPDATE leader_lease SET owner = ?, expires_at = ?, updated_date_time = ?"
+            + " WHERE name = ? AND (owner = ? OR owner IS NULL OR expires_at < ?)";
+
+    /** Lease release statement. */
+    private static final String RELEASE_LEASE = "UPDATE leader_lease SET owner = NULL, expires_at = 0,"
+            + " updated_date_time = ? WHERE name = ? AND owner = ?";
+
+    /** JDBC template reference. */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Node id, the host name and a random suffix when empty. */
+    @Value(value = "${leader.nodeId:}")
+    private String nodeId;
+
+    /** Time in milliseconds a lease is held without a renewal. */
+    @Value(value = "${leader.lease:30000}")
+    private Long leaseTime;
+
+    /** Time in milliseconds between two lease renewals. */
+    @Value(value = "${leader.renewInterval:10000}")
+    private Long renewInterval;
+
+    /** Thread renewing the lease. */
+    private ScheduledExecutorService renewer;
+
+    /** Listeners called when this node becomes the leader. */
+    private final List<Runnable> electedListeners = new CopyOnWriteArrayList<Runnable>();
+
+    /** Time in milliseconds until which this node is the leader, 0 when it is not. */
+    private volatile long leaderUntil;
+
+    /** Term of the last time this node became the leader. */
+    private volatile long term;
+
+    /** Number of times this node became the leader. */
+    private final AtomicLong electedCount = new AtomicLong();
+
+    /** Number of failed lease renewals. */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Set the node id when none is configured and start renewing the lease.
+     */
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isEmpty()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "node";
+            }
+            nodeId = host + ":" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        LOGGER.info("Leader election node id " + nodeId);
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leader-election");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewer.scheduleWithFixedDelay(this::renew, 0, renewInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renew the lease, or take it over when it is free or expired.
+     */
+    public void renew() {
+        long now = System.currentTimeMillis();
+        boolean wasLeader = isLeader();
+        boolean leader;
+        try {
+            leader = jdbcTemplate.update(RENEW_LEASE, nodeId, now + leaseTime, Timestamp.valueOf(LocalDateTime.now()),
+                    NAME, nodeId, now) == 1;
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            LOGGER.error("Unable to renew the leader lease, leader until the lease expires", e);
+            return;
+        }
+        if (leader && !wasLeader) {
+            term = electedCount.incrementAndGet();
+        }
+        // The lease time counts from before the renewal, so this node stops first when its clock is in sync.
+        leaderUntil = leader ? now + leaseTime : 0L;
+        if (leader && !wasLeader) {
+            LOGGER.info("Node " + nodeId + " is the leader");
+            for (Runnable listener : electedListeners) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    LOGGER.error("Leader elected listener failed", e);
+                }
+            }
+        } else if (!leader && wasLeader) {
+            LOGGER.warn("Node " + nodeId + " lost the leader lease");
+        }
+    }
+
+    /**
+     * Stop renewing and release the lease on shutdown, so another node takes it over without waiting for it to expire.
+     */
+    @PreDestroy
+    public void release() {
+        if (renewer != null) {
+            renewer.shutdownNow();
+        }
+        if (!isLeader()) {
+            return;
+        }
+        leaderUntil = 0L;
+        try {
+            jdbcTemplate.update(RELEASE_LEASE, Timestamp.valueOf(LocalDateTime.now()), NAME, nodeId);
+            LOGGER.info("Node " + nodeId + " released the leader lease");
+        } catch (Exception e) {
+            LOGGER.error("Unable to release the leader lease, it is taken over once expired", e);
+        }
+    }
+
+    /**
+     * Check whether this node is the leader and its lease has not expired.
+     *
+     * @return true when the jobs run on one node only are run by this node
+     */
+    public boolean isLeader() {
+        return System.currentTimeMillis() < leaderUntil;
+    }
+
+    /**
+     * Check whether this node is still the leader of a term.
+     *
+     * @param leaderTerm term read when the job started
+     * @return true when the lease of that term has not been lost since
+     */
+    public boolean isLeader(long leaderTerm) {
+        return leaderTerm == term && isLeader();
+    }
+
+    /**
+     * Get the term of the last time this node became the leader.
+     *
+     * @return leader term, 0 when this node was never the leader
+     */
+    public long getTerm() {
+        return term;
+    }
+
+    /**
+     * Add a listener called on the lease renewal thread each time this node becomes the leader, and at once when it
+     * already is. The listener should return quickly.
+     *
+     * @param listener listener to call
+     */
+    public void addElectedListener(Runnable listener) {
+        electedListeners.add(listener);
+        if (isLeader()) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Get the id of this node.
+     *
+     * @return node id
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "isLeader", isLeader() ? 1 : 0));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "elected", electedCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "failures", failureCount.get()));
+        return metrics;
+    }
+}
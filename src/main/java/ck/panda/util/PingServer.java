@@ -1,179 +1,213 @@
 package ck.panda.util;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.stereotype.Component;
 
 /**
  * MR.ping server component to connect to usage server.
  *
- *
+ * The endpoint is given with each request, so concurrent requests never share a target. Connections are pooled and
+ * kept alive between requests, and request, error and latency counts per endpoint are published through the actuator
+ * metrics endpoint. When SSL is disabled, the certificate of an https MR.ping server is not verified; this applies to
+ * the MR.ping client only.
  */
 @Component
-public class PingServer {
+public class PingServer implements PublicMetrics {
 
     /** Logger attribute. */
     private static final Logger LOGGER = LoggerFactory.getLogger(PingServer.class);
 
-     @Value(value = "${server.ssl.enabled}")
-     public Boolean sslEnabled;
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "mrping.http.";
+
+    /** SSL enabled flag, server certificates are not verified when disabled. */
+    @Value(value = "${server.ssl.enabled}")
+    public Boolean sslEnabled;
 
     /** URL that connects with MR.ping. */
+    @Value(value = "${mrping.url}")
     private String apiURL;
 
-    /** Default Constructor. */
-    public PingServer() {
+    /** Maximum connections kept open to MR.ping. */
+    @Value(value = "${mrping.http.maxConnections:20}")
+    private Integer maxConnections;
 
-    }
+    /** Timeout in milliseconds to establish a connection. */
+    @Value(value = "${mrping.http.connectTimeout:10000}")
+    private Integer connectTimeout;
+
+    /** Timeout in milliseconds to wait for response data. */
+    @Value(value = "${mrping.http.readTimeout:60000}")
+    private Integer readTimeout;
+
+    /** Timeout in milliseconds to wait for a free connection from the pool. */
+    @Value(value = "${mrping.http.poolTimeout:30000}")
+    private Long poolTimeout;
+
+    /** Idle time in milliseconds after which a kept alive connection is closed. */
+    @Value(value = "${mrping.http.idleTimeout:60000}")
+    private Long idleTimeout;
+
+    /** Pooled connection manager. */
+    private PooledHttpConnectionManager connectionManager;
+
+    /** Client shared by all threads. */
+    private HttpClient client;
+
+    /** Host, port and protocol of the MR.ping URL. */
+    private HostConfiguration hostConfiguration;
+
+    /** Path of the MR.ping URL the endpoint paths are appended to. */
+    private String basePath;
+
+    /** Background thread closing idle connections. */
+    private IdleConnectionTimeoutThread idleConnectionThread;
+
+    /** Request statistics by endpoint. */
+    private final ConcurrentMap<String, EndpointStats> endpointStats = new ConcurrentHashMap<String, EndpointStats>();
 
     /**
-     * Parameterized constructor to set MR.ping credentials.
+     * Create the connection pool and the shared client.
      *
-     * @param apiURL URL of the MR.ping server
+     * @throws Exception if the MR.ping URL is invalid
      */
-    public void setServer(String apiURL) {
-        this.apiURL = apiURL;
+    @PostConstruct
+    public void init() throws Exception {
+        URL url = new URL(apiURL);
+        Protocol protocol = Protocol.getProtocol(url.getProtocol());
+        if (!sslEnabled && protocol.isSecure()) {
+            protocol = new Protocol(url.getProtocol(), (ProtocolSocketFactory) new TrustAllSocketFactory(),
+                    protocol.getDefaultPort());
+        }
+        hostConfiguration = new HostConfiguration();
+        hostConfiguration.setHost(url.getHost(), url.getPort(), protocol);
+        basePath = url.getPath();
+        connectionManager = new PooledHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnections);
+        params.setMaxTotalConnections(maxConnections);
+        params.setConnectionTimeout(connectTimeout);
+        params.setSoTimeout(readTimeout);
+        params.setStaleCheckingEnabled(true);
+        client = new HttpClient(connectionManager);
+        client.getParams().setConnectionManagerTimeout(poolTimeout);
+
+        idleConnectionThread = new IdleConnectionTimeoutThread();
+        idleConnectionThread.setName("mrping-http-idle");
+        idleConnectionThread.setConnectionTimeout(idleTimeout);
+        idleConnectionThread.setTimeoutInterval(idleTimeout / 2);
+        idleConnectionThread.addConnectionManager(connectionManager);
+        idleConnectionThread.start();
     }
 
     /**
-     * URL Mapping.All MR.ping requests are submitted in the form of a HTTP GET/POST with an associated command
-     * and any parameters.
-     *
-     * @param queryValues - The web services command we wish to execute, such as create a virtual machine or create a
-     *            disk volume
-     * @return final URL
-     * @throws Exception if any invalid parameters.
+     * Close every pooled connection.
      */
-    public String request(LinkedList<NameValuePair> queryValues) throws Exception {
-        HttpMethod method = null;
-        try {
-            method = new GetMethod(apiURL);
-            method.setFollowRedirects(true);
-            method.setQueryString(queryValues.toArray(new NameValuePair[0]));
-        } catch (Exception e) {
-            throw new CloudStackException(e);
-        }
-        return getResponse(method);
+    @PreDestroy
+    public void destroy() {
+        idleConnectionThread.shutdown();
+        connectionManager.shutdown();
     }
 
     /**
-     * URL Mapping.All MR.ping requests are submitted in the form of a HTTP GET/POST with an associated command
-     * and any parameters. with headers
+     * Submit a HTTP GET request to a MR.ping endpoint.
      *
-     * @param queryValues - The web services command we wish to execute, such as create a virtual machine or create a
-     *            disk volume
-     * @param method - The request method
-     * @return final URL
-     * @throws Exception if any invalid parameters.
+     * @param endpoint endpoint path relative to the MR.ping URL, such as /invoice
+     * @param queryValues query parameters
+     * @return response body
+     * @throws Exception if the request fails
      */
-    public String requestWithMethod(LinkedList<NameValuePair> queryValues, HttpMethod method) throws Exception {
-        try {
-            if(!sslEnabled) {
-                disableSSL();
-            }
-            method.setFollowRedirects(true);
-            method.setQueryString(queryValues.toArray(new NameValuePair[0]));
-        } catch (Exception e) {
-            throw new CloudStackException(e);
-        }
-        return getResponse(method);
+    public String get(String endpoint, LinkedList<NameValuePair> queryValues) throws Exception {
+        return get(endpoint, null, queryValues);
     }
 
     /**
-     * URL Mapping.All MR.ping requests are submitted in the form of a HTTP POST with an associated command
-     * and any parameters.
+     * Submit a HTTP GET request for one resource of a MR.ping endpoint. Requests for every resource of an endpoint
+     * are counted together.
      *
-     * @param queryValues - The web services command we wish to execute, such as create a virtual machine or create a
-     *            disk volume
-     * @return final URL
-     * @throws Exception if any invalid parameters.
+     * @param endpoint endpoint path relative to the MR.ping URL, such as /invoice
+     * @param resourceId resource id appended to the endpoint path, or null
+     * @param queryValues query parameters
+     * @return response body
+     * @throws Exception if the request fails
      */
-    public String postRequest(String queryValues) throws Exception {
-        PostMethod method = null;
+    public String get(String endpoint, String resourceId, LinkedList<NameValuePair> queryValues) throws Exception {
+        HttpMethod method = null;
         try {
-            if(!sslEnabled) {
-                disableSSL();
-            }
-            method = new PostMethod(apiURL);
-            method.setRequestHeader("Accept", "application/json");
-            method.setRequestHeader("Content-Type", "application/json; charset=UTF-8");
-            StringRequestEntity requestEntity = new StringRequestEntity(
-                    queryValues,
-                    "application/json",
-                    "UTF-8");
-            method.setRequestEntity(requestEntity);
+            method = new GetMethod(basePath + endpoint + (resourceId == null ? "" : "/" + resourceId));
+            method.setFollowRedirects(true);
+            method.setQueryString(queryValues.toArray(new NameValuePair[0]));
         } catch (Exception e) {
             throw new CloudStackException(e);
         }
-        return getResponse(method);
+        return execute(endpoint, method);
     }
 
     /**
-     * URL Mapping.All MR.ping requests are submitted in the form of a HTTP PUT with an associated command
-     * and any parameters.
+     * Submit a HTTP POST request with a json body to a MR.ping endpoint.
      *
-     * @param queryValues - The web services command we wish to execute, such as create a virtual machine or create a
-     *            disk volume
-     * @return final URL
-     * @throws Exception if any invalid parameters.
+     * @param endpoint endpoint path relative to the MR.ping URL, such as /invoice
+     * @param body json request body
+     * @return response body
+     * @throws Exception if the request fails
      */
-    public String putRequest(String queryValues) throws Exception {
-        PutMethod method = null;
-        try {
-            if(!sslEnabled) {
-                disableSSL();
-            }
-            method = new PutMethod(apiURL);
-            method.setRequestHeader("Accept", "application/json");
-            method.setRequestHeader("Content-Type", "application/json; charset=UTF-8");
-            StringRequestEntity requestEntity = new StringRequestEntity(
-                    queryValues,
-                    "application/json",
-                    "UTF-8");
-            method.setRequestEntity(requestEntity);
-        } catch (Exception e) {
-            throw new CloudStackException(e);
-        }
-        return getResponse(method);
+    public String post(String endpoint, String body) throws Exception {
+        return execute(endpoint, withJsonBody(new PostMethod(basePath + endpoint), body));
     }
 
     /**
-     * Get response from the MR.ping in our specified format also throws exception in case of error.
+     * Submit a HTTP PUT request with a json body to a MR.ping endpoint.
      *
-     * @param method Passes final URL and connects it with MR.ping.
-     * @return response in xml or json
-     * @throws HttpException exception in URL formation.
-     * @throws IOException error in signature formation
-     * @throws Exception general exceptions
+     * @param endpoint endpoint path relative to the MR.ping URL, such as /invoice
+     * @param body json request body
+     * @return response body
+     * @throws Exception if the request fails
      */
-    public String getResponse(HttpMethod method) throws HttpException, IOException, Exception {
-        HttpClient client = new HttpClient();
-        String response = null;
-        client.executeMethod(method);
-        response = method.getResponseBodyAsString();
-        method.releaseConnection();
-        return response;
+    public String put(String endpoint, String body) throws Exception {
+        return execute(endpoint, withJsonBody(new PutMethod(basePath + endpoint), body));
     }
 
     /**
@@ -207,35 +241,157 @@ public class PingServer {
         return "";
     }
 
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.leased", connectionManager.getLeasedConnections()));
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.idle", connectionManager.getIdleConnections()));
+        metrics.add(new Metric<Integer>(METRIC_PREFIX + "pool.waiting", connectionManager.getWaitingRequests()));
+        for (Map.Entry<String, EndpointStats> entry : endpointStats.entrySet()) {
+            String prefix = METRIC_PREFIX + "endpoint." + entry.getKey() + ".";
+            EndpointStats stats = entry.getValue();
+            long requests = stats.requests.get();
+            metrics.add(new Metric<Long>(prefix + "requests", requests));
+            metrics.add(new Metric<Long>(prefix + "errors", stats.errors.get()));
+            metrics.add(new Metric<Long>(prefix + "latency.avg", requests == 0 ? 0 : stats.latency.get() / requests));
+            metrics.add(new Metric<Long>(prefix + "latency.max", stats.maxLatency.get()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Set a json request body on a method.
+     *
+     * @param method POST or PUT method
+     * @param body json request body
+     * @return the method
+     * @throws CloudStackException if the body cannot be set
+     */
+    private HttpMethod withJsonBody(EntityEnclosingMethod method, String body) throws CloudStackException {
+        try {
+            method.setRequestHeader("Accept", "application/json");
+            method.setRequestHeader("Content-Type", "application/json; charset=UTF-8");
+            method.setRequestEntity(new StringRequestEntity(body, "application/json", "UTF-8"));
+        } catch (Exception e) {
+            throw new CloudStackException(e);
+        }
+        return method;
+    }
+
     /**
-     * DisableSSL.
+     * Execute the method on a pooled connection to the MR.ping host and return the response body. The connection is
+     * always returned to the pool.
+     *
+     * @param endpoint endpoint the statistics are counted for
+     * @param method HTTP method to execute
+     * @return response body
+     * @throws IOException if the request fails
      */
-    private void disableSSL() {
+    private String execute(String endpoint, HttpMethod method) throws IOException {
+        EndpointStats stats = endpointStats.computeIfAbsent(metricName(endpoint), name -> new EndpointStats());
+        long start = System.currentTimeMillis();
         try {
+            // Copied since following a redirect changes the host configuration.
+            int status = client.executeMethod((HostConfiguration) hostConfiguration.clone(), method);
+            if (status >= 400) {
+                stats.errors.incrementAndGet();
+                LOGGER.debug("MR.ping " + endpoint + " returned status " + status);
+            }
+            return method.getResponseBodyAsString();
+        } catch (IOException e) {
+            stats.errors.incrementAndGet();
+            throw e;
+        } finally {
+            method.releaseConnection();
+            long elapsed = System.currentTimeMillis() - start;
+            stats.requests.incrementAndGet();
+            stats.latency.addAndGet(elapsed);
+            stats.maxLatency.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * Convert an endpoint path to a metric name part, for example /usage/templateSize to usage.templateSize.
+     *
+     * @param endpoint endpoint path
+     * @return metric name part
+     */
+    private String metricName(String endpoint) {
+        String name = endpoint.startsWith("/") ? endpoint.substring(1) : endpoint;
+        return name.replace('/', '.');
+    }
+
+    /**
+     * Socket factory for the MR.ping client which does not verify the server certificate.
+     */
+    private static final class TrustAllSocketFactory implements SecureProtocolSocketFactory {
+
+        /** SSL socket factory trusting every certificate. */
+        private final SSLSocketFactory factory;
+
+        /**
+         * Create the socket factory.
+         *
+         * @throws Exception if SSL is not available
+         */
+        private TrustAllSocketFactory() throws Exception {
             TrustManager[] trustAllCerts = new TrustManager[] {
                 new X509TrustManager() {
-                    public java.security.cert.
-                        X509Certificate[] getAcceptedIssuers() {
-                        return null;
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
                     }
-                    public void checkClientTrusted(
-                            final java.security.cert.X509Certificate[] certs,
-                            final String authType) {
-                        }
-                    public void checkServerTrusted(
-                            final java.security.cert.X509Certificate[] certs,
-                            final String authType) {
+                    public void checkClientTrusted(final X509Certificate[] certs, final String authType) {
+                    }
+                    public void checkServerTrusted(final X509Certificate[] certs, final String authType) {
                     }
                 }
             };
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new java.security.SecureRandom());
+            SSLContext sc = SSLContext.getInstance("TLS");
+            sc.init(null, trustAllCerts, new SecureRandom());
+            factory = sc.getSocketFactory();
+        }
 
-            HttpsURLConnection.setDefaultSSLSocketFactory(
-                    sc.getSocketFactory());
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return factory.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return factory.createSocket(host, port, localAddress, localPort);
+        }
 
-        } catch (Exception ex) {
-            LOGGER.debug("Unable to disable ssl verification" + ex);
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort,
+                HttpConnectionParams params) throws IOException {
+            Socket socket = factory.createSocket();
+            socket.bind(new InetSocketAddress(localAddress, localPort));
+            socket.connect(new InetSocketAddress(host, port), params.getConnectionTimeout());
+            return socket;
         }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return factory.createSocket(socket, host, port, autoClose);
+        }
+    }
+
+    /**
+     * Request statistics of one endpoint.
+     */
+    private static final class EndpointStats {
+
+        /** Number of requests. */
+        private final AtomicLong requests = new AtomicLong();
+
+        /** Number of failed requests and error responses. */
+        private final AtomicLong errors = new AtomicLong();
+
+        /** Total request time in milliseconds. */
+        private final AtomicLong latency = new AtomicLong();
+
+        /** Longest request time in milliseconds. */
+        private final AtomicLong maxLatency = new AtomicLong();
     }
 }
@@ -4,9 +4,11 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URL;
 import java.util.LinkedList;
-import org.apache.commons.httpclient.HttpMethod;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.httpclient.NameValuePair;
-import org.apache.commons.httpclient.methods.GetMethod;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,10 +20,18 @@ import ck.panda.util.error.exception.ApplicationException;
 /**
  * MR.ping service connectivity for IP cost update.
  *
+ * Usage and invoice reads are cached by endpoint and parameters. An expired usage response is still returned for a
+ * while as it is read again in the background, and identical reads running at the same time share one request.
+ * Invoice responses change with payments, which may be made through another node, so they are kept for a shorter
+ * time and never returned once expired. The invoice list is cached by the domain of the current user. Invoice
+ * updates drop every cached response of every node, through the cache invalidation.
  */
 @Service
 public class PingService {
 
+    /** Cache invalidation name of the responses. */
+    private static final String RESPONSES_CACHE = "mrping.responses";
+
     /** MR.ping server for connectivity. */
     @Autowired
     private PingServer server;
@@ -30,6 +40,69 @@ public class PingService {
     @Value("${mrping.url}")
     private String apiURL;
 
+    /** Time to live of cached usage and invoice responses in milliseconds. */
+    @Value(value = "${mrping.cache.ttl:60000}")
+    private Long cacheTtl;
+
+    /** Time in milliseconds an expired response is still returned while it is read again. */
+    @Value(value = "${mrping.cache.staleTtl:300000}")
+    private Long cacheStaleTtl;
+
+    /** Time to live of cached invoice responses in milliseconds. */
+    @Value(value = "${mrping.cache.invoiceTtl:10000}")
+    private Long invoiceCacheTtl;
+
+    /** Maximum number of cached responses. */
+    @Value(value = "${mrping.cache.size:1000}")
+    private Integer cacheSize;
+
+    /** Number of threads reading expired responses again. */
+    @Value(value = "${mrping.cache.refreshThreads:2}")
+    private Integer cacheRefreshThreads;
+
+    /** Reads expired responses again in the background. */
+    private ExecutorService cacheRefresher;
+
+    /** Usage responses by endpoint and parameters. */
+    private TtlCache<String> responseCache;
+
+    /** Invoice responses by endpoint and parameters. */
+    private TtlCache<String> invoiceCache;
+
+    /** Cache invalidation across the backend nodes. */
+    @Autowired
+    private CacheInvalidation cacheInvalidation;
+
+    /** Token details of the current user. */
+    @Autowired
+    private TokenDetails tokenDetails;
+
+    /**
+     * Create the response caches.
+     */
+    @PostConstruct
+    public void init() {
+        cacheRefresher = Executors.newFixedThreadPool(cacheRefreshThreads, runnable -> {
+            Thread thread = new Thread(runnable, "mrping-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        responseCache = new TtlCache<String>(cacheTtl, cacheStaleTtl, cacheSize, cacheRefresher);
+        invoiceCache = new TtlCache<String>(invoiceCacheTtl, cacheSize);
+        cacheInvalidation.addListener(RESPONSES_CACHE, () -> {
+            responseCache.invalidateAll();
+            invoiceCache.invalidateAll();
+        });
+    }
+
+    /**
+     * Stop the background reads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        cacheRefresher.shutdownNow();
+    }
+
     /**
      * Set MR.ping connection URL.
      *
@@ -47,9 +120,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String addPlanCost(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/offeringCost");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/offeringCost", arguments);
         return responseJson;
     }
 
@@ -61,9 +133,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String addDomainToPing(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/domain");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/domain", arguments);
         return responseJson;
     }
 
@@ -75,9 +146,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String addDepartmentToPing(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/department");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/department", arguments);
         return responseJson;
     }
 
@@ -89,9 +159,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String addProjectToPing(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/project");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/project", arguments);
         return responseJson;
     }
 
@@ -103,9 +172,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String updateTemplateSize(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/usage/templateSize");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/usage/templateSize", arguments);
         return responseJson;
     }
 
@@ -117,9 +185,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String addOraganizationToPing(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/organization");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/organization", arguments);
         return responseJson;
     }
 
@@ -131,9 +198,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String updateOraganizationToPing(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/organization");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.putRequest(arguments);
+        String responseJson = server.put("/organization", arguments);
         return responseJson;
     }
 
@@ -145,10 +211,14 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String updateInvoiceToPing(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/invoice");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
-        return responseJson;
+        try {
+            return server.post("/invoice", arguments);
+        } finally {
+            responseCache.invalidateAll();
+            invoiceCache.invalidateAll();
+            cacheInvalidation.invalidate(RESPONSES_CACHE);
+        }
     }
 
     /**
@@ -159,9 +229,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String getInvoiceById(String id) throws Exception {
-        server.setServer(apiURL + "/invoice/" + id);
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
-        String responseJson = server.request(arguments);
+        String responseJson = server.get("/invoice", id, arguments);
         return responseJson;
     }
 
@@ -177,13 +246,13 @@ public class PingService {
      */
     @PreAuthorize("hasPermission(null, 'USAGE_STATISTICS')")
     public String getUsageStatistics(String fromDate, String toDate, String groupingType, String domainUuid) throws Exception {
-        server.setServer(apiURL + "/usage/listUsageByPeriod");
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
         arguments.add(new NameValuePair("fromDate", fromDate));
         arguments.add(new NameValuePair("toDate", toDate));
         arguments.add(new NameValuePair("groupingType", groupingType));
         arguments.add(new NameValuePair("domainUuid", domainUuid));
-        String responseJson = server.request(arguments);
+        String responseJson = responseCache.get(cacheKey("/usage/listUsageByPeriod", fromDate, toDate, groupingType, domainUuid),
+                () -> server.get("/usage/listUsageByPeriod", arguments));
         return responseJson;
     }
 
@@ -225,12 +294,12 @@ public class PingService {
      * @throws Exception if errors.
      */
     public String  listInvoiceReportByDomainId(String domainUuid, String status, String type) throws Exception {
-        HttpMethod method = new GetMethod(apiURL + "/invoice/listByDomainInvoice");
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
         arguments.add(new NameValuePair("domainUuid", domainUuid));
         arguments.add(new NameValuePair("status", status));
         arguments.add(new NameValuePair("type", type));
-        String responseJson = server.requestWithMethod(arguments, method);
+        String responseJson = invoiceCache.get(cacheKey("/invoice/listByDomainInvoice", domainUuid, status, type),
+                () -> server.get("/invoice/listByDomainInvoice", arguments));
         return responseJson;
     }
 
@@ -266,10 +335,11 @@ public class PingService {
      * @throws Exception if errors.
      */
     public String listInvoiceReport(String type) throws Exception {
-        HttpMethod method = new GetMethod(apiURL + "/invoice/invoiceList");
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
         arguments.add(new NameValuePair("type", type));
-        String responseJson = server.requestWithMethod(arguments, method);
+        String responseJson = invoiceCache.get(
+                cacheKey("/invoice/invoiceList", tokenDetails.getTokenDetails("domainid"), type),
+                () -> server.get("/invoice/invoiceList", arguments));
         return responseJson;
     }
 
@@ -281,9 +351,8 @@ public class PingService {
      * @throws Exception - Raise if any error
      */
     public String pingInitialSync(JSONObject requestJson) throws Exception {
-        server.setServer(apiURL + "/domain/sync");
         String arguments = server.getJsonToString(requestJson);
-        String responseJson = server.postRequest(arguments);
+        String responseJson = server.post("/domain/sync", arguments);
         return responseJson;
     }
     
@@ -295,10 +364,10 @@ public class PingService {
      * @throws Exception if errors.
      */
     public String  getUsageTotalForAYearByDomain(String domainUuid) throws Exception {
-        HttpMethod method = new GetMethod(apiURL + "/usage/usageTotalByDomain");
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
         arguments.add(new NameValuePair("domainUuid", domainUuid));
-        String responseJson = server.requestWithMethod(arguments, method);
+        String responseJson = responseCache.get(cacheKey("/usage/usageTotalByDomain", domainUuid),
+                () -> server.get("/usage/usageTotalByDomain", arguments));
         return responseJson;
     }
     
@@ -310,10 +379,10 @@ public class PingService {
      * @throws Exception if errors.
      */
     public String  getUsageTotalByProjectAndDomain(String domainUuid) throws Exception {
-        HttpMethod method = new GetMethod(apiURL + "/usage/usageByProject");
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
         arguments.add(new NameValuePair("domainUuid", domainUuid));
-        String responseJson = server.requestWithMethod(arguments, method);
+        String responseJson = responseCache.get(cacheKey("/usage/usageByProject", domainUuid),
+                () -> server.get("/usage/usageByProject", arguments));
         return responseJson;
     }
     
@@ -325,13 +394,28 @@ public class PingService {
      * @throws Exception if errors.
      */
     public String  getUsageTotalByAccountAndDomain(String domainUuid) throws Exception {
-        HttpMethod method = new GetMethod(apiURL + "/usage/usageByAccount");
         LinkedList<NameValuePair> arguments = new LinkedList<NameValuePair>();
         arguments.add(new NameValuePair("domainUuid", domainUuid));
-        String responseJson = server.requestWithMethod(arguments, method);
+        String responseJson = responseCache.get(cacheKey("/usage/usageByAccount", domainUuid),
+                () -> server.get("/usage/usageByAccount", arguments));
         return responseJson;
     }
 
+    /**
+     * Build the cache key of a read.
+     *
+     * @param endpoint MR.ping endpoint
+     * @param params request parameters
+     * @return cache key
+     */
+    private String cacheKey(String endpoint, String... params) {
+        StringBuilder key = new StringBuilder(endpoint);
+        for (String param : params) {
+            key.append('|').append(param);
+        }
+        return key.toString();
+    }
+
     /**
      * Check if an IP port is open or not.
      *
@@ -0,0 +1,68 @@
+package ck.panda.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+
+/**
+ * Thread safe connection manager which keeps track of leased and waiting connections.
+ *
+ * The commons-httpclient pool only reports the number of open connections, so lease and wait counters are maintained
+ * here to expose the pool state through metrics.
+ */
+public class PooledHttpConnectionManager extends MultiThreadedHttpConnectionManager {
+
+    /** Number of connections currently handed out to a request. */
+    private final AtomicInteger leased = new AtomicInteger();
+
+    /** Number of requests currently waiting for a free connection. */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    @Override
+    public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+            throws ConnectionPoolTimeoutException {
+        waiting.incrementAndGet();
+        try {
+            HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+            leased.incrementAndGet();
+            return connection;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void releaseConnection(HttpConnection connection) {
+        super.releaseConnection(connection);
+        leased.decrementAndGet();
+    }
+
+    /**
+     * Get the number of connections currently leased to a request.
+     *
+     * @return leased connection count
+     */
+    public int getLeasedConnections() {
+        return leased.get();
+    }
+
+    /**
+     * Get the number of open connections that are kept alive in the pool and not leased.
+     *
+     * @return idle connection count
+     */
+    public int getIdleConnections() {
+        return Math.max(0, getConnectionsInPool() - leased.get());
+    }
+
+    /**
+     * Get the number of requests waiting for a connection.
+     *
+     * @return waiting request count
+     */
+    public int getWaitingRequests() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,469 @@
+package ck.panda.util;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import ck.panda.domain.entity.ComputeOfferingCost;
+import ck.panda.domain.entity.MiscellaneousCost;
+import ck.panda.domain.entity.StorageOfferingCost;
+import ck.panda.domain.entity.Tax;
+import ck.panda.domain.entity.TemplateCost;
+
+/**
+ * Immutable snapshot of the offering prices, compiled from the cost tables for rating.
+ *
+ * Prices are kept in primitive arrays indexed by offering id, one table per zone. Cost rows without a zone form the
+ * fallback table used when a zone has no price for an offering. When an offering has several cost rows the latest
+ * one, the row with the highest id, is used.
+ */
+public final class PriceCatalog {
+
+    /** Compute price field: setup cost. */
+    public static final int COMPUTE_SETUP = 0;
+
+    /** Compute price field: running cost per vCPU. */
+    public static final int COMPUTE_RUNNING_PER_VCPU = 1;
+
+    /** Compute price field: running cost per MB of memory. */
+    public static final int COMPUTE_RUNNING_PER_MB = 2;
+
+    /** Compute price field: running cost per MHz. */
+    public static final int COMPUTE_RUNNING_PER_MHZ = 3;
+
+    /** Compute price field: stoppage cost per vCPU. */
+    public static final int COMPUTE_STOPPAGE_PER_VCPU = 4;
+
+    /** Compute price field: stoppage cost per MB of memory. */
+    public static final int COMPUTE_STOPPAGE_PER_MB = 5;
+
+    /** Compute price field: stoppage cost per MHz. */
+    public static final int COMPUTE_STOPPAGE_PER_MHZ = 6;
+
+    /** Compute price field: running vCPU cost. */
+    public static final int COMPUTE_RUNNING_VCPU = 7;
+
+    /** Compute price field: running memory cost. */
+    public static final int COMPUTE_RUNNING_MEMORY = 8;
+
+    /** Compute price field: stoppage vCPU cost. */
+    public static final int COMPUTE_STOPPAGE_VCPU = 9;
+
+    /** Compute price field: stoppage memory cost. */
+    public static final int COMPUTE_STOPPAGE_MEMORY = 10;
+
+    /** Compute price field: total of all compute prices, as calculated by the compute offering cost service. */
+    public static final int COMPUTE_TOTAL = 11;
+
+    /** Number of compute price fields. */
+    public static final int COMPUTE_FIELDS = 12;
+
+    /** Storage price field: cost per month. */
+    public static final int STORAGE_PER_MONTH = 0;
+
+    /** Storage price field: cost per GB per month. */
+    public static final int STORAGE_GB_PER_MONTH = 1;
+
+    /** Number of storage price fields. */
+    public static final int STORAGE_FIELDS = 2;
+
+    /** Zone id of the fallback tables. */
+    private static final long ANY_ZONE = 0L;
+
+    /** Catalog version, increasing with every compile. */
+    private final long version;
+
+    /** Compile date and time. */
+    private final ZonedDateTime compiledDateTime;
+
+    /** Sorted zone ids, the position is the zone index of the price tables. */
+    private final long[] zoneIds;
+
+    /** Compute prices by zone index, COMPUTE_FIELDS values per compute offering id. */
+    private final double[][] computePrices;
+
+    /** Whether a compute offering has prices, by zone index and compute offering id. */
+    private final boolean[][] computePriced;
+
+    /** Storage prices by zone index, STORAGE_FIELDS values per storage offering id. */
+    private final double[][] storagePrices;
+
+    /** Whether a storage offering has prices, by zone index and storage offering id. */
+    private final boolean[][] storagePriced;
+
+    /** Miscellaneous price per unit by zone index and cost type ordinal. */
+    private final double[][] miscellaneousPrices;
+
+    /** Whether a cost type has a price, by zone index and cost type ordinal. */
+    private final boolean[][] miscellaneousPriced;
+
+    /** Template cost by template id. */
+    private final double[] templatePrices;
+
+    /** Sum of the active tax percentages. */
+    private final double taxPercentage;
+
+    /**
+     * Compile a catalog from the cost rows.
+     *
+     * @param version catalog version
+     * @param computeCosts compute offering cost rows
+     * @param storageCosts storage offering cost rows
+     * @param templateCosts template cost rows
+     * @param miscellaneousCosts active miscellaneous cost rows
+     * @param taxes active tax rows
+     */
+    public PriceCatalog(long version, List<ComputeOfferingCost> computeCosts, List<StorageOfferingCost> storageCosts,
+            List<TemplateCost> templateCosts, List<MiscellaneousCost> miscellaneousCosts, List<Tax> taxes) {
+        this.version = version;
+        this.compiledDateTime = ZonedDateTime.now();
+
+        long[] zones = new long[computeCosts.size() + storageCosts.size() + miscellaneousCosts.size() + 1];
+        int zoneCount = 0;
+        zones[zoneCount++] = ANY_ZONE;
+        long maxComputeId = -1;
+        for (ComputeOfferingCost cost : computeCosts) {
+            zones[zoneCount++] = zoneId(cost.getZoneId());
+            maxComputeId = Math.max(maxComputeId, offeringId(cost.getComputeId()));
+        }
+        long maxStorageId = -1;
+        for (StorageOfferingCost cost : storageCosts) {
+            zones[zoneCount++] = zoneId(cost.getZoneId());
+            maxStorageId = Math.max(maxStorageId, offeringId(cost.getStorageId()));
+        }
+        for (MiscellaneousCost cost : miscellaneousCosts) {
+            zones[zoneCount++] = zoneId(cost.getZone() != null ? cost.getZone().getId() : null);
+        }
+        this.zoneIds = distinct(zones, zoneCount);
+
+        int costTypes = MiscellaneousCost.CostTypes.values().length;
+        this.computePrices = new double[zoneIds.length][(int) (maxComputeId + 1) * COMPUTE_FIELDS];
+        this.computePriced = new boolean[zoneIds.length][(int) (maxComputeId + 1)];
+        this.storagePrices = new double[zoneIds.length][(int) (maxStorageId + 1) * STORAGE_FIELDS];
+        this.storagePriced = new boolean[zoneIds.length][(int) (maxStorageId + 1)];
+        this.miscellaneousPrices = new double[zoneIds.length][costTypes];
+        this.miscellaneousPriced = new boolean[zoneIds.length][costTypes];
+
+        long[][] computeRowIds = new long[zoneIds.length][(int) (maxComputeId + 1)];
+        for (ComputeOfferingCost cost : computeCosts) {
+            int zone = zoneIndex(zoneId(cost.getZoneId()));
+            int offering = (int) offeringId(cost.getComputeId());
+            if (offering >= 0 && isLatest(computeRowIds[zone], offering, cost.getId())) {
+                setComputePrices(computePrices[zone], offering * COMPUTE_FIELDS, cost);
+                computePriced[zone][offering] = true;
+            }
+        }
+
+        long[][] storageRowIds = new long[zoneIds.length][(int) (maxStorageId + 1)];
+        for (StorageOfferingCost cost : storageCosts) {
+            int zone = zoneIndex(zoneId(cost.getZoneId()));
+            int offering = (int) offeringId(cost.getStorageId());
+            if (offering >= 0 && !Boolean.FALSE.equals(cost.getIsActive())
+                    && isLatest(storageRowIds[zone], offering, cost.getId())) {
+                storagePrices[zone][offering * STORAGE_FIELDS + STORAGE_PER_MONTH] = value(cost.getCostPerMonth());
+                storagePrices[zone][offering * STORAGE_FIELDS + STORAGE_GB_PER_MONTH] =
+                        value(cost.getCostGbPerMonth());
+                storagePriced[zone][offering] = true;
+            }
+        }
+
+        long[][] miscellaneousRowIds = new long[zoneIds.length][costTypes];
+        for (MiscellaneousCost cost : miscellaneousCosts) {
+            if (cost.getCostType() != null) {
+                int zone = zoneIndex(zoneId(cost.getZone() != null ? cost.getZone().getId() : null));
+                int costType = cost.getCostType().ordinal();
+                if (isLatest(miscellaneousRowIds[zone], costType, cost.getId())) {
+                    miscellaneousPrices[zone][costType] = value(cost.getCostperGB());
+                    miscellaneousPriced[zone][costType] = true;
+                }
+            }
+        }
+
+        long maxTemplateId = -1;
+        for (TemplateCost cost : templateCosts) {
+            maxTemplateId = Math.max(maxTemplateId, offeringId(cost.getTemplateCostId()));
+        }
+        this.templatePrices = new double[(int) (maxTemplateId + 1)];
+        long[] templateRowIds = new long[templatePrices.length];
+        for (TemplateCost cost : templateCosts) {
+            int template = (int) offeringId(cost.getTemplateCostId());
+            if (template >= 0 && isLatest(templateRowIds, template, cost.getId())) {
+                templatePrices[template] = value(cost.getCost());
+            }
+        }
+
+        double percentage = 0;
+        for (Tax tax : taxes) {
+            percentage += value(tax.getPercentage());
+        }
+        this.taxPercentage = percentage;
+    }
+
+    /**
+     * Get the catalog version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the compile date and time.
+     *
+     * @return the compiledDateTime
+     */
+    public ZonedDateTime getCompiledDateTime() {
+        return compiledDateTime;
+    }
+
+    /**
+     * Get the sum of the active tax percentages.
+     *
+     * @return the taxPercentage
+     */
+    public double getTaxPercentage() {
+        return taxPercentage;
+    }
+
+    /**
+     * Get a compute price of an offering.
+     *
+     * @param zoneId zone id
+     * @param computeId compute offering id
+     * @param field compute price field
+     * @return price, 0 if the offering has no price
+     */
+    public double computePrice(long zoneId, long computeId, int field) {
+        int zone = pricedZone(computePriced, zoneId, computeId);
+        return zone < 0 ? 0 : computePrices[zone][(int) computeId * COMPUTE_FIELDS + field];
+    }
+
+    /**
+     * Rate the compute usage of an instance.
+     *
+     * @param zoneId zone id
+     * @param computeId compute offering id
+     * @param running whether the instance was running, else stopped
+     * @param hours hours in that state
+     * @param vcpu number of vCPUs
+     * @param memory memory in MB
+     * @param speed CPU speed in MHz
+     * @return charge
+     */
+    public double rateCompute(long zoneId, long computeId, boolean running, double hours, int vcpu, int memory,
+            int speed) {
+        int zone = pricedZone(computePriced, zoneId, computeId);
+        if (zone < 0) {
+            return 0;
+        }
+        double[] prices = computePrices[zone];
+        int base = (int) computeId * COMPUTE_FIELDS;
+        if (running) {
+            return hours * (prices[base + COMPUTE_RUNNING_PER_VCPU] * vcpu + prices[base + COMPUTE_RUNNING_PER_MB]
+                    * memory + prices[base + COMPUTE_RUNNING_PER_MHZ] * speed + prices[base + COMPUTE_RUNNING_VCPU]
+                    + prices[base + COMPUTE_RUNNING_MEMORY]);
+        }
+        return hours * (prices[base + COMPUTE_STOPPAGE_PER_VCPU] * vcpu + prices[base + COMPUTE_STOPPAGE_PER_MB]
+                * memory + prices[base + COMPUTE_STOPPAGE_PER_MHZ] * speed + prices[base + COMPUTE_STOPPAGE_VCPU]
+                + prices[base + COMPUTE_STOPPAGE_MEMORY]);
+    }
+
+    /**
+     * Rate the setup cost of instances created from a compute offering.
+     *
+     * @param zoneId zone id
+     * @param computeId compute offering id
+     * @param count number of instances created
+     * @return charge
+     */
+    public double rateSetup(long zoneId, long computeId, double count) {
+        return computePrice(zoneId, computeId, COMPUTE_SETUP) * count;
+    }
+
+    /**
+     * Rate the usage of a volume.
+     *
+     * @param zoneId zone id
+     * @param storageId storage offering id
+     * @param months months of usage
+     * @param size volume size in GB
+     * @return charge
+     */
+    public double rateStorage(long zoneId, long storageId, double months, double size) {
+        int zone = pricedZone(storagePriced, zoneId, storageId);
+        if (zone < 0) {
+            return 0;
+        }
+        int base = (int) storageId * STORAGE_FIELDS;
+        return months * (storagePrices[zone][base + STORAGE_PER_MONTH]
+                + storagePrices[zone][base + STORAGE_GB_PER_MONTH] * size);
+    }
+
+    /**
+     * Rate the usage of a template.
+     *
+     * @param templateId template id
+     * @param quantity number of units
+     * @return charge
+     */
+    public double rateTemplate(long templateId, double quantity) {
+        return templateId >= 0 && templateId < templatePrices.length ? templatePrices[(int) templateId] * quantity : 0;
+    }
+
+    /**
+     * Rate a miscellaneous usage, eg. snapshot size or IP addresses.
+     *
+     * @param zoneId zone id
+     * @param costType miscellaneous cost type
+     * @param quantity number of units, GB or IP
+     * @return charge
+     */
+    public double rateMiscellaneous(long zoneId, MiscellaneousCost.CostTypes costType, double quantity) {
+        int zone = pricedZone(miscellaneousPriced, zoneId, costType.ordinal());
+        return zone < 0 ? 0 : miscellaneousPrices[zone][costType.ordinal()] * quantity;
+    }
+
+    /**
+     * Add the active taxes to an amount.
+     *
+     * @param amount amount without tax
+     * @return amount with tax
+     */
+    public double withTax(double amount) {
+        return amount + amount * taxPercentage / 100;
+    }
+
+    /**
+     * Find the zone index holding a price, falling back to the table without a zone.
+     *
+     * @param priced whether a price is set, by zone index and id
+     * @param zoneId zone id
+     * @param id offering id or cost type ordinal
+     * @return zone index, -1 if there is no price
+     */
+    private int pricedZone(boolean[][] priced, long zoneId, long id) {
+        if (id < 0 || id >= priced[0].length) {
+            return -1;
+        }
+        int zone = Arrays.binarySearch(zoneIds, zoneId);
+        if (zone >= 0 && priced[zone][(int) id]) {
+            return zone;
+        }
+        zone = zoneIndex(ANY_ZONE);
+        return priced[zone][(int) id] ? zone : -1;
+    }
+
+    /**
+     * Get the index of a zone in the price tables.
+     *
+     * @param zoneId zone id
+     * @return zone index
+     */
+    private int zoneIndex(long zoneId) {
+        return Arrays.binarySearch(zoneIds, zoneId);
+    }
+
+    /**
+     * Copy the prices of a compute offering cost row.
+     *
+     * @param prices compute prices of a zone
+     * @param base position of the offering
+     * @param cost compute offering cost row
+     */
+    private static void setComputePrices(double[] prices, int base, ComputeOfferingCost cost) {
+        prices[base + COMPUTE_SETUP] = value(cost.getSetupCost());
+        prices[base + COMPUTE_RUNNING_PER_VCPU] = value(cost.getInstanceRunningCostPerVcpu());
+        prices[base + COMPUTE_RUNNING_PER_MB] = value(cost.getInstanceRunningCostPerMB());
+        prices[base + COMPUTE_RUNNING_PER_MHZ] = value(cost.getInstanceRunningCostPerMhz());
+        prices[base + COMPUTE_STOPPAGE_PER_VCPU] = value(cost.getInstanceStoppageCostPerVcpu());
+        prices[base + COMPUTE_STOPPAGE_PER_MB] = value(cost.getInstanceStoppageCostPerMB());
+        prices[base + COMPUTE_STOPPAGE_PER_MHZ] = value(cost.getInstanceStoppageCostPerMhz());
+        prices[base + COMPUTE_RUNNING_VCPU] = value(cost.getInstanceRunningCostVcpu());
+        prices[base + COMPUTE_RUNNING_MEMORY] = value(cost.getInstanceRunningCostMemory());
+        prices[base + COMPUTE_STOPPAGE_VCPU] = value(cost.getInstanceStoppageCostVcpu());
+        prices[base + COMPUTE_STOPPAGE_MEMORY] = value(cost.getInstanceStoppageCostMemory());
+        prices[base + COMPUTE_TOTAL] = computeTotal(cost);
+    }
+
+    /**
+     * Total the prices of a compute offering cost row as ComputeOfferingCostService.totalcost does, adding them in the
+     * same order so that the total compares equal to the stored one.
+     *
+     * @param cost compute offering cost row
+     * @return total of all compute prices
+     */
+    private static double computeTotal(ComputeOfferingCost cost) {
+        return value(cost.getInstanceRunningCostVcpu()) + value(cost.getInstanceRunningCostMemory())
+                + value(cost.getInstanceRunningCostPerMB()) + value(cost.getInstanceRunningCostPerVcpu())
+                + value(cost.getInstanceRunningCostPerMhz()) + value(cost.getInstanceStoppageCostPerMhz())
+                + value(cost.getInstanceStoppageCostVcpu()) + value(cost.getInstanceStoppageCostMemory())
+                + value(cost.getInstanceStoppageCostPerVcpu()) + value(cost.getInstanceStoppageCostPerMB())
+                + value(cost.getSetupCost());
+    }
+
+    /**
+     * Record a row id if it is newer than the one already used for a slot.
+     *
+     * @param rowIds row id used by slot
+     * @param slot offering id or cost type ordinal
+     * @param rowId cost row id
+     * @return true if the row is the latest so far
+     */
+    private static boolean isLatest(long[] rowIds, int slot, Long rowId) {
+        long id = rowId != null ? rowId : 0L;
+        if (rowIds[slot] != 0 && rowIds[slot] > id) {
+            return false;
+        }
+        rowIds[slot] = id;
+        return true;
+    }
+
+    /**
+     * Sort and remove the duplicates of the zone ids.
+     *
+     * @param zones zone ids
+     * @param count number of zone ids set
+     * @return sorted distinct zone ids
+     */
+    private static long[] distinct(long[] zones, int count) {
+        long[] sorted = Arrays.copyOf(zones, count);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int index = 0; index < sorted.length; index++) {
+            if (size == 0 || sorted[size - 1] != sorted[index]) {
+                sorted[size++] = sorted[index];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Get the zone id of a cost row.
+     *
+     * @param zoneId zone id, null for any zone
+     * @return zone id
+     */
+    private static long zoneId(Long zoneId) {
+        return zoneId != null ? zoneId : ANY_ZONE;
+    }
+
+    /**
+     * Get the offering id of a cost row.
+     *
+     * @param offeringId offering id, null if not set
+     * @return offering id, -1 if not set
+     */
+    private static long offeringId(Long offeringId) {
+        return offeringId != null ? offeringId : -1L;
+    }
+
+    /**
+     * Get a price, treating a missing price as 0 as the cost services do.
+     *
+     * @param price price
+     * @return price, 0 if not set
+     */
+    private static double value(Double price) {
+        return price != null ? price : 0;
+    }
+}
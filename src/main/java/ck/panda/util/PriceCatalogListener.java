@@ -0,0 +1,106 @@
+package ck.panda.util;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ck.panda.domain.entity.ComputeOfferingCost;
+import ck.panda.domain.entity.MiscellaneousCost;
+import ck.panda.domain.entity.StorageOfferingCost;
+import ck.panda.domain.entity.Tax;
+import ck.panda.domain.entity.TemplateCost;
+import ck.panda.service.RatingService;
+
+/**
+ * Hibernate event listener dropping the compiled {@link PriceCatalog} when a cost row is saved or deleted.
+ *
+ * The listener is a Spring bean registered with the session factory once created, so it gets the rating service
+ * injected rather than through a static reference. It runs when the change is flushed: the invalidation of the other
+ * nodes is written in the same transaction, and the catalog of this node is dropped once the transaction commits, so
+ * that a catalog compiled in between from the rows committed before is not kept.
+ */
+@Component
+@SuppressWarnings("serial")
+public class PriceCatalogListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+
+    /** Rating service holding the catalog. */
+    @Autowired
+    private transient RatingService ratingService;
+
+    /** Cache invalidation across the nodes. */
+    @Autowired
+    private transient CacheInvalidation cacheInvalidation;
+
+    /** Entity manager factory the listener is registered with. */
+    @Autowired
+    private transient EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Register the listener for the insert, update and delete events of the session factory.
+     */
+    @PostConstruct
+    public void init() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        afterChange(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        afterChange(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        afterChange(event.getEntity());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Drop the catalog after a cost row is saved, updated or deleted, on the other nodes once the change commits and on
+     * this node after the commit.
+     *
+     * @param entity changed entity
+     */
+    void afterChange(Object entity) {
+        if (!(entity instanceof ComputeOfferingCost || entity instanceof StorageOfferingCost
+                || entity instanceof TemplateCost || entity instanceof MiscellaneousCost || entity instanceof Tax)) {
+            return;
+        }
+        cacheInvalidation.invalidate(RatingService.CATALOG_CACHE);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ratingService.invalidateCatalog();
+                }
+            });
+        } else {
+            ratingService.invalidateCatalog();
+        }
+    }
+}
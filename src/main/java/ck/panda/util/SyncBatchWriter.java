@@ -0,0 +1,139 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Bulk writer of the rows inserted, changed and soft deleted by a sync.
+ *
+ * Rows are written in chunks, each on its own entity manager and transaction, so the persistence context of the
+ * caller, such as the open entity manager of a web request, is not flushed or cleared; the rows handed over are only
+ * detached from it. The rows of a chunk are attached to the session as they are, without the select a repository
+ * save runs first, and flushed together, so that Hibernate sends the updates as JDBC batches of
+ * hibernate.jdbc.batch_size statements. Inserts share the chunk transaction but are sent one by one, as ids are
+ * identity columns. Version checks, auditing and entity listeners run as for a repository save.
+ */
+@Component
+public class SyncBatchWriter implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyncBatchWriter.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "sync.batch.";
+
+    /** Entity manager factory creating the entity manager of each chunk. */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Number of rows written by one transaction. */
+    @Value(value = "${sync.batch.chunkSize:500}")
+    private Integer chunkSize;
+
+    /** Number of rows written. */
+    private final AtomicLong rowCount = new AtomicLong();
+
+    /** Number of chunk transactions committed. */
+    private final AtomicLong chunkCount = new AtomicLong();
+
+    /** Total time in milliseconds spent writing chunks. */
+    private final AtomicLong writeTime = new AtomicLong();
+
+    /**
+     * Write the changes of rows read before by a repository, one chunk transaction at a time. A failed chunk is
+     * rolled back and its failure thrown; the chunks before it stay written.
+     *
+     * @param <T> entity type
+     * @param entities rows with an id to update
+     */
+    public <T> void updateAll(List<T> entities) {
+        write(entities, (session, entity) -> session.update(entity), "updated");
+    }
+
+    /**
+     * Insert new rows, one chunk transaction at a time. The ids are set on the rows once written. A failed chunk is
+     * rolled back and its failure thrown; the chunks before it stay written.
+     *
+     * @param <T> entity type
+     * @param entities rows without an id to insert
+     */
+    public <T> void insertAll(List<T> entities) {
+        write(entities, (session, entity) -> session.save(entity), "inserted");
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "rows", rowCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "chunks", chunkCount.get()));
+        metrics.add(new Metric<Long>(METRIC_PREFIX + "time", writeTime.get()));
+        return metrics;
+    }
+
+    /**
+     * Write rows in chunks, each chunk on a new entity manager and transaction.
+     *
+     * @param <T> entity type
+     * @param entities rows to write
+     * @param operation attaches a row to the session of the chunk
+     * @param action past tense of the operation, for the log
+     */
+    private <T> void write(List<T> entities, BiConsumer<Session, T> operation, String action) {
+        int size = Math.max(1, chunkSize);
+        EntityManagerHolder callerHolder = (EntityManagerHolder) TransactionSynchronizationManager
+                .getResource(entityManagerFactory);
+        EntityManager callerEntityManager = callerHolder == null ? null : callerHolder.getEntityManager();
+        for (int from = 0; from < entities.size(); from += size) {
+            List<T> chunk = entities.subList(from, Math.min(from + size, entities.size()));
+            long start = System.currentTimeMillis();
+            if (callerEntityManager != null) {
+                // A row stays attached to one persistence context at a time.
+                for (T entity : chunk) {
+                    if (callerEntityManager.contains(entity)) {
+                        callerEntityManager.detach(entity);
+                    }
+                }
+            }
+            EntityManager chunkEntityManager = entityManagerFactory.createEntityManager();
+            EntityTransaction transaction = chunkEntityManager.getTransaction();
+            try {
+                transaction.begin();
+                Session session = chunkEntityManager.unwrap(Session.class);
+                for (T entity : chunk) {
+                    operation.accept(session, entity);
+                }
+                session.flush();
+                transaction.commit();
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            } finally {
+                chunkEntityManager.close();
+            }
+            writeTime.addAndGet(System.currentTimeMillis() - start);
+            rowCount.addAndGet(chunk.size());
+            chunkCount.incrementAndGet();
+        }
+        if (!entities.isEmpty()) {
+            LOGGER.debug("Sync batch " + action + " " + entities.size() + " rows in chunks of " + size);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Changed, unchanged, inserted and deleted row counts of the sync runs.
+ *
+ * The counts of the last finished run of each entity are logged and published through the actuator metrics
+ * endpoint.
+ */
+@Component
+public class SyncCounters implements PublicMetrics {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyncCounters.class);
+
+    /** Metric name prefix. */
+    private static final String METRIC_PREFIX = "sync.";
+
+    /** Last finished run by entity name. */
+    private final ConcurrentMap<String, Run> lastRuns = new ConcurrentHashMap<String, Run>();
+
+    /**
+     * Start counting a sync run.
+     *
+     * @param entity entity name used in the metric names, such as instance
+     * @return the run to count rows on
+     */
+    public Run start(String entity) {
+        return new Run(entity);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+        for (Map.Entry<String, Run> entry : lastRuns.entrySet()) {
+            String prefix = METRIC_PREFIX + entry.getKey() + ".";
+            Run run = entry.getValue();
+            metrics.add(new Metric<Integer>(prefix + "changed", run.changed));
+            metrics.add(new Metric<Integer>(prefix + "unchanged", run.unchanged));
+            metrics.add(new Metric<Integer>(prefix + "inserted", run.inserted));
+            metrics.add(new Metric<Integer>(prefix + "deleted", run.deleted));
+        }
+        return metrics;
+    }
+
+    /**
+     * Row counts of one sync run, counted by the sync thread only.
+     */
+    public final class Run {
+
+        /** Entity name. */
+        private final String entity;
+
+        /** Number of rows written because a CS server value changed. */
+        private int changed;
+
+        /** Number of rows skipped because no CS server value changed. */
+        private int unchanged;
+
+        /** Number of rows added. */
+        private int inserted;
+
+        /** Number of rows deleted. */
+        private int deleted;
+
+        /**
+         * Create a run.
+         *
+         * @param entity entity name
+         */
+        private Run(String entity) {
+            this.entity = entity;
+        }
+
+        /**
+         * Count a changed row.
+         */
+        public void changed() {
+            changed++;
+        }
+
+        /**
+         * Count an unchanged row.
+         */
+        public void unchanged() {
+            unchanged++;
+        }
+
+        /**
+         * Count an inserted row.
+         */
+        public void inserted() {
+            inserted++;
+        }
+
+        /**
+         * Count a deleted row.
+         */
+        public void deleted() {
+            deleted++;
+        }
+
+        /**
+         * Publish and log the counts of the run.
+         */
+        public void finish() {
+            lastRuns.put(entity, this);
+            LOGGER.debug("Sync " + entity + ": " + changed + " changed, " + unchanged + " unchanged, " + inserted
+                    + " inserted, " + deleted + " deleted");
+        }
+    }
+}
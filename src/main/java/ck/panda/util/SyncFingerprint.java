@@ -0,0 +1,57 @@
+package ck.panda.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Fingerprint of the CloudStack sourced fields of a synced entity.
+ *
+ * Sync takes the fingerprint of an application row before and after copying the CS server values onto it, and
+ * writes the row only when the fingerprint changed. Dates are compared by their instant, so a date read back from the
+ * database in another zone gives the same fingerprint.
+ */
+public final class SyncFingerprint {
+
+    /** Separator between two values. */
+    private static final char SEPARATOR = '\u001f';
+
+    /** Marker of a null value, so that null and the text "null" differ. */
+    private static final char NULL_VALUE = '\u0000';
+
+    /**
+     * Utility class.
+     */
+    private SyncFingerprint() {
+    }
+
+    /**
+     * Get the fingerprint of a list of field values.
+     *
+     * @param values field values, in a fixed order
+     * @return hex SHA-256 digest of the values
+     */
+    public static String of(Object... values) {
+        StringBuilder text = new StringBuilder();
+        for (Object value : values) {
+            if (value == null) {
+                text.append(NULL_VALUE);
+            } else if (value instanceof ZonedDateTime) {
+                text.append(((ZonedDateTime) value).toEpochSecond());
+            } else if (value instanceof Enum) {
+                text.append(((Enum<?>) value).name());
+            } else {
+                text.append(value);
+            }
+            text.append(SEPARATOR);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return DatatypeConverter.printHexBinary(digest.digest(text.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
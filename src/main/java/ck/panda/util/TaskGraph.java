@@ -0,0 +1,148 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs named tasks on an executor as soon as every task they depend on has finished.
+ *
+ * Dependencies must be added before the tasks that use them, which keeps the graph acyclic. A failed task is logged
+ * and does not stop its dependents, the same way a failed step never stopped the sequential sync.
+ */
+public class TaskGraph {
+
+    /** Logger attribute. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskGraph.class);
+
+    /**
+     * Unit of work in the graph.
+     */
+    public interface Task {
+
+        /**
+         * Run the task.
+         *
+         * @throws Exception if the task fails
+         */
+        void run() throws Exception;
+    }
+
+    /** Tasks in the order they were added. */
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+    /** Elapsed time in milliseconds of every finished task. */
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+    /** Names of the failed tasks. */
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Add a task to the graph.
+     *
+     * @param name unique task name
+     * @param task work to run
+     * @param dependsOn names of the tasks which must finish first
+     * @return this graph
+     */
+    public TaskGraph add(String name, Task task, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate task " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!nodes.containsKey(dependency)) {
+                throw new IllegalArgumentException("Task " + name + " depends on unknown task " + dependency);
+            }
+        }
+        nodes.put(name, new Node(name, task, dependsOn));
+        return this;
+    }
+
+    /**
+     * Run every task and wait until all of them have finished.
+     *
+     * @param executor executor to run the tasks on
+     */
+    public void execute(Executor executor) {
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<String, CompletableFuture<Void>>();
+        for (Node node : nodes.values()) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[node.dependsOn.length];
+            for (int i = 0; i < node.dependsOn.length; i++) {
+                dependencies[i] = futures.get(node.dependsOn[i]);
+            }
+            futures.put(node.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> run(node), executor));
+        }
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).join();
+    }
+
+    /**
+     * Get the elapsed time of every finished task.
+     *
+     * @return task name to elapsed milliseconds
+     */
+    public Map<String, Long> getTimings() {
+        return timings;
+    }
+
+    /**
+     * Get the names of the failed tasks.
+     *
+     * @return failed task names
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Run one task, recording its time and isolating its failure.
+     *
+     * @param node task to run
+     */
+    private void run(Node node) {
+        long start = System.currentTimeMillis();
+        try {
+            node.task.run();
+        } catch (Exception e) {
+            failures.add(node.name);
+            LOGGER.error("ERROR AT " + node.name, e);
+        } finally {
+            long elapsed = System.currentTimeMillis() - start;
+            timings.put(node.name, elapsed);
+            LOGGER.info(node.name + " finished in " + elapsed + " ms");
+        }
+    }
+
+    /**
+     * Task with its dependencies.
+     */
+    private static final class Node {
+
+        /** Task name. */
+        private final String name;
+
+        /** Work to run. */
+        private final Task task;
+
+        /** Names of the tasks which must finish first. */
+        private final String[] dependsOn;
+
+        /**
+         * Create a node.
+         *
+         * @param name task name
+         * @param task work to run
+         * @param dependsOn dependency names
+         */
+        Node(String name, Task task, String[] dependsOn) {
+            this.name = name;
+            this.task = task;
+            this.dependsOn = dependsOn;
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package ck.panda.util;
 
-import java.util.Base64;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import ck.panda.util.infrastructure.security.AuthenticationWithToken;
+import ck.panda.util.infrastructure.security.TokenPrincipal;
 
 /**
  * Read the token details from the authentication.
@@ -25,44 +24,38 @@ public class TokenDetails {
      * @throws Exception raise if error
      */
     public String getTokenDetails(String key) throws Exception {
+        return getTokenPrincipal().get(key);
+    }
+
+    /**
+     * Get the user details of the current request. The token is decoded once and kept on the authentication, so
+     * this is a plain field read after the first call.
+     *
+     * @return token principal
+     * @throws Exception raise if error
+     */
+    public TokenPrincipal getTokenPrincipal() throws Exception {
         Authentication token = SecurityContextHolder.getContext().getAuthentication();
-        String strEncoded = Base64.getEncoder().encodeToString(secretKey.getBytes("utf-8"));
-        byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-        SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, "AES");
-        String decriptText = new String(EncryptionUtil.decrypt(token.getDetails().toString(), originalKey));
-        String[] splitToken = decriptText.split("@@");
-        String responseString;
-        switch (key) {
-        case "id":
-            responseString = splitToken[0];
-            break;
-        case "username":
-            responseString = splitToken[1];
-            break;
-        case "domainid":
-            responseString = splitToken[2];
-            break;
-        case "departmentid":
-            responseString = splitToken[3];
-            break;
-        case "rolename":
-            responseString = splitToken[4];
-            break;
-        case "domainname":
-            responseString = splitToken[5];
-            break;
-        case "usertype":
-            responseString = splitToken[6];
-            break;
-        case "apikey":
-            responseString = splitToken[7];
-            break;
-        case "secretkey":
-            responseString = splitToken[8];
-            break;
-        default:
-            responseString = "";
+        if (token instanceof AuthenticationWithToken) {
+            AuthenticationWithToken tokenAuthentication = (AuthenticationWithToken) token;
+            TokenPrincipal principal = tokenAuthentication.getTokenPrincipal();
+            if (principal == null) {
+                principal = decode(token.getDetails().toString());
+                tokenAuthentication.setTokenPrincipal(principal);
+            }
+            return principal;
         }
-        return responseString;
+        return decode(token.getDetails().toString());
+    }
+
+    /**
+     * Decrypt the token.
+     *
+     * @param encryptedToken token to decrypt
+     * @return token principal
+     * @throws Exception raise if error
+     */
+    private TokenPrincipal decode(String encryptedToken) throws Exception {
+        return TokenPrincipal.parse(EncryptionUtil.decrypt(encryptedToken, EncryptionUtil.getSecretKey(secretKey)));
     }
 }
@@ -0,0 +1,296 @@
+package ck.panda.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small in-memory cache of values that are expensive to compute and may be a few seconds stale.
+ *
+ * A value is kept for the time to live given at creation. Loads of the same key that run at the same time share one
+ * call of the loader; a failed load is not kept. Expired values are dropped when the cache grows over its size limit.
+ *
+ * A cache created with a stale time answers with an expired value for that long after it expired, while the value is
+ * loaded again in the background.
+ *
+ * @param <V> type of the cached values
+ */
+public class TtlCache<V> {
+
+    /**
+     * Loads a value missing from the cache.
+     *
+     * @param <V> type of the value
+     */
+    public interface Loader<V> {
+
+        /**
+         * Load the value.
+         *
+         * @return the value
+         * @throws Exception if the value could not be loaded
+         */
+        V load() throws Exception;
+    }
+
+    /** Time in milliseconds a value is kept. */
+    private final long ttl;
+
+    /** Time in milliseconds an expired value is still returned while it is loaded again. */
+    private final long staleTtl;
+
+    /** Number of values above which expired values are dropped. */
+    private final int maxSize;
+
+    /** Runs the background loads of stale values, null without a stale time. */
+    private final Executor refresher;
+
+    /** Cached values by key. */
+    private final ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<String, Entry<V>>();
+
+    /** Loads in flight by key. */
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<V>>();
+
+    /** Number of reads answered from the cache. */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** Number of reads answered with a stale value. */
+    private final AtomicLong staleCount = new AtomicLong();
+
+    /** Number of reads which called the loader or joined a load in flight. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** Number of invalidations, a load started before one is not kept. */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Create a cache.
+     *
+     * @param ttl time in milliseconds a value is kept
+     * @param maxSize number of values above which expired values are dropped
+     */
+    public TtlCache(long ttl, int maxSize) {
+        this(ttl, 0L, maxSize, null);
+    }
+
+    /**
+     * Create a cache which returns stale values while loading them again.
+     *
+     * @param ttl time in milliseconds a value is kept
+     * @param staleTtl time in milliseconds an expired value is still returned while it is loaded again
+     * @param maxSize number of values above which expired values are dropped
+     * @param refresher runs the background loads
+     */
+    public TtlCache(long ttl, long staleTtl, int maxSize, Executor refresher) {
+        this.ttl = ttl;
+        this.staleTtl = refresher == null ? 0L : staleTtl;
+        this.maxSize = maxSize;
+        this.refresher = refresher;
+    }
+
+    /**
+     * Get the value of a key, loading it if it is missing or expired.
+     *
+     * @param key cache key
+     * @param loader loads the value
+     * @return the value
+     * @throws Exception if the loader failed
+     */
+    public V get(String key, Loader<V> loader) throws Exception {
+        Entry<V> cached = entries.get(key);
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.expiresAt > now) {
+            hitCount.incrementAndGet();
+            return cached.value;
+        }
+        if (cached != null && cached.expiresAt + staleTtl > now) {
+            staleCount.incrementAndGet();
+            refresh(key, loader);
+            return cached.value;
+        }
+        missCount.incrementAndGet();
+        CompletableFuture<V> load = new CompletableFuture<V>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);
+        }
+        return load(key, loader, load);
+    }
+
+    /**
+     * Drop the value of a key.
+     *
+     * @param key cache key
+     */
+    public void invalidate(String key) {
+        invalidationCount.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * Drop all values.
+     */
+    public void invalidateAll() {
+        invalidationCount.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Get the number of reads answered from the cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of reads answered with a stale value.
+     *
+     * @return stale count
+     */
+    public long getStaleCount() {
+        return staleCount.get();
+    }
+
+    /**
+     * Get the number of reads which loaded the value.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of cached values, including expired values not dropped yet.
+     *
+     * @return cache size
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Load a stale value again in the background, unless a load of the key is in flight already.
+     *
+     * @param key cache key
+     * @param loader loads the value
+     */
+    private void refresh(String key, Loader<V> loader) {
+        CompletableFuture<V> load = new CompletableFuture<V>();
+        if (inFlight.putIfAbsent(key, load) != null) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    load(key, loader, load);
+                } catch (Exception e) {
+                    // The stale value stays until it is too old, the next read tries again.
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, load);
+            load.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Call the loader for a load registered in flight and keep the value unless the cache was invalidated meanwhile.
+     *
+     * @param key cache key
+     * @param loader loads the value
+     * @param load the load registered in flight
+     * @return the value
+     * @throws Exception if the loader failed
+     */
+    private V load(String key, Loader<V> loader, CompletableFuture<V> load) throws Exception {
+        long invalidations = invalidationCount.get();
+        try {
+            V value = loader.load();
+            if (invalidations == invalidationCount.get()) {
+                put(key, value);
+            }
+            load.complete(value);
+            return value;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * Keep a value, dropping the expired values first if the cache is full.
+     *
+     * @param key cache key
+     * @param value value to keep
+     */
+    private void put(String key, V value) {
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxSize) {
+            Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getValue().expiresAt + staleTtl <= now) {
+                    iterator.remove();
+                }
+            }
+            if (entries.size() >= maxSize) {
+                return;
+            }
+        }
+        entries.put(key, new Entry<V>(value, now + ttl));
+    }
+
+    /**
+     * Wait for a load in flight.
+     *
+     * @param load load in flight
+     * @return the loaded value
+     * @throws Exception the failure of the load
+     */
+    private V await(CompletableFuture<V> load) throws Exception {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cached value with its expiry time.
+     *
+     * @param <V> type of the value
+     */
+    private static final class Entry<V> {
+
+        /** Cached value. */
+        private final V value;
+
+        /** Time in milliseconds the value expires at. */
+        private final long expiresAt;
+
+        /**
+         * Create an entry.
+         *
+         * @param value cached value
+         * @param expiresAt expiry time in milliseconds
+         */
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
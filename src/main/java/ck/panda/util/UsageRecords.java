@@ -0,0 +1,240 @@
+package ck.panda.util;
+
+import java.util.Arrays;
+import ck.panda.domain.entity.MiscellaneousCost;
+
+/**
+ * Usage records to rate, kept as columns of primitive arrays so that millions of records can be rated without
+ * creating an object per record.
+ */
+public final class UsageRecords {
+
+    /** Record type of compute usage of an instance. */
+    public static final byte COMPUTE = 0;
+
+    /** Record type of volume usage. */
+    public static final byte STORAGE = 1;
+
+    /** Record type of template usage. */
+    public static final byte TEMPLATE = 2;
+
+    /** Record type of miscellaneous usage, the offering id is the cost type ordinal. */
+    public static final byte MISCELLANEOUS = 3;
+
+    /** Record type of instance setup, the quantity is the number of instances created. */
+    public static final byte SETUP = 4;
+
+    /** Miscellaneous cost types by ordinal. */
+    private static final MiscellaneousCost.CostTypes[] COST_TYPES = MiscellaneousCost.CostTypes.values();
+
+    /** Initial capacity. */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** Record types. */
+    private byte[] types;
+
+    /** Department ids. */
+    private long[] departmentIds;
+
+    /** Zone ids. */
+    private long[] zoneIds;
+
+    /** Offering, template ids or cost type ordinals. */
+    private long[] offeringIds;
+
+    /** Quantities: hours of compute, months of storage, units of templates and miscellaneous usage. */
+    private double[] quantities;
+
+    /** Volume sizes in GB. */
+    private double[] sizes;
+
+    /** Number of vCPUs. */
+    private int[] vcpus;
+
+    /** Memory in MB. */
+    private int[] memories;
+
+    /** CPU speeds in MHz. */
+    private int[] speeds;
+
+    /** Whether the instance was running, else stopped. */
+    private boolean[] running;
+
+    /** Number of records. */
+    private int size;
+
+    /**
+     * Create an empty record set.
+     */
+    public UsageRecords() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty record set.
+     *
+     * @param capacity expected number of records
+     */
+    public UsageRecords(int capacity) {
+        int length = Math.max(1, capacity);
+        types = new byte[length];
+        departmentIds = new long[length];
+        zoneIds = new long[length];
+        offeringIds = new long[length];
+        quantities = new double[length];
+        sizes = new double[length];
+        vcpus = new int[length];
+        memories = new int[length];
+        speeds = new int[length];
+        running = new boolean[length];
+    }
+
+    /**
+     * Add the compute usage of an instance.
+     *
+     * @param departmentId department id
+     * @param zoneId zone id
+     * @param computeId compute offering id
+     * @param isRunning whether the instance was running, else stopped
+     * @param hours hours in that state
+     * @param vcpu number of vCPUs
+     * @param memory memory in MB
+     * @param speed CPU speed in MHz
+     */
+    public void addCompute(long departmentId, long zoneId, long computeId, boolean isRunning, double hours, int vcpu,
+            int memory, int speed) {
+        int index = add(COMPUTE, departmentId, zoneId, computeId, hours);
+        running[index] = isRunning;
+        vcpus[index] = vcpu;
+        memories[index] = memory;
+        speeds[index] = speed;
+    }
+
+    /**
+     * Add the setup of instances created from a compute offering.
+     *
+     * @param departmentId department id
+     * @param zoneId zone id
+     * @param computeId compute offering id
+     * @param count number of instances created
+     */
+    public void addSetup(long departmentId, long zoneId, long computeId, int count) {
+        add(SETUP, departmentId, zoneId, computeId, count);
+    }
+
+    /**
+     * Add the usage of a volume.
+     *
+     * @param departmentId department id
+     * @param zoneId zone id
+     * @param storageId storage offering id
+     * @param months months of usage
+     * @param sizeGb volume size in GB
+     */
+    public void addStorage(long departmentId, long zoneId, long storageId, double months, double sizeGb) {
+        int index = add(STORAGE, departmentId, zoneId, storageId, months);
+        sizes[index] = sizeGb;
+    }
+
+    /**
+     * Add the usage of a template.
+     *
+     * @param departmentId department id
+     * @param templateId template id
+     * @param quantity number of units
+     */
+    public void addTemplate(long departmentId, long templateId, double quantity) {
+        add(TEMPLATE, departmentId, 0L, templateId, quantity);
+    }
+
+    /**
+     * Add a miscellaneous usage.
+     *
+     * @param departmentId department id
+     * @param zoneId zone id
+     * @param costType miscellaneous cost type
+     * @param quantity number of units, GB or IP
+     */
+    public void addMiscellaneous(long departmentId, long zoneId, MiscellaneousCost.CostTypes costType,
+            double quantity) {
+        add(MISCELLANEOUS, departmentId, zoneId, costType.ordinal(), quantity);
+    }
+
+    /**
+     * Get the number of records.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the department id of a record.
+     *
+     * @param index record index
+     * @return department id
+     */
+    public long getDepartmentId(int index) {
+        return departmentIds[index];
+    }
+
+    /**
+     * Rate a record.
+     *
+     * @param catalog price catalog
+     * @param index record index
+     * @return charge without tax
+     */
+    public double rate(PriceCatalog catalog, int index) {
+        switch (types[index]) {
+        case COMPUTE:
+            return catalog.rateCompute(zoneIds[index], offeringIds[index], running[index], quantities[index],
+                    vcpus[index], memories[index], speeds[index]);
+        case STORAGE:
+            return catalog.rateStorage(zoneIds[index], offeringIds[index], quantities[index], sizes[index]);
+        case TEMPLATE:
+            return catalog.rateTemplate(offeringIds[index], quantities[index]);
+        case MISCELLANEOUS:
+            return catalog.rateMiscellaneous(zoneIds[index],
+                    COST_TYPES[(int) offeringIds[index]], quantities[index]);
+        case SETUP:
+            return catalog.rateSetup(zoneIds[index], offeringIds[index], quantities[index]);
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Add a record, growing the columns when full.
+     *
+     * @param type record type
+     * @param departmentId department id
+     * @param zoneId zone id
+     * @param offeringId offering id
+     * @param quantity quantity
+     * @return record index
+     */
+    private int add(byte type, long departmentId, long zoneId, long offeringId, double quantity) {
+        if (size == types.length) {
+            int length = size * 2;
+            types = Arrays.copyOf(types, length);
+            departmentIds = Arrays.copyOf(departmentIds, length);
+            zoneIds = Arrays.copyOf(zoneIds, length);
+            offeringIds = Arrays.copyOf(offeringIds, length);
+            quantities = Arrays.copyOf(quantities, length);
+            sizes = Arrays.copyOf(sizes, length);
+            vcpus = Arrays.copyOf(vcpus, length);
+            memories = Arrays.copyOf(memories, length);
+            speeds = Arrays.copyOf(speeds, length);
+            running = Arrays.copyOf(running, length);
+        }
+        int index = size++;
+        types[index] = type;
+        departmentIds[index] = departmentId;
+        zoneIds[index] = zoneId;
+        offeringIds[index] = offeringId;
+        quantities[index] = quantity;
+        return index;
+    }
+}
@@ -10,6 +10,7 @@ import ck.panda.constants.GenericConstants;
 import ck.panda.domain.entity.RolePrincipal;
 import ck.panda.domain.entity.ThemeSetting;
 import ck.panda.service.ThemeSettingService;
+import ck.panda.util.CloudStackServer;
 import ck.panda.util.TokenDetails;
 import ck.panda.util.error.MessageByLocaleService;
 import ck.panda.util.infrastructure.AuthenticatedExternalWebService;
@@ -120,19 +121,26 @@ public class AuthenticationFilter extends GenericFilterBean {
     /** Theme Setting service attribute. */
     private ThemeSettingService themeSettingService;
 
+    /** CloudStack server attribute, its per request client handle is released after each request. */
+    private CloudStackServer cloudStackServer;
+
     /**
      * Parameterized constructor.
      *
      * @param databaseAuthenticationManager to set
      * @param userTokenDetails to set
      * @param messageByLocaleService to set
+     * @param themeSettingService to set
+     * @param cloudStackServer to set
      */
     public AuthenticationFilter(DatabaseAuthenticationManager databaseAuthenticationManager,
-            TokenDetails userTokenDetails, MessageByLocaleService messageByLocaleService, ThemeSettingService themeSettingService) {
+            TokenDetails userTokenDetails, MessageByLocaleService messageByLocaleService, ThemeSettingService themeSettingService,
+            CloudStackServer cloudStackServer) {
         this.databaseAuthenticationManager = databaseAuthenticationManager;
         this.userTokenDetails = userTokenDetails;
         this.messageByLocaleService = messageByLocaleService;
         this.themeSettingService = themeSettingService;
+        this.cloudStackServer = cloudStackServer;
     }
 
     @Override
@@ -219,6 +227,7 @@ public class AuthenticationFilter extends GenericFilterBean {
         } finally {
             MDC.remove(TOKEN_SESSION_KEY);
             MDC.remove(USER_SESSION_KEY);
+            cloudStackServer.release();
         }
     }
 
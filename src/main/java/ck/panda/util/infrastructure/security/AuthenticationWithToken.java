@@ -12,6 +12,9 @@ import java.util.Collection;
 @SuppressWarnings("serial")
 public class AuthenticationWithToken extends PreAuthenticatedAuthenticationToken {
 
+    /** User details decoded from the token. */
+    private volatile TokenPrincipal tokenPrincipal;
+
     /**
      * Parameterized constructor.
      * 
@@ -51,4 +54,22 @@ public class AuthenticationWithToken extends PreAuthenticatedAuthenticationToken
     public String getToken() {
         return (String) getDetails();
     }
+
+    /**
+     * Set the user details decoded from the token.
+     *
+     * @param tokenPrincipal to set
+     */
+    public void setTokenPrincipal(TokenPrincipal tokenPrincipal) {
+        this.tokenPrincipal = tokenPrincipal;
+    }
+
+    /**
+     * Get the user details decoded from the token.
+     *
+     * @return token principal or null if not decoded yet
+     */
+    public TokenPrincipal getTokenPrincipal() {
+        return tokenPrincipal;
+    }
 }
@@ -0,0 +1,191 @@
+package ck.panda.util.infrastructure.security;
+
+import java.io.Serializable;
+import ck.panda.constants.GenericConstants;
+
+/**
+ * Immutable user details decoded from the auth token.
+ *
+ * The token is decrypted once when it is stored or first retrieved, and the decoded values are kept on the
+ * {@link AuthenticationWithToken}, so reading a field during a request is a plain getter call.
+ */
+@SuppressWarnings("serial")
+public final class TokenPrincipal implements Serializable {
+
+    /** User id. */
+    private final String userId;
+
+    /** User name. */
+    private final String userName;
+
+    /** Domain id. */
+    private final String domainId;
+
+    /** Department id. */
+    private final String departmentId;
+
+    /** Role name. */
+    private final String roleName;
+
+    /** Domain name. */
+    private final String domainName;
+
+    /** User type. */
+    private final String userType;
+
+    /** CloudStack api key of the user. */
+    private final String apiKey;
+
+    /** CloudStack secret key of the user. */
+    private final String secretKey;
+
+    /**
+     * Create the principal from the token fields, in the order written by {@link TokenService#createTokenDetails}.
+     *
+     * @param fields token fields
+     */
+    private TokenPrincipal(String[] fields) {
+        this.userId = field(fields, 0);
+        this.userName = field(fields, 1);
+        this.domainId = field(fields, 2);
+        this.departmentId = field(fields, 3);
+        this.roleName = field(fields, 4);
+        this.domainName = field(fields, 5);
+        this.userType = field(fields, 6);
+        this.apiKey = field(fields, 7);
+        this.secretKey = field(fields, 8);
+    }
+
+    /**
+     * Parse the decrypted token.
+     *
+     * @param decryptedToken decrypted token text
+     * @return principal
+     */
+    public static TokenPrincipal parse(String decryptedToken) {
+        return new TokenPrincipal(decryptedToken.split(GenericConstants.TOKEN_SEPARATOR));
+    }
+
+    /**
+     * Get a token value by the key used with {@link ck.panda.util.TokenDetails#getTokenDetails(String)}.
+     *
+     * @param key id, username, domainid, departmentid, rolename, domainname, usertype, apikey or secretkey
+     * @return value or empty string for an unknown key
+     */
+    public String get(String key) {
+        switch (key) {
+        case "id":
+            return userId;
+        case "username":
+            return userName;
+        case "domainid":
+            return domainId;
+        case "departmentid":
+            return departmentId;
+        case "rolename":
+            return roleName;
+        case "domainname":
+            return domainName;
+        case "usertype":
+            return userType;
+        case "apikey":
+            return apiKey;
+        case "secretkey":
+            return secretKey;
+        default:
+            return "";
+        }
+    }
+
+    /**
+     * Get the user id.
+     *
+     * @return user id
+     */
+    public Long getUserId() {
+        return Long.valueOf(userId);
+    }
+
+    /**
+     * Get the user name.
+     *
+     * @return user name
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Get the domain id.
+     *
+     * @return domain id
+     */
+    public Long getDomainId() {
+        return Long.valueOf(domainId);
+    }
+
+    /**
+     * Get the department id.
+     *
+     * @return department id
+     */
+    public Long getDepartmentId() {
+        return Long.valueOf(departmentId);
+    }
+
+    /**
+     * Get the role name.
+     *
+     * @return role name
+     */
+    public String getRoleName() {
+        return roleName;
+    }
+
+    /**
+     * Get the domain name.
+     *
+     * @return domain name
+     */
+    public String getDomainName() {
+        return domainName;
+    }
+
+    /**
+     * Get the user type.
+     *
+     * @return user type
+     */
+    public String getUserType() {
+        return userType;
+    }
+
+    /**
+     * Get the CloudStack api key.
+     *
+     * @return api key
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Get the CloudStack secret key.
+     *
+     * @return secret key
+     */
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    /**
+     * Get a token field.
+     *
+     * @param fields token fields
+     * @param index field index
+     * @return field value or null if the token is too short
+     */
+    private static String field(String[] fields, int index) {
+        return index < fields.length ? fields[index] : null;
+    }
+}
@@ -1,9 +1,7 @@
 package ck.panda.util.infrastructure.security;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Base64;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,6 +9,7 @@ import org.springframework.security.core.Authentication;
 import ck.panda.constants.GenericConstants;
 import ck.panda.domain.entity.User;
 import ck.panda.util.DateConvertUtil;
+import ck.panda.util.EncryptionUtil;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
@@ -83,13 +82,9 @@ public class TokenService {
     public String generateNewToken(User user, String domainName, String rememberMe) throws Exception {
         String encryptedToken = null;
         try {
-            String strEncoded = Base64.getEncoder()
-                    .encodeToString(secretKey.getBytes(GenericConstants.CHARACTER_ENCODING));
-            byte[] decodedKey = Base64.getDecoder().decode(strEncoded);
-            SecretKey originalKey = new SecretKeySpec(decodedKey, 0, decodedKey.length,
-                    GenericConstants.ENCRYPT_ALGORITHM);
+            SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
             encryptedToken = new String(
-                    ck.panda.util.EncryptionUtil.encrypt(createTokenDetails(user, domainName, rememberMe).toString(), originalKey));
+                    EncryptionUtil.encrypt(createTokenDetails(user, domainName, rememberMe).toString(), originalKey));
         } catch (UnsupportedEncodingException e) {
             LOGGER.error("Error at token generation : ", e);
         }
@@ -103,6 +98,7 @@ public class TokenService {
      * @param authentication to set
      */
     public void store(String token, Authentication authentication) {
+        attachTokenPrincipal(token, authentication);
         REST_API_AUTH_TOKEN.put(new Element(token, authentication));
     }
 
@@ -124,7 +120,41 @@ public class TokenService {
      * @throws Exception unhandled exceptions.
      */
     public Authentication retrieve(String token) throws Exception {
-        return (Authentication) REST_API_AUTH_TOKEN.get(token).getObjectValue();
+        Authentication authentication = (Authentication) REST_API_AUTH_TOKEN.get(token).getObjectValue();
+        attachTokenPrincipal(token, authentication);
+        return authentication;
+    }
+
+    /**
+     * Decrypt the token into the user details it carries.
+     *
+     * @param token encrypted token
+     * @return token principal
+     * @throws Exception if the token cannot be decrypted
+     */
+    public TokenPrincipal decode(String token) throws Exception {
+        SecretKey originalKey = EncryptionUtil.getSecretKey(secretKey);
+        return TokenPrincipal.parse(EncryptionUtil.decrypt(token, originalKey));
+    }
+
+    /**
+     * Decode the token once and keep the details on the authentication, so requests never decrypt it again.
+     *
+     * @param token encrypted token
+     * @param authentication authentication stored for the token
+     */
+    private void attachTokenPrincipal(String token, Authentication authentication) {
+        if (token == null || !(authentication instanceof AuthenticationWithToken)) {
+            return;
+        }
+        AuthenticationWithToken tokenAuthentication = (AuthenticationWithToken) authentication;
+        if (tokenAuthentication.getTokenPrincipal() == null) {
+            try {
+                tokenAuthentication.setTokenPrincipal(decode(token));
+            } catch (Exception e) {
+                LOGGER.error("Error at token decoding : ", e);
+            }
+        }
     }
 
     /**
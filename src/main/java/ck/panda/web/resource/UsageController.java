@@ -1,5 +1,12 @@
 package ck.panda.web.resource;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -15,7 +22,10 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import com.wordnik.swagger.annotations.Api;
 import ck.panda.domain.entity.User;
+import ck.panda.domain.entity.Department;
 import ck.panda.service.ConvertEntityService;
+import ck.panda.service.RatingService;
+import ck.panda.service.UsageLedgerService;
 import ck.panda.util.PingService;
 import ck.panda.util.TokenDetails;
 import ck.panda.util.web.ApiController;
@@ -41,6 +51,14 @@ public class UsageController implements ApiController {
     @Autowired
     private TokenDetails tokenDetails;
 
+    /** Usage ledger service reference. */
+    @Autowired
+    private UsageLedgerService usageLedgerService;
+
+    /** Rating service reference. */
+    @Autowired
+    private RatingService ratingService;
+
     /**
      * Find the list of active usages.
      *
@@ -59,6 +77,64 @@ public class UsageController implements ApiController {
         return pingService.getUsageStatistics(fromDate, toDate, groupingType, domainUuid);
     }
 
+    /**
+     * Find the usage event counts and quantities recorded from the CS server usage events, by hour or by day.
+     *
+     * @param fromDate start date as yyyy-MM-dd, inclusive
+     * @param toDate end date as yyyy-MM-dd, exclusive
+     * @param groupingType hourly or daily
+     * @param domainUuid domain uuid, all domains when empty
+     * @return usage rows of the period.
+     * @throws Exception error occurs.
+     */
+    @RequestMapping(value = "listEventUsageByPeriod", method = RequestMethod.GET, produces = { MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    protected List<Map<String, Object>> listEventUsageByPeriod(@RequestParam("fromDate") String fromDate,
+            @RequestParam("toDate") String toDate, @RequestParam("groupingType") String groupingType,
+            @RequestParam(value = "domainUuid", required = false) String domainUuid) throws Exception {
+        Long domainId = null;
+        if (domainUuid != null && !domainUuid.isEmpty()) {
+            domainId = convertEntityService.getDomainId(domainUuid);
+            if (domainId == null) {
+                return new ArrayList<Map<String, Object>>();
+            }
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        if ("hourly".equalsIgnoreCase(groupingType)) {
+            return usageLedgerService.findHourlyUsage(domainId, LocalDate.parse(fromDate).atStartOfDay(zone),
+                    LocalDate.parse(toDate).atStartOfDay(zone));
+        }
+        return usageLedgerService.findDailyUsage(domainId, LocalDate.parse(fromDate).atStartOfDay(zone),
+                LocalDate.parse(toDate).atStartOfDay(zone));
+    }
+
+    /**
+     * Estimate the month to date charges of the departments of the current user's domain, taxes included.
+     *
+     * @return estimated charge by department uuid.
+     * @throws Exception error occurs.
+     */
+    @RequestMapping(value = "usageEstimateByDepartment", method = RequestMethod.GET, produces = {
+            MediaType.APPLICATION_JSON_VALUE })
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Map<String, Double> getUsageEstimateByDepartment() throws Exception {
+        User user = convertEntityService.getOwnerById(Long.valueOf(tokenDetails.getTokenDetails("id")));
+        ZonedDateTime to = ZonedDateTime.now();
+        ZonedDateTime from = to.toLocalDate().withDayOfMonth(1).atStartOfDay(to.getZone());
+        Map<String, Double> estimates = new LinkedHashMap<String, Double>();
+        for (Map.Entry<Long, Double> estimate : ratingService.estimateByDepartment(user.getDomainId(), from, to)
+                .entrySet()) {
+            Department department = estimate.getKey() != 0L ? convertEntityService.getDepartmentById(estimate.getKey())
+                    : null;
+            if (department != null) {
+                estimates.put(department.getUuid(), estimate.getValue());
+            }
+        }
+        return estimates;
+    }
+
     /**
      * Find the list of invoices by domain.
      *
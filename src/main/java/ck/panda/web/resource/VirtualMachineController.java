@@ -157,7 +157,7 @@ public class VirtualMachineController extends CRUDController<VmInstance> impleme
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
     public String getVmCounts(HttpServletRequest request, HttpServletResponse response) throws Exception {
-        Integer vmCount = virtualmachineservice.findAllByUser(Long.valueOf(tokenDetails.getTokenDetails("id"))).size();
+        Integer vmCount = virtualmachineservice.findCountByUser(Long.valueOf(tokenDetails.getTokenDetails("id")));
         Integer runningVmCount = virtualmachineservice.findCountByStatus(Status.RUNNING, Long.valueOf(tokenDetails.getTokenDetails("id")));
         Integer stoppedVmCount = virtualmachineservice.findCountByStatus(Status.STOPPED, Long.valueOf(tokenDetails.getTokenDetails("id")));
         return "{\"runningVmCount\":" + runningVmCount + ",\"stoppedVmCount\":" + stoppedVmCount + ",\"totalCount\":"
@@ -384,7 +384,7 @@ public class VirtualMachineController extends CRUDController<VmInstance> impleme
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
     public String getVmCounts(@RequestParam("domainId") Long domainId, @RequestParam String searchText) throws Exception {
-        Integer vmCount = virtualmachineservice.findAllByDomain(domainId, Long.valueOf(tokenDetails.getTokenDetails("id")), searchText).size();
+        Integer vmCount = virtualmachineservice.findCountByDomain(domainId, Long.valueOf(tokenDetails.getTokenDetails("id")), searchText);
         Integer runningVmCount = virtualmachineservice.findCountByStatusAndDomain(Status.RUNNING, domainId, Long.valueOf(tokenDetails.getTokenDetails("id")), searchText);
         Integer stoppedVmCount = virtualmachineservice.findCountByStatusAndDomain(Status.STOPPED, domainId, Long.valueOf(tokenDetails.getTokenDetails("id")), searchText);
         return "{\"runningVmCount\":" + runningVmCount + ",\"stoppedVmCount\":" + stoppedVmCount + ",\"totalCount\":"
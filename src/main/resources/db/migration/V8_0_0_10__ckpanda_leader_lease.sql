@@ -0,0 +1,9 @@
+CREATE TABLE `ckpanda`.`leader_lease` (
+  `name` varchar(100) NOT NULL,
+  `owner` varchar(255) DEFAULT NULL,
+  `expires_at` bigint(20) NOT NULL,
+  `updated_date_time` datetime DEFAULT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO `ckpanda`.`leader_lease` (`name`, `owner`, `expires_at`) VALUES ('backend.leader', NULL, 0);
@@ -0,0 +1,5 @@
+ALTER TABLE `ckpanda`.`usage_ledger` ADD COLUMN `quantity` bigint(20) NOT NULL DEFAULT 0 AFTER `project_id`;
+
+ALTER TABLE `ckpanda`.`usage_rollup_hourly` ADD COLUMN `quantity` bigint(20) NOT NULL DEFAULT 0 AFTER `event_count`;
+
+ALTER TABLE `ckpanda`.`usage_rollup_daily` ADD COLUMN `quantity` bigint(20) NOT NULL DEFAULT 0 AFTER `event_count`;
@@ -0,0 +1,7 @@
+CREATE TABLE `ckpanda`.`capacity_alert` (
+  `zone_uuid` varchar(255) NOT NULL,
+  `capacity_type` varchar(20) NOT NULL,
+  `percent_used` double NOT NULL,
+  `alerted_date_time` datetime NOT NULL,
+  PRIMARY KEY (`zone_uuid`, `capacity_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
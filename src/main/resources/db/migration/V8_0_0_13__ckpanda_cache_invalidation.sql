@@ -0,0 +1,9 @@
+CREATE TABLE `ckpanda`.`cache_invalidation` (
+  `name` varchar(100) NOT NULL,
+  `version` bigint(20) NOT NULL,
+  `updated_date_time` datetime DEFAULT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO `ckpanda`.`cache_invalidation` (`name`, `version`) VALUES ('permission.roles', 0), ('permission.users', 0),
+  ('mrping.responses', 0);
@@ -0,0 +1,3 @@
+ALTER TABLE `ckpanda`.`usage_ledger` ADD COLUMN `event_key` char(64) DEFAULT NULL AFTER `id`;
+
+ALTER TABLE `ckpanda`.`usage_ledger` ADD UNIQUE KEY `uk_usage_ledger_event_key` (`event_key`);
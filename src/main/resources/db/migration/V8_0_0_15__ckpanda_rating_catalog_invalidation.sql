@@ -0,0 +1 @@
+INSERT INTO `ckpanda`.`cache_invalidation` (`name`, `version`) VALUES ('rating.catalog', 0);
@@ -0,0 +1,40 @@
+CREATE TABLE `ckpanda`.`usage_ledger` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `event_type` varchar(100) NOT NULL,
+  `resource_type` varchar(100) NOT NULL,
+  `resource_uuid` varchar(255) DEFAULT NULL,
+  `zone_uuid` varchar(255) DEFAULT NULL,
+  `account_uuid` varchar(255) DEFAULT NULL,
+  `domain_id` bigint(20) NOT NULL DEFAULT 0,
+  `department_id` bigint(20) NOT NULL DEFAULT 0,
+  `project_id` bigint(20) NOT NULL DEFAULT 0,
+  `event_date_time` datetime NOT NULL,
+  `received_date_time` datetime NOT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_usage_ledger_event_date_time` (`event_date_time`),
+  KEY `idx_usage_ledger_resource_uuid` (`resource_uuid`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `ckpanda`.`usage_rollup_hourly` (
+  `period_start` datetime NOT NULL,
+  `domain_id` bigint(20) NOT NULL DEFAULT 0,
+  `department_id` bigint(20) NOT NULL DEFAULT 0,
+  `project_id` bigint(20) NOT NULL DEFAULT 0,
+  `resource_type` varchar(100) NOT NULL,
+  `event_type` varchar(100) NOT NULL,
+  `event_count` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`period_start`, `domain_id`, `department_id`, `project_id`, `resource_type`, `event_type`),
+  KEY `idx_usage_rollup_hourly_domain` (`domain_id`, `period_start`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `ckpanda`.`usage_rollup_daily` (
+  `period_start` date NOT NULL,
+  `domain_id` bigint(20) NOT NULL DEFAULT 0,
+  `department_id` bigint(20) NOT NULL DEFAULT 0,
+  `project_id` bigint(20) NOT NULL DEFAULT 0,
+  `resource_type` varchar(100) NOT NULL,
+  `event_type` varchar(100) NOT NULL,
+  `event_count` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`period_start`, `domain_id`, `department_id`, `project_id`, `resource_type`, `event_type`),
+  KEY `idx_usage_rollup_daily_domain` (`domain_id`, `period_start`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,6 @@
+CREATE TABLE `ckpanda`.`event_watermark` (
+  `name` varchar(100) NOT NULL,
+  `event_time` bigint(20) NOT NULL,
+  `updated_date_time` datetime NOT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,225 @@
+package ck.panda.rabbitmq.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ck.panda.util.CloudStackEventService;
+import ck.panda.util.CloudStackItemHandler;
+import ck.panda.util.CloudStackListIncompleteException;
+import ck.panda.util.ConfigUtil;
+import ck.panda.util.LeaderElection;
+
+/**
+ * Unit tests of the event catch-up.
+ */
+public class EventCatchUpTest {
+
+    /** Time zone of the CS server, other than the one of the tests. */
+    private static final ZoneId SERVER_ZONE = ZoneId.of("Asia/Kolkata");
+
+    /** Time in milliseconds listed before the watermark. */
+    private static final long OVERLAP = 60000L;
+
+    /** Age in milliseconds of the watermark over which a full sync runs. */
+    private static final long MAX_AGE = 86400000L;
+
+    /** CS server listEvents start date format. */
+    private static final DateTimeFormatter START_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** CS server event created date format. */
+    private static final DateTimeFormatter CREATED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ");
+
+    /** Watermark mock. */
+    private EventWatermark watermark;
+
+    /** CS server event service mock. */
+    private CloudStackEventService cloudStackEventService;
+
+    /** Action listener mock. */
+    private ActionListener actionListener;
+
+    /** Leader election mock. */
+    private LeaderElection leaderElection;
+
+    /** Catch-up under test. */
+    private EventCatchUp catchUp;
+
+    /** Start dates of the listings. */
+    private List<String> startDates;
+
+    /** Watermark an hour ago, in whole seconds. */
+    private long since;
+
+    /**
+     * Create the catch-up, listing one event a minute after the watermark.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Before
+    public void setUp() throws Exception {
+        watermark = mock(EventWatermark.class);
+        cloudStackEventService = mock(CloudStackEventService.class);
+        actionListener = mock(ActionListener.class);
+        leaderElection = mock(LeaderElection.class);
+        when(leaderElection.isLeader()).thenReturn(true);
+        when(leaderElection.isLeader(anyLong())).thenReturn(true);
+        catchUp = new EventCatchUp(watermark, cloudStackEventService, actionListener, mock(ConfigUtil.class),
+                leaderElection, OVERLAP, MAX_AGE, SERVER_ZONE);
+        startDates = new ArrayList<String>();
+        since = (System.currentTimeMillis() - 3600000L) / 1000 * 1000;
+        doAnswer(invocation -> {
+            HashMap<?, ?> optional = (HashMap<?, ?>) invocation.getArguments()[0];
+            startDates.add((String) optional.get("startdate"));
+            JSONObject event = new JSONObject();
+            event.put("type", "VM.START");
+            event.put("state", "Completed");
+            event.put("resourceid", "vm-1");
+            event.put("created", CREATED_FORMAT.format(Instant.ofEpochMilli(since + 60000L).atZone(SERVER_ZONE)));
+            ((CloudStackItemHandler) invocation.getArguments()[1]).handle(event);
+            return 1;
+        }).when(cloudStackEventService).listEvents(any(HashMap.class), any(CloudStackItemHandler.class));
+    }
+
+    /**
+     * Stop the catch-up thread.
+     */
+    @After
+    public void tearDown() {
+        catchUp.shutdown();
+    }
+
+    /**
+     * The start date is the watermark less the overlap, in the time zone of the CS server.
+     */
+    @Test
+    public void listsEventsInTheServerZone() {
+        catchUp.catchUp(since);
+        assertEquals(1, startDates.size());
+        assertEquals(START_DATE_FORMAT.format(Instant.ofEpochMilli(since - OVERLAP).atZone(SERVER_ZONE)),
+                startDates.get(0));
+    }
+
+    /**
+     * A completed catch-up advances the watermark to the latest event and drops its window.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Test
+    public void endsCompletedCatchUps() throws Exception {
+        catchUp.catchUp(since);
+        verify(watermark).beginCatchUp(since);
+        verify(actionListener).replayActionEvent(eq("VM.START"), anyString());
+        verify(watermark).advance(since + 60000L);
+        verify(watermark).endCatchUp();
+    }
+
+    /**
+     * A catch-up which fails to sync a resource keeps its window, whatever the live events advance the watermark to.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Test
+    public void keepsTheWindowOfFailedCatchUps() throws Exception {
+        doThrow(new IllegalStateException("CS server unavailable")).when(actionListener)
+                .replayActionEvent(anyString(), anyString());
+        catchUp.catchUp(since);
+        verify(watermark).beginCatchUp(since);
+        verify(watermark, never()).endCatchUp();
+    }
+
+    /**
+     * A catch-up which fails to list the events keeps its window.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Test
+    public void keepsTheWindowOfFailedListings() throws Exception {
+        doThrow(new IllegalStateException("CS server unavailable")).when(cloudStackEventService)
+                .listEvents(any(HashMap.class), any(CloudStackItemHandler.class));
+        catchUp.catchUp(since);
+        verify(watermark).beginCatchUp(since);
+        verify(watermark, never()).advance(anyLong());
+        verify(watermark, never()).endCatchUp();
+    }
+
+    /**
+     * A catch-up whose events changed while paging replays the events listed and keeps its window.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Test
+    public void keepsTheWindowOfIncompleteListings() throws Exception {
+        doAnswer(invocation -> {
+            JSONObject event = new JSONObject();
+            event.put("type", "VM.START");
+            event.put("state", "Completed");
+            event.put("resourceid", "vm-1");
+            event.put("created", CREATED_FORMAT.format(Instant.ofEpochMilli(since + 60000L).atZone(SERVER_ZONE)));
+            ((CloudStackItemHandler) invocation.getArguments()[1]).handle(event);
+            throw new CloudStackListIncompleteException("listEvents changed while paging");
+        }).when(cloudStackEventService).listEvents(any(HashMap.class), any(CloudStackItemHandler.class));
+        catchUp.catchUp(since);
+        verify(actionListener).replayActionEvent(eq("VM.START"), anyString());
+        verify(watermark).advance(since + 60000L);
+        verify(watermark, never()).endCatchUp();
+    }
+
+    /**
+     * The next catch-up starts from the window of a catch-up which did not complete, not from the later watermark.
+     */
+    @Test
+    public void startsFromPendingCatchUps() {
+        long pending = since - 600000L;
+        when(watermark.getPendingCatchUp()).thenReturn(pending);
+        catchUp.catchUp(since);
+        verify(watermark).beginCatchUp(pending);
+        assertEquals(START_DATE_FORMAT.format(Instant.ofEpochMilli(pending - OVERLAP).atZone(SERVER_ZONE)),
+                startDates.get(0));
+    }
+
+    /**
+     * A catch-up stops once the lease of its term is lost, leaving its window to the new leader.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Test
+    public void stopsOnceNoLongerTheLeader() throws Exception {
+        when(leaderElection.isLeader(anyLong())).thenReturn(true, false);
+        catchUp.catchUp(since);
+        verify(watermark).beginCatchUp(since);
+        verify(actionListener, never()).replayActionEvent(anyString(), anyString());
+        verify(watermark, never()).endCatchUp();
+    }
+
+    /**
+     * A watermark older than the maximum age runs a full sync instead of listing the events.
+     *
+     * @throws Exception if the mock fails
+     */
+    @Test
+    public void resyncsWhenTooOld() throws Exception {
+        catchUp.catchUp(since - MAX_AGE);
+        verify(actionListener).resync();
+        verify(cloudStackEventService, never()).listEvents(any(HashMap.class), any(CloudStackItemHandler.class));
+        verify(watermark).endCatchUp();
+    }
+}
@@ -0,0 +1,172 @@
+package ck.panda.rabbitmq.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import com.rabbitmq.client.Channel;
+
+/**
+ * Unit tests of the partitioned message listener.
+ */
+public class PartitionedMessageListenerTest {
+
+    /** Time in milliseconds to wait for a lane. */
+    private static final long WAIT = 2000L;
+
+    /** Channel the messages are delivered on. */
+    private Channel channel;
+
+    /** Listener under test. */
+    private PartitionedMessageListener listener;
+
+    /**
+     * Create the channel.
+     */
+    @Before
+    public void setUp() {
+        channel = mock(Channel.class);
+    }
+
+    /**
+     * Stop the lanes.
+     */
+    @After
+    public void tearDown() {
+        if (listener != null) {
+            listener.shutdown();
+        }
+    }
+
+    /**
+     * A message is acknowledged once its listener has handled it.
+     *
+     * @throws Exception if the dispatch fails
+     */
+    @Test
+    public void acknowledgesHandledMessages() throws Exception {
+        listener = new PartitionedMessageListener("test", message -> { }, 2, 10);
+        listener.onMessage(message(1L, "vm-1", false), channel);
+
+        verify(channel, timeout(WAIT)).basicAck(1L, false);
+        assertEquals(0, listener.getFailedCount());
+    }
+
+    /**
+     * A failed message is requeued on its first delivery and dropped when it fails again.
+     *
+     * @throws Exception if the dispatch fails
+     */
+    @Test
+    public void requeuesFailedMessagesOnce() throws Exception {
+        listener = new PartitionedMessageListener("test", message -> {
+            throw new IllegalStateException("CloudStack unavailable");
+        }, 1, 10);
+        listener.onMessage(message(1L, "vm-1", false), channel);
+        listener.onMessage(message(2L, "vm-1", true), channel);
+
+        verify(channel, timeout(WAIT)).basicNack(1L, false, true);
+        verify(channel, timeout(WAIT)).basicNack(2L, false, false);
+        verify(channel, never()).basicAck(1L, false);
+        assertEquals(2, listener.getFailedCount());
+    }
+
+    /**
+     * A deferred message is acknowledged once its handling has completed, not when the listener returns.
+     *
+     * @throws Exception if the dispatch fails
+     */
+    @Test
+    public void acknowledgesDeferredMessagesOnceCompleted() throws Exception {
+        CompletableFuture<Void> handled = new CompletableFuture<Void>();
+        listener = new PartitionedMessageListener("test", new DeferredMessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                onMessageDeferred(message).join();
+            }
+
+            @Override
+            public CompletableFuture<Void> onMessageDeferred(Message message) {
+                return handled;
+            }
+        }, 1, 10);
+        listener.onMessage(message(1L, "vm-1", false), channel);
+
+        Thread.sleep(200);
+        verify(channel, never()).basicAck(1L, false);
+        handled.complete(null);
+        verify(channel, timeout(WAIT)).basicAck(1L, false);
+    }
+
+    /**
+     * Messages of the same resource are handled in the order they were consumed.
+     *
+     * @throws Exception if the dispatch fails
+     */
+    @Test
+    public void keepsTheOrderOfAResource() throws Exception {
+        List<Long> order = Collections.synchronizedList(new ArrayList<Long>());
+        listener = new PartitionedMessageListener("test",
+                message -> order.add(message.getMessageProperties().getDeliveryTag()), 4, 10);
+        for (long tag = 1; tag <= 5; tag++) {
+            listener.onMessage(message(tag, "vm-1", false), channel);
+        }
+
+        verify(channel, timeout(WAIT)).basicAck(5L, false);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), order);
+    }
+
+    /**
+     * Messages arriving after shutdown are requeued without being handled.
+     *
+     * @throws Exception if the dispatch fails
+     */
+    @Test
+    public void requeuesMessagesAfterShutdown() throws Exception {
+        List<Message> handled = Collections.synchronizedList(new ArrayList<Message>());
+        listener = new PartitionedMessageListener("test", handled::add, 1, 10);
+        listener.shutdown();
+        listener.onMessage(message(1L, "vm-1", false), channel);
+
+        verify(channel).basicNack(1L, false, true);
+        assertEquals(0, handled.size());
+    }
+
+    /**
+     * Messages are partitioned by the first resource key they carry.
+     */
+    @Test
+    public void partitionsByResourceUuid() {
+        assertEquals("vm-1", PartitionedMessageListener.partitionKey(message(1L, "vm-1", false)));
+        assertEquals("", PartitionedMessageListener.partitionKey(
+                new Message("not json".getBytes(), new MessageProperties())));
+    }
+
+    /**
+     * Create an event message.
+     *
+     * @param deliveryTag delivery tag
+     * @param entityUuid uuid of the event entity
+     * @param redelivered whether the message was delivered before
+     * @return message
+     */
+    private static Message message(long deliveryTag, String entityUuid, boolean redelivered) {
+        MessageProperties properties = new MessageProperties();
+        properties.setDeliveryTag(deliveryTag);
+        properties.setRedelivered(redelivered);
+        return new Message(("{\"entityuuid\":\"" + entityUuid + "\"}").getBytes(), properties);
+    }
+}
@@ -0,0 +1,172 @@
+package ck.panda.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ck.panda.rabbitmq.util.EmailEvent;
+import ck.panda.util.CloudStackResourceCapacity;
+import ck.panda.util.ConfigUtil;
+import ck.panda.util.LeaderElection;
+
+/**
+ * Unit tests of the capacity service on an embedded H2 database.
+ */
+public class CapacityServiceImplTest {
+
+    /** Service under test. */
+    private CapacityServiceImpl capacityService;
+
+    /** JDBC template of the embedded database. */
+    private JdbcTemplate jdbcTemplate;
+
+    /** CloudStack resource capacity mock. */
+    private CloudStackResourceCapacity cloudStackResourceCapacity;
+
+    /** Email job service mock. */
+    private EmailJobService emailJobService;
+
+    /** Leader election mock. */
+    private LeaderElection leaderElection;
+
+    /**
+     * Create the alert table and the service.
+     */
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:capacity;DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE capacity_alert (zone_uuid VARCHAR(255) NOT NULL,"
+                + " capacity_type VARCHAR(20) NOT NULL, percent_used DOUBLE NOT NULL,"
+                + " alerted_date_time DATETIME NOT NULL, PRIMARY KEY (zone_uuid, capacity_type))");
+        cloudStackResourceCapacity = mock(CloudStackResourceCapacity.class);
+        emailJobService = mock(EmailJobService.class);
+        leaderElection = mock(LeaderElection.class);
+        when(leaderElection.isLeader()).thenReturn(true);
+        capacityService = create();
+    }
+
+    /**
+     * Drop the database.
+     */
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    /**
+     * An alert is sent once while the capacity stays high, and again after the capacity has been rearmed.
+     *
+     * @throws Exception if the sample fails
+     */
+    @Test
+    public void alertsOnceUntilRearmed() throws Exception {
+        capacity(85);
+        capacityService.sampleCapacity();
+        capacityService.sampleCapacity();
+        verify(emailJobService, times(1)).sendMessageToQueue(any(EmailEvent.class));
+        assertEquals(1, alerts());
+
+        capacity(70);
+        capacityService.sampleCapacity();
+        assertEquals(0, alerts());
+
+        capacity(90);
+        capacityService.sampleCapacity();
+        verify(emailJobService, times(2)).sendMessageToQueue(any(EmailEvent.class));
+    }
+
+    /**
+     * A new node, as after a restart or a leader change, does not send the alert again.
+     *
+     * @throws Exception if the sample fails
+     */
+    @Test
+    public void keepsAlertsAcrossNodes() throws Exception {
+        capacity(85);
+        capacityService.sampleCapacity();
+        create().sampleCapacity();
+        verify(emailJobService, times(1)).sendMessageToQueue(any(EmailEvent.class));
+    }
+
+    /**
+     * A failed send is not recorded, the next sample sends the alert again.
+     *
+     * @throws Exception if the sample fails
+     */
+    @Test
+    public void retriesFailedAlerts() throws Exception {
+        capacity(85);
+        doThrow(new IllegalStateException("Queue unavailable")).doNothing().when(emailJobService)
+                .sendMessageToQueue(any(EmailEvent.class));
+        capacityService.sampleCapacity();
+        assertEquals(0, alerts());
+
+        capacityService.sampleCapacity();
+        verify(emailJobService, times(2)).sendMessageToQueue(any(EmailEvent.class));
+        assertEquals(1, alerts());
+    }
+
+    /**
+     * The other nodes do not sample.
+     *
+     * @throws Exception if the sample fails
+     */
+    @Test
+    public void samplesOnTheLeaderOnly() throws Exception {
+        when(leaderElection.isLeader()).thenReturn(false);
+        capacity(85);
+        capacityService.sampleCapacity();
+        verify(cloudStackResourceCapacity, never()).listCapacity(any(HashMap.class), anyString());
+    }
+
+    /**
+     * Create a service node on the shared database and mocks.
+     *
+     * @return capacity service
+     */
+    private CapacityServiceImpl create() {
+        CapacityServiceImpl service = new CapacityServiceImpl();
+        ReflectionTestUtils.setField(service, "cloudStackResourceCapacity", cloudStackResourceCapacity);
+        ReflectionTestUtils.setField(service, "emailJobService", emailJobService);
+        ReflectionTestUtils.setField(service, "config", mock(ConfigUtil.class));
+        ReflectionTestUtils.setField(service, "leaderElection", leaderElection);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "alertThreshold", 80.0);
+        ReflectionTestUtils.setField(service, "rearmThreshold", 75.0);
+        return service;
+    }
+
+    /**
+     * Answer the capacity listing with the memory capacity of one zone.
+     *
+     * @param percentUsed used percentage of the memory
+     * @throws Exception if the mock fails
+     */
+    private void capacity(double percentUsed) throws Exception {
+        when(cloudStackResourceCapacity.listCapacity(any(HashMap.class), anyString())).thenReturn(
+                "{\"listcapacityresponse\":{\"capacity\":[{\"zoneid\":\"zone-1\",\"zonename\":\"Zone 1\","
+                        + "\"type\":\"0\",\"percentused\":\"" + percentUsed + "\"}]}}");
+    }
+
+    /**
+     * Count the recorded alerts.
+     *
+     * @return alert count
+     */
+    private int alerts() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM capacity_alert", Integer.class);
+    }
+}
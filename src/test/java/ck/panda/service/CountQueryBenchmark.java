@@ -0,0 +1,249 @@
+package ck.panda.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import ck.panda.domain.entity.Department;
+import ck.panda.domain.entity.Project;
+import ck.panda.domain.entity.VmInstance;
+import ck.panda.domain.entity.Volume;
+import ck.panda.domain.entity.Volume.VolumeType;
+import ck.panda.domain.repository.jpa.VirtualMachineRepository;
+import ck.panda.domain.repository.jpa.VolumeRepository;
+
+/**
+ * JMH benchmark of the instance and volume repository COUNT queries on an embedded H2 database, against loading the
+ * rows with the matching list queries to take the list size, at a growing number of rows. The COUNT queries stay
+ * close to flat while the list queries grow with the rows they load.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ck.panda.service.CountQueryBenchmark}, or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountQueryBenchmark {
+
+    /** Number of departments. */
+    private static final int DEPARTMENTS = 20;
+
+    /** Number of projects, spread over the departments. */
+    private static final int PROJECTS = 100;
+
+    /** Department queried. */
+    private static final long DEPARTMENT_ID = 3L;
+
+    /** Number of rows persisted between two flushes. */
+    private static final int FLUSH_SIZE = 1000;
+
+    /** Number of instances and of volumes. */
+    @Param({ "1000", "10000", "100000" })
+    private int rows;
+
+    /** Entity manager factory of the embedded database. */
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Entity manager of the queries. */
+    private EntityManager entityManager;
+
+    /** Instance repository under test. */
+    private VirtualMachineRepository virtualMachineRepo;
+
+    /** Volume repository under test. */
+    private VolumeRepository volumeRepo;
+
+    /** Department queried. */
+    private Department department;
+
+    /** Projects of the department queried. */
+    private List<Project> projects;
+
+    /** Volume types queried. */
+    private List<VolumeType> volumeTypes;
+
+    /**
+     * Create the database of the row count and fill the instance and volume tables.
+     */
+    @Setup
+    public void setUp() {
+        entityManagerFactory = createEntityManagerFactory("counts" + rows);
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        // Only the instance and volume rows are filled, the departments and projects they refer to are not.
+        entityManager.createNativeQuery("SET REFERENTIAL_INTEGRITY FALSE").executeUpdate();
+        for (long id = 1; id <= rows; id++) {
+            long departmentId = id % DEPARTMENTS;
+            Long projectId = id % 3 == 0 ? null : departmentId + DEPARTMENTS * (id % (PROJECTS / DEPARTMENTS));
+            VmInstance instance = new VmInstance();
+            instance.setUuid("vm-" + id);
+            instance.setName("vm-" + id);
+            // The search of the list and count queries matches the display name.
+            instance.setDisplayName("vm-" + id);
+            instance.setDomainId(1L);
+            instance.setDepartmentId(departmentId);
+            instance.setProjectId(projectId);
+            instance.setStatus(id % 10 == 0 ? VmInstance.Status.EXPUNGING : VmInstance.Status.RUNNING);
+            entityManager.persist(instance);
+            Volume volume = new Volume();
+            volume.setUuid("volume-" + id);
+            volume.setName("volume-" + id);
+            volume.setDomainId(1L);
+            volume.setDepartmentId(departmentId);
+            volume.setProjectId(projectId);
+            volume.setVolumeType(id % 2 == 0 ? VolumeType.ROOT : VolumeType.DATADISK);
+            volume.setIsActive(id % 10 != 0);
+            entityManager.persist(volume);
+            if (id % FLUSH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+
+        JpaRepositoryFactory repositoryFactory = new JpaRepositoryFactory(entityManager);
+        virtualMachineRepo = repositoryFactory.getRepository(VirtualMachineRepository.class);
+        volumeRepo = repositoryFactory.getRepository(VolumeRepository.class);
+        department = entityManager.getReference(Department.class, DEPARTMENT_ID);
+        projects = new ArrayList<Project>();
+        for (long project = DEPARTMENT_ID; project < PROJECTS; project += DEPARTMENTS) {
+            projects.add(entityManager.getReference(Project.class, project));
+        }
+        volumeTypes = Arrays.asList(VolumeType.ROOT, VolumeType.DATADISK);
+    }
+
+    /**
+     * Close the entity manager factory, dropping the database.
+     */
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        entityManagerFactory.close();
+    }
+
+    /**
+     * Count the instances of the department and its projects with the COUNT query.
+     *
+     * @return instance count
+     */
+    @Benchmark
+    public long countInstancesOfProjects() {
+        return virtualMachineRepo.countByDepartmentAndProjectAndExceptStatus(VmInstance.Status.EXPUNGING, department,
+                projects, "");
+    }
+
+    /**
+     * Count the instances of the department and its projects by loading them.
+     *
+     * @return instance count
+     */
+    @Benchmark
+    public long listInstancesOfProjects() {
+        long count = virtualMachineRepo.findAllByDepartmentAndProjectListAndExceptStatus(VmInstance.Status.EXPUNGING,
+                department, projects, "").size();
+        entityManager.clear();
+        return count;
+    }
+
+    /**
+     * Count every instance not expunging with the COUNT query.
+     *
+     * @return instance count
+     */
+    @Benchmark
+    public long countInstances() {
+        return virtualMachineRepo.countByExceptStatus(VmInstance.Status.EXPUNGING);
+    }
+
+    /**
+     * Count every instance not expunging by loading them.
+     *
+     * @return instance count
+     */
+    @Benchmark
+    public long listInstances() {
+        long count = virtualMachineRepo.findAllByExceptStatus(VmInstance.Status.EXPUNGING).size();
+        entityManager.clear();
+        return count;
+    }
+
+    /**
+     * Count the detached volumes of the department with the COUNT query.
+     *
+     * @return volume count
+     */
+    @Benchmark
+    public long countDetachedVolumes() {
+        return volumeRepo.getDetachedCountByDepartment(DEPARTMENT_ID, volumeTypes, true);
+    }
+
+    /**
+     * Count the detached volumes of the department by loading them.
+     *
+     * @return volume count
+     */
+    @Benchmark
+    public long listDetachedVolumes() {
+        long count = volumeRepo.findByDepartmentAndVolumeType(DEPARTMENT_ID, volumeTypes, true).size();
+        entityManager.clear();
+        return count;
+    }
+
+    /**
+     * Create an entity manager factory of the application entities on a new embedded H2 database.
+     *
+     * @param database name of the database
+     * @return entity manager factory
+     */
+    private static EntityManagerFactory createEntityManagerFactory(String database) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.batch_size", "50");
+        properties.put("javax.persistence.validation.mode", "none");
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:" + database + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setPackagesToScan(VmInstance.class.getPackage().getName());
+        factory.setJpaPropertyMap(properties);
+        factory.setPersistenceUnitName(database);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CountQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
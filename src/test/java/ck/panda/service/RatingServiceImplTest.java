@@ -0,0 +1,322 @@
+package ck.panda.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ck.panda.domain.entity.ComputeOfferingCost;
+import ck.panda.domain.entity.MiscellaneousCost;
+import ck.panda.domain.entity.StorageOfferingCost;
+import ck.panda.domain.entity.Tax;
+import ck.panda.domain.entity.TemplateCost;
+import ck.panda.domain.entity.VmInstance;
+import ck.panda.domain.entity.Volume;
+import ck.panda.domain.repository.jpa.ComputeOfferingCostRepository;
+import ck.panda.domain.repository.jpa.MiscellaneousCostRepository;
+import ck.panda.domain.repository.jpa.StorageOfferingCostRepository;
+import ck.panda.domain.repository.jpa.TaxRepository;
+import ck.panda.domain.repository.jpa.TemplateCostRepository;
+import ck.panda.domain.repository.jpa.VirtualMachineRepository;
+import ck.panda.domain.repository.jpa.VolumeRepository;
+import ck.panda.util.CacheInvalidation;
+import ck.panda.util.PriceCatalog;
+import ck.panda.util.UsageRecords;
+
+/**
+ * Unit tests of the rating service, checking the compiled prices against the cost services.
+ */
+public class RatingServiceImplTest {
+
+    /** Start of the rated period. */
+    private static final ZonedDateTime FROM = ZonedDateTime.of(2015, 9, 1, 0, 0, 0, 0, ZoneId.of("UTC"));
+
+    /** End of the rated period, 10 days later. */
+    private static final ZonedDateTime TO = FROM.plusDays(10);
+
+    /** Service under test. */
+    private RatingServiceImpl service;
+
+    /** Compute offering cost rows. */
+    private List<ComputeOfferingCost> computeCosts;
+
+    /** Storage offering cost rows. */
+    private List<StorageOfferingCost> storageCosts;
+
+    /** Active tax rows. */
+    private List<Tax> taxes;
+
+    /** Virtual machine repository. */
+    private VirtualMachineRepository virtualMachineRepo;
+
+    /** Volume repository. */
+    private VolumeRepository volumeRepo;
+
+    /**
+     * Create the service over mocked repositories.
+     */
+    @Before
+    public void setUp() {
+        computeCosts = new ArrayList<ComputeOfferingCost>();
+        storageCosts = new ArrayList<StorageOfferingCost>();
+        taxes = new ArrayList<Tax>();
+        ComputeOfferingCostRepository computeOfferingCostRepo = mock(ComputeOfferingCostRepository.class);
+        when(computeOfferingCostRepo.findAll()).thenReturn(computeCosts);
+        StorageOfferingCostRepository storageOfferingCostRepo = mock(StorageOfferingCostRepository.class);
+        when(storageOfferingCostRepo.findAll()).thenReturn(storageCosts);
+        TemplateCostRepository templateCostRepo = mock(TemplateCostRepository.class);
+        when(templateCostRepo.findAll()).thenReturn(Collections.<TemplateCost>emptyList());
+        MiscellaneousCostRepository miscellaneousCostRepo = mock(MiscellaneousCostRepository.class);
+        when(miscellaneousCostRepo.findAllByIsActive(anyBoolean()))
+                .thenReturn(Collections.<MiscellaneousCost>emptyList());
+        TaxRepository taxRepo = mock(TaxRepository.class);
+        when(taxRepo.findAllByIsActive(anyBoolean())).thenReturn(taxes);
+        virtualMachineRepo = mock(VirtualMachineRepository.class);
+        volumeRepo = mock(VolumeRepository.class);
+
+        service = new RatingServiceImpl();
+        ReflectionTestUtils.setField(service, "computeOfferingCostRepo", computeOfferingCostRepo);
+        ReflectionTestUtils.setField(service, "storageOfferingCostRepo", storageOfferingCostRepo);
+        ReflectionTestUtils.setField(service, "templateCostRepo", templateCostRepo);
+        ReflectionTestUtils.setField(service, "miscellaneousCostRepo", miscellaneousCostRepo);
+        ReflectionTestUtils.setField(service, "taxRepo", taxRepo);
+        ReflectionTestUtils.setField(service, "virtualMachineRepo", virtualMachineRepo);
+        ReflectionTestUtils.setField(service, "volumeRepo", volumeRepo);
+        ReflectionTestUtils.setField(service, "cacheInvalidation", mock(CacheInvalidation.class));
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "threshold", 16);
+        ReflectionTestUtils.setField(service, "catalogTtl", 300000L);
+        service.init();
+    }
+
+    /**
+     * Stop the rating pool.
+     */
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * The compiled compute total equals the stored total of the compute offering cost service, bit for bit, so that
+     * totals looked up by findByCostAndId still match.
+     *
+     * @throws Exception if the total fails
+     */
+    @Test
+    public void computeTotalMatchesTheCostService() throws Exception {
+        Random random = new Random(42);
+        for (long id = 1; id <= 200; id++) {
+            computeCosts.add(randomComputeCost(random, id, id));
+        }
+        PriceCatalog catalog = service.getCatalog();
+        ComputeOfferingCostServiceImpl costService = new ComputeOfferingCostServiceImpl();
+        for (ComputeOfferingCost cost : computeCosts) {
+            assertEquals(costService.totalcost(cost).doubleValue(),
+                    catalog.computePrice(0L, cost.getComputeId(), PriceCatalog.COMPUTE_TOTAL), 0d);
+            assertEquals(cost.getSetupCost() != null ? cost.getSetupCost() : 0d,
+                    catalog.computePrice(0L, cost.getComputeId(), PriceCatalog.COMPUTE_SETUP), 0d);
+        }
+    }
+
+    /**
+     * One month of one GB costs the stored total of the storage offering cost service.
+     *
+     * @throws Exception if the total fails
+     */
+    @Test
+    public void storageMonthMatchesTheCostService() throws Exception {
+        Random random = new Random(7);
+        for (long id = 1; id <= 200; id++) {
+            storageCosts.add(storageCost(id, id, random.nextDouble() * 10, random.nextDouble()));
+        }
+        PriceCatalog catalog = service.getCatalog();
+        StorageOfferingCostServiceImpl costService = new StorageOfferingCostServiceImpl();
+        for (StorageOfferingCost cost : storageCosts) {
+            assertEquals(costService.totalcost(cost).doubleValue(),
+                    catalog.rateStorage(0L, cost.getStorageId(), 1, 1), 0d);
+        }
+    }
+
+    /**
+     * Records are rated the same in parallel as one by one.
+     */
+    @Test
+    public void ratesInParallelAsSequentially() {
+        Random random = new Random(3);
+        for (long id = 1; id <= 20; id++) {
+            computeCosts.add(randomComputeCost(random, id, id));
+            storageCosts.add(storageCost(id, id, random.nextDouble(), random.nextDouble()));
+        }
+        UsageRecords records = new UsageRecords(8);
+        for (int index = 0; index < 1000; index++) {
+            records.addCompute(index % 5, 0L, 1 + index % 20, index % 3 == 0, random.nextDouble() * 720,
+                    1 + index % 8, 512 * (1 + index % 4), 1000);
+            records.addSetup(index % 5, 0L, 1 + index % 20, 1);
+            records.addStorage(index % 5, 0L, 1 + index % 20, random.nextDouble(), random.nextInt(500));
+        }
+        PriceCatalog catalog = service.getCatalog();
+        double[] charges = service.rate(records);
+        for (int index = 0; index < records.size(); index++) {
+            assertEquals(records.rate(catalog, index), charges[index], 0d);
+        }
+    }
+
+    /**
+     * The estimate of a domain charges the running and stoppage hours of its instances by the offering prices, the
+     * setup cost of the instances created within the period and the months of its volumes, with the taxes.
+     */
+    @Test
+    public void estimatesChargesOfADomain() {
+        computeCosts.add(computeCost(1L, 1L, 5d, 0.01, 0.001, 0.02, 0.0001));
+        storageCosts.add(storageCost(1L, 2L, 3d, 0.1));
+        Tax tax = new Tax();
+        tax.setPercentage(10d);
+        taxes.add(tax);
+
+        VmInstance running = instance(1L, VmInstance.Status.RUNNING, FROM.plusDays(5));
+        VmInstance stopped = instance(2L, VmInstance.Status.STOPPED, FROM.minusDays(3));
+        Volume volume = new Volume();
+        volume.setDepartmentId(1L);
+        volume.setStorageOfferingId(2L);
+        volume.setDiskSize(20L * 1024 * 1024 * 1024);
+        volume.setCreatedDateTime(FROM.minusMonths(2));
+        when(virtualMachineRepo.findAllByDomainAndExceptInStatus(anyLong(), anyListOf(VmInstance.Status.class)))
+                .thenReturn(Arrays.asList(running, stopped));
+        when(volumeRepo.findAllByDomainAndIsActive(anyLong(), anyBoolean())).thenReturn(Arrays.asList(volume));
+
+        Map<Long, Double> estimates = service.estimateByDepartment(1L, FROM, TO);
+
+        double runningCharge = 120 * (0.01 * 2 + 0.001 * 1024) + 5d;
+        double volumeCharge = 240d / 720 * (3d + 0.1 * 20);
+        assertEquals((runningCharge + volumeCharge) * 1.1, estimates.get(1L), 1e-9);
+        double stoppedCharge = 240 * (0.02 * 2 + 0.0001 * 1024);
+        assertEquals(stoppedCharge * 1.1, estimates.get(2L), 1e-9);
+    }
+
+    /**
+     * A cost row change compiles a new catalog on the next use.
+     */
+    @Test
+    public void compilesAgainAfterAChange() {
+        PriceCatalog first = service.getCatalog();
+        assertSame(first, service.getCatalog());
+        service.invalidateCatalog();
+        assertNotSame(first, service.getCatalog());
+    }
+
+    /**
+     * Create a compute offering cost row with random prices, some left unset.
+     *
+     * @param random random numbers
+     * @param id cost row id
+     * @param computeId compute offering id
+     * @return cost row
+     */
+    private static ComputeOfferingCost randomComputeCost(Random random, long id, long computeId) {
+        ComputeOfferingCost cost = new ComputeOfferingCost();
+        cost.setId(id);
+        cost.setComputeId(computeId);
+        cost.setSetupCost(price(random));
+        cost.setInstanceRunningCostVcpu(price(random));
+        cost.setInstanceRunningCostMemory(price(random));
+        cost.setInstanceRunningCostPerMB(price(random));
+        cost.setInstanceRunningCostPerVcpu(price(random));
+        cost.setInstanceRunningCostPerMhz(price(random));
+        cost.setInstanceStoppageCostPerMhz(price(random));
+        cost.setInstanceStoppageCostVcpu(price(random));
+        cost.setInstanceStoppageCostMemory(price(random));
+        cost.setInstanceStoppageCostPerVcpu(price(random));
+        cost.setInstanceStoppageCostPerMB(price(random));
+        return cost;
+    }
+
+    /**
+     * Get a random price, null one time in five.
+     *
+     * @param random random numbers
+     * @return price
+     */
+    private static Double price(Random random) {
+        return random.nextInt(5) == 0 ? null : random.nextDouble() * 3;
+    }
+
+    /**
+     * Create a compute offering cost row with per vCPU and per MB prices.
+     *
+     * @param id cost row id
+     * @param computeId compute offering id
+     * @param setup setup cost
+     * @param runningPerVcpu running cost per vCPU
+     * @param runningPerMb running cost per MB
+     * @param stoppagePerVcpu stoppage cost per vCPU
+     * @param stoppagePerMb stoppage cost per MB
+     * @return cost row
+     */
+    private static ComputeOfferingCost computeCost(Long id, Long computeId, double setup, double runningPerVcpu,
+            double runningPerMb, double stoppagePerVcpu, double stoppagePerMb) {
+        ComputeOfferingCost cost = new ComputeOfferingCost();
+        cost.setId(id);
+        cost.setComputeId(computeId);
+        cost.setSetupCost(setup);
+        cost.setInstanceRunningCostPerVcpu(runningPerVcpu);
+        cost.setInstanceRunningCostPerMB(runningPerMb);
+        cost.setInstanceStoppageCostPerVcpu(stoppagePerVcpu);
+        cost.setInstanceStoppageCostPerMB(stoppagePerMb);
+        return cost;
+    }
+
+    /**
+     * Create a storage offering cost row.
+     *
+     * @param id cost row id
+     * @param storageId storage offering id
+     * @param perMonth cost per month
+     * @param gbPerMonth cost per GB per month
+     * @return cost row
+     */
+    private static StorageOfferingCost storageCost(Long id, Long storageId, double perMonth, double gbPerMonth) {
+        StorageOfferingCost cost = new StorageOfferingCost();
+        cost.setId(id);
+        cost.setStorageId(storageId);
+        cost.setCostPerMonth(perMonth);
+        cost.setCostGbPerMonth(gbPerMonth);
+        return cost;
+    }
+
+    /**
+     * Create an instance of compute offering 1 with 2 vCPUs and 1024 MB.
+     *
+     * @param departmentId department id
+     * @param status instance status
+     * @param created creation date and time
+     * @return instance
+     */
+    private static VmInstance instance(Long departmentId, VmInstance.Status status, ZonedDateTime created) {
+        VmInstance instance = new VmInstance();
+        instance.setDepartmentId(departmentId);
+        instance.setComputeOfferingId(1L);
+        instance.setStatus(status);
+        instance.setCpuCore(2);
+        instance.setMemory(1024);
+        instance.setCpuSpeed(1000);
+        instance.setCreatedDateTime(created);
+        return instance;
+    }
+}
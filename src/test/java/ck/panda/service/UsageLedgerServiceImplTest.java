@@ -0,0 +1,204 @@
+package ck.panda.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import ck.panda.domain.entity.Department;
+import ck.panda.rabbitmq.util.UsageEvent;
+import ck.panda.util.ConfigUtil;
+
+/**
+ * Unit tests of the usage ledger service.
+ */
+public class UsageLedgerServiceImplTest {
+
+    /** Service under test. */
+    private UsageLedgerServiceImpl service;
+
+    /** JDBC template of the batch writes. */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Create the service with an account of department 3 in domain 2.
+     *
+     * @throws Exception if the mocks fail
+     */
+    @Before
+    public void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        ConvertEntityService convertEntityService = mock(ConvertEntityService.class);
+        Department department = new Department();
+        department.setId(3L);
+        department.setDomainId(2L);
+        when(convertEntityService.getDepartment("account-1")).thenReturn(department);
+        service = new UsageLedgerServiceImpl();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "convertEntityService", convertEntityService);
+        ReflectionTestUtils.setField(service, "configUtil", mock(ConfigUtil.class));
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "queueCapacity", 100);
+        service.init();
+    }
+
+    /**
+     * Events are written with one batch, rolled up with their count and quantity, and completed once committed.
+     *
+     * @throws Exception if the flush fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void writesBatchesAndCompletesOnCommit() throws Exception {
+        CompletableFuture<Void> first = service.append(usageEvent(1024L));
+        CompletableFuture<Void> second = service.append(usageEvent(null));
+        assertFalse(first.isDone());
+
+        assertEquals(2, service.flush());
+
+        assertTrue(first.isDone() && !first.isCompletedExceptionally());
+        assertTrue(second.isDone() && !second.isCompletedExceptionally());
+        ArgumentCaptor<List> ledger = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT IGNORE INTO usage_ledger"), ledger.capture());
+        assertEquals(2, ledger.getValue().size());
+        ArgumentCaptor<List> hourly = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO usage_rollup_hourly"), hourly.capture());
+        assertEquals(1, hourly.getValue().size());
+        Object[] row = (Object[]) hourly.getValue().get(0);
+        assertArrayEquals(new Object[] {2L, 3L, 0L, "Volume", "VOLUME.CREATE", 2L, 1024L },
+                Arrays.copyOfRange(row, 1, row.length));
+    }
+
+    /**
+     * An event already in the ledger, as after a redelivery, is not inserted or counted again, and is completed.
+     *
+     * @throws Exception if the flush fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void skipsEventsAlreadyWritten() throws Exception {
+        when(jdbcTemplate.queryForList(startsWith("SELECT event_key"), eq(String.class), anyVararg()))
+                .thenAnswer(invocation -> Arrays.asList((String) invocation.getArguments()[2]));
+        CompletableFuture<Void> written = service.append(usageEvent(1024L));
+        CompletableFuture<Void> added = service.append(usageEvent(2048L));
+
+        assertEquals(2, service.flush());
+
+        assertTrue(written.isDone() && !written.isCompletedExceptionally());
+        assertTrue(added.isDone() && !added.isCompletedExceptionally());
+        ArgumentCaptor<List> ledger = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT IGNORE INTO usage_ledger"), ledger.capture());
+        assertEquals(1, ledger.getValue().size());
+        assertEquals(2048L, rollupRow("usage_rollup_hourly")[7]);
+    }
+
+    /**
+     * An event delivered twice in one batch is written once, and a row the insert skipped is not counted.
+     *
+     * @throws Exception if the flush fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void countsOnlyInsertedRows() throws Exception {
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT IGNORE INTO usage_ledger"), anyList()))
+                .thenReturn(new int[] {1, 0 });
+        service.append(usageEvent(1024L));
+        service.append(usageEvent(1024L));
+        service.append(usageEvent(2048L));
+
+        assertEquals(3, service.flush());
+
+        ArgumentCaptor<List> ledger = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT IGNORE INTO usage_ledger"), ledger.capture());
+        assertEquals(2, ledger.getValue().size());
+        Object[] row = rollupRow("usage_rollup_daily");
+        assertEquals(1L, row[6]);
+        assertEquals(1024L, row[7]);
+    }
+
+    /**
+     * A failed batch fails the futures of its events instead of queueing them again.
+     *
+     * @throws Exception if the append fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failsEventsOfAFailedBatch() throws Exception {
+        doThrow(new DataAccessResourceFailureException("Database unavailable")).when(jdbcTemplate)
+                .batchUpdate(anyString(), anyList());
+        CompletableFuture<Void> event = service.append(usageEvent(null));
+
+        assertEquals(0, service.flush());
+
+        assertTrue(event.isCompletedExceptionally());
+        assertEquals(0, service.flush());
+    }
+
+    /**
+     * Events still queued on shutdown are failed and not written.
+     *
+     * @throws Exception if the append fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failsQueuedEventsOnShutdown() throws Exception {
+        CompletableFuture<Void> event = service.append(usageEvent(null));
+
+        service.shutdown();
+        service.flushAll();
+
+        assertTrue(event.isCompletedExceptionally());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    /**
+     * Get the only rollup row written to a rollup table.
+     *
+     * @param table rollup table
+     * @return rollup row
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] rollupRow(String table) {
+        ArgumentCaptor<List> rollup = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO " + table), rollup.capture());
+        assertEquals(1, rollup.getValue().size());
+        return (Object[]) rollup.getValue().get(0);
+    }
+
+    /**
+     * Create a volume usage event of account-1.
+     *
+     * @param size volume size, null if the event has none
+     * @return usage event
+     */
+    private static UsageEvent usageEvent(Long size) {
+        UsageEvent usageEvent = new UsageEvent();
+        usageEvent.setEvent("VOLUME.CREATE");
+        usageEvent.setResource("Volume");
+        usageEvent.setId("volume-1");
+        usageEvent.setAccount("account-1");
+        usageEvent.setSize(size);
+        return usageEvent;
+    }
+}
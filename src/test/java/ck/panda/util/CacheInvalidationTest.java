@@ -0,0 +1,150 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Unit tests of the cache invalidation between two nodes on an embedded H2 database.
+ */
+public class CacheInvalidationTest {
+
+    /** JDBC template of the embedded database. */
+    private JdbcTemplate jdbcTemplate;
+
+    /** First node. */
+    private CacheInvalidation first;
+
+    /** Second node. */
+    private CacheInvalidation second;
+
+    /** Number of times the roles cache of the second node was dropped. */
+    private AtomicInteger rolesDropped;
+
+    /** Number of times the users cache of the second node was dropped. */
+    private AtomicInteger usersDropped;
+
+    /**
+     * Create the invalidation table and the nodes.
+     */
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:invalidation;DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE cache_invalidation (name VARCHAR(100) NOT NULL, version BIGINT NOT NULL,"
+                + " updated_date_time DATETIME, PRIMARY KEY (name))");
+        jdbcTemplate.update("INSERT INTO cache_invalidation (name, version) VALUES ('roles', 0), ('users', 0)");
+        first = create();
+        second = create();
+        rolesDropped = new AtomicInteger();
+        usersDropped = new AtomicInteger();
+        second.addListener("roles", rolesDropped::incrementAndGet);
+        second.addListener("users", usersDropped::incrementAndGet);
+        first.poll();
+        second.poll();
+    }
+
+    /**
+     * Drop the database.
+     */
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    /**
+     * An invalidation on one node drops that cache only on the other node, once.
+     */
+    @Test
+    public void dropsCachesOnOtherNodes() {
+        first.invalidate("roles");
+        second.poll();
+        assertEquals(1, rolesDropped.get());
+        assertEquals(0, usersDropped.get());
+
+        second.poll();
+        assertEquals(1, rolesDropped.get());
+    }
+
+    /**
+     * A node does not drop its cache again for its own invalidations, so a listener is not called on the next reads.
+     */
+    @Test
+    public void skipsOwnInvalidations() {
+        AtomicInteger dropped = new AtomicInteger();
+        first.addListener("roles", dropped::incrementAndGet);
+        first.invalidate("roles");
+        first.poll();
+        first.poll();
+        assertEquals(0, dropped.get());
+
+        second.poll();
+        second.poll();
+        assertEquals(1, rolesDropped.get());
+    }
+
+    /**
+     * A listener which invalidates its cache again is not called again on the next read.
+     */
+    @Test
+    public void doesNotLoopOnListenerInvalidations() {
+        second.addListener("users", () -> second.invalidate("users"));
+        first.invalidate("users");
+        second.poll();
+        second.poll();
+        second.poll();
+        assertEquals(1, usersDropped.get());
+    }
+
+    /**
+     * Invalidations made between two reads drop the cache once.
+     */
+    @Test
+    public void mergesInvalidationsBetweenReads() {
+        first.invalidate("users");
+        first.invalidate("users");
+        second.invalidate("users");
+        second.poll();
+        assertEquals(1, usersDropped.get());
+    }
+
+    /**
+     * The first read only records the versions, the caches of a starting node are empty.
+     */
+    @Test
+    public void doesNotDropOnTheFirstRead() {
+        first.invalidate("roles");
+        CacheInvalidation started = create();
+        AtomicInteger dropped = new AtomicInteger();
+        started.addListener("roles", dropped::incrementAndGet);
+        started.poll();
+        assertEquals(0, dropped.get());
+    }
+
+    /**
+     * An invalidation which cannot be written does not fail the caller.
+     */
+    @Test
+    public void ignoresFailedInvalidations() {
+        jdbcTemplate.execute("DROP TABLE cache_invalidation");
+        first.invalidate("roles");
+        second.poll();
+        assertEquals(0, rolesDropped.get());
+    }
+
+    /**
+     * Create a node on the shared database, without its reading thread.
+     *
+     * @return cache invalidation of the node
+     */
+    private CacheInvalidation create() {
+        CacheInvalidation cacheInvalidation = new CacheInvalidation();
+        ReflectionTestUtils.setField(cacheInvalidation, "jdbcTemplate", jdbcTemplate);
+        return cacheInvalidation;
+    }
+}
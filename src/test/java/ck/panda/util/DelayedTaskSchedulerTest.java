@@ -0,0 +1,189 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Unit tests of the delayed task scheduler.
+ */
+public class DelayedTaskSchedulerTest {
+
+    /** Time in seconds to wait for a task. */
+    private static final long WAIT = 5;
+
+    /** Scheduler under test. */
+    private DelayedTaskScheduler scheduler;
+
+    /**
+     * Create the scheduler with three attempts and short retry delays.
+     */
+    @Before
+    public void setUp() {
+        scheduler = new DelayedTaskScheduler();
+        ReflectionTestUtils.setField(scheduler, "cloudStackServer", mock(CloudStackServer.class));
+        ReflectionTestUtils.setField(scheduler, "threads", 2);
+        ReflectionTestUtils.setField(scheduler, "maxAttempts", 3);
+        ReflectionTestUtils.setField(scheduler, "retryDelay", 20L);
+        ReflectionTestUtils.setField(scheduler, "backoffMultiplier", 2);
+        ReflectionTestUtils.setField(scheduler, "maxRetryDelay", 50L);
+        ReflectionTestUtils.setField(scheduler, "shutdownTimeout", 2000L);
+        scheduler.init();
+    }
+
+    /**
+     * Stop the scheduler.
+     */
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * A task runs once its delay has passed.
+     *
+     * @throws Exception if the task fails
+     */
+    @Test
+    public void runsAfterTheDelay() throws Exception {
+        long start = System.currentTimeMillis();
+        scheduler.schedule("vm-1", 100, () -> { }).get(WAIT, TimeUnit.SECONDS);
+
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    /**
+     * A task throwing an error fails without a retry, and the later tasks of its key still run.
+     *
+     * @throws Exception if the task fails
+     */
+    @Test
+    public void releasesTheKeyOfTasksThrowingErrors() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> failed = scheduler.schedule("vm-1", 0, () -> {
+            attempts.incrementAndGet();
+            throw new NoClassDefFoundError("ck/panda/Missing");
+        });
+        scheduler.schedule("vm-1", 0, () -> { }).get(WAIT, TimeUnit.SECONDS);
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * A failed task is retried until it succeeds.
+     *
+     * @throws Exception if the task fails
+     */
+    @Test
+    public void retriesFailedTasks() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        scheduler.schedule("vm-1", 0, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Not committed yet");
+            }
+        }).get(WAIT, TimeUnit.SECONDS);
+
+        assertEquals(3, attempts.get());
+    }
+
+    /**
+     * A task is given up after the last attempt and its future fails.
+     *
+     * @throws Exception if interrupted
+     */
+    @Test
+    public void givesUpAfterTheLastAttempt() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> done = scheduler.schedule("vm-1", 0, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("CloudStack unavailable");
+        });
+
+        assertFailed(done);
+        assertEquals(3, attempts.get());
+    }
+
+    /**
+     * A task scheduled to run once is not retried.
+     *
+     * @throws Exception if interrupted
+     */
+    @Test
+    public void runsOnceWithoutRetries() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> done = scheduler.scheduleOnce("vm-1", 0, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Mail server unavailable");
+        });
+
+        assertFailed(done);
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * A later task of the same key waits until the retries of an earlier task have ended.
+     *
+     * @throws Exception if the tasks fail
+     */
+    @Test
+    public void keepsTheOrderOfAKeyAcrossRetries() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> first = scheduler.schedule("vm-1", 0, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                order.add("first failed");
+                throw new IllegalStateException("Not committed yet");
+            }
+            order.add("first");
+        });
+        CompletableFuture<Void> second = scheduler.schedule("vm-1", 0, () -> order.add("second"));
+        CompletableFuture.allOf(first, second).get(WAIT, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("first failed", "first", "second"), order);
+    }
+
+    /**
+     * Pending tasks run at once on shutdown instead of being dropped.
+     *
+     * @throws Exception if the task fails
+     */
+    @Test
+    public void runsPendingTasksOnShutdown() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<Void> done = scheduler.schedule("vm-1", 60000, () -> runs.incrementAndGet());
+        scheduler.shutdown();
+
+        done.get(WAIT, TimeUnit.SECONDS);
+        assertEquals(1, runs.get());
+    }
+
+    /**
+     * Check that a future has failed.
+     *
+     * @param done future of a task
+     * @throws Exception if interrupted
+     */
+    private static void assertFailed(CompletableFuture<Void> done) throws Exception {
+        try {
+            done.get(WAIT, TimeUnit.SECONDS);
+            fail("Task should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ck.panda.util;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ck.panda.constants.GenericConstants;
+
+/**
+ * JMH benchmark of the token decode path, comparing the per-thread ciphers and cached key of EncryptionUtil with the
+ * former static synchronized methods that built the key and the cipher on every call. Both paths run once per thread
+ * count, so that the lock-free path shows its throughput growing with the threads while the locked one stays flat.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ck.panda.util.EncryptionUtilBenchmark}, or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionUtilBenchmark {
+
+    /** Thread counts the benchmark runs with. */
+    private static final int[] THREADS = { 1, 4, 16, 32 };
+
+    /** Secret value, as aes.salt.secretKey. */
+    private static final String SECRET = "DA97AA70B21ADCCA89708EFC05C7E2F2";
+
+    /** Token sized plain text. */
+    private static final String PLAIN_TEXT = "admin@@1@@ROOT_ADMIN@@4d5f7c1e-8a4b-4e0c-9f3a-6b2d1c0e9a87@@1445069234000@@"
+            + "ROOT@@ad6f5c3e-2b1a-4c9d-8e7f-0a1b2c3d4e5f@@en";
+
+    /** Encrypted token. */
+    private String encrypted;
+
+    /**
+     * Encrypt the token once.
+     *
+     * @throws Exception if encryption fails
+     */
+    @Setup
+    public void setUp() throws Exception {
+        encrypted = EncryptionUtil.encrypt(PLAIN_TEXT, EncryptionUtil.getSecretKey(SECRET));
+    }
+
+    /**
+     * Decrypt with a cached key and the cipher of the current thread.
+     *
+     * @return decrypted text
+     * @throws Exception if decryption fails
+     */
+    @Benchmark
+    public String decrypt() throws Exception {
+        return EncryptionUtil.decrypt(encrypted, EncryptionUtil.getSecretKey(SECRET));
+    }
+
+    /**
+     * Decrypt as before, building the key and a new cipher under one class wide lock.
+     *
+     * @return decrypted text
+     * @throws Exception if decryption fails
+     */
+    @Benchmark
+    public String decryptSynchronized() throws Exception {
+        byte[] keyBytes = Base64.getDecoder().decode(Base64.getEncoder().encodeToString(
+                SECRET.getBytes(GenericConstants.CHARACTER_ENCODING)));
+        SecretKey key = new SecretKeySpec(keyBytes, 0, keyBytes.length, GenericConstants.ENCRYPT_ALGORITHM);
+        return decryptLocked(encrypted, key);
+    }
+
+    /**
+     * Former EncryptionUtil.decrypt.
+     *
+     * @param text encrypted text
+     * @param key secret key
+     * @return decrypted text
+     * @throws Exception if decryption fails
+     */
+    private static synchronized String decryptLocked(String text, SecretKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance(GenericConstants.ENCRYPT_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(text)));
+    }
+
+    /**
+     * Run the benchmark once per thread count.
+     *
+     * @param args unused
+     * @throws Exception if the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder().include(EncryptionUtilBenchmark.class.getSimpleName()).threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ck.panda.domain.entity.Department;
+import ck.panda.domain.entity.Zone;
+
+/**
+ * Unit tests of the entity id cache.
+ */
+public class EntityIdCacheTest {
+
+    /** Cache under test. */
+    private EntityIdCache cache;
+
+    /** Entity manager of the bulk loads. */
+    private EntityManager entityManager;
+
+    /** Number of loader calls. */
+    private AtomicInteger loads;
+
+    /** Loader resolving every uuid to id 7. */
+    private EntityIdCache.Loader loader;
+
+    /**
+     * Create the cache with room for two ids per type.
+     */
+    @Before
+    public void setUp() {
+        entityManager = mock(EntityManager.class);
+        cache = new EntityIdCache();
+        ReflectionTestUtils.setField(cache, "entityManager", entityManager);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2 * EntityIdCache.Type.values().length);
+        cache.init();
+        loads = new AtomicInteger();
+        loader = uuid -> {
+            loads.incrementAndGet();
+            return 7L;
+        };
+    }
+
+    /**
+     * A resolved id is loaded once and then served from the cache.
+     *
+     * @throws Exception if the lookup fails
+     */
+    @Test
+    public void loadsOnceAndCaches() throws Exception {
+        assertEquals(Long.valueOf(7L), cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader));
+        assertEquals(Long.valueOf(7L), cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader));
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Unknown uuids are not cached, so they resolve once the row exists.
+     *
+     * @throws Exception if the lookup fails
+     */
+    @Test
+    public void doesNotCacheMisses() throws Exception {
+        assertNull(cache.resolve(EntityIdCache.Type.ZONE, "zone-1", uuid -> null));
+        assertEquals(Long.valueOf(7L), cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader));
+        assertNull(cache.resolve(EntityIdCache.Type.ZONE, null, loader));
+    }
+
+    /**
+     * The least recently used id is dropped once a type holds more than its share.
+     *
+     * @throws Exception if the lookup fails
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader);
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-2", loader);
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader);
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-3", loader);
+        assertEquals(3, loads.get());
+
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader);
+        assertEquals(3, loads.get());
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-2", loader);
+        assertEquals(4, loads.get());
+    }
+
+    /**
+     * Deleted entities are evicted, updated ones only when only active rows resolve.
+     *
+     * @throws Exception if the lookup fails
+     */
+    @Test
+    public void evictsChangedEntities() throws Exception {
+        Zone zone = new Zone();
+        zone.setUuid("zone-1");
+        Department department = new Department();
+        department.setUuid("department-1");
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader);
+        cache.resolve(EntityIdCache.Type.DEPARTMENT, "department-1", loader);
+
+        cache.evict(zone, false);
+        cache.evict(department, false);
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader);
+        cache.resolve(EntityIdCache.Type.DEPARTMENT, "department-1", loader);
+        assertEquals(3, loads.get());
+
+        cache.evict(zone, true);
+        cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader);
+        assertEquals(4, loads.get());
+    }
+
+    /**
+     * During a sync pass ids resolve from the bulk loaded tables.
+     *
+     * @throws Exception if the lookup fails
+     */
+    @Test
+    public void resolvesFromThePreloadedPass() throws Exception {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] {"zone-1", 11L});
+        Query query = mock(Query.class);
+        when(query.getResultList()).thenReturn(rows);
+        when(entityManager.createQuery(anyString())).thenReturn(query);
+
+        cache.beginPass();
+        assertEquals(Long.valueOf(11L), cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader));
+        assertEquals(0, loads.get());
+
+        cache.endPass();
+        assertEquals(Long.valueOf(7L), cache.resolve(EntityIdCache.Type.ZONE, "zone-1", loader));
+        assertEquals(1, loads.get());
+    }
+}
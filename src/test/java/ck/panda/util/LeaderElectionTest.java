@@ -0,0 +1,165 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Unit tests of the leader election of two nodes on an embedded H2 database.
+ */
+public class LeaderElectionTest {
+
+    /** Lease time in milliseconds. */
+    private static final long LEASE = 200L;
+
+    /** JDBC template of the embedded database. */
+    private JdbcTemplate jdbcTemplate;
+
+    /** First node. */
+    private LeaderElection first;
+
+    /** Second node. */
+    private LeaderElection second;
+
+    /**
+     * Create the lease table and the nodes.
+     */
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:leader;DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE leader_lease (name VARCHAR(100) NOT NULL, owner VARCHAR(255),"
+                + " expires_at BIGINT NOT NULL, updated_date_time DATETIME, PRIMARY KEY (name))");
+        jdbcTemplate.update("INSERT INTO leader_lease (name, owner, expires_at) VALUES ('backend.leader', NULL, 0)");
+        first = create("first");
+        second = create("second");
+    }
+
+    /**
+     * Drop the database.
+     */
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    /**
+     * Only one node holds the lease while it renews it.
+     */
+    @Test
+    public void electsOneLeader() {
+        first.renew();
+        second.renew();
+        assertTrue(first.isLeader());
+        assertFalse(second.isLeader());
+
+        first.renew();
+        second.renew();
+        assertTrue(first.isLeader());
+        assertFalse(second.isLeader());
+    }
+
+    /**
+     * A leader which stops renewing is no longer the leader once its lease expires, and another node takes over.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void takesOverExpiredLeases() throws InterruptedException {
+        first.renew();
+        Thread.sleep(LEASE + 50);
+        assertFalse(first.isLeader());
+
+        second.renew();
+        first.renew();
+        assertTrue(second.isLeader());
+        assertFalse(first.isLeader());
+    }
+
+    /**
+     * A released lease is taken over without waiting for it to expire.
+     */
+    @Test
+    public void takesOverReleasedLeases() {
+        first.renew();
+        first.release();
+        assertFalse(first.isLeader());
+
+        second.renew();
+        assertTrue(second.isLeader());
+    }
+
+    /**
+     * A term ends with the lease, even when the node is elected again.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void startsATermOnEachElection() throws InterruptedException {
+        first.renew();
+        long term = first.getTerm();
+        assertTrue(first.isLeader(term));
+
+        Thread.sleep(LEASE + 50);
+        second.renew();
+        second.release();
+        first.renew();
+        assertTrue(first.isLeader());
+        assertFalse(first.isLeader(term));
+        assertNotEquals(term, first.getTerm());
+        assertTrue(first.isLeader(first.getTerm()));
+    }
+
+    /**
+     * Elected listeners are called once per election, and at once when added to the leader.
+     */
+    @Test
+    public void callsElectedListeners() {
+        AtomicInteger elected = new AtomicInteger();
+        first.addElectedListener(elected::incrementAndGet);
+        first.renew();
+        first.renew();
+        assertEquals(1, elected.get());
+
+        first.addElectedListener(elected::incrementAndGet);
+        assertEquals(2, elected.get());
+    }
+
+    /**
+     * A failed renewal keeps the leader until its lease expires.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void keepsTheLeaseOnFailedRenewals() throws InterruptedException {
+        first.renew();
+        jdbcTemplate.execute("DROP TABLE leader_lease");
+        first.renew();
+        assertTrue(first.isLeader());
+
+        Thread.sleep(LEASE + 50);
+        assertFalse(first.isLeader());
+    }
+
+    /**
+     * Create a node on the shared database, without its renewal thread.
+     *
+     * @param nodeId node id
+     * @return leader election of the node
+     */
+    private LeaderElection create(String nodeId) {
+        LeaderElection leaderElection = new LeaderElection();
+        ReflectionTestUtils.setField(leaderElection, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(leaderElection, "nodeId", nodeId);
+        ReflectionTestUtils.setField(leaderElection, "leaseTime", LEASE);
+        return leaderElection;
+    }
+}
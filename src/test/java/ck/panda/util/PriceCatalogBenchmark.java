@@ -0,0 +1,156 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ck.panda.domain.entity.ComputeOfferingCost;
+import ck.panda.domain.entity.MiscellaneousCost;
+import ck.panda.domain.entity.StorageOfferingCost;
+import ck.panda.domain.entity.Tax;
+import ck.panda.domain.entity.TemplateCost;
+
+/**
+ * JMH benchmark of rating a month of compute usage, comparing the compiled price catalog with reading the prices of
+ * the cost entities of each record, as the cost services do.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ck.panda.util.PriceCatalogBenchmark}, or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceCatalogBenchmark {
+
+    /** Number of compute offerings. */
+    private static final int OFFERINGS = 200;
+
+    /** Number of records rated per call. */
+    private static final int RECORDS = 1000000;
+
+    /** Compiled price catalog. */
+    private PriceCatalog catalog;
+
+    /** Compute offering cost rows by compute offering id. */
+    private Map<Long, ComputeOfferingCost> costs;
+
+    /** Usage records. */
+    private UsageRecords records;
+
+    /** Compute offering id of each record. */
+    private long[] computeIds;
+
+    /** Hours of each record. */
+    private double[] hours;
+
+    /** Whether the instance of each record was running. */
+    private boolean[] running;
+
+    /**
+     * Create the cost rows, the catalog and the records.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<ComputeOfferingCost> computeCosts = new ArrayList<ComputeOfferingCost>();
+        costs = new HashMap<Long, ComputeOfferingCost>();
+        for (long id = 1; id <= OFFERINGS; id++) {
+            ComputeOfferingCost cost = new ComputeOfferingCost();
+            cost.setId(id);
+            cost.setComputeId(id);
+            cost.setSetupCost(random.nextDouble());
+            cost.setInstanceRunningCostPerVcpu(random.nextDouble());
+            cost.setInstanceRunningCostPerMB(random.nextDouble() / 1000);
+            cost.setInstanceStoppageCostPerVcpu(random.nextDouble() / 10);
+            cost.setInstanceStoppageCostPerMB(random.nextDouble() / 10000);
+            computeCosts.add(cost);
+            costs.put(id, cost);
+        }
+        catalog = new PriceCatalog(1L, computeCosts, Collections.<StorageOfferingCost>emptyList(),
+                Collections.<TemplateCost>emptyList(), Collections.<MiscellaneousCost>emptyList(),
+                Collections.<Tax>emptyList());
+        records = new UsageRecords(RECORDS);
+        computeIds = new long[RECORDS];
+        hours = new double[RECORDS];
+        running = new boolean[RECORDS];
+        for (int index = 0; index < RECORDS; index++) {
+            computeIds[index] = 1 + random.nextInt(OFFERINGS);
+            hours[index] = random.nextDouble() * 720;
+            running[index] = random.nextBoolean();
+            records.addCompute(index % 50, 0L, computeIds[index], running[index], hours[index], 2, 2048, 0);
+        }
+    }
+
+    /**
+     * Rate the records against the compiled catalog.
+     *
+     * @return total charge
+     */
+    @Benchmark
+    public double rateCatalog() {
+        double total = 0;
+        for (int index = 0; index < records.size(); index++) {
+            total += records.rate(catalog, index);
+        }
+        return total;
+    }
+
+    /**
+     * Rate the records reading the boxed prices of the cost entity of each record.
+     *
+     * @return total charge
+     */
+    @Benchmark
+    public double rateEntities() {
+        double total = 0;
+        for (int index = 0; index < RECORDS; index++) {
+            ComputeOfferingCost cost = costs.get(computeIds[index]);
+            if (running[index]) {
+                total += hours[index] * (value(cost.getInstanceRunningCostPerVcpu()) * 2
+                        + value(cost.getInstanceRunningCostPerMB()) * 2048);
+            } else {
+                total += hours[index] * (value(cost.getInstanceStoppageCostPerVcpu()) * 2
+                        + value(cost.getInstanceStoppageCostPerMB()) * 2048);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get a price as JsonUtil.getDoubleValue does.
+     *
+     * @param price price
+     * @return price, 0 if not set
+     */
+    private static Double value(Double price) {
+        return price != null ? price : 0.00;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PriceCatalogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
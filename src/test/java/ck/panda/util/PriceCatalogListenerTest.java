@@ -0,0 +1,86 @@
+package ck.panda.util;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ck.panda.domain.entity.ComputeOfferingCost;
+import ck.panda.domain.entity.Tax;
+import ck.panda.domain.entity.Zone;
+import ck.panda.service.RatingService;
+
+/**
+ * Unit tests of the price catalog listener.
+ */
+public class PriceCatalogListenerTest {
+
+    /** Listener under test. */
+    private PriceCatalogListener listener;
+
+    /** Rating service holding the catalog. */
+    private RatingService ratingService;
+
+    /** Cache invalidation across the nodes. */
+    private CacheInvalidation cacheInvalidation;
+
+    /**
+     * Create the listener with a mocked rating service and cache invalidation.
+     */
+    @Before
+    public void setUp() {
+        ratingService = mock(RatingService.class);
+        cacheInvalidation = mock(CacheInvalidation.class);
+        listener = new PriceCatalogListener();
+        ReflectionTestUtils.setField(listener, "ratingService", ratingService);
+        ReflectionTestUtils.setField(listener, "cacheInvalidation", cacheInvalidation);
+    }
+
+    /**
+     * Clear the transaction synchronizations of a test.
+     */
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Changes of cost rows drop the catalog on every node, changes of other entities do not.
+     */
+    @Test
+    public void invalidatesOnCostChangesOnly() {
+        listener.afterChange(new Zone());
+        verify(ratingService, never()).invalidateCatalog();
+        verify(cacheInvalidation, never()).invalidate(RatingService.CATALOG_CACHE);
+
+        listener.afterChange(new ComputeOfferingCost());
+        listener.afterChange(new Tax());
+        verify(ratingService, times(2)).invalidateCatalog();
+        verify(cacheInvalidation, times(2)).invalidate(RatingService.CATALOG_CACHE);
+    }
+
+    /**
+     * Within a transaction the other nodes are invalidated with the change, and the catalog of this node is dropped
+     * only once the transaction commits.
+     */
+    @Test
+    public void dropsTheCatalogAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        listener.afterChange(new ComputeOfferingCost());
+        verify(cacheInvalidation).invalidate(RatingService.CATALOG_CACHE);
+        verify(ratingService, never()).invalidateCatalog();
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(ratingService).invalidateCatalog();
+    }
+}
@@ -0,0 +1,166 @@
+package ck.panda.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * Synced row written by the sync batch writer tests and benchmark on an embedded H2 database.
+ */
+@Entity
+@Table(name = "sync_batch_row")
+public class SyncBatchRow {
+
+    /** Unique id of the row. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /** Name of the row. */
+    @Column(name = "name")
+    private String name;
+
+    /** Whether the row is active. */
+    @Column(name = "is_active")
+    private Boolean isActive = true;
+
+    /** Number of writes seen by the entity listener. */
+    @Column(name = "write_count")
+    private Integer writeCount = 0;
+
+    /** Version attribute to handle optimistic locking. */
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    /**
+     * Create a row.
+     */
+    public SyncBatchRow() {
+    }
+
+    /**
+     * Create a row with a name.
+     *
+     * @param name name of the row
+     */
+    public SyncBatchRow(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Count a write, as an auditing listener would stamp it.
+     */
+    @PrePersist
+    @PreUpdate
+    public void onWrite() {
+        writeCount++;
+    }
+
+    /**
+     * Create an entity manager factory of this entity on a new embedded H2 database.
+     *
+     * @param database name of the database
+     * @return entity manager factory
+     */
+    public static EntityManagerFactory createEntityManagerFactory(String database) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.batch_size", "50");
+        properties.put("hibernate.jdbc.batch_versioned_data", "true");
+        properties.put("hibernate.order_updates", "true");
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1"));
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setPackagesToScan(SyncBatchRow.class.getPackage().getName());
+        factory.setJpaPropertyMap(properties);
+        factory.setPersistenceUnitName(database);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+
+    /**
+     * Get the id.
+     *
+     * @return the id
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Get the name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Set the name.
+     *
+     * @param name the name to set
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the active state.
+     *
+     * @return the active state
+     */
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    /**
+     * Set the active state.
+     *
+     * @param isActive the active state to set
+     */
+    public void setIsActive(Boolean isActive) {
+        this.isActive = isActive;
+    }
+
+    /**
+     * Get the number of writes.
+     *
+     * @return the write count
+     */
+    public Integer getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Get the version.
+     *
+     * @return the version
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set the version.
+     *
+     * @param version the version to set
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,129 @@
+package ck.panda.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * JMH benchmark of writing the rows changed by a sync on an embedded H2 database, comparing the chunked batch writer
+ * with one repository style merge and transaction per row.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ck.panda.util.SyncBatchWriterBenchmark}, or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncBatchWriterBenchmark {
+
+    /** Number of rows changed by a sync. */
+    private static final int ROWS = 2000;
+
+    /** Entity manager factory of the embedded database. */
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Writer under test. */
+    private SyncBatchWriter writer;
+
+    /** Changed rows, detached. */
+    private List<SyncBatchRow> rows;
+
+    /** Number of the current write, changing the row names on each write. */
+    private int write;
+
+    /**
+     * Create the database, the writer and the rows.
+     */
+    @Setup
+    public void setUp() {
+        entityManagerFactory = SyncBatchRow.createEntityManagerFactory("syncbenchmark");
+        writer = new SyncBatchWriter();
+        ReflectionTestUtils.setField(writer, "entityManagerFactory", entityManagerFactory);
+        ReflectionTestUtils.setField(writer, "chunkSize", 500);
+        List<SyncBatchRow> newRows = new ArrayList<SyncBatchRow>();
+        for (int index = 0; index < ROWS; index++) {
+            newRows.add(new SyncBatchRow("row-" + index));
+        }
+        writer.insertAll(newRows);
+    }
+
+    /**
+     * Load the rows and change them, as a sync does before writing them.
+     */
+    @Setup(Level.Invocation)
+    public void change() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            rows = entityManager.createQuery("from SyncBatchRow", SyncBatchRow.class).getResultList();
+        } finally {
+            entityManager.close();
+        }
+        write++;
+        for (SyncBatchRow row : rows) {
+            row.setName("row-" + row.getId() + "-" + write);
+        }
+    }
+
+    /**
+     * Drop the database.
+     */
+    @TearDown
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    /**
+     * Write the rows with the batch writer.
+     */
+    @Benchmark
+    public void writeInChunks() {
+        writer.updateAll(rows);
+    }
+
+    /**
+     * Write the rows with a merge and a transaction each, as a repository save does.
+     */
+    @Benchmark
+    public void writePerRow() {
+        for (SyncBatchRow row : rows) {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                entityManager.getTransaction().begin();
+                entityManager.merge(row);
+                entityManager.getTransaction().commit();
+            } finally {
+                entityManager.close();
+            }
+        }
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if the run fails
+     */
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SyncBatchWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
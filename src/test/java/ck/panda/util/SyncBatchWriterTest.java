@@ -0,0 +1,179 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Unit tests of the sync batch writer on an embedded H2 database.
+ */
+public class SyncBatchWriterTest {
+
+    /** Entity manager factory of the embedded database. */
+    private EntityManagerFactory entityManagerFactory;
+
+    /** Writer under test. */
+    private SyncBatchWriter writer;
+
+    /**
+     * Create the database and the writer, writing two rows per chunk.
+     */
+    @Before
+    public void setUp() {
+        entityManagerFactory = SyncBatchRow.createEntityManagerFactory("syncbatch");
+        writer = new SyncBatchWriter();
+        ReflectionTestUtils.setField(writer, "entityManagerFactory", entityManagerFactory);
+        ReflectionTestUtils.setField(writer, "chunkSize", 2);
+    }
+
+    /**
+     * Drop the database.
+     */
+    @After
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    /**
+     * New rows are inserted in chunks and get their ids.
+     */
+    @Test
+    public void insertsRowsInChunks() {
+        List<SyncBatchRow> rows = rows("a", "b", "c", "d", "e");
+        writer.insertAll(rows);
+        for (SyncBatchRow row : rows) {
+            assertNotNull(row.getId());
+        }
+        assertEquals(5, load().size());
+        assertEquals(Long.valueOf(3), metric("sync.batch.chunks"));
+        assertEquals(Long.valueOf(5), metric("sync.batch.rows"));
+    }
+
+    /**
+     * Detached rows are updated with their version checked and their entity listeners run.
+     */
+    @Test
+    public void updatesDetachedRows() {
+        writer.insertAll(rows("a", "b", "c"));
+        List<SyncBatchRow> rows = load();
+        for (SyncBatchRow row : rows) {
+            row.setName(row.getName() + "-changed");
+        }
+        rows.get(2).setIsActive(false);
+        writer.updateAll(rows);
+
+        List<SyncBatchRow> written = load();
+        assertEquals("a-changed", written.get(0).getName());
+        assertEquals(Long.valueOf(1), written.get(0).getVersion());
+        assertEquals(Integer.valueOf(2), written.get(0).getWriteCount());
+        assertFalse(written.get(2).getIsActive());
+    }
+
+    /**
+     * The persistence context bound by the caller is neither cleared nor flushed, only the rows handed over leave it.
+     */
+    @Test
+    public void leavesTheCallerContextAsItIs() {
+        writer.insertAll(rows("a", "b"));
+        EntityManager caller = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(caller));
+        try {
+            List<SyncBatchRow> rows = caller.createQuery("from SyncBatchRow order by id", SyncBatchRow.class)
+                    .getResultList();
+            SyncBatchRow synced = rows.get(0);
+            SyncBatchRow other = rows.get(1);
+            synced.setName("a-changed");
+            writer.updateAll(Collections.singletonList(synced));
+
+            assertTrue(caller.isOpen());
+            assertTrue(caller.contains(other));
+            assertFalse(caller.contains(synced));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            caller.close();
+        }
+        assertEquals("a-changed", load().get(0).getName());
+    }
+
+    /**
+     * A failed chunk is rolled back and thrown, the chunks before it stay written.
+     */
+    @Test
+    public void rollsBackTheFailedChunkOnly() {
+        writer.insertAll(rows("a", "b", "c", "d"));
+        List<SyncBatchRow> rows = load();
+        for (SyncBatchRow row : rows) {
+            row.setName(row.getName() + "-changed");
+        }
+        rows.get(3).setVersion(5L);
+        try {
+            writer.updateAll(rows);
+            fail("The stale row fails its chunk");
+        } catch (RuntimeException e) {
+            List<SyncBatchRow> written = load();
+            assertEquals("a-changed", written.get(0).getName());
+            assertEquals("b-changed", written.get(1).getName());
+            assertEquals("c", written.get(2).getName());
+            assertEquals("d", written.get(3).getName());
+        }
+    }
+
+    /**
+     * Create new rows.
+     *
+     * @param names names of the rows
+     * @return rows
+     */
+    private List<SyncBatchRow> rows(String... names) {
+        List<SyncBatchRow> rows = new ArrayList<SyncBatchRow>();
+        for (String name : Arrays.asList(names)) {
+            rows.add(new SyncBatchRow(name));
+        }
+        return rows;
+    }
+
+    /**
+     * Load every row in id order, detached.
+     *
+     * @return rows
+     */
+    private List<SyncBatchRow> load() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("from SyncBatchRow order by id", SyncBatchRow.class).getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Get the value of a writer metric.
+     *
+     * @param name metric name
+     * @return metric value
+     */
+    private Number metric(String name) {
+        for (Metric<?> metric : writer.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import org.junit.Test;
+import ck.panda.domain.entity.Nic;
+import ck.panda.domain.entity.VmInstance;
+import ck.panda.domain.entity.VmIpaddress;
+
+/**
+ * Unit tests of the sync fingerprint.
+ */
+public class SyncFingerprintTest {
+
+    /**
+     * The same values give the same hex SHA-256 fingerprint.
+     */
+    @Test
+    public void isStable() {
+        String fingerprint = SyncFingerprint.of("vm-1", 2, 2048L, true);
+        assertEquals(fingerprint, SyncFingerprint.of("vm-1", 2, 2048L, true));
+        assertEquals(64, fingerprint.length());
+    }
+
+    /**
+     * The fingerprint changes with a value and with the order of the values.
+     */
+    @Test
+    public void changesWithValuesAndOrder() {
+        assertNotEquals(SyncFingerprint.of("vm-1", 2), SyncFingerprint.of("vm-1", 4));
+        assertNotEquals(SyncFingerprint.of("a", "b"), SyncFingerprint.of("b", "a"));
+    }
+
+    /**
+     * Values are separated, so moving text from one value to the next changes the fingerprint.
+     */
+    @Test
+    public void separatesValues() {
+        assertNotEquals(SyncFingerprint.of("ab", "c"), SyncFingerprint.of("a", "bc"));
+        assertNotEquals(SyncFingerprint.of("a", ""), SyncFingerprint.of("a"));
+    }
+
+    /**
+     * A null value differs from the text null and from an empty text.
+     */
+    @Test
+    public void marksNullValues() {
+        assertNotEquals(SyncFingerprint.of((Object) null), SyncFingerprint.of("null"));
+        assertNotEquals(SyncFingerprint.of((Object) null), SyncFingerprint.of(""));
+        assertEquals(SyncFingerprint.of("a", null), SyncFingerprint.of("a", null));
+    }
+
+    /**
+     * Dates are compared by their instant, whatever their zone.
+     */
+    @Test
+    public void comparesDatesByInstant() {
+        ZonedDateTime utc = ZonedDateTime.of(2015, 9, 1, 10, 30, 0, 0, ZoneOffset.UTC);
+        assertEquals(SyncFingerprint.of(utc), SyncFingerprint.of(utc.withZoneSameInstant(ZoneId.of("Asia/Kolkata"))));
+        assertNotEquals(SyncFingerprint.of(utc), SyncFingerprint.of(utc.withZoneSameLocal(ZoneId.of("Asia/Kolkata"))));
+    }
+
+    /**
+     * Enums are compared by name.
+     */
+    @Test
+    public void comparesEnumsByName() {
+        assertEquals(SyncFingerprint.of(VmInstance.Status.RUNNING), SyncFingerprint.of("RUNNING"));
+        assertNotEquals(SyncFingerprint.of(VmInstance.Status.RUNNING), SyncFingerprint.of(VmInstance.Status.STOPPED));
+    }
+
+    /**
+     * A synced instance field changes the instance fingerprint.
+     */
+    @Test
+    public void fingerprintsInstances() {
+        VmInstance instance = new VmInstance();
+        instance.setName("vm-1");
+        instance.setStatus(VmInstance.Status.RUNNING);
+        String fingerprint = instance.syncFingerprint();
+        assertEquals(fingerprint, instance.syncFingerprint());
+
+        instance.setStatus(VmInstance.Status.STOPPED);
+        assertNotEquals(fingerprint, instance.syncFingerprint());
+    }
+
+    /**
+     * The nic fingerprint does not depend on the order of its ip addresses.
+     */
+    @Test
+    public void fingerprintsNicIpAddressesInIdOrder() {
+        Nic nic = new Nic();
+        nic.setUuid("nic-1");
+        nic.setIpAddress("10.1.1.10");
+        nic.setVmIpAddress(Arrays.asList(vmIp(2L), vmIp(1L)));
+        String fingerprint = nic.syncFingerprint();
+
+        nic.setVmIpAddress(Arrays.asList(vmIp(1L), vmIp(2L)));
+        assertEquals(fingerprint, nic.syncFingerprint());
+
+        nic.setVmIpAddress(Arrays.asList(vmIp(1L), vmIp(3L)));
+        assertNotEquals(fingerprint, nic.syncFingerprint());
+    }
+
+    /**
+     * Create a vm ip address.
+     *
+     * @param id vm ip address id
+     * @return vm ip address
+     */
+    private VmIpaddress vmIp(Long id) {
+        VmIpaddress vmIp = new VmIpaddress();
+        vmIp.setId(id);
+        return vmIp;
+    }
+}
@@ -0,0 +1,121 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the task graph.
+ */
+public class TaskGraphTest {
+
+    /** Executor running the tasks. */
+    private ExecutorService executor;
+
+    /**
+     * Start the executor.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    /**
+     * Stop the executor.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A task starts only after every task it depends on has finished.
+     */
+    @Test
+    public void runsDependentsAfterTheirDependencies() {
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        new TaskGraph()
+            .add("Zone", () -> order.add("Zone"))
+            .add("Domain", () -> order.add("Domain"))
+            .add("Pod", () -> order.add("Pod"), "Zone")
+            .add("Network", () -> order.add("Network"), "Zone", "Domain")
+            .add("Instances", () -> order.add("Instances"), "Pod", "Network")
+            .execute(executor);
+
+        assertEquals(5, order.size());
+        assertTrue(order.indexOf("Zone") < order.indexOf("Pod"));
+        assertTrue(order.indexOf("Zone") < order.indexOf("Network"));
+        assertTrue(order.indexOf("Domain") < order.indexOf("Network"));
+        assertTrue(order.indexOf("Pod") < order.indexOf("Instances"));
+        assertTrue(order.indexOf("Network") < order.indexOf("Instances"));
+    }
+
+    /**
+     * Independent tasks run at the same time.
+     *
+     * @throws Exception if the tasks fail
+     */
+    @Test
+    public void runsIndependentTasksInParallel() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TaskGraph.Task task = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            running.decrementAndGet();
+        };
+        new TaskGraph().add("A", task).add("B", task).add("C", task).execute(executor);
+
+        assertTrue(maxRunning.get() > 1);
+    }
+
+    /**
+     * A failed task is recorded and its dependents still run.
+     */
+    @Test
+    public void keepsRunningDependentsOfFailedTasks() {
+        Map<String, Boolean> ran = new ConcurrentHashMap<String, Boolean>();
+        TaskGraph graph = new TaskGraph()
+            .add("Zone", () -> {
+                throw new IllegalStateException("CloudStack unavailable");
+            })
+            .add("Pod", () -> ran.put("Pod", true), "Zone");
+        graph.execute(executor);
+
+        assertEquals(Collections.singletonList("Zone"), graph.getFailures());
+        assertTrue(ran.containsKey("Pod"));
+        assertTrue(graph.getTimings().containsKey("Zone"));
+        assertTrue(graph.getTimings().containsKey("Pod"));
+    }
+
+    /**
+     * A task cannot depend on a task added after it.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownDependencies() {
+        new TaskGraph().add("Pod", () -> { }, "Zone");
+    }
+
+    /**
+     * Task names are unique.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateTasks() {
+        new TaskGraph().add("Zone", () -> { }).add("Zone", () -> { });
+    }
+}
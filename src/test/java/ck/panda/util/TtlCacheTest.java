@@ -0,0 +1,227 @@
+package ck.panda.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the TTL cache.
+ */
+public class TtlCacheTest {
+
+    /** Executor running concurrent reads. */
+    private ExecutorService executor;
+
+    /** Number of loader calls. */
+    private AtomicInteger loads;
+
+    /**
+     * Start the executor.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        loads = new AtomicInteger();
+    }
+
+    /**
+     * Stop the executor.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A value is loaded once and served from the cache until it expires.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void keepsValuesForTheirTimeToLive() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(100, 10);
+        assertEquals(Integer.valueOf(1), cache.get("count", () -> loads.incrementAndGet()));
+        assertEquals(Integer.valueOf(1), cache.get("count", () -> loads.incrementAndGet()));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        Thread.sleep(150);
+        assertEquals(Integer.valueOf(2), cache.get("count", () -> loads.incrementAndGet()));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Reads of a key that run at the same time share one load.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void sharesConcurrentLoads() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(60000, 10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TtlCache.Loader<Integer> loader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return 42;
+        };
+        Future<Integer> first = executor.submit(() -> cache.get("count", loader));
+        loading.await(5, TimeUnit.SECONDS);
+        Future<Integer> second = executor.submit(() -> cache.get("count", loader));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertEquals(Integer.valueOf(42), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(42), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * A failed load is not kept, the next read loads again.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void doesNotKeepFailures() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(60000, 10);
+        IllegalStateException failure = new IllegalStateException("Ping unavailable");
+        try {
+            cache.get("count", () -> {
+                throw failure;
+            });
+            fail("The load failure is thrown");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(Integer.valueOf(1), cache.get("count", () -> loads.incrementAndGet()));
+    }
+
+    /**
+     * An invalidated key loads again, and a load started before an invalidation is not kept.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void dropsInvalidatedValues() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(60000, 10);
+        cache.get("count", () -> loads.incrementAndGet());
+        cache.invalidate("count");
+        assertEquals(Integer.valueOf(2), cache.get("count", () -> loads.incrementAndGet()));
+
+        cache.invalidateAll();
+        assertEquals(Integer.valueOf(3), cache.get("count", () -> {
+            cache.invalidateAll();
+            return loads.incrementAndGet();
+        }));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Expired values are dropped once the cache is full, and values are not kept while it stays full.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void boundsItsSize() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(100, 2);
+        cache.get("a", () -> loads.incrementAndGet());
+        cache.get("b", () -> loads.incrementAndGet());
+        cache.get("c", () -> loads.incrementAndGet());
+        assertEquals(2, cache.size());
+
+        Thread.sleep(150);
+        cache.get("c", () -> loads.incrementAndGet());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * An expired value is returned within its stale time while one background load refreshes it.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void returnsStaleValuesWhileRefreshing() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(100, 60000, 10, executor);
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        cache.get("count", () -> loads.incrementAndGet());
+        Thread.sleep(150);
+
+        TtlCache.Loader<Integer> loader = () -> {
+            refreshing.countDown();
+            release.await();
+            return loads.incrementAndGet();
+        };
+        assertEquals(Integer.valueOf(1), cache.get("count", loader));
+        assertEquals(Integer.valueOf(1), cache.get("count", loader));
+        assertEquals(2, cache.getStaleCount());
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.get("count", loader) != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Integer.valueOf(2), cache.get("count", loader));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * A value older than its stale time is loaded again by the read.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void loadsValuesPastTheirStaleTime() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(50, 50, 10, executor);
+        cache.get("count", () -> loads.incrementAndGet());
+        Thread.sleep(150);
+        assertEquals(Integer.valueOf(2), cache.get("count", () -> loads.incrementAndGet()));
+        assertEquals(0, cache.getStaleCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * A failed background load keeps the stale value, and an invalidated stale value is not returned.
+     *
+     * @throws Exception if a load fails
+     */
+    @Test
+    public void keepsStaleValuesOnFailedRefresh() throws Exception {
+        TtlCache<Integer> cache = new TtlCache<Integer>(50, 60000, 10, executor);
+        CountDownLatch failed = new CountDownLatch(1);
+        cache.get("count", () -> loads.incrementAndGet());
+        Thread.sleep(100);
+        assertEquals(Integer.valueOf(1), cache.get("count", () -> {
+            failed.countDown();
+            throw new IllegalStateException("Ping unavailable");
+        }));
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(Integer.valueOf(1), cache.get("count", () -> loads.incrementAndGet()));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loads.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        cache.invalidateAll();
+        assertEquals(Integer.valueOf(3), cache.get("count", () -> loads.incrementAndGet()));
+    }
+}